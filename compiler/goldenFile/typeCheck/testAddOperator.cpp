@@ -0,0 +1,42 @@
+
+testAddOperator::A& testAddOperator::A::add(int32_t i) {
+    SC_DEFINE_THIS_REFPTR
+    /*unsafe*/ {
+        return (*sc_thisref);
+    }
+}
+
+void testAddOperator::test() {
+    testAddOperator::A a ;{
+        a.add(1);
+    }
+    ;
+}
+
+void testAddOperator::test2() {
+    testAddOperator::A a ;{
+        a.add(1).add(2);
+    }
+    ;
+}
+
+void testAddOperator::test3() {
+    testAddOperator::A a ;{
+        a.add(1).add(2);
+    }
+    ;
+}
+
+void testAddOperator::test4() {
+    testAddOperator::A a ;{
+        a.add(1).add(2).add(3);
+    }
+    ;
+}
+
+void testAddOperator::test5() {
+    testAddOperator::A a ;{
+        a.add(1).add(2).add(3);
+    }
+    ;
+}
@@ -0,0 +1,8 @@
+
+void main() {
+    sric::Array<int32_t, 3> a ;{a[0] = 1; a[1] = 2; a[2] = 3; };
+    for (int32_t i = 0; (i < 3); (++i)) {
+        int32_t v = (a[i]);
+        printf("%d\n", v);
+    }
+}
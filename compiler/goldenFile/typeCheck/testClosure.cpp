@@ -0,0 +1,22 @@
+
+void testClosure::A::test() {
+    SC_DEFINE_THIS
+    std::function<void()> c = ([=]() mutable {
+        int32_t x = sc_this->i;
+        int32_t y = sc_this->i;
+    }
+    );
+}
+
+void testClosure::foo(std::function<int32_t(int32_t, int32_t)> a) {
+    int32_t r = sric::notNull(a)(1, 2);
+    printf("%d\n", r);
+}
+
+void main() {
+    int32_t i = 0;
+    testClosure::foo(([=](int32_t a, int32_t b) mutable ->int32_t{
+        return ((a - b) + i);
+    }
+    ));
+}
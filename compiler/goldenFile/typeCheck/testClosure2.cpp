@@ -0,0 +1,11 @@
+
+int32_t testClosure2::foo(int32_t v) {
+    return (v + 1);
+}
+
+void testClosure2::test1() {
+    std::function<int32_t(int32_t)> f = testClosure2::foo;
+    int32_t i = sric::notNull(f)(1);
+    std::function<int32_t(int32_t)> c = testClosure2::foo;
+    int32_t j = sric::notNull(c)(1);
+}
@@ -0,0 +1,17 @@
+
+void testCopyable::Holder::moveAll() {
+    SC_DEFINE_THIS
+    testCopyable::Shape m1 = (std::move(sc_this->shape1));
+    testCopyable::Shape m2 = (std::move(sc_this->shape2));
+    testCopyable::Line m3 = (std::move(sc_this->line1));
+}
+
+void testCopyable::copyAll(testCopyable::Shape s, testCopyable::Line l) {
+    testCopyable::Shape s1 = s;
+    testCopyable::Shape s2 = s1;
+    testCopyable::Line l1 = l;
+    testCopyable::Line l2 = l1;
+    testCopyable::Point p1 = l2.a;
+    testCopyable::Point p2 = p1;
+    testCopyable::Point p3 = s2.origin;
+}
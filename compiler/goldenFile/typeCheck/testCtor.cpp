@@ -0,0 +1,10 @@
+
+testCtor::A::A() {
+    SC_DEFINE_THIS
+    sc_this->i = 1;
+}
+
+testCtor::A::~A() {
+    SC_DEFINE_THIS
+    sc_this->i = 0;
+}
@@ -0,0 +1,13 @@
+
+void testEnum::foo(testEnum::Color c) {
+    int32_t i = ((int32_t)(c));
+    printf("%d\n", i);
+}
+
+void main() {
+    testEnum::Color c = testEnum::Color::Red;
+    testEnum::foo(c);
+    if ((c == testEnum::Color::Red)) {
+        testEnum::foo(c);
+    }
+}
@@ -0,0 +1,30 @@
+
+void testExpr::print(int32_t x) {
+    printf("%d\n", x);
+}
+
+int32_t testExpr::foo() {
+    int32_t a = 0;
+    int32_t b = 1;
+    int32_t c = (a + (b * 2));
+    a *= 10;
+    testExpr::print(a);
+    int32_t d = (a | (b >> 2));
+    testExpr::print(d);
+    int32_t e = ((a > b)?a:b);
+    testExpr::print(e);
+    double f = 123.0;
+    bool g = (a < f);
+    bool h = false;
+    bool i = ((!h) && g);
+    testExpr::print(((int32_t)(i)));
+    return 1;
+}
+
+void testExpr::literal() {
+    int32_t a = 100;
+    double b = 100.0;
+    bool c = true;
+    double d = (a + b);
+    const char* e = "str";
+}
@@ -0,0 +1,4 @@
+
+void testExtern::testExtern() {
+    std::vector<int32_t > v;
+}
@@ -0,0 +1,34 @@
+
+template <typename T>
+struct NT SC_OBJ_BASE  {
+    SC_SAFE_STRUCT
+
+    virtual T& plus(T& that) = 0;
+    virtual T& operator+(T& that) = 0;
+    virtual ~NT(){}
+    NT(){}
+
+};
+
+template <typename T>
+struct A SC_OBJ_BASE  {
+    SC_SAFE_STRUCT
+    T i{};
+
+    T* foo() {
+        SC_DEFINE_THIS
+        return (&sc_this->i);
+    }
+
+    T foo2() {
+        SC_DEFINE_THIS
+        return (sc_this->i + sc_this->i);
+    }
+
+
+};
+
+template <typename T>
+T gf(T v) {
+    return (std::move(v));
+}
@@ -0,0 +1,43 @@
+
+struct LT SC_OBJ_BASE  {
+    SC_SAFE_STRUCT
+    sric::OwnPtr<testGeneric2::LT> next;
+
+    virtual ~LT(){}
+    LT(){}
+
+};
+
+template <typename T>
+struct L SC_OBJ_BASE  {
+    SC_SAFE_STRUCT
+
+    sric::RefPtr<T> get() {
+        SC_DEFINE_THIS
+        return (sric::RefPtr<T>)sric::RefPtr<T>();
+    }
+
+
+};
+
+template <typename K>
+struct ME SC_OBJ_BASE  {
+    SC_SAFE_STRUCT
+    K k{};
+    sric::OwnPtr<testGeneric2::ME<K >> next;
+
+
+};
+
+template <typename K>
+struct MEL SC_OBJ_BASE  {
+    SC_SAFE_STRUCT
+    testGeneric2::L<testGeneric2::ME<K > > list;
+
+    void foo(K a) {
+        SC_DEFINE_THIS
+        sc_this->list.get()->k;
+    }
+
+
+};
@@ -0,0 +1,9 @@
+
+void testInherit::A::foo() {
+    SC_DEFINE_THIS
+    sc_this->bar();
+}
+
+void testInherit::B::bar() {
+    SC_DEFINE_THIS
+}
@@ -0,0 +1,15 @@
+
+void testInherit2::A::foo() {
+    SC_DEFINE_THIS
+    sc_this->bar();
+}
+
+void testInherit2::B::bar() {
+    SC_DEFINE_THIS
+}
+
+void testInherit2::C::foo() {
+    SC_DEFINE_THIS
+    sc_this->bar();
+    sc_this->a = 1;
+}
@@ -0,0 +1,37 @@
+
+testOperator::Vector testOperator::Vector::plus(testOperator::Vector other) {
+    SC_DEFINE_THIS
+    return other;
+}
+
+testOperator::Vector testOperator::Vector::operator+(testOperator::Vector other) {
+    SC_DEFINE_THIS
+    return other;
+}
+
+testOperator::Vector testOperator::Vector::get(int32_t a) {
+    SC_DEFINE_THIS_REFPTR
+    return (*sc_thisref);
+}
+
+testOperator::Vector testOperator::Vector::operator[](int32_t a) {
+    SC_DEFINE_THIS_REFPTR
+    return (*sc_thisref);
+}
+
+void testOperator::Vector::set(int32_t a, testOperator::Vector b) {
+    SC_DEFINE_THIS
+}
+
+int32_t testOperator::Vector::compare(testOperator::Vector b) {
+    SC_DEFINE_THIS
+    return 1;
+}
+
+void main() {
+    testOperator::Vector a;
+    testOperator::Vector b;
+    testOperator::Vector c = (a + b);
+    testOperator::Vector d = (c[2]);
+    c.set(3, b);
+}
@@ -0,0 +1,7 @@
+
+void testParam::foo(int32_t a, int32_t b) {
+}
+
+void main() {
+    testParam::foo(10);
+}
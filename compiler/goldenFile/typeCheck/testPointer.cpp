@@ -0,0 +1,37 @@
+
+void testPointer::foo(sric::RefPtr<int32_t> c) {
+}
+
+void testPointer::foo2(sric::OwnPtr<int32_t> c) {
+}
+
+void main() {
+    sric::StackRefable<int32_t> i = 1;
+    sric::RefPtr<int32_t> p = (&i);
+    testPointer::foo(p);
+    sric::OwnPtr<int32_t> p2 = (sric::new_<int32_t>());
+    testPointer::foo(sric::RefPtr<int32_t >(p2));
+    p = sric::RefPtr<int32_t >(p2);
+    sric::OwnPtr<int32_t> x = (sric::OwnPtr<int32_t>)sric::OwnPtr<int32_t>();
+    testPointer::foo(sric::RefPtr<int32_t >(sric::notNull(x)));
+    testPointer::foo2((std::move(p2)));
+    if ((x != nullptr)) {
+        printf("%d", (*x));
+    }
+}
+
+void testPointer::test() {
+    sric::StackRefable<sric::OwnPtr<int32_t>> p = (sric::new_<int32_t>());
+    sric::OwnPtr<int32_t>* pp = ((sric::OwnPtr<int32_t>*)&p);
+    /*unsafe*/ {
+        int32_t p2 = (*(*pp));
+        int32_t s = 0;
+        s += (*(*pp));
+    }
+}
+
+void testPointer::testAccess() {
+    sric::RefPtr<testPointer::A> a;
+    int32_t* c = (int32_t*)a->c;
+    sric::RefPtr<testPointer::A> p = (sric::RefPtr<testPointer::A>)sric::notNull(a);
+}
@@ -0,0 +1,17 @@
+
+int32_t testRefable::A::compare(testRefable::A& b) {
+    SC_DEFINE_THIS
+    return (sc_this->i - b.i);
+}
+
+void testRefable::testDerivativeRefable() {
+    sric::OwnPtr<testRefable::A> a  = testRefable::alloc<testRefable::A >();{
+    }
+    ;
+    sric::RefPtr<int32_t> p2 = (sric::RefPtr<int32_t>(a,&a->k));
+}
+
+void testRefable::testDerivativeLocal() {
+    sric::StackRefable<testRefable::A> a;
+    sric::RefPtr<int32_t> p2 = (sric::RefPtr<int32_t>(&a,&a->k));
+}
@@ -0,0 +1,13 @@
+
+void testScope::main1() {
+    sric::StackRefable<int32_t> i = 1;
+    int32_t* p = ((int32_t*)&i);
+}
+
+void testScope::main2() {
+    int32_t* p = (int32_t*)nullptr;
+    if (true) {
+        sric::StackRefable<int32_t> a = 1;
+        p = ((int32_t*)&a);
+    }
+}
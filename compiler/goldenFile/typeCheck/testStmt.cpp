@@ -0,0 +1,40 @@
+
+int32_t testStmt::foo() {
+    if (true) {
+        printf("if\n");
+    }
+    for (int32_t i = 0; (i < 10); (++i)) {
+        printf("for %d", i);
+        if ((i > 5)) {
+            break;
+        }
+    }
+    int32_t i = 0;
+    while ((i < 2)) {
+        ++i;
+        printf("while %d", i);
+    }
+    switch (i) {
+    case 1:
+        {
+        }
+    case 2:
+        {
+            printf("case 1,2\n");
+        }
+        break;
+    case 3:
+        {
+            printf("case 3\n");
+        }
+        break;
+    default:
+        {
+            printf("case default\n");
+        }
+    }
+    /*unsafe*/ {
+        printf("unsafe\n");
+    }
+    return i;
+}
@@ -0,0 +1,34 @@
+const int32_t testStruct::A::s = 0;
+
+int32_t testStruct::A::foo() {
+    SC_DEFINE_THIS
+    return sc_this->i;
+}
+
+void testStruct::A::init() {
+    SC_DEFINE_THIS_REFPTR
+    {
+        this->i = 2;
+        this->j = 3;
+    }
+    ;
+}
+
+int32_t testStruct::A::make() {
+    return 1;
+}
+
+void main() {
+    testStruct::A a ;{
+        a.i = 1;
+        a.j = 2;
+    }
+    ;
+    a.i = 10;
+    int32_t i = a.foo();
+    testStruct::A b ;{
+        b.init();
+    }
+    ;
+    int32_t x = testStruct::A::make();
+}
@@ -0,0 +1,10 @@
+
+int32_t testThis::A::foo1() {
+    SC_DEFINE_THIS
+    return sc_this->i;
+}
+
+void testThis::A::foo2() {
+    SC_DEFINE_THIS
+    sc_this->foo1();
+}
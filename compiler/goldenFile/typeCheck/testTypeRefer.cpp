@@ -0,0 +1,7 @@
+
+void main() {
+    int32_t i = 0;
+    sric::OwnPtr<int32_t> p;
+    int32_t a = testTypeRefer::foo1(i);
+    sric::RefPtr<int32_t> b = testTypeRefer::foo2(sric::RefPtr<int32_t >(p));
+}
@@ -0,0 +1,16 @@
+typedef int32_t _int;
+
+void main() {
+    int32_t i = 0;
+}
+
+size_t testTypealias::foo(size_t s) {
+    size_t b = (s + 2);
+    return s;
+}
+
+void testTypealias::test() {
+    size_t s = 0;
+    bool b = (s == 2);
+    size_t r = testTypealias::foo(s);
+}
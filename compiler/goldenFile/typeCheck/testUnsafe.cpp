@@ -0,0 +1,7 @@
+
+void testUnsafe::test() {
+    int32_t* p = (int32_t*)nullptr;
+    ++p;
+    p = (p + 1);
+    p += 1;
+}
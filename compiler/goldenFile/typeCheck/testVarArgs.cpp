@@ -0,0 +1,5 @@
+
+void main() {
+    int32_t i = 1;
+    printf("hello:%d\n", i);
+}
@@ -0,0 +1,216 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Long running compile server on a local socket in the home directory.
+ * The requests are the command line arguments of sric, they are compiled one by one
+ * in the same JVM, and the imported modules are kept for the next request.
+ * The output and the exit code are sent back to the client.
+ *
+ * @author yangjiandong
+ */
+public class CompileDaemon {
+    //frame types of the response
+    private static final int frameExit = 0;
+    private static final int frameOut = 1;
+    private static final int frameErr = 2;
+
+    private final String homePath;
+    private final boolean verbose;
+    private final ModuleCache moduleCache;
+
+    public CompileDaemon(String homePath, boolean verbose) {
+        this.homePath = new File(homePath).getAbsolutePath();
+        this.verbose = verbose;
+        this.moduleCache = new ModuleCache(this.homePath + "/lib");
+    }
+
+    private static Path socketPath(String homePath) {
+        return Path.of(homePath, "sricd.sock");
+    }
+
+    /**
+     * Send the arguments to the daemon of the home and print its output.
+     * Return the exit code, or null if no daemon is running.
+     */
+    public static Integer forward(String homePath, String[] args) {
+        Path socket = socketPath(homePath);
+        if (!Files.exists(socket)) {
+            return null;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+        }
+        catch (IOException e) {
+            return null;
+        }
+
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeUTF(Compiler.version);
+            out.writeUTF(new File("").getAbsolutePath());
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            while (true) {
+                int type = in.readByte();
+                int len = in.readInt();
+                if (type == frameExit) {
+                    return len;
+                }
+                byte[] data = in.readNBytes(len);
+                PrintStream stream = type == frameErr ? System.err : System.out;
+                stream.write(data);
+                stream.flush();
+            }
+        }
+        catch (IOException e) {
+            System.err.println("lost connection to the compile daemon");
+            return null;
+        }
+    }
+
+    public void start() throws IOException {
+        Path socket = socketPath(homePath);
+        if (Files.exists(socket)) {
+            try {
+                SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket));
+                channel.close();
+                System.err.println("daemon is already running: "+socket);
+                return;
+            }
+            catch (IOException e) {
+                //left by a stopped daemon
+                Files.delete(socket);
+            }
+        }
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket));
+            socket.toFile().deleteOnExit();
+            if (verbose) {
+                System.out.println("daemon listening on "+socket);
+            }
+            while (true) {
+                try (SocketChannel channel = server.accept()) {
+                    handle(channel);
+                }
+                catch (IOException e) {
+                    if (verbose) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * output to the client, sent in frames
+     */
+    private static class FrameStream extends OutputStream {
+        private final DataOutputStream out;
+        private final int type;
+
+        FrameStream(DataOutputStream out, int type) {
+            this.out = out;
+            this.type = type;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            synchronized (out) {
+                out.writeByte(type);
+                out.writeInt(len);
+                out.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (out) {
+                out.flush();
+            }
+        }
+    }
+
+    private void handle(SocketChannel channel) throws IOException {
+        DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+        PrintStream stdout = new PrintStream(new FrameStream(out, frameOut), true, StandardCharsets.UTF_8);
+        PrintStream stderr = new PrintStream(new FrameStream(out, frameErr), true, StandardCharsets.UTF_8);
+
+        int rc;
+        String version = in.readUTF();
+        if (!version.equals(Compiler.version)) {
+            stderr.println("compile daemon version is "+Compiler.version+", restart it");
+            rc = 1;
+        }
+        else {
+            String workDir = in.readUTF();
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; ++i) {
+                args[i] = in.readUTF();
+            }
+            if (verbose) {
+                System.out.println("build: "+String.join(" ", args));
+            }
+
+            PrintStream oldOut = System.out;
+            PrintStream oldErr = System.err;
+            System.setOut(stdout);
+            System.setErr(stderr);
+            try {
+                Main main = new Main();
+                main.homePath = homePath;
+                main.workDir = workDir;
+                main.moduleCache = moduleCache;
+                rc = main.run(args);
+            }
+            catch (Throwable e) {
+                e.printStackTrace();
+                rc = 1;
+            }
+            finally {
+                System.setOut(oldOut);
+                System.setErr(oldErr);
+            }
+        }
+
+        stdout.flush();
+        stderr.flush();
+        synchronized (out) {
+            out.writeByte(frameExit);
+            out.writeInt(rc);
+            out.flush();
+        }
+    }
+}
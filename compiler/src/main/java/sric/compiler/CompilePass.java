@@ -4,6 +4,7 @@
 //
 package sric.compiler;
 
+import sric.compiler.ast.AstKind;
 import sric.compiler.ast.AstNode;
 import sric.compiler.ast.AstNode.*;
 import sric.compiler.ast.Expr;
@@ -56,29 +57,34 @@ public abstract class CompilePass implements Visitor {
 
     @Override
     public void visit(AstNode node) {
-        if (node instanceof FileUnit v) {
-            this.visitUnit(v);
-        }
-        else if (node instanceof TypeDef v) {
-            this.visitTypeDef(v);
-        }
-        else if (node instanceof FieldDef v) {
-            this.visitField(v);
-        }
-        else if (node instanceof FuncDef v) {
-            this.visitFunc(v);
-        }
-        else if (node instanceof Stmt v) {
-            this.visitStmt(v);
-        }
-        else if (node instanceof Expr v) {
-            this.visitExpr(v);
-        }
-        else if (node instanceof TypeAlias v) {
-            this.visitTypeAlias(v);
-        }
-        else {
-            err("Unknow AstNode type:" + node.getClass(), node.loc);
+        AstKind kind = node.astKind();
+        switch (kind) {
+            case FileUnit:
+                this.visitUnit((FileUnit)node);
+                break;
+            case TypeDef:
+                this.visitTypeDef((TypeDef)node);
+                break;
+            case FieldDef:
+                this.visitField((FieldDef)node);
+                break;
+            case FuncDef:
+                this.visitFunc((FuncDef)node);
+                break;
+            case TypeAlias:
+                this.visitTypeAlias((TypeAlias)node);
+                break;
+            default:
+                if (kind.isStmt) {
+                    this.visitStmt((Stmt)node);
+                }
+                else if (kind.isExpr) {
+                    this.visitExpr((Expr)node);
+                }
+                else {
+                    err("Unknow AstNode type:" + node.getClass(), node.loc());
+                }
+                break;
         }
     }
 }
@@ -9,12 +9,22 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import sric.compiler.ast.AstNode;
@@ -24,11 +34,15 @@ import sric.compiler.ast.SModule;
 import sric.compiler.ast.SModule.Depend;
 import sric.compiler.backend.CppGenerator;
 import sric.compiler.backend.DocGenerator;
+import sric.compiler.backend.ScInterfaceGenerator;
 import sric.compiler.backend.ScLibGenerator;
 import sric.compiler.parser.DeepParser;
+import sric.compiler.parser.NameTable;
+import sric.compiler.parser.ScInterfaceReader;
 import sric.compiler.resolve.ErrorChecker;
 import sric.compiler.resolve.ExprTypeResolver;
 import sric.compiler.resolve.TopLevelTypeResolver;
+import sric.compiler.resolve.TypeCheckCache;
 
 /**
  *
@@ -36,9 +50,13 @@ import sric.compiler.resolve.TopLevelTypeResolver;
  */
 public class Compiler {
 
+    public static final String version = "1.10";
+    
     public ArrayList<File> sources;
     public SModule module;
     public CompilerLog log;
+    //identifiers of the sources and the imported modules
+    NameTable names = new NameTable();
     
     public String outputDir;
     public String libPath;
@@ -46,7 +64,53 @@ public class Compiler {
     public boolean genCode = true;
     public boolean print = true;
     
+    /**
+     * worker threads of the parallel compile stages, 1 to compile sequentially
+     */
+    public int jobs = ForkJoinPool.getCommonPoolParallelism();
+    private ForkJoinPool pool = null;
+    
+    /**
+     * resolve and check function bodies concurrently
+     */
+    public boolean parallelCheck = false;
+    
+    /**
+     * build the module even if it is up to date
+     */
+    public boolean force = false;
+    
+    /**
+     * parse function bodies on demand, except the files of eagerFiles.
+     * The bodies of a stub module are always parsed on demand.
+     */
+    public boolean lazyBody = false;
+    public Set<String> eagerFiles = null;
+    
+    /**
+     * copyable, moveable and fit results of the last type check
+     */
+    public final TypeCheckCache typeCheckCache = new TypeCheckCache();
+    
+    /**
+     * units checked and skipped by the last updateFile
+     */
+    public int checkedUnits = 0;
+    public int skippedUnits = 0;
+    //all units are checked once, the depends of them are recorded
+    private boolean typeChecked = false;
+    
+    //hashes of the build inputs, saved in the .meta
+    private HashMap<String, String> buildHashes = null;
+    
     private HashMap<String, SModule> moduleCache = new HashMap<>();
+    //imported modules kept by the compile daemon
+    ModuleCache sharedCache = null;
+    
+    //binary interface of the stub module, used instead of parsing the .sch source
+    private File interfaceFile = null;
+    //hashes of the .meta the interface must be written with
+    private String interfaceStamp = null;
     
     private HashMap<String, String> fmakeArgs = null;
     
@@ -133,15 +197,35 @@ public class Compiler {
         File libDir = new File(libPath);
         Compiler c = new Compiler(module, sourceDir, libPath, libDir.getParent()+"/output/");
         c.fmakeArgs = fmakeArgs;
+        c.interfaceStamp = interfaceStamp(props);
         return c;
     }
     
     public boolean run() throws IOException {
-        for (File file : sources) {
-            AstNode.FileUnit funit = parse(file);
-            funit.module = module;
-            module.fileUnits.add(funit);
+        if (genCode) {
+            buildHashes = buildHashes();
+            if (!force && isUpToDate()) {
+                if (print) {
+                    System.out.println(module.name + " is up to date");
+                }
+                return true;
+            }
+        }
+        
+        if (sharedCache != null) {
+            moduleCache = sharedCache.acquire();
+            try {
+                return build();
+            }
+            finally {
+                sharedCache.release(moduleCache);
+            }
         }
+        return build();
+    }
+    
+    private boolean build() throws IOException {
+        parseSources();
         
         if (log.hasError()) {
             if (print) {
@@ -165,17 +249,109 @@ public class Compiler {
         return true;
     }
     
-    public AstNode.FileUnit updateFile(String file, String src) {
+    /**
+     * Hash the compiler version, the interface format, the sources and the interfaces of the depends.
+     * The module is rebuilt when any of them is changed.
+     */
+    private HashMap<String, String> buildHashes() throws IOException {
+        HashMap<String, String> hashes = new HashMap<>();
+        hashes.put("compilerVersion", version);
+        //the .sci is written again when the format is changed
+        hashes.put("interfaceFormat", String.valueOf(ScInterfaceReader.formatVersion));
+        
+        MessageDigest digest = Util.newDigest();
+        digest.update(String.valueOf(cppVersion).getBytes(StandardCharsets.UTF_8));
+        ArrayList<File> files = new ArrayList<>(sources.size() + 1);
+        for (File file : sources) {
+            files.add(file.getCanonicalFile());
+        }
+        files.sort(Comparator.comparing(File::getPath));
+        File props = new File(module.sourcePath);
+        if (props.isFile()) {
+            files.add(0, props.getCanonicalFile());
+        }
+        for (File file : files) {
+            byte[] data = Files.readAllBytes(file.toPath());
+            digest.update(("\n" + file.getPath() + "\n" + data.length + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(data);
+        }
+        hashes.put("sourceHash", Util.toHex(digest.digest()));
+        
+        for (Depend depend : module.depends) {
+            String hash = null;
+            File meta = new File(libPath + "/" + depend.name + ".meta");
+            if (meta.exists()) {
+                hash = Util.readProps(meta.getPath()).get("interfaceHash");
+            }
+            hashes.put("depend." + depend.name, hash == null ? "" : hash);
+        }
+        return hashes;
+    }
+    
+    /**
+     * The hashes in the .meta that the .sci of the same build is written with.
+     * Return null if the .meta has no hashes.
+     */
+    static String interfaceStamp(Map<String, String> meta) {
+        String sourceHash = meta.get("sourceHash");
+        String interfaceHash = meta.get("interfaceHash");
+        if (sourceHash == null || interfaceHash == null) {
+            return null;
+        }
+        return sourceHash + ":" + interfaceHash;
+    }
+    
+    private boolean isUpToDate() throws IOException {
+        String libFile = libPath + "/" + module.name;
+        String outputFile = outputDir + "/" + module.name;
+        if (!new File(libFile + ".sch").exists() || !new File(outputFile + ".h").exists()
+                || !new File(outputFile + ".cpp").exists()) {
+            return false;
+        }
+        
+        File metaFile = new File(libFile + ".meta");
+        if (!metaFile.exists()) {
+            return false;
+        }
+        HashMap<String, String> meta = Util.readProps(metaFile.getPath());
+        if (meta.get("interfaceHash") == null) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : meta.entrySet()) {
+            if (entry.getKey().startsWith("depend.") && !buildHashes.containsKey(entry.getKey())) {
+                return false;
+            }
+        }
+        for (Map.Entry<String, String> entry : buildHashes.entrySet()) {
+            if (entry.getValue().isEmpty() || !entry.getValue().equals(meta.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Replace a unit by the new source and check it again.
+     * The units use the definitions of it are checked again, and the units use them if the signatures are changed.
+     * All units are checked when the top level names are changed.
+     */
+    public AstNode.FileUnit updateFile(String file, CharSequence src) {
         this.log.removeByFile(file);
         
         AstNode.FileUnit funit = new AstNode.FileUnit(file);
+        funit.names = names;
         try {
-            DeepParser parser = new DeepParser(log, src, funit);
+            CompilerLog parseLog = new CompilerLog();
+            DeepParser parser = new DeepParser(parseLog, src, funit);
             parser.parse();
             funit.module = module;
+            funit.parseErrors = parseLog.errors;
+            log.errors.addAll(parseLog.errors);
 
+            FileUnit old = null;
             for (FileUnit f : module.fileUnits) {
                 if (f.file.endsWith(funit.file)) {
+                    old = f;
                     module.fileUnits.remove(f);
                     break;
                 }
@@ -183,7 +359,29 @@ public class Compiler {
             module.fileUnits.add(funit);
             module.clearCache();
 
-            typeCheck();
+            ArrayList<FileUnit> units = dirtyUnits(old, funit);
+            if (units == null) {
+                units = module.fileUnits;
+            }
+            for (FileUnit u : units) {
+                if (u != funit) {
+                    resetErrors(u);
+                }
+            }
+            //the duplicate names in the skipped units are reported before
+            CompilerLog scopeLog = new CompilerLog();
+            module.getScope(scopeLog);
+            for (CompilerLog.CompilerErr e : scopeLog.errors) {
+                for (FileUnit u : units) {
+                    if (e.isInFile(u.file)) {
+                        log.errors.add(e);
+                        break;
+                    }
+                }
+            }
+            typeCheck(units);
+            checkedUnits = units.size();
+            skippedUnits = module.fileUnits.size() - units.size();
         }
         catch (Exception e) {
             e.printStackTrace();
@@ -201,8 +399,13 @@ public class Compiler {
         String libFile = libPath + "/" + moduleName;
         try {
             Compiler compiler = Compiler.fromProps(libFile+".meta", libPath, libFile+".sch");
+            compiler.interfaceFile = new File(libFile+".sci");
+            compiler.names = this.names;
             compiler.genCode = false;
             compiler.moduleCache = this.moduleCache;
+            compiler.jobs = this.jobs;
+            compiler.pool = this.pool;
+            compiler.parallelCheck = this.parallelCheck;
             compiler.run();
             
             moduleCache.put(moduleName, compiler.module);
@@ -214,37 +417,298 @@ public class Compiler {
         }
     }
     
+    /**
+     * Replace the body of a function by the new source of the file and check the function again.
+     * The text is changed inside the body only, the rest of the unit is moved by the length change.
+     * @return false if the new body is not one block, the file should be updated by updateFile
+     */
+    public boolean updateFuncBody(FileUnit unit, AstNode.FuncDef func, CharSequence src, int delta) {
+        if (!typeChecked || !module.fileUnits.contains(unit) || !func.isCodeLoaded() || func.getCode() == null) {
+            return false;
+        }
+        AstNode.Block old = func.getCode();
+        int begin = Loc.offset(old.pos);
+        int oldEnd = begin + old.len;
+        int newEnd = oldEnd + delta;
+        if (newEnd <= begin || newEnd > src.length()) {
+            return false;
+        }
+        
+        //the lines before the body are not changed
+        CompilerLog parseLog = new CompilerLog();
+        AstNode.Block code = DeepParser.parseBody(parseLog, src.subSequence(begin, newEnd), unit, Loc.unpack(old.pos));
+        if (code == null) {
+            return false;
+        }
+        unit.source.setText(src);
+        
+        LocShifter shifter = new LocShifter(unit, oldEnd, delta);
+        shifter.visit(unit);
+        func.setCode(code);
+        
+        //remove the errors of the old body and move the errors after it
+        int funcBegin = Loc.offset(func.pos);
+        Set<CompilerLog.CompilerErr> errors = Collections.newSetFromMap(new IdentityHashMap<>());
+        errors.addAll(log.errors);
+        if (unit.parseErrors != null) {
+            errors.addAll(unit.parseErrors);
+        }
+        else {
+            unit.parseErrors = new ArrayList<>();
+        }
+        for (CompilerLog.CompilerErr e : errors) {
+            if (isBodyError(e, unit, funcBegin, begin, oldEnd)) {
+                log.errors.remove(e);
+                unit.parseErrors.remove(e);
+            }
+            else if (e.isInFile(unit.file)) {
+                e.loc = shifter.shift(e.loc);
+            }
+        }
+        unit.parseErrors.addAll(parseLog.errors);
+        log.errors.addAll(parseLog.errors);
+        
+        CompilerLog checkLog = new CompilerLog();
+        new ExprTypeResolver(checkLog, module).resolveFunc(unit, func);
+        new ErrorChecker(checkLog, module, null, typeCheckCache).checkFunc(unit, func);
+        for (CompilerLog.CompilerErr e : checkLog.errors) {
+            if (isBodyError(e, unit, funcBegin, begin, newEnd)) {
+                log.errors.add(e);
+            }
+        }
+        checkedUnits = 0;
+        skippedUnits = module.fileUnits.size();
+        return true;
+    }
+    
+    private static boolean isBodyError(CompilerLog.CompilerErr e, FileUnit unit, int funcBegin, int begin, int end) {
+        if (!e.isInFile(unit.file)) {
+            return false;
+        }
+        if (e.loc.offset >= begin && e.loc.offset < end) {
+            return true;
+        }
+        return e.loc.offset == funcBegin && e.msg.equals(ErrorChecker.missReturnValue);
+    }
+    
+    /**
+     * the units to check after the old unit is replaced, null to check all
+     */
+    private ArrayList<FileUnit> dirtyUnits(FileUnit old, FileUnit unit) {
+        if (!typeChecked || old == null || !topLevelNames(old).equals(topLevelNames(unit))) {
+            return null;
+        }
+        //the units resolved to the old definitions, and the units use them if the signatures are changed
+        boolean signatureChanged = old.interfaceHash != unit.interfaceHash;
+        ArrayList<FileUnit> units = new ArrayList<>();
+        units.add(unit);
+        ArrayDeque<String> changed = new ArrayDeque<>();
+        changed.add(old.file);
+        while (!changed.isEmpty()) {
+            String file = changed.poll();
+            for (FileUnit u : module.fileUnits) {
+                if (u.depends.contains(file) && !units.contains(u)) {
+                    units.add(u);
+                    if (signatureChanged) {
+                        changed.add(u.file);
+                    }
+                }
+            }
+        }
+        return units;
+    }
+    
+    private static HashSet<String> topLevelNames(FileUnit unit) {
+        HashSet<String> names = new HashSet<>();
+        for (AstNode.TypeDef t : unit.typeDefs) {
+            names.add(t.name);
+        }
+        for (AstNode.FieldDef f : unit.fieldDefs) {
+            names.add(f.name);
+        }
+        for (AstNode.FuncDef f : unit.funcDefs) {
+            names.add(f.name);
+        }
+        for (AstNode.TypeAlias t : unit.typeAlias) {
+            names.add(t.name);
+        }
+        return names;
+    }
+    
+    /**
+     * remove the errors of a unit except the parse errors
+     */
+    private void resetErrors(FileUnit unit) {
+        log.removeByFile(unit.file);
+        if (unit.parseErrors != null) {
+            log.errors.addAll(unit.parseErrors);
+        }
+    }
+    
     private void typeCheck() {
+        typeCheck(module.fileUnits);
+    }
+    
+    private void typeCheck(ArrayList<FileUnit> units) {
+        for (FileUnit unit : units) {
+            unit.depends.clear();
+            for (AstNode.TypeDef t : unit.typeDefs) {
+                t.clearInheriteScope();
+            }
+        }
+        
         TopLevelTypeResolver slotResolver = new TopLevelTypeResolver(log, module, this);
-        slotResolver.run();
+        slotResolver.run(units);
         
 //        if (log.hasError()) {
 //            return;
 //        }
         
-        ExprTypeResolver exprResolver = new ExprTypeResolver(log, module);
-        exprResolver.run();
+        ForkJoinPool checkPool = (parallelCheck && jobs > 1) ? getPool() : null;
+        
+        ExprTypeResolver exprResolver = new ExprTypeResolver(log, module, checkPool);
+        exprResolver.run(units);
         
-        ErrorChecker errorChecker = new ErrorChecker(log, module);
-        errorChecker.run();
+        typeCheckCache.clear();
+        ErrorChecker errorChecker = new ErrorChecker(log, module, checkPool, typeCheckCache);
+        errorChecker.run(units);
+        
+        if (units == module.fileUnits) {
+            typeChecked = true;
+        }
         
     }
     
     public AstNode.FileUnit parse(File file) throws IOException {
+        return parse(file, log);
+    }
+    
+    private AstNode.FileUnit parse(File file, CompilerLog log) throws IOException {
         String src = Files.readString(file.toPath());
         
         AstNode.FileUnit unit = new AstNode.FileUnit(file.getCanonicalPath());
+        unit.names = names;
         DeepParser parser = new DeepParser(log, src, unit);
+        parser.lazyBody = module.isStubFile || (lazyBody && (eagerFiles == null || !eagerFiles.contains(unit.file)));
+        int count = log.errors.size();
         parser.parse();
+        unit.parseErrors = new ArrayList<>(log.errors.subList(count, log.errors.size()));
         return unit;
     }
     
+    ForkJoinPool getPool() {
+        if (pool == null) {
+            if (jobs == ForkJoinPool.getCommonPoolParallelism()) {
+                pool = ForkJoinPool.commonPool();
+            }
+            else {
+                pool = new ForkJoinPool(jobs);
+            }
+        }
+        return pool;
+    }
+    
+    /**
+     * Parse every source file. Files are independent until the type check,
+     * so each one is parsed in its own task with a private log. The units and
+     * errors are collected in source order to keep the output deterministic.
+     */
+    private void parseSources() throws IOException {
+        if (interfaceFile != null && loadInterface()) {
+            return;
+        }
+        
+        if (jobs <= 1 || sources.size() <= 1) {
+            for (File file : sources) {
+                AstNode.FileUnit funit = parse(file);
+                funit.module = module;
+                module.fileUnits.add(funit);
+            }
+            return;
+        }
+        
+        ArrayList<ForkJoinTask<CompilerLog>> tasks = new ArrayList<>(sources.size());
+        AstNode.FileUnit[] units = new AstNode.FileUnit[sources.size()];
+        for (int i = 0; i < sources.size(); ++i) {
+            File file = sources.get(i);
+            int index = i;
+            tasks.add(getPool().submit(() -> {
+                CompilerLog fileLog = new CompilerLog();
+                units[index] = parse(file, fileLog);
+                return fileLog;
+            }));
+        }
+        
+        for (int i = 0; i < tasks.size(); ++i) {
+            CompilerLog fileLog;
+            try {
+                fileLog = tasks.get(i).get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException(ex);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException ioe) {
+                    throw ioe;
+                }
+                if (ex.getCause() instanceof RuntimeException re) {
+                    throw re;
+                }
+                throw new RuntimeException(ex.getCause());
+            }
+            log.errors.addAll(fileLog.errors);
+            units[i].module = module;
+            module.fileUnits.add(units[i]);
+        }
+    }
+    
+    /**
+     * Open the binary interface of a stub module, the definitions are decoded on first lookup.
+     * Return false to parse the .sch when the interface is missing or not written by the build of the .meta.
+     */
+    private boolean loadInterface() throws IOException {
+        if (sources.size() != 1 || interfaceStamp == null) {
+            return false;
+        }
+        File stubFile = sources.get(0);
+        if (!interfaceFile.exists()) {
+            return false;
+        }
+        
+        AstNode.FileUnit funit = new AstNode.FileUnit(stubFile.getCanonicalPath());
+        funit.names = names;
+        ScInterfaceReader reader = new ScInterfaceReader(funit, log);
+        reader.stamp = interfaceStamp;
+        try {
+            reader.open(interfaceFile.toPath());
+        }
+        catch (IOException e) {
+            return false;
+        }
+        funit.module = module;
+        module.fileUnits.add(funit);
+        module.setLazyScope(new InterfaceLoader(this, reader, funit).makeScope());
+        return true;
+    }
+    
     public void genOutput() throws IOException {
         String libFile = libPath + "/" + this.module.name;
         ScLibGenerator scGenerator = new ScLibGenerator(log, libFile + ".sch");
         scGenerator.run(module);
+        scGenerator.close();
         
+        String stub = Files.readString(Path.of(libFile + ".sch"));
         var props = this.module.toMetaProps();
+        if (buildHashes == null) {
+            buildHashes = buildHashes();
+        }
+        props.putAll(buildHashes);
+        props.put("interfaceHash", ScInterfaceGenerator.interfaceHash(stub));
+        
+        File interfaceFile = new File(libFile + ".sci");
+        ScInterfaceGenerator interfaceGenerator = new ScInterfaceGenerator(stub, interfaceStamp(props));
+        if (!interfaceGenerator.run(interfaceFile.getPath())) {
+            interfaceFile.delete();
+        }
         Util.writeProps(libFile+".meta", props);
         
         new File(outputDir).mkdirs();
@@ -323,7 +787,7 @@ public class Compiler {
             fmakeScript.append("\n");
         }
         
-        Files.writeString(Path.of(fmakeFile), fmakeScript, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        Util.writeIfChanged(Path.of(fmakeFile), fmakeScript.toString().getBytes(StandardCharsets.UTF_8));
     }
     
 }
@@ -22,13 +22,20 @@ public class CompilerLog {
             this.loc = loc;
             this.msg = msg;
         }
+        
+        /**
+         * the error is in the file, false if the location is unknown
+         */
+        public boolean isInFile(String file) {
+            return loc != null && file.endsWith(loc.file);
+        }
     }
     
     public void removeByFile(String file) {
         for (int i=0; i < errors.size(); ++i) {
             CompilerErr e = errors.get(i);
             
-            if (file.endsWith(e.loc.file)) {
+            if (e.isInFile(file)) {
                 errors.remove(i);
                 --i;
             }
@@ -0,0 +1,161 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import sric.compiler.ast.AstNode;
+import sric.compiler.ast.AstNode.*;
+import sric.compiler.ast.Scope;
+import sric.compiler.parser.ScInterfaceReader;
+import sric.compiler.resolve.ErrorChecker;
+import sric.compiler.resolve.ExprTypeResolver;
+import sric.compiler.resolve.TopLevelTypeResolver;
+
+/**
+ * Top level definitions of an imported module, decoded from the binary interface on first lookup.
+ * A decoded definition is resolved at once, so the types it refers to are loaded too.
+ * The bodies are checked when the outermost lookup is done, like the type check of a whole module.
+ *
+ * @author yangjiandong
+ */
+class InterfaceLoader {
+
+    private class Symbol extends Scope.LazySymbol {
+        final ScInterfaceReader.Entry entry;
+        final int index;
+        //published when the definition is checked
+        volatile TopLevelDef node = null;
+        //visible to the loading thread only
+        TopLevelDef pending = null;
+
+        Symbol(ScInterfaceReader.Entry entry, int index) {
+            this.entry = entry;
+            this.index = index;
+            this.setLoc(entry.loc);
+        }
+
+        @Override
+        public AstNode get() {
+            TopLevelDef n = node;
+            if (n != null) {
+                return n;
+            }
+            return load(this);
+        }
+    }
+
+    private final Compiler compiler;
+    private final ScInterfaceReader reader;
+    private final FileUnit unit;
+    private final ArrayList<Symbol> symbols = new ArrayList<>();
+
+    private int depth = 0;
+    private final ArrayList<Symbol> loading = new ArrayList<>();
+
+    InterfaceLoader(Compiler compiler, ScInterfaceReader reader, FileUnit unit) {
+        this.compiler = compiler;
+        this.reader = reader;
+        this.unit = unit;
+        for (ScInterfaceReader.Entry entry : reader.entries) {
+            symbols.add(new Symbol(entry, symbols.size()));
+        }
+    }
+
+    /**
+     * the module scope of placeholders
+     */
+    Scope makeScope() {
+        Scope scope = new Scope();
+        int[] order = { ScInterfaceReader.defField, ScInterfaceReader.defFunc, ScInterfaceReader.defType, ScInterfaceReader.defAlias };
+        for (int kind : order) {
+            for (Symbol s : symbols) {
+                if (s.entry.kind != kind) {
+                    continue;
+                }
+                if (!scope.put(s.entry.name, s)) {
+                    compiler.log.err("Duplicate name: " + s.entry.name, s.loc());
+                }
+            }
+        }
+        return scope;
+    }
+
+    private synchronized AstNode load(Symbol s) {
+        if (s.node != null) {
+            return s.node;
+        }
+        //referenced again while it is resolving
+        if (s.pending != null) {
+            return s.pending;
+        }
+
+        TopLevelDef def;
+        try {
+            def = reader.readDef(s.entry);
+        } catch (IOException e) {
+            compiler.log.err("Load symbol fail:"+s.entry.name, s.loc());
+            return null;
+        }
+        addDef(s, def);
+        s.pending = def;
+
+        ++depth;
+        try {
+            loading.add(s);
+            new TopLevelTypeResolver(compiler.log, compiler.module, compiler).resolveDef(unit, def);
+
+            if (depth == 1) {
+                //bodies are resolved after all definitions they use, then checked
+                int resolved = 0;
+                int checked = 0;
+                while (checked < loading.size()) {
+                    if (resolved < loading.size()) {
+                        new ExprTypeResolver(compiler.log, compiler.module, null).resolveDef(unit, loading.get(resolved).pending);
+                        ++resolved;
+                        continue;
+                    }
+                    new ErrorChecker(compiler.log, compiler.module, null).checkDef(unit, loading.get(checked).pending);
+                    ++checked;
+                }
+                for (Symbol l : loading) {
+                    l.node = l.pending;
+                }
+                loading.clear();
+            }
+        }
+        finally {
+            --depth;
+        }
+        return def;
+    }
+
+    /**
+     * add the definition to the unit in the order of the interface file
+     */
+    private void addDef(Symbol s, TopLevelDef def) {
+        int pos = 0;
+        for (int i = 0; i < s.index; ++i) {
+            Symbol other = symbols.get(i);
+            if (other.entry.kind == s.entry.kind && (other.node != null || other.pending != null)) {
+                ++pos;
+            }
+        }
+
+        def.parent = unit;
+        if (def instanceof TypeDef t) {
+            unit.typeDefs.add(pos, t);
+        }
+        else if (def instanceof FieldDef f) {
+            unit.fieldDefs.add(pos, f);
+        }
+        else if (def instanceof FuncDef f) {
+            unit.funcDefs.add(pos, f);
+        }
+        else if (def instanceof TypeAlias a) {
+            unit.typeAlias.add(pos, a);
+        }
+    }
+}
@@ -0,0 +1,362 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import sric.compiler.ast.AstNode;
+import sric.compiler.ast.AstNode.*;
+import sric.compiler.ast.Expr;
+import sric.compiler.ast.Expr.*;
+import sric.compiler.ast.Loc;
+import sric.compiler.ast.Stmt;
+import sric.compiler.ast.Stmt.*;
+import sric.compiler.ast.Type;
+
+/**
+ * Move the nodes of a unit after a text change that keeps the tokens around it.
+ * The nodes from the end of the changed range are moved by the delta, and the nodes that
+ * contain the range are resized. The nodes before the range are not visited.
+ *
+ * @author yangjiandong
+ */
+public class LocShifter extends CompilePass {
+    private final int fileId;
+    private final int from;
+    private final int delta;
+    //a type may be shared by the nodes
+    private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * @param from the end offset of the changed range in the old text
+     * @param delta the length change of the text
+     */
+    public LocShifter(FileUnit unit, int from, int delta) {
+        super(null);
+        this.fileId = unit.source.id;
+        this.from = from;
+        this.delta = delta;
+    }
+
+    /**
+     * the location moved by the change
+     */
+    public Loc shift(Loc loc) {
+        if (loc == null || loc.offset < from || (int)(loc.pos >>> 32) != fileId) {
+            return loc;
+        }
+        return Loc.unpack(loc.pos + delta);
+    }
+
+    /**
+     * move or resize the node, false if it's before the change
+     */
+    private boolean shift(AstNode node) {
+        if (node == null || !visited.add(node)) {
+            return false;
+        }
+        if (node.pos == 0 || (int)(node.pos >>> 32) != fileId) {
+            return false;
+        }
+        int offset = Loc.offset(node.pos);
+        if (offset >= from) {
+            node.pos += delta;
+            return true;
+        }
+        if (offset + node.len >= from) {
+            node.len += delta;
+            return true;
+        }
+        return false;
+    }
+
+    private void visitComments(Comments comments) {
+        if (comments == null || !shift(comments)) {
+            return;
+        }
+        for (Comment c : comments.comments) {
+            shift(c);
+        }
+    }
+
+    private void visitType(Type type) {
+        if (type == null || visited.contains(type)) {
+            return;
+        }
+        shift(type);
+        if (type.id != null) {
+            visit(type.id);
+        }
+        if (type.genericArgs != null) {
+            for (Type t : type.genericArgs) {
+                visitType(t);
+            }
+        }
+        if (type.detail instanceof Type.ArrayInfo info && info.sizeExpr != null) {
+            visit(info.sizeExpr);
+        }
+        else if (type.detail instanceof Type.FuncInfo info && info.prototype != null) {
+            visitFuncPrototype(info.prototype);
+        }
+    }
+
+    private void visitFuncPrototype(FuncPrototype prototype) {
+        if (prototype.paramDefs != null) {
+            for (FieldDef p : prototype.paramDefs) {
+                visitField(p);
+            }
+        }
+        visitType(prototype.returnType);
+    }
+
+    private void visitGenericParams(ArrayList<GenericParamDef> params) {
+        if (params == null) {
+            return;
+        }
+        for (GenericParamDef p : params) {
+            shift(p);
+            visitType(p.bound);
+        }
+    }
+
+    private boolean isBefore(AstNode node) {
+        return Loc.offset(node.pos) + node.len < from;
+    }
+
+    @Override
+    public void visitUnit(FileUnit v) {
+        for (Import i : v.imports) {
+            if (!isBefore(i)) {
+                shift(i);
+                visit(i.id);
+            }
+        }
+        v.walkChildren(this);
+    }
+
+    @Override
+    public void visitField(FieldDef v) {
+        if (isBefore(v)) {
+            return;
+        }
+        shift(v);
+        visitComments(v.comment);
+        visitType(v.fieldType);
+        if (v.initExpr != null) {
+            visit(v.initExpr);
+        }
+    }
+
+    @Override
+    public void visitFunc(FuncDef v) {
+        if (isBefore(v)) {
+            return;
+        }
+        shift(v);
+        visitComments(v.comment);
+        visitGenericParams(v.generiParamDefs);
+        visitFuncPrototype(v.prototype);
+        if (v.hasCode()) {
+            visit(v.getCode());
+        }
+    }
+
+    @Override
+    public void visitTypeDef(TypeDef v) {
+        if (isBefore(v)) {
+            return;
+        }
+        shift(v);
+        visitComments(v.comment);
+        visitGenericParams(v.generiParamDefs);
+        if (v.inheritances != null) {
+            for (Type t : v.inheritances) {
+                visitType(t);
+            }
+        }
+        visitType(v.enumBase);
+        v.walkChildren(this);
+    }
+
+    @Override
+    public void visitTypeAlias(TypeAlias v) {
+        if (isBefore(v)) {
+            return;
+        }
+        shift(v);
+        visitComments(v.comment);
+        visitType(v.type);
+    }
+
+    private void visitBlock(Block block) {
+        if (block != null) {
+            visit(block);
+        }
+    }
+
+    @Override
+    public void visitStmt(Stmt v) {
+        shift(v);
+        switch (v.astKind()) {
+            case Block -> {
+                Block e = (Block)v;
+                e.walkChildren(this);
+            }
+            case ExprStmt -> {
+                ExprStmt e = (ExprStmt)v;
+                visit(e.expr);
+            }
+            case IfStmt -> {
+                IfStmt e = (IfStmt)v;
+                visit(e.condition);
+                visitBlock(e.block);
+                visitBlock(e.elseBlock);
+            }
+            case WhileStmt -> {
+                WhileStmt e = (WhileStmt)v;
+                visit(e.condition);
+                visitBlock(e.block);
+            }
+            case ReturnStmt -> {
+                ReturnStmt e = (ReturnStmt)v;
+                if (e.expr != null) {
+                    visit(e.expr);
+                }
+            }
+            case ThrowStmt -> {
+                ThrowStmt e = (ThrowStmt)v;
+                if (e.expr != null) {
+                    visit(e.expr);
+                }
+            }
+            case ForStmt -> {
+                ForStmt e = (ForStmt)v;
+                if (e.init != null) {
+                    visit(e.init);
+                }
+                if (e.condition != null) {
+                    visit(e.condition);
+                }
+                if (e.update != null) {
+                    visit(e.update);
+                }
+                visitBlock(e.block);
+            }
+            case SwitchStmt -> {
+                SwitchStmt e = (SwitchStmt)v;
+                visit(e.condition);
+                for (CaseBlock cb : e.cases) {
+                    shift(cb);
+                    visit(cb.caseExpr);
+                    visitBlock(cb.block);
+                }
+                visitBlock(e.defaultBlock);
+            }
+            case TryStmt -> {
+                TryStmt e = (TryStmt)v;
+                visitBlock(e.block);
+                if (e.catches != null) {
+                    for (Catch c : e.catches) {
+                        shift(c);
+                        visitField(c.errVariable);
+                        visitBlock(c.block);
+                    }
+                }
+                visitBlock(e.finallyBlock);
+            }
+            case UnsafeBlock -> {
+                UnsafeBlock e = (UnsafeBlock)v;
+                visitBlock(e.block);
+            }
+            case LocalDefStmt -> {
+                LocalDefStmt e = (LocalDefStmt)v;
+                visitField(e.fieldDef);
+            }
+            default -> {
+            }
+        }
+    }
+
+    @Override
+    public void visitExpr(Expr v) {
+        shift(v);
+        switch (v.astKind()) {
+            case IdExpr -> {
+                IdExpr e = (IdExpr)v;
+                if (e.namespace != null) {
+                    visit(e.namespace);
+                }
+            }
+            case AccessExpr -> {
+                AccessExpr e = (AccessExpr)v;
+                visit(e.target);
+            }
+            case UnaryExpr -> {
+                UnaryExpr e = (UnaryExpr)v;
+                visit(e.operand);
+            }
+            case BinaryExpr -> {
+                BinaryExpr e = (BinaryExpr)v;
+                visit(e.lhs);
+                visit(e.rhs);
+            }
+            case TypeExpr -> {
+                TypeExpr e = (TypeExpr)v;
+                visitType(e.type);
+            }
+            case IndexExpr -> {
+                IndexExpr e = (IndexExpr)v;
+                visit(e.target);
+                visit(e.index);
+            }
+            case GenericInstance -> {
+                GenericInstance e = (GenericInstance)v;
+                visit(e.target);
+                for (Type t : e.genericArgs) {
+                    visitType(t);
+                }
+            }
+            case CallExpr -> {
+                CallExpr e = (CallExpr)v;
+                visit(e.target);
+                if (e.args != null) {
+                    for (CallArg arg : e.args) {
+                        shift(arg);
+                        visit(arg.argExpr);
+                    }
+                }
+            }
+            case IfExpr -> {
+                IfExpr e = (IfExpr)v;
+                visit(e.condition);
+                visit(e.trueExpr);
+                visit(e.falseExpr);
+            }
+            case ArrayBlockExpr -> {
+                ArrayBlockExpr e = (ArrayBlockExpr)v;
+                visitType(e.type);
+                if (e.args != null) {
+                    for (Expr t : e.args) {
+                        visit(t);
+                    }
+                }
+            }
+            case WithBlockExpr -> {
+                WithBlockExpr e = (WithBlockExpr)v;
+                visit(e.target);
+                visitBlock(e.block);
+            }
+            case ClosureExpr -> {
+                ClosureExpr e = (ClosureExpr)v;
+                visitFuncPrototype(e.prototype);
+                visitBlock(e.code);
+            }
+            default -> {
+            }
+        }
+    }
+}
@@ -9,6 +9,14 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.SequenceInputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import sric.compiler.ast.SModule;
@@ -27,6 +35,13 @@ public class Main {
     boolean scriptMode = false;
     boolean compileNative = false;
     boolean debug = false;
+    int jobs = 0;
+    boolean parallelCheck = false;
+    boolean force = false;
+    boolean daemon = false;
+    //directory of the client when run by the daemon
+    String workDir = null;
+    ModuleCache moduleCache = null;
     //boolean execute = false;
     String cppVersion = "c++20";
     
@@ -42,26 +57,43 @@ public class Main {
         System.out.println("  -fmake \tbuild native by fmake");
         System.out.println("  -debug \tdebug build");
         System.out.println("  -c++20 \tc++ std version");
+        System.out.println("  -j <n> \tnumber of compile threads");
+        System.out.println("  -parallel \tcheck function bodies in parallel");
+        System.out.println("  -force \tbuild modules that are up to date");
+        System.out.println("  -daemon \tstart compile server, later builds are sent to it");
     }
     
     static private void printVersion() {
-        System.out.println("Sric version 1.10");
+        System.out.println("Sric version " + Compiler.version);
         System.out.println("Copyright (c) 2022-2024, chunquedong");
         System.out.println("Licensed under the Academic Free License version 3.0");
     }
     
     public static void main(String[] args) throws IOException {
         Main main = new Main();
-        main.run(args);
+        int rc = main.run(args);
+        if (rc != 0) {
+            System.exit(rc);
+        }
+    }
+    
+    private String resolvePath(String path) {
+        if (workDir == null) {
+            return path;
+        }
+        return Path.of(workDir).resolve(path).toString();
     }
     
-    public void run(String[] args) throws IOException {
+    /**
+     * return the exit code
+     */
+    public int run(String[] args) throws IOException {
         String sourcePath = null;
         
         for (int i = 0; i<args.length; ++i) {
             if (args[i].equals("-home")) {
                 ++i;
-                homePath = args[i];
+                homePath = resolvePath(args[i]);
             }
             else if (args[i].equals("-lsp")) {
                 lsp = true;
@@ -71,11 +103,11 @@ public class Main {
             }
             else if (args[i].equals("-?") || args[i].equals("-help")) {
                 printHelp();
-                return;
+                return 0;
             }
             else if (args[i].equals("-version")) {
                 printVersion();
-                return;
+                return 0;
             }
             else if (args[i].equals("-verbose")) {
                 verbose = true;
@@ -89,6 +121,19 @@ public class Main {
             else if (args[i].equals("-debug")) {
                 debug = true;
             }
+            else if (args[i].equals("-j")) {
+                ++i;
+                jobs = Integer.parseInt(args[i]);
+            }
+            else if (args[i].equals("-parallel")) {
+                parallelCheck = true;
+            }
+            else if (args[i].equals("-force")) {
+                force = true;
+            }
+            else if (args[i].equals("-daemon")) {
+                daemon = true;
+            }
             else if (args[i].startsWith("-c++")) {
                 cppVersion = args[i].substring(1).trim();
             }
@@ -96,29 +141,49 @@ public class Main {
                 System.err.print("unknow flags:"+ args[i]);
             }
             else {
-                sourcePath = args[i];
+                sourcePath = resolvePath(args[i]);
             }
         }
         
         if (lsp) {
             LanguageServer ls = new LanguageServer(homePath+"/lib", verbose);
             ls.start();
-            return;
+            return 0;
+        }
+        
+        if (daemon) {
+            new CompileDaemon(homePath, verbose).start();
+            return 0;
         }
         
         if (sourcePath == null) {
             printHelp();
-            System.exit(2);
-            return;
+            return 2;
+        }
+        
+        if (workDir == null) {
+            Integer rc = CompileDaemon.forward(homePath, args);
+            if (rc != null) {
+                return rc;
+            }
         }
         
         if (!compile(sourcePath)) {
             System.err.println("Compile Fail");
-            System.exit(1);
+            return 1;
         }
+        return 0;
     }
     
-    public boolean compile(String sourcePath) throws IOException {
+    private static class BuildNode {
+        String sourcePath;
+        Compiler compiler;
+        ArrayList<BuildNode> depends = new ArrayList<>();
+        boolean done = false;
+        boolean success = false;
+    }
+    
+    private Compiler makeCompiler(String sourcePath) throws IOException {
         String libPath = homePath + "/lib";
         Compiler compiler;
         if (scriptMode) {
@@ -129,27 +194,145 @@ public class Main {
         }
         
         compiler.cppVersion = this.cppVersion;
-        
+        if (jobs > 0) {
+            compiler.jobs = jobs;
+        }
+        compiler.parallelCheck = parallelCheck;
+        compiler.force = force;
+        compiler.sharedCache = moduleCache;
+        return compiler;
+    }
+    
+    public boolean compile(String sourcePath) throws IOException {
         if (recursion) {
-            for (SModule.Depend dep: compiler.module.depends) {
-                String libFile = libPath + "/" + dep.name;
-                String propsPath = libFile+".meta";
-                var props = Util.readProps(propsPath);
-                String sourcePath2 = props.get("sourcePath");
-                if (sourcePath2 != null) {
-                    if(!new File(sourcePath2).exists()) {
-                        System.out.println("file not found: "+sourcePath2);
-                        continue;
+            ArrayList<BuildNode> order = new ArrayList<>();
+            BuildNode root = new BuildNode();
+            root.sourcePath = sourcePath;
+            root.compiler = makeCompiler(sourcePath);
+            if (!collectDepends(root, new HashMap<>(), new HashSet<>(), order)) {
+                return false;
+            }
+            order.add(root);
+            return buildAll(order);
+        }
+        return build(makeCompiler(sourcePath));
+    }
+    
+    /**
+     * Find the depends that have source code. Each module is visited once,
+     * the order lists the depends before the modules using them.
+     */
+    private boolean collectDepends(BuildNode node, HashMap<String, BuildNode> nodes, HashSet<String> visiting, ArrayList<BuildNode> order) throws IOException {
+        String libPath = homePath + "/lib";
+        visiting.add(node.compiler.module.name);
+        for (SModule.Depend dep: node.compiler.module.depends) {
+            BuildNode depNode = nodes.get(dep.name);
+            if (depNode != null) {
+                node.depends.add(depNode);
+                continue;
+            }
+            if (visiting.contains(dep.name)) {
+                System.err.println("Cyclic depends: "+node.compiler.module.name+" -> "+dep.name);
+                return false;
+            }
+            
+            String libFile = libPath + "/" + dep.name;
+            String propsPath = libFile+".meta";
+            var props = Util.readProps(propsPath);
+            String sourcePath2 = props.get("sourcePath");
+            if (sourcePath2 == null) {
+                continue;
+            }
+            if(!new File(sourcePath2).exists()) {
+                System.out.println("file not found: "+sourcePath2);
+                continue;
+            }
+            
+            depNode = new BuildNode();
+            depNode.sourcePath = sourcePath2;
+            depNode.compiler = makeCompiler(sourcePath2);
+            if (!collectDepends(depNode, nodes, visiting, order)) {
+                return false;
+            }
+            nodes.put(dep.name, depNode);
+            order.add(depNode);
+            node.depends.add(depNode);
+        }
+        visiting.remove(node.compiler.module.name);
+        return true;
+    }
+    
+    /**
+     * Build the modules on a thread pool. A module is started in the given order
+     * once all its depends are built. No new module is started after a failure.
+     */
+    private boolean buildAll(ArrayList<BuildNode> order) throws IOException {
+        int threads = jobs > 0 ? jobs : Runtime.getRuntime().availableProcessors();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        ExecutorCompletionService<BuildNode> completion = new ExecutorCompletionService<>(pool);
+        HashSet<BuildNode> started = new HashSet<>();
+        int running = 0;
+        boolean failed = false;
+        try {
+            while (true) {
+                if (!failed) {
+                    for (BuildNode node : order) {
+                        if (started.contains(node) || !isReady(node)) {
+                            continue;
+                        }
+                        started.add(node);
+                        ++running;
+                        completion.submit(() -> {
+                            node.success = build(node.compiler);
+                            return node;
+                        });
                     }
-                    if (!compile(sourcePath2)) {
-                        System.err.println("Compile Fail: "+sourcePath2);
-                        return false;
+                }
+                if (running == 0) {
+                    break;
+                }
+                
+                BuildNode node;
+                try {
+                    node = completion.take().get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException ioe) {
+                        throw ioe;
                     }
+                    throw new RuntimeException(ex.getCause());
+                }
+                --running;
+                node.done = true;
+                node.compiler = null;
+                if (!node.success) {
+                    System.err.println("Compile Fail: "+node.sourcePath);
+                    failed = true;
                 }
             }
         }
-        
+        finally {
+            pool.shutdownNow();
+        }
+        return !failed && started.size() == order.size();
+    }
+    
+    private static boolean isReady(BuildNode node) {
+        for (BuildNode dep : node.depends) {
+            if (!dep.done || !dep.success) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private boolean build(Compiler compiler) throws IOException {
         boolean rc = compiler.run();
+        if (verbose) {
+            System.out.println(compiler.typeCheckCache);
+        }
         if (rc && compileNative) {
             StringBuilder sb = new StringBuilder();
             if (Util.isWindows()) {
@@ -0,0 +1,97 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import sric.compiler.ast.SModule;
+import sric.compiler.ast.SModule.Depend;
+
+/**
+ * Imported modules kept between builds by the compile daemon.
+ * A module is dropped when its .meta hashes are changed, or when one of its depends is dropped.
+ *
+ * @author yangjiandong
+ */
+class ModuleCache {
+
+    private static class Entry {
+        SModule module;
+        String stamp;
+    }
+
+    private final String libPath;
+    private final HashMap<String, Entry> modules = new HashMap<>();
+    //running builds
+    private int active = 0;
+
+    ModuleCache(String libPath) {
+        this.libPath = libPath;
+    }
+
+    //the hashes in the .meta, changed when the module is built from other sources
+    private String stamp(String name) {
+        File meta = new File(libPath + "/" + name + ".meta");
+        if (!meta.exists()) {
+            return "";
+        }
+        try {
+            String stamp = Compiler.interfaceStamp(Util.readProps(meta.getPath()));
+            return stamp == null ? "" : stamp;
+        }
+        catch (IOException e) {
+            return "";
+        }
+    }
+
+    /**
+     * the valid modules for a build, the build adds the modules it imports to the returned map
+     */
+    synchronized HashMap<String, SModule> acquire() {
+        modules.entrySet().removeIf(e -> !e.getValue().stamp.equals(stamp(e.getKey())));
+        boolean removed = true;
+        while (removed) {
+            removed = modules.entrySet().removeIf(e -> {
+                for (Depend depend : e.getValue().module.depends) {
+                    if (!modules.containsKey(depend.name)) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+        }
+
+        HashMap<String, SModule> snapshot = new HashMap<>();
+        for (Map.Entry<String, Entry> e : modules.entrySet()) {
+            snapshot.put(e.getKey(), e.getValue().module);
+        }
+        ++active;
+        return snapshot;
+    }
+
+    /**
+     * keep the modules imported by a finished build
+     */
+    synchronized void release(HashMap<String, SModule> used) {
+        for (Map.Entry<String, SModule> e : used.entrySet()) {
+            if (e.getValue() == null || modules.containsKey(e.getKey())) {
+                continue;
+            }
+            Entry entry = new Entry();
+            entry.module = e.getValue();
+            entry.stamp = stamp(e.getKey());
+            modules.put(e.getKey(), entry);
+        }
+
+        //generic instances refer to the types of the finished builds
+        if (--active == 0) {
+            for (Entry entry : modules.values()) {
+                entry.module.clearCache();
+            }
+        }
+    }
+}
@@ -11,7 +11,10 @@ import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.logging.Level;
@@ -96,6 +99,34 @@ public class Util {
     }
     
     
+    /**
+     * write the file only if the content is changed, the modified time of an unchanged file is kept
+     */
+    public static boolean writeIfChanged(Path file, byte[] data) throws IOException {
+        if (Files.exists(file) && Files.size(file) == data.length && Arrays.equals(Files.readAllBytes(file), data)) {
+            return false;
+        }
+        Files.write(file, data);
+        return true;
+    }
+    
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    public static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+    
     public static boolean isWindows() {
         String osName = System.getProperty("os.name");
         return osName != null && osName.startsWith("Windows");
@@ -0,0 +1,42 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.ast;
+
+/**
+ * Kind of the AST node class, the passes switch on it instead of testing the classes one by one.
+ * Each node class returns its kind from AstNode.astKind(), a subclass of a node class has the kind of the node class.
+ *
+ * @author yangjiandong
+ */
+public enum AstKind {
+    //top level
+    FileUnit, Import, TypeDef, FieldDef, FuncDef, TypeAlias, GenericParamDef,
+    Comment, Comments,
+
+    //statements
+    Block(1), NoOp(1), ExprStmt(1), IfStmt(1), WhileStmt(1), ReturnStmt(1), ThrowStmt(1),
+    ForStmt(1), SwitchStmt(1), JumpStmt(1), TryStmt(1), UnsafeBlock(1), LocalDefStmt(1),
+    CaseBlock, Catch,
+
+    //expressions
+    UnaryExpr(2), BinaryExpr(2), TypeExpr(2), IndexExpr(2), GenericInstance(2), CallExpr(2),
+    IdExpr(2), AccessExpr(2), IfExpr(2), ArrayBlockExpr(2), WithBlockExpr(2), LiteralExpr(2),
+    ClosureExpr(2),
+    CallArg,
+
+    Type, SModule, Scope, Other;
+
+    public final boolean isStmt;
+    public final boolean isExpr;
+
+    private AstKind() {
+        this(0);
+    }
+
+    private AstKind(int group) {
+        this.isStmt = group == 1;
+        this.isExpr = group == 2;
+    }
+}
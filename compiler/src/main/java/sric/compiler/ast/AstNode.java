@@ -6,10 +6,14 @@ package sric.compiler.ast;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import sric.compiler.CompilerLog;
 import sric.compiler.ast.Expr.IdExpr;
 import sric.compiler.ast.Token.TokenKind;
+import sric.compiler.parser.NameTable;
 
 /**
  *
@@ -17,8 +21,24 @@ import sric.compiler.ast.Token.TokenKind;
  */
 public class AstNode {
 
-    public Loc loc;
+    //packed location, see Loc.pack
+    public long pos = 0;
     public int len = 0;
+    
+    /**
+     * kind of the node class for switch dispatch, every node class returns its own kind
+     */
+    public AstKind astKind() {
+        return AstKind.Other;
+    }
+    
+    public Loc loc() {
+        return Loc.unpack(pos);
+    }
+    
+    public void setLoc(Loc loc) {
+        this.pos = loc == null ? 0 : loc.pos;
+    }
         
     public interface Visitor {
         public void visit(AstNode node);
@@ -35,6 +55,11 @@ public class AstNode {
             this.content = content;
             this.type = type;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.Comment;
+        }
     }
     
     public static class Comments extends AstNode {
@@ -48,6 +73,11 @@ public class AstNode {
             }
             return null;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.Comments;
+        }
     }
     
     public static abstract class TopLevelDef extends AstNode {
@@ -136,7 +166,7 @@ public class AstNode {
         
         public FieldDef templateInstantiate(Map<GenericParamDef, Type> typeGenericArgs) {
             FieldDef nf = new FieldDef(this.comment, this.name);
-            nf.loc = this.loc;
+            nf.pos = this.pos;
             nf.len = this.len;
             nf.flags = this.flags;
             nf.parent = this.parent;
@@ -165,6 +195,11 @@ public class AstNode {
             }
             return false;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.FieldDef;
+        }
     }
     
     public static class TypeDef extends TopLevelDef {
@@ -178,6 +213,8 @@ public class AstNode {
         private Scope staticScope = null;
         private Scope instanceInheritScopes = null;
         private Scope staticInheritScopes = null;
+        private Scope instanceNoPrivateScope = null;
+        private Scope staticNoPrivateScope = null;
         public TypeDef originGenericTemplate = null;
         private Map<GenericParamDef, Type> typeGenericArgs;
         private boolean genericInited = false;
@@ -303,25 +340,29 @@ public class AstNode {
             }
         }
         
-        public Scope getInstanceScope(CompilerLog log) {
+        public synchronized Scope getInstanceScope(CompilerLog log) {
             if (instanceScope == null) {
+                if (genericTemplate != null) {
+                    //shared instance, errors are reported by the template
+                    log = null;
+                }
                 templateInstantiate();
                 Scope scope = new Scope();
                 if (this.generiParamDefs != null) {
                     for (GenericParamDef gp : this.generiParamDefs) {
                         if (!scope.put(gp.name, gp)) {
-                            if (log != null) log.err("Duplicate name: " + gp.name, gp.loc);
+                            if (log != null) log.err("Duplicate name: " + gp.name, gp.loc());
                         }
                     }
                 }
                 for (FieldDef f : fieldDefs) {
                     if (!f.isStatic() && !this.isEnum() && !scope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
                 for (FuncDef f : funcDefs) {
                     if (!f.isStatic() && !scope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
                 instanceScope = scope;
@@ -329,69 +370,76 @@ public class AstNode {
             return instanceScope;
         }
         
-        public Scope getStaticScope(CompilerLog log) {
+        public synchronized Scope getStaticScope(CompilerLog log) {
             if (staticScope == null) {
+                if (genericTemplate != null) {
+                    log = null;
+                }
                 templateInstantiate();
                 staticScope = new Scope();
                 for (FieldDef f : fieldDefs) {
                     if ((f.isStatic() || this.isEnum()) && !staticScope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
                 for (FuncDef f : funcDefs) {
                     if (f.isStatic() && !staticScope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
             }
             return staticScope;
         }
         
-        public Scope getInstanceInheriteScope() {
+        public synchronized Scope getInstanceInheriteScope() {
             if (instanceInheritScopes == null) {
                 if (this.inheritances == null) {
                     return null;
                 }
-                Scope s = new Scope();
-                for (Type inh : this.inheritances) {
-                    if (inh.id.resolvedDef != null) {
-                        if (inh.id.resolvedDef instanceof TypeDef inhSd) {
-                            inhSd.getScopeNoPrivate(s, false);
-                            Scope inhScope2 = inhSd.getInstanceInheriteScope();
-                            if (inhScope2 != null) {
-                                s.addOverride(inhScope2);
-                            }
-                        }
-                    }
-                }
-                instanceInheritScopes = s;
+                instanceInheritScopes = new InheriteScope(getInheriteTypes(), false);
             }
             return instanceInheritScopes;
         }
         
-        public Scope getStaticInheriteScope() {
+        public synchronized Scope getStaticInheriteScope() {
             if (staticInheritScopes == null) {
                 if (this.inheritances == null) {
                     return null;
                 }
-                Scope s = new Scope();
-                for (Type inh : this.inheritances) {
-                    if (inh.id.resolvedDef != null) {
-                        if (inh.id.resolvedDef instanceof TypeDef inhSd) {
-                            inhSd.getScopeNoPrivate(s, true);
-                            Scope inhScope2 = inhSd.getStaticInheriteScope();
-                            if (inhScope2 != null) {
-                                s.addAll(inhScope2);
-                            }
-                        }
+                staticInheritScopes = new InheriteScope(getInheriteTypes(), true);
+            }
+            return staticInheritScopes;
+        }
+        
+        /**
+         * forget the inherited members, the base types are resolved again
+         */
+        public synchronized void clearInheriteScope() {
+            instanceInheritScopes = null;
+            staticInheritScopes = null;
+        }
+        
+        private ArrayList<TypeDef> getInheriteTypes() {
+            ArrayList<TypeDef> types = new ArrayList<>(this.inheritances.size());
+            for (Type inh : this.inheritances) {
+                if (inh.id.resolvedDef != null) {
+                    if (inh.id.resolvedDef instanceof TypeDef inhSd) {
+                        types.add(inhSd);
                     }
                 }
-                staticInheritScopes = s;
             }
-            return staticInheritScopes;
+            return types;
         }
         
-        private void getScopeNoPrivate(Scope scope, boolean isStatic) {
+        /**
+         * members visible to the sub types
+         */
+        synchronized Scope getScopeNoPrivate(boolean isStatic) {
+            Scope scope = isStatic ? staticNoPrivateScope : instanceNoPrivateScope;
+            if (scope != null) {
+                return scope;
+            }
+            scope = new Scope();
             templateInstantiate();
             for (FieldDef f : fieldDefs) {
                 if ((f.flags & FConst.Private) != 0) {
@@ -421,12 +469,19 @@ public class AstNode {
                         scope.put(f.name, f);
                 }
             }
+            if (isStatic) {
+                staticNoPrivateScope = scope;
+            }
+            else {
+                instanceNoPrivateScope = scope;
+            }
+            return scope;
         }
         
         public TypeDef makeInstance(Map<GenericParamDef, Type> typeGenericArgs) {
             TypeDef nt = new TypeDef(this.comment, this.flags, this.name);
             nt.parent = this.parent;
-            nt.loc = this.loc;
+            nt.pos = this.pos;
             nt.len = this.len;
             nt.genericTemplate = this;
             nt.kind = this.kind;
@@ -442,7 +497,7 @@ public class AstNode {
             return nt;
         }
         
-        public TypeDef templateInstantiate() {
+        public synchronized TypeDef templateInstantiate() {
             if (this.genericTemplate == null) return this;
             if (genericInited) return this;
             genericInited = true;
@@ -459,6 +514,13 @@ public class AstNode {
             return this;
         }
         
+        /**
+         * the fields and methods are added to the generic instance
+         */
+        public synchronized boolean isInstantiated() {
+            return genericTemplate == null || genericInited;
+        }
+        
         public boolean isInheriteFrom(TypeDef parent) {
             if (this.inheritances == null) {
                 return false;
@@ -476,6 +538,11 @@ public class AstNode {
             }
             return false;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.TypeDef;
+        }
     }
 
     public static class FuncPrototype {
@@ -542,11 +609,94 @@ public class AstNode {
     
     public static class FuncDef extends TopLevelDef {
         public FuncPrototype prototype = new FuncPrototype();       // return type
-        public Block code;            // code block
+        private Block code;            // code block
+        private volatile LazyCode lazyCode = null;   // unparsed code block
         public ArrayList<GenericParamDef> generiParamDefs = null;
         
         public boolean _useThisAsRefPtr = false;
         
+        /**
+         * Code block that is parsed on first getCode().
+         * The passes that meet it before are deferred until then.
+         */
+        public static abstract class LazyCode {
+            private LinkedHashMap<Object, Runnable> passes = null;
+            private boolean loading = false;
+            
+            protected abstract Block parse();
+            
+            private synchronized void load(FuncDef f) {
+                if (loading || f.lazyCode != this) {
+                    return;
+                }
+                loading = true;
+                try {
+                    f.code = parse();
+                    if (passes != null) {
+                        for (Runnable pass : passes.values()) {
+                            pass.run();
+                        }
+                    }
+                }
+                finally {
+                    passes = null;
+                    loading = false;
+                    f.lazyCode = null;
+                }
+            }
+            
+            private synchronized boolean defer(FuncDef f, Object key, Runnable pass) {
+                if (loading || f.lazyCode != this) {
+                    return false;
+                }
+                if (passes == null) {
+                    passes = new LinkedHashMap<>();
+                }
+                passes.put(key, pass);
+                return true;
+            }
+        }
+        
+        public Block getCode() {
+            LazyCode lazy = lazyCode;
+            if (lazy != null) {
+                lazy.load(this);
+            }
+            return code;
+        }
+        
+        public void setCode(Block code) {
+            this.code = code;
+            this.lazyCode = null;
+        }
+        
+        public void setLazyCode(LazyCode lazyCode) {
+            this.code = null;
+            this.lazyCode = lazyCode;
+        }
+        
+        /**
+         * has code block, parsed or not
+         */
+        public boolean hasCode() {
+            return code != null || lazyCode != null;
+        }
+        
+        public boolean isCodeLoaded() {
+            return lazyCode == null;
+        }
+        
+        /**
+         * Run the pass on the code block when it is parsed, or now if it is.
+         * A pass of the same key replaces the one deferred before.
+         */
+        public void whenCodeLoaded(Object key, Runnable pass) {
+            LazyCode lazy = lazyCode;
+            if (lazy == null || !lazy.defer(this, key, pass)) {
+                pass.run();
+            }
+        }
+        
         public FuncDef templateInstantiate(Map<GenericParamDef, Type> typeGenericArgs) {
 //            if ("hashCode".equals(this.name)) {
 //                System.out.print("DEBUG");
@@ -555,10 +705,21 @@ public class AstNode {
             FuncDef nf = new FuncDef();
             nf.comment = this.comment;
             nf.flags = this.flags;
-            nf.loc = this.loc;
+            nf.pos = this.pos;
             nf.len = this.len;
             nf.name = this.name;
-            nf.code = this.code;
+            if (this.isCodeLoaded()) {
+                nf.code = this.code;
+            }
+            else {
+                //share the code block of the template
+                nf.lazyCode = new LazyCode() {
+                    @Override
+                    protected Block parse() {
+                        return FuncDef.this.getCode();
+                    }
+                };
+            }
             nf.parent = this.parent;
             nf.prototype = new FuncPrototype();
             nf.prototype.returnType = this.prototype.returnType.templateInstantiate(typeGenericArgs);
@@ -570,7 +731,7 @@ public class AstNode {
                     FieldDef np = new FieldDef(null, p.name);
                     //np.name = p.name;
                     np.initExpr = p.initExpr;
-                    np.loc = p.loc;
+                    np.pos = p.pos;
                     np.len = p.len;
                     np.fieldType = p.fieldType.templateInstantiate(typeGenericArgs);
                     nf.prototype.paramDefs.add(np);
@@ -592,22 +753,39 @@ public class AstNode {
         public boolean isAsync() {
             return (this.flags & FConst.Async) != 0;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.FuncDef;
+        }
     }
 
     
     public static class FileUnit extends AstNode {
         public String file;
+        //the text of the unit, the locations of the nodes are resolved by it
+        public final SourceFile source;
         public ArrayList<TypeDef> typeDefs = new ArrayList<TypeDef>();
         public ArrayList<FieldDef> fieldDefs = new ArrayList<FieldDef>();
         public ArrayList<FuncDef> funcDefs = new ArrayList<FuncDef>();
         public ArrayList<Import> imports = new ArrayList<Import>();
         public ArrayList<TypeAlias> typeAlias = new ArrayList<TypeAlias>();
         public SModule module;
+        //identifiers of the compiler that parses the unit, null for a table of the parser
+        public NameTable names = null;
         
         public Scope importScope = null;
         
+        //hash of the tokens out of the function bodies, see Parser.interfaceHash
+        public long interfaceHash = 0;
+        //errors of the parser, kept when the unit is checked again
+        public ArrayList<CompilerLog.CompilerErr> parseErrors = null;
+        //files of the module definitions used by the unit, recorded by the type resolvers
+        public final Set<String> depends = ConcurrentHashMap.newKeySet();
+        
         public FileUnit(String file) {
             this.file = file;
+            this.source = SourceFile.create(file);
         }
         
         public void addDef(TopLevelDef node) {
@@ -640,16 +818,31 @@ public class AstNode {
                 visitor.visit(func);
             }
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.FileUnit;
+        }
     }
     
     
     public static class Import extends AstNode {
         public IdExpr id;
         public boolean star = false;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.Import;
+        }
     }
     
     public static class TypeAlias extends TopLevelDef {
         public Type type;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.TypeAlias;
+        }
     }
     
     public static class Block extends Stmt {
@@ -679,10 +872,20 @@ public class AstNode {
             }
             return false;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.Block;
+        }
     }
     
     public static class GenericParamDef extends AstNode {
         public String name;
         public Type bound;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.GenericParamDef;
+        }
     }
 }
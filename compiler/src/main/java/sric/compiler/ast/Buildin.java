@@ -15,7 +15,8 @@ import sric.compiler.ast.Token.TokenKind;
  */
 public class Buildin {
         
-    private static Scope buildinScope;
+    private static volatile Scope buildinScope;
+    private static Scope initScope;
     
     public static final Loc loc = new Loc("buildin", 0, 0, 0);
     
@@ -31,7 +32,7 @@ public class Buildin {
     }
     private static TypeDef makeBuildinType(Scope scope, String name, ArrayList<GenericParamDef> gps) {
         TypeDef typeDef = new AstNode.TypeDef(null, FConst.Unsafe, name);
-        typeDef.loc = loc;
+        typeDef.setLoc(loc);
         typeDef.generiParamDefs = gps;
         scope.put(name, typeDef);
         return typeDef;
@@ -53,12 +54,12 @@ public class Buildin {
     
     private static FuncDef sizeofFunc(Scope scope) {
         FuncDef f = new FuncDef();
-        f.loc = loc;
+        f.setLoc(loc);
         f.name = "sizeof";
         f.prototype.returnType = Type.intType(loc);
         f.prototype.paramDefs = new ArrayList<FieldDef>();
         FieldDef param = new FieldDef("type", Type.metaType(loc, Type.voidType(loc)));
-        param.loc = loc;
+        param.setLoc(loc);
         param.name = "type";
         f.prototype.paramDefs.add(param);
         
@@ -68,16 +69,16 @@ public class Buildin {
     
     private static FuncDef offsetofFunc(Scope scope) {
         FuncDef f = new FuncDef();
-        f.loc = loc;
+        f.setLoc(loc);
         f.name = "offsetof";
         f.prototype.returnType = Type.intType(loc);
         f.prototype.paramDefs = new ArrayList<FieldDef>();
         FieldDef param = new FieldDef("type",  Type.metaType(loc, Type.voidType(loc)));
-        param.loc = loc;
+        param.setLoc(loc);
         f.prototype.paramDefs.add(param);
         
         FieldDef param2 = new FieldDef("field", Type.metaType(loc, Type.voidType(loc)));
-        param2.loc = loc;
+        param2.setLoc(loc);
         f.prototype.paramDefs.add(param2);
         
         scope.put(f.name, f);
@@ -85,7 +86,22 @@ public class Buildin {
     }
     
     public static Scope getBuildinScope() {
-        if (buildinScope == null) {
+        Scope s = buildinScope;
+        if (s != null) {
+            return s;
+        }
+        return initBuildinScope();
+    }
+    
+    private static synchronized Scope initBuildinScope() {
+        if (buildinScope != null) {
+            return buildinScope;
+        }
+        //reentrant call from sizeofFunc
+        if (initScope != null) {
+            return initScope;
+        }
+        {
             Scope scope = new Scope();
 
             makeBuildinType(scope, "Int");
@@ -95,14 +111,14 @@ public class Buildin {
             ArrayList<GenericParamDef> gps = new ArrayList<GenericParamDef>();
             GenericParamDef gp = new GenericParamDef();
             gp.name = "T";
-            gp.loc = loc;
+            gp.setLoc(loc);
             gps.add(gp);
             makeBuildinType(scope, arrayTypeName, gps);//array
             
             ArrayList<GenericParamDef> gps2 = new ArrayList<GenericParamDef>();
             GenericParamDef gp2 = new GenericParamDef();
             gp2.name = "T";
-            gp2.loc = loc;
+            gp2.setLoc(loc);
             gps2.add(gp2);
             makeBuildinType(scope, pointerTypeName, gps2);//pointer
             
@@ -111,11 +127,15 @@ public class Buildin {
             makeBuildinType(scope, funcTypeName);//func
             makeBuildinType(scope, defaultGenericParamTypeName);//.flags = FConst.Noncopyable;
 
-            buildinScope = scope;
+            initScope = scope;
             
             sizeofFunc(scope);
             offsetofFunc(scope);
             //isNullFunc(scope);
+            
+            scope.setReadonly();
+            buildinScope = scope;
+            initScope = null;
         }
         return buildinScope;
     }
@@ -41,6 +41,11 @@ public abstract class Expr extends AstNode {
             this.opToken = tok;
             this.operand = operand;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.UnaryExpr;
+        }
     }
     
     public static class BinaryExpr extends Expr {
@@ -60,6 +65,11 @@ public abstract class Expr extends AstNode {
         public BinaryExpr() {
             
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.BinaryExpr;
+        }
     }
     
 //    public static class NonNullableExpr extends Expr {
@@ -79,23 +89,43 @@ public abstract class Expr extends AstNode {
         public TypeExpr(Type type) {
             this.type = type;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.TypeExpr;
+        }
     }
     
     public static class IndexExpr extends Expr {
         public Expr target;
         public Expr index;
         public AstNode.FuncDef resolvedOperator;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.IndexExpr;
+        }
     }
     
     public static class GenericInstance extends Expr {
         public Expr target;
         public AstNode resolvedDef;
         public ArrayList<Type> genericArgs = new ArrayList<Type>();
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.GenericInstance;
+        }
     }
     
     public static class CallExpr extends Expr {
         public Expr target;
         public ArrayList<CallArg> args = null;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.CallExpr;
+        }
     }
     
     public static class CallArg extends AstNode {
@@ -107,9 +137,14 @@ public abstract class Expr extends AstNode {
         
         public CallArg(Expr argExpr) {
             this.argExpr = argExpr;
-            this.loc = argExpr.loc;
+            this.pos = argExpr.pos;
             this.len = argExpr.len;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.CallArg;
+        }
     }
 
     
@@ -156,6 +191,11 @@ public abstract class Expr extends AstNode {
             }
             return name;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.IdExpr;
+        }
     }
     
     public static class AccessExpr extends Expr {
@@ -165,18 +205,33 @@ public abstract class Expr extends AstNode {
         public Token.TokenKind opToken;
         
         public boolean _addressOf = false;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.AccessExpr;
+        }
     }
     
     public static class IfExpr extends Expr {
         public Expr condition;     // boolean test
         public Expr trueExpr;      // result of expression if condition is true
         public Expr falseExpr;     // result of expression if condition is false
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.IfExpr;
+        }
     }
     
     public static class ArrayBlockExpr extends Expr {
         public Type type;
         public ArrayList<Expr> args = null;
         public FieldDef _storeVar;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.ArrayBlockExpr;
+        }
     }
     
     public static class WithBlockExpr extends Expr {
@@ -186,6 +241,11 @@ public abstract class Expr extends AstNode {
         public FieldDef _storeVar;
         public TypeDef _structDef;
         public boolean _isType = false;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.WithBlockExpr;
+        }
     }
     
     public static class LiteralExpr extends Expr {
@@ -195,12 +255,22 @@ public abstract class Expr extends AstNode {
         public LiteralExpr(Object value) {
             this.value = value;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.LiteralExpr;
+        }
     }
     
     public static class ClosureExpr extends Expr {
         public FuncPrototype prototype = new FuncPrototype();// function signature
         public Block code;             // code block
         public ArrayList<IdExpr> captures;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.ClosureExpr;
+        }
     }
 
 }
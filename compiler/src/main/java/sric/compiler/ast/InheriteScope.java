@@ -0,0 +1,127 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.ast;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import sric.compiler.ast.AstNode.TypeDef;
+
+/**
+ * Inherited members of a type. The names are looked up in the non private scopes of the base types
+ * and the inherited scopes of them, instead of copying the members of every ancestor.
+ * The instance members of a base hide the ones it inherits, the static members are all merged.
+ * A resolved name is cached.
+ *
+ * @author yangjiandong
+ */
+public class InheriteScope extends Scope {
+    private static final AstNode missing = new AstNode();
+
+    private final ArrayList<TypeDef> bases;
+    private final boolean isStatic;
+    private final ConcurrentHashMap<String, Object> cache = new ConcurrentHashMap<>();
+
+    public InheriteScope(ArrayList<TypeDef> bases, boolean isStatic) {
+        this.bases = bases;
+        this.isStatic = isStatic;
+        setReadonly();
+    }
+
+    private static Scope inheriteScope(TypeDef base, boolean isStatic) {
+        return isStatic ? base.getStaticInheriteScope() : base.getInstanceInheriteScope();
+    }
+
+    /**
+     * add the nodes of value to the result, same as Scope.put
+     */
+    @SuppressWarnings("unchecked")
+    private static Object merge(Object result, Object value) {
+        if (value == null) {
+            return result;
+        }
+        if (value instanceof ArrayList) {
+            for (AstNode node : (ArrayList<AstNode>)value) {
+                result = merge(result, node);
+            }
+            return result;
+        }
+        if (result == null || result == value) {
+            return value;
+        }
+        ArrayList<AstNode> nodes;
+        if (result instanceof ArrayList) {
+            nodes = (ArrayList<AstNode>)result;
+            if (nodes.contains(value)) {
+                return result;
+            }
+        }
+        else {
+            nodes = new ArrayList<AstNode>(2);
+            nodes.add((AstNode)result);
+        }
+        nodes.add((AstNode)value);
+        return nodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object resolve(String name) {
+        Object result = null;
+        for (TypeDef base : bases) {
+            result = merge(result, base.getScopeNoPrivate(isStatic).lookup(name));
+            Scope inh = inheriteScope(base, isStatic);
+            if (inh == null) {
+                continue;
+            }
+            if (isStatic) {
+                result = merge(result, inh.lookup(name));
+            }
+            else if (result == null) {
+                //override, only the first one is inherited
+                Object value = inh.lookup(name);
+                if (value instanceof ArrayList) {
+                    value = ((ArrayList<AstNode>)value).get(0);
+                }
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    protected Object lookup(String name) {
+        Object value = cache.get(name);
+        if (value == null) {
+            value = resolve(name);
+            cache.putIfAbsent(name, value == null ? missing : value);
+        }
+        return value == missing ? null : value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<String, AstNode> action) {
+        LinkedHashSet<String> names = new LinkedHashSet<>();
+        for (TypeDef base : bases) {
+            base.getScopeNoPrivate(isStatic).forEach((name, node) -> names.add(name));
+            Scope inh = inheriteScope(base, isStatic);
+            if (inh != null) {
+                inh.forEach((name, node) -> names.add(name));
+            }
+        }
+        for (String name : names) {
+            Object value = lookup(name);
+            if (value instanceof ArrayList) {
+                for (AstNode node : (ArrayList<AstNode>)value) {
+                    action.accept(name, node);
+                }
+            }
+            else {
+                action.accept(name, (AstNode)value);
+            }
+        }
+    }
+}
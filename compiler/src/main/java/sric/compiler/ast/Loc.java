@@ -7,6 +7,8 @@ package sric.compiler.ast;
 import sric.compiler.CompilerLog;
 
 /**
+ * The location of a node is kept as a packed long of the file id and the offset.
+ * Loc is made from it for the diagnostics and the LSP.
  *
  * @author yangjiandong
  */
@@ -19,12 +21,43 @@ public class Loc {
     public final int col;
     //zero base global index
     public final int offset;
+    //file id and offset
+    public final long pos;
     
     public Loc(String file, int line, int col, int offset) {
-        this.file = file;
+        this(SourceFile.get(file), line, col, offset);
+    }
+    
+    public Loc(SourceFile file, int line, int col, int offset) {
+        this.file = file.path;
         this.line = line;
         this.col = col;
         this.offset = offset;
+        this.pos = pack(file.id, offset);
+    }
+    
+    public static long pack(int fileId, int offset) {
+        return ((long)fileId << 32) | (offset & 0xffffffffL);
+    }
+    
+    public static int offset(long pos) {
+        return (int)pos;
+    }
+    
+    /**
+     * the Loc of a packed location, the line is found in the text of the node.
+     * null if it is 0 or the file is released
+     */
+    public static Loc unpack(long pos) {
+        if (pos == 0) {
+            return null;
+        }
+        SourceFile file = SourceFile.get((int)(pos >>> 32));
+        if (file == null) {
+            return null;
+        }
+        int offset = (int)pos;
+        return new Loc(file, file.line(offset), file.col(offset), offset);
     }
    
     @Override
@@ -7,7 +7,10 @@ package sric.compiler.ast;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import sric.compiler.CompilerLog;
+import sric.compiler.ast.AstNode.*;
 import sric.compiler.Util;
 
 /**
@@ -33,6 +36,10 @@ public class SModule extends AstNode {
     
     public ArrayList<FileUnit> fileUnits = new ArrayList<>();
     private Scope scope = null;
+    //symbols of an imported module, loaded on first lookup
+    private Scope lazyScope = null;
+    //generic instances used by this module
+    private ConcurrentHashMap<ArrayList<Object>, AstNode> genericInstances = new ConcurrentHashMap<>();
     public ArrayList<Depend> depends = new ArrayList<>();
     
     public String sourcePath;
@@ -117,32 +124,80 @@ public class SModule extends AstNode {
         return map;
     }
     
-    public void clearCache() {
+    public synchronized void clearCache() {
         scope = null;
+        genericInstances.clear();
+    }
+    
+    private static ArrayList<Object> instanceKey(AstNode template, ArrayList<GenericParamDef> params, Map<GenericParamDef, Type> typeGenericArgs) {
+        ArrayList<Object> key = new ArrayList<>(params.size()+1);
+        key.add(template);
+        for (GenericParamDef gp : params) {
+            Type arg = typeGenericArgs.get(gp);
+            if (arg == null) {
+                key.add(null);
+                continue;
+            }
+            Object k = arg.genericArgKey();
+            if (k == null) {
+                return null;
+            }
+            key.add(k);
+        }
+        return key;
+    }
+    
+    /**
+     * Get the shared instance of a generic type, the instance is created on first use.
+     */
+    public TypeDef getTypeInstance(TypeDef template, Map<GenericParamDef, Type> typeGenericArgs) {
+        ArrayList<Object> key = instanceKey(template, template.generiParamDefs, typeGenericArgs);
+        if (key == null) {
+            return template.makeInstance(typeGenericArgs);
+        }
+        return (TypeDef)genericInstances.computeIfAbsent(key, k -> template.makeInstance(typeGenericArgs));
+    }
+    
+    /**
+     * Get the shared instance of a generic function
+     */
+    public FuncDef getFuncInstance(FuncDef template, Map<GenericParamDef, Type> typeGenericArgs) {
+        ArrayList<Object> key = instanceKey(template, template.generiParamDefs, typeGenericArgs);
+        if (key == null) {
+            return template.templateInstantiate(typeGenericArgs);
+        }
+        return (FuncDef)genericInstances.computeIfAbsent(key, k -> template.templateInstantiate(typeGenericArgs));
+    }
+
+    public synchronized void setLazyScope(Scope scope) {
+        this.lazyScope = scope;
     }
 
-    public Scope getScope(CompilerLog log) {
+    public synchronized Scope getScope(CompilerLog log) {
+        if (lazyScope != null) {
+            return lazyScope;
+        }
         if (scope == null) {
             scope = new Scope();
             for (FileUnit v : fileUnits) {
                 for (FieldDef f : v.fieldDefs) {
                     if (!scope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
                 for (FuncDef f : v.funcDefs) {
                     if (!scope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
                 for (TypeDef f : v.typeDefs) {
                     if (!scope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
                 for (TypeAlias f : v.typeAlias) {
                     if (!scope.put(f.name, f)) {
-                        if (log != null) log.err("Duplicate name: " + f.name, f.loc);
+                        if (log != null) log.err("Duplicate name: " + f.name, f.loc());
                     }
                 }
             }
@@ -156,4 +211,9 @@ public class SModule extends AstNode {
             visitor.visit(v);
         }
     }
+    
+    @Override
+    public AstKind astKind() {
+        return AstKind.SModule;
+    }
 }
@@ -5,7 +5,7 @@
 package sric.compiler.ast;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.function.BiConsumer;
 import sric.compiler.CompilerLog;
 import sric.compiler.ast.AstNode;
 import sric.compiler.ast.Loc;
@@ -17,61 +17,226 @@ import sric.compiler.resolve.ExprTypeResolver;
  */
 public class Scope extends AstNode {
     
-    public HashMap<String, ArrayList<AstNode>> symbolTable = new HashMap<>();
+    //open addressing table of the names, null until the first put
+    private String[] keys = null;
+    //the node of the name, or a list of the duplicate nodes
+    private Object[] values = null;
+    private int size = 0;
+    
+    //looked up when a name is not in this scope, like addOverride without copying
+    private Scope parent = null;
+    
+    //shared by concurrent compilations
+    private boolean readonly = false;
+    
+    public Scope() {
+    }
+    
+    public Scope(Scope parent) {
+        this.parent = parent;
+    }
+    
+    /**
+     * Placeholder of a symbol that is loaded on first lookup
+     */
+    public static abstract class LazySymbol extends AstNode {
+        public abstract AstNode get();
+    }
+    
+    /**
+     * return the symbol of the node, load it if it is a placeholder
+     */
+    public static AstNode load(AstNode node) {
+        if (node instanceof LazySymbol s) {
+            return s.get();
+        }
+        return node;
+    }
+    
+    public void setReadonly() {
+        readonly = true;
+    }
+    
+    public Scope getParent() {
+        return parent;
+    }
+    
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * slot of the name, or the empty slot to put it
+     */
+    private int find(String name) {
+        int mask = keys.length - 1;
+        int h = name.hashCode();
+        int i = hash(name) & mask;
+        while (true) {
+            String key = keys[i];
+            //the names of a compiler are interned, the cached hash skips the other keys without equals
+            if (key == null || key == name || (key.hashCode() == h && key.equals(name))) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+    
+    private void rehash(int capacity) {
+        String[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new String[capacity];
+        values = new Object[capacity];
+        if (oldKeys == null) {
+            return;
+        }
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != null) {
+                int j = find(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+    
+    /**
+     * the node of the name in this scope or the parents, or the list of the duplicate nodes
+     */
+    protected Object lookup(String name) {
+        for (Scope s = this; s != null; s = s.parent) {
+            if (s.keys != null) {
+                Object value = s.values[s.find(name)];
+                if (value != null) {
+                    return value;
+                }
+            }
+        }
+        return null;
+    }
 
+    @SuppressWarnings("unchecked")
     public boolean put(String name, AstNode node) {
-        ArrayList<AstNode> nodes = symbolTable.get(name);
-        if (nodes == null) {
-            nodes = new ArrayList<AstNode>();
-            symbolTable.put(name, nodes);
+        if (readonly) {
+            throw new UnsupportedOperationException("readonly scope");
+        }
+        if (keys == null || (size + 1) * 2 > keys.length) {
+            rehash(keys == null ? 8 : keys.length * 2);
+        }
+        int i = find(name);
+        Object value = values[i];
+        if (value == null) {
+            keys[i] = name;
+            values[i] = node;
+            ++size;
+            return true;
         }
-        for (AstNode anode : nodes) {
-            if (anode == node) {
-                return nodes.size() == 1;
+        if (value == node) {
+            return true;
+        }
+        ArrayList<AstNode> nodes;
+        if (value instanceof ArrayList) {
+            nodes = (ArrayList<AstNode>)value;
+            for (AstNode anode : nodes) {
+                if (anode == node) {
+                    return false;
+                }
             }
         }
+        else {
+            nodes = new ArrayList<AstNode>(2);
+            nodes.add((AstNode)value);
+            values[i] = nodes;
+        }
         nodes.add(node);
-        return nodes.size() == 1;
+        return false;
     }
     
     public boolean contains(String name) {
-        return symbolTable.containsKey(name);
+        return lookup(name) != null;
+    }
+    
+    /**
+     * the symbol of the name, duplicates are not reported
+     */
+    public AstNode get(String name) {
+        return get(name, 0, null);
     }
 
     public AstNode get(String name, Loc loc, CompilerLog log) {
-        ArrayList<AstNode> nodes = symbolTable.get(name);
-        if (nodes == null) {
+        return get(name, loc == null ? 0 : loc.pos, log);
+    }
+    
+    /**
+     * the symbol of the name, duplicates are reported at the packed location
+     */
+    @SuppressWarnings("unchecked")
+    public AstNode get(String name, long pos, CompilerLog log) {
+        Object value = lookup(name);
+        if (value == null) {
             return null;
         }
-        if (log != null && nodes.size() > 1) {
-            log.err("Duplicate definition: " + name + " at " + nodes.get(0).loc + "," + nodes.get(1).loc, loc);
+        if (value instanceof ArrayList) {
+            ArrayList<AstNode> nodes = (ArrayList<AstNode>)value;
+            if (log != null) {
+                log.err("Duplicate definition: " + name + " at " + nodes.get(0).loc() + "," + nodes.get(1).loc(), Loc.unpack(pos));
+            }
+            return load(nodes.get(0));
         }
-        return nodes.get(0);
+        return load((AstNode)value);
     }
     
-    public void addAll(Scope other) {
-        for (HashMap.Entry<String, ArrayList<AstNode>> entry : other.symbolTable.entrySet()) {
-            for (AstNode anode : entry.getValue()) {
-                put(entry.getKey(), anode);
+    /**
+     * visit every symbol of this scope, then the ones of the parents that are not hidden.
+     * The placeholders are not loaded.
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<String, AstNode> action) {
+        for (Scope s = this; s != null; s = s.parent) {
+            if (s.keys == null) {
+                continue;
+            }
+            for (int i = 0; i < s.keys.length; ++i) {
+                String name = s.keys[i];
+                if (name == null) {
+                    continue;
+                }
+                if (s != this && lookup(name) != s.values[i]) {
+                    continue;
+                }
+                Object value = s.values[i];
+                if (value instanceof ArrayList) {
+                    for (AstNode anode : (ArrayList<AstNode>)value) {
+                        action.accept(name, anode);
+                    }
+                }
+                else {
+                    action.accept(name, (AstNode)value);
+                }
             }
         }
     }
     
+    public void addAll(Scope other) {
+        other.forEach((name, anode) -> put(name, anode));
+    }
+    
     public void addOverride(Scope other) {
-        for (HashMap.Entry<String, ArrayList<AstNode>> entry : other.symbolTable.entrySet()) {
-            for (AstNode anode : entry.getValue()) {
-                ArrayList<AstNode> nodes = symbolTable.get(entry.getKey());
-                if (nodes != null && !nodes.isEmpty()) {
-                    continue;
-                }
-                put(entry.getKey(), anode);
+        other.forEach((name, anode) -> {
+            if (!contains(name)) {
+                put(name, anode);
             }
-        }
+        });
     }
     
     public Scope dup() {
         Scope s = new Scope();
-        s.symbolTable = this.symbolTable;
+        s.addAll(this);
         return s;
     }
+    
+    @Override
+    public AstKind astKind() {
+        return AstKind.Scope;
+    }
 }
@@ -0,0 +1,134 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.ast;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The text of a source file that is tokenized, the id is used in the packed locations of its nodes.
+ * Each FileUnit has its own SourceFile, so the units of the same path from different compilations
+ * or edits have different ids, and a location is resolved by the line index of the text it's from.
+ * The line start index is set when the whole text is tokenized, and the line and column
+ * of an offset are found by it.
+ * The files are weakly held by the id, a file is released with its unit.
+ *
+ * @author yangjiandong
+ */
+public class SourceFile {
+    private static final AtomicInteger lastId = new AtomicInteger();
+    private static final ConcurrentHashMap<Integer, FileRef> files = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<SourceFile> released = new ReferenceQueue<>();
+    //the locations without text, such as the buildin names
+    private static final ConcurrentHashMap<String, SourceFile> pathFiles = new ConcurrentHashMap<>();
+    
+    private static class FileRef extends WeakReference<SourceFile> {
+        final int id;
+        
+        FileRef(SourceFile file) {
+            super(file, released);
+            this.id = file.id;
+        }
+    }
+    
+    public final String path;
+    //one base, 0 is no file
+    public final int id;
+    //offset of each line, null if unknown
+    private volatile int[] lineStarts = null;
+    
+    private SourceFile(String path, int id) {
+        this.path = path;
+        this.id = id;
+    }
+    
+    /**
+     * a new file of the path with a new id
+     */
+    public static SourceFile create(String path) {
+        for (Object ref; (ref = released.poll()) != null; ) {
+            files.remove(((FileRef)ref).id, ref);
+        }
+        SourceFile file = new SourceFile(path, lastId.incrementAndGet());
+        files.put(file.id, new FileRef(file));
+        return file;
+    }
+    
+    /**
+     * the shared file of the path that has no text
+     */
+    public static SourceFile get(String path) {
+        return pathFiles.computeIfAbsent(path, SourceFile::create);
+    }
+    
+    /**
+     * the file of the id, null if it's released
+     */
+    public static SourceFile get(int id) {
+        FileRef ref = files.get(id);
+        return ref == null ? null : ref.get();
+    }
+    
+    /**
+     * offset of the lines in the text
+     */
+    public static int[] lineStarts(CharSequence text) {
+        int[] starts = new int[64];
+        int n = 1;
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                if (n == starts.length) {
+                    starts = Arrays.copyOf(starts, n * 2);
+                }
+                starts[n++] = i + 1;
+            }
+        }
+        return Arrays.copyOf(starts, n);
+    }
+    
+    public void setText(CharSequence text) {
+        this.lineStarts = lineStarts(text);
+    }
+    
+    public void setLineStarts(int[] lineStarts) {
+        this.lineStarts = lineStarts;
+    }
+    
+    /**
+     * zero base line of the offset
+     */
+    private static int lineIndex(int[] starts, int offset) {
+        int line = Arrays.binarySearch(starts, offset);
+        if (line < 0) {
+            line = -line - 2;
+        }
+        return line;
+    }
+    
+    /**
+     * one base line of the offset, 0 if the lines are unknown
+     */
+    public int line(int offset) {
+        int[] starts = lineStarts;
+        if (starts == null) {
+            return 0;
+        }
+        return lineIndex(starts, offset) + 1;
+    }
+    
+    /**
+     * one base column of the offset, 0 if the lines are unknown
+     */
+    public int col(int offset) {
+        int[] starts = lineStarts;
+        if (starts == null) {
+            return 0;
+        }
+        return offset - starts[lineIndex(starts, offset)] + 1;
+    }
+}
@@ -16,9 +16,18 @@ import sric.compiler.ast.Token.TokenKind;
 public abstract class Stmt extends AstNode {
     public static class NoOp extends Stmt {
         
+        @Override
+        public AstKind astKind() {
+            return AstKind.NoOp;
+        }
     }
     public static class ExprStmt extends Stmt {
         public Expr expr;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.ExprStmt;
+        }
     }
     public static class IfStmt extends Stmt {
         public Expr condition;      // test expression
@@ -34,10 +43,20 @@ public abstract class Stmt extends AstNode {
             }
             return false;
         }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.IfStmt;
+        }
     }
     public static class WhileStmt extends Stmt {
         public Expr condition;     // loop condition
         public Block block;        // code to run inside loop
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.WhileStmt;
+        }
     }
 
     public static class ReturnStmt extends Stmt {
@@ -45,48 +64,98 @@ public abstract class Stmt extends AstNode {
         //public boolean isLocal = false;
         public Type _funcReturnType;
         public boolean _isCoroutineRet = false;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.ReturnStmt;
+        }
     }
     public static class ThrowStmt extends Stmt {
         public Expr expr;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.ThrowStmt;
+        }
     }
     public static class ForStmt extends Stmt {
         public Stmt init;        // loop initialization
         public Expr condition;   // loop condition
         public Expr update;      // loop update
         public Block block;      // code to run inside loop
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.ForStmt;
+        }
     }
     public static class CaseBlock extends AstNode {
         public boolean fallthrough = false;
         public Expr caseExpr;   // list of case target (literal expressions)
         public Block block;     // code to run for case
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.CaseBlock;
+        }
     }
     public static class SwitchStmt extends Stmt {
         public Expr condition;        // test expression
         public ArrayList<CaseBlock> cases = new ArrayList<CaseBlock>();          // list of case blocks
         public Block defaultBlock;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.SwitchStmt;
+        }
     }
     //break, continue
     public static class JumpStmt extends Stmt {
         public TokenKind opToken;
         public Stmt target;   // loop to continue
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.JumpStmt;
+        }
     }
     public static class TryStmt extends Stmt {
         public Block block;         // body of try block
         public ArrayList<Catch> catches;      // list of catch clauses
         public Block finallyBlock;  // body of finally block or null
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.TryStmt;
+        }
     }
     public static class Catch extends AstNode {
         public FieldDef errVariable;// name of err local variable
         public Block block;         // body of catch block
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.Catch;
+        }
     }
     public static class UnsafeBlock extends Stmt {
         public Block block;
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.UnsafeBlock;
+        }
     }
     public static class LocalDefStmt extends Stmt {
         public FieldDef fieldDef;
         public LocalDefStmt(FieldDef f) {
             fieldDef = f;
-            this.loc = f.loc;
+            this.pos = f.pos;
+        }
+        
+        @Override
+        public AstKind astKind() {
+            return AstKind.LocalDefStmt;
         }
     }
 }
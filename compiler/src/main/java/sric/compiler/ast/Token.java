@@ -212,6 +212,10 @@ public class Token {
     }
     
     public boolean isAssign() {
+        return isAssign(kind);
+    }
+    
+    public static boolean isAssign(TokenKind kind) {
         return switch (kind) {
             case assign, assignPlus, assignMinus, assignStar, assignSlash, assignPercent -> true;
             default -> false;
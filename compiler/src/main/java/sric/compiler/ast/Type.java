@@ -24,6 +24,36 @@ public class Type extends AstNode {
         own, ref, raw
     };
     
+    /**
+     * Buildin kind of the type name
+     */
+    public static enum PrimitiveKind {
+        Void, Bool, Int, Float, Array, MetaType, Pointer, Func, VarArg, DefaultGenericParam, Other;
+        
+        public static PrimitiveKind of(String name) {
+            if (name == null) {
+                return Other;
+            }
+            switch (name) {
+                case "Void": return Void;
+                case "Bool": return Bool;
+                case "Int": return Int;
+                case "Float": return Float;
+                case Buildin.arrayTypeName: return Array;
+                case Buildin.metaTypeTypeName: return MetaType;
+                case Buildin.pointerTypeName: return Pointer;
+                case Buildin.funcTypeName: return Func;
+                case Buildin.varargTypeName: return VarArg;
+                case Buildin.defaultGenericParamTypeName: return DefaultGenericParam;
+            }
+            return Other;
+        }
+    };
+    
+    //the name of the cached kind, the kind is found again when the id or the name is changed
+    private volatile String kindName = null;
+    private PrimitiveKind kind = PrimitiveKind.Other;
+    
 //    public boolean explicitImmutable = false;
     public boolean isImmutable = false;
     
@@ -70,23 +100,62 @@ public class Type extends AstNode {
         }
     }
     
+    /**
+     * Shared by all number types of the same size and sign
+     */
     public static class NumInfo extends TypeInfo {
+        private static final NumInfo[] signed = new NumInfo[65];
+        private static final NumInfo[] unsigned = new NumInfo[65];
+        static {
+            for (int i=0; i<signed.length; ++i) {
+                signed[i] = new NumInfo(i, false);
+                unsigned[i] = new NumInfo(i, true);
+            }
+        }
+        
         //** primitive type sized. the Int32 size is 32
-        public int size = 0;
+        public final int size;
 
         //unsigned int
-        public boolean isUnsigned = false;
+        public final boolean isUnsigned;
+        
+        private NumInfo(int size, boolean isUnsigned) {
+            this.size = size;
+            this.isUnsigned = isUnsigned;
+        }
+        
+        public static NumInfo get(int size, boolean isUnsigned) {
+            if (size < 0 || size > 64) {
+                return new NumInfo(size, isUnsigned);
+            }
+            return isUnsigned ? unsigned[size] : signed[size];
+        }
     }
     
     public Type(IdExpr id) {
         this.id = id;
-        this.loc = id.loc;
+        this.pos = id.pos;
     }
     
     public Type(Loc loc, String name) {
-        this.loc = loc;
+        this.setLoc(loc);
         this.id = new IdExpr(name);
-        this.id.loc = loc;
+        this.id.setLoc(loc);
+    }
+    
+    /**
+     * kind of the name, Other if the name has namespace
+     */
+    public PrimitiveKind primitiveKind() {
+        if (id.namespace != null) {
+            return PrimitiveKind.Other;
+        }
+        String name = id.name;
+        if (name != kindName) {
+            kind = PrimitiveKind.of(name);
+            kindName = name;
+        }
+        return kind;
     }
     
     public boolean isDeepImmutable() {
@@ -102,63 +171,40 @@ public class Type extends AstNode {
     }
     
     public boolean isVoid() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals("Void");
+        return primitiveKind() == PrimitiveKind.Void;
     }
     
     public boolean isDefaultGenericParamType() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals(Buildin.defaultGenericParamTypeName);
+        return primitiveKind() == PrimitiveKind.DefaultGenericParam;
     }
     
     public boolean isBool() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals("Bool");
+        return primitiveKind() == PrimitiveKind.Bool;
     }
     
     public boolean isInt() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals("Int");
+        return primitiveKind() == PrimitiveKind.Int;
     }
     
     public boolean isNum() {
-        return isInt() || isFloat();
+        PrimitiveKind k = primitiveKind();
+        return k == PrimitiveKind.Int || k == PrimitiveKind.Float;
     }
     
     public boolean isFloat() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals("Float");
+        return primitiveKind() == PrimitiveKind.Float;
     }
     
     public boolean isArray() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals(Buildin.arrayTypeName);
+        return primitiveKind() == PrimitiveKind.Array;
     }
     
     public boolean isMetaType() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals(Buildin.metaTypeTypeName);
+        return primitiveKind() == PrimitiveKind.MetaType;
     }
     
     public boolean isPointerType() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals(Buildin.pointerTypeName);
+        return primitiveKind() == PrimitiveKind.Pointer;
     }
     
     public boolean isNullablePointerType() {
@@ -172,7 +218,7 @@ public class Type extends AstNode {
     }
     
     public boolean isPromiseType() {
-        return id == Type.promiseCache;
+        return id instanceof PromiseIdExpr;
     }
     
     public boolean hasDefaultValue() {
@@ -242,17 +288,11 @@ public class Type extends AstNode {
     }
     
     public boolean isFuncType() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals(Buildin.funcTypeName);
+        return primitiveKind() == PrimitiveKind.Func;
     }
     
     public boolean isVarArgType() {
-        if (id.namespace != null) {
-            return false;
-        }
-        return id.name.equals(Buildin.varargTypeName);
+        return primitiveKind() == PrimitiveKind.VarArg;
     }
     
     public boolean fit(Type target) {
@@ -398,6 +438,13 @@ public class Type extends AstNode {
 //            }
 //        }
         
+        //shadow copies
+        if (this.id == target.id && this.genericArgs == target.genericArgs && this.detail == target.detail) {
+            if (this.detail != null || !hasDetail()) {
+                return true;
+            }
+        }
+        
         if (!genericArgsEquals(target)) {
             return false;
         }
@@ -428,10 +475,8 @@ public class Type extends AstNode {
         }
         else if (this.isNum()) {
             if (this.detail instanceof NumInfo e && target.detail instanceof NumInfo a) {
-                if (checkNumber && (e.isUnsigned != a.isUnsigned))  {
-                    return false;
-                }
-                else if (checkNumber && (e.size != a.size))  {
+                //the infos are shared
+                if (checkNumber && e != a)  {
                     return false;
                 }
             }
@@ -470,6 +515,21 @@ public class Type extends AstNode {
         return false;
     }
     
+    /**
+     * the equals need the detail of the type
+     */
+    private boolean hasDetail() {
+        switch (primitiveKind()) {
+            case Pointer:
+            case Array:
+            case Int:
+            case Float:
+            case Func:
+                return true;
+        }
+        return false;
+    }
+    
     protected boolean genericArgsEquals(Type target) {
         if (this.genericArgs != null || target.genericArgs != null) {
             if (this.genericArgs == null || target.genericArgs == null) {
@@ -538,60 +598,63 @@ public class Type extends AstNode {
                 type.genericArgs.add(p.fieldType);
             }
         }
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
     public static Type funcType(FuncDef f) {
-        Type type = funcType(f.loc, f.prototype);
+        Type type = funcType(f.loc(), f.prototype);
         ((FuncInfo)type.detail).funcDef = f;
         return type;
     }
     
     public static Type funcType(ClosureExpr f) {
-        Type type = funcType(f.loc, f.prototype);
+        Type type = funcType(f.loc(), f.prototype);
         return type;
     }
     
     public static Type voidType(Loc loc) {
         Type type = new Type(loc, "Void");
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
     public static Type defaultGenericParamType(Loc loc) {
         Type type = new Type(loc, Buildin.defaultGenericParamTypeName);
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
     public static Type boolType(Loc loc) {
         Type type = new Type(loc, "Bool");
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
     public static Type intType(Loc loc) {
+        return intType(loc, 32, false);
+    }
+    
+    public static Type intType(Loc loc, int size, boolean isUnsigned) {
         Type type = new Type(loc, "Int");
-        NumInfo info = new NumInfo();
-        info.size = 32;
-        type.detail = info;
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, loc, null);
+        type.detail = NumInfo.get(size, isUnsigned);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
     public static Type floatType(Loc loc) {
+        return floatType(loc, 64);
+    }
+    
+    public static Type floatType(Loc loc, int size) {
         Type type = new Type(loc, "Float");
-        NumInfo info = new NumInfo();
-        info.size = 64;
-        type.detail = info;
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, loc, null);
+        type.detail = NumInfo.get(size, false);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
     public static Type strType(Loc loc) {
-        Type type = intType(loc);
-        ((NumInfo)type.detail).size = 8;
+        Type type = intType(loc, 8, false);
         type.isImmutable = true;
         return pointerType(loc, type, PointerAttr.raw, false);
     }
@@ -599,10 +662,92 @@ public class Type extends AstNode {
     public static Type nullType(Loc loc) {
         Type type = new Type(loc, Buildin.pointerTypeName);
         type.isImmutable = true;
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
 
+    //one instance for all the expressions of a non-generic buildin type, never changed
+    private static class SharedType extends Type {
+        private final String qName;
+        private final String easyName;
+
+        SharedType(Type type) {
+            super(Buildin.loc, type.id.name);
+            this.id.resolvedDef = type.id.resolvedDef;
+            this.detail = type.detail;
+            this.isImmutable = type.isImmutable;
+            this.qName = super.getQName(false);
+            this.easyName = super.getEasyName();
+        }
+
+        @Override
+        public String getQName(boolean convertAlias) {
+            return qName;
+        }
+
+        @Override
+        public String getEasyName() {
+            return easyName;
+        }
+
+        //the copy may become a declared type, so it must not share the id
+        @Override
+        protected Type shadowCopy() {
+            Type type = new Type(Buildin.loc, id.name);
+            type.copyFrom(this, false);
+            return type;
+        }
+    }
+
+    private static class SharedTypes {
+        static final Type nullLiteral = new SharedType(nullType(Buildin.loc));
+        static final Type intLiteral = new SharedType(intType(Buildin.loc).toImmutable());
+        static final Type floatLiteral = new SharedType(floatType(Buildin.loc).toImmutable());
+        static final Type boolLiteral = new SharedType(boolType(Buildin.loc).toImmutable());
+        static final Type bool = new SharedType(boolType(Buildin.loc));
+        static final Type int32 = new SharedType(intType(Buildin.loc));
+    }
+
+    /**
+     * Const type of the literal value, shared by all the literals.
+     * The String literal has its own type, because the type is generic.
+     * Return null if the value is not a literal value.
+     */
+    public static Type literalType(Loc loc, Object value) {
+        if (value == null) {
+            return SharedTypes.nullLiteral;
+        }
+        else if (value instanceof Long) {
+            return SharedTypes.intLiteral;
+        }
+        else if (value instanceof Double) {
+            return SharedTypes.floatLiteral;
+        }
+        else if (value instanceof Boolean) {
+            return SharedTypes.boolLiteral;
+        }
+        else if (value instanceof String) {
+            Type type = strType(loc);
+            type.isImmutable = true;
+            return type;
+        }
+        return null;
+    }
+
+    /**
+     * Shared Bool type of the operator results
+     */
+    public static Type sharedBoolType() {
+        return SharedTypes.bool;
+    }
+
+    /**
+     * Shared Int32 type of the operator results
+     */
+    public static Type sharedIntType() {
+        return SharedTypes.int32;
+    }
+
     public static Type arrayType(Loc loc, Type elemType, Expr size) {
         Type type = new Type(loc, Buildin.arrayTypeName);
         ArrayInfo info = new ArrayInfo();
@@ -611,7 +756,7 @@ public class Type extends AstNode {
         type.genericArgs = new ArrayList<>();
         type.genericArgs.add(elemType);
         
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
@@ -626,22 +771,22 @@ public class Type extends AstNode {
         info.isNullable = nullable;
         type.detail = info;
         
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
-    private static IdExpr promiseCache;
+    //marks the Promise types made by promiseType
+    private static class PromiseIdExpr extends IdExpr {
+        PromiseIdExpr() {
+            super("Promise");
+            this.setLoc(Buildin.loc);
+            this.namespace = new IdExpr("sric");
+        }
+    }
     
     public static Type promiseType(Loc loc, Type rawType) {
-        if (promiseCache == null) {
-            IdExpr ns = new IdExpr("sric");
-            IdExpr id = new IdExpr("Promise");
-            id.loc = Buildin.loc;
-            id.namespace = ns;
-            promiseCache = id;
-        }
-        
-        Type type = new Type(promiseCache);
+        IdExpr promiseId = new PromiseIdExpr();
+        Type type = new Type(promiseId);
         type.genericArgs = new ArrayList<>();
         type.genericArgs.add(rawType);
         return type;
@@ -649,7 +794,7 @@ public class Type extends AstNode {
     
     public static Type varArgType(Loc loc) {
         Type type = new Type(loc, Buildin.varargTypeName);
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
@@ -659,7 +804,7 @@ public class Type extends AstNode {
         info.type = type;
         t.detail = info;
         if (type.id.resolvedDef == null && type.id.namespace == null) {
-            type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+            type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         }
         return t;
     }
@@ -849,6 +994,57 @@ public class Type extends AstNode {
         return sb.toString();
     }
 
+    /**
+     * Structural key of a resolved generic argument.
+     * Arguments with equal keys make the same instance.
+     * Return null if the type can't be shared.
+     */
+    public Object genericArgKey() {
+        if (id.resolvedDef == null) {
+            return null;
+        }
+        ArrayList<Object> key = new ArrayList<>();
+        key.add(id.resolvedDef);
+        key.add(id.name);
+        for (IdExpr ns = id.namespace; ns != null; ns = ns.namespace) {
+            key.add(ns.name);
+        }
+        key.add(resolvedAliasDef);
+        key.add(isImmutable);
+        key.add(isReference);
+        
+        if (detail instanceof PointerInfo pinfo) {
+            key.add(pinfo.pointerAttr);
+            key.add(pinfo.isNullable);
+        }
+        else if (detail instanceof NumInfo ninfo) {
+            key.add(ninfo.size);
+            key.add(ninfo.isUnsigned);
+        }
+        else if (detail instanceof ArrayInfo ainfo) {
+            if (ainfo.sizeExpr != null && !(ainfo.sizeExpr instanceof Expr.LiteralExpr)) {
+                return null;
+            }
+            key.add(ainfo.sizeExpr == null);
+            key.add(ainfo.getSize());
+        }
+        else if (detail != null) {
+            return null;
+        }
+        
+        if (genericArgs != null) {
+            key.add(genericArgs.size());
+            for (Type t : genericArgs) {
+                Object k = t.genericArgKey();
+                if (k == null) {
+                    return null;
+                }
+                key.add(k);
+            }
+        }
+        return key;
+    }
+    
     public Type templateInstantiate(Map<GenericParamDef, Type> typeGenericArgs) {
         if (!(this.id.resolvedDef instanceof GenericParamDef g) && this.genericArgs == null) {
             return this;
@@ -939,12 +1135,12 @@ public class Type extends AstNode {
             return this;
         }
         
-        Type type = new Type(loc, "*");
+        Type type = new Type(loc(), "*");
         type.copyFrom(this, true);
 
         ((PointerInfo)type.detail).isNullable = false;
 
-        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name, type.loc, null);
+        type.id.resolvedDef = Buildin.getBuildinScope().get(type.id.name);
         return type;
     }
     
@@ -953,8 +1149,7 @@ public class Type extends AstNode {
             return this;
         }
         
-        //shadow copy
-        Type type = new Type(this.id);
+        Type type = shadowCopy();
         type.copyFrom(this, false);
         type.isImmutable = true;
         return type;
@@ -965,8 +1160,7 @@ public class Type extends AstNode {
             return this;
         }
         
-        //shadow copy
-        Type type = new Type(this.id);
+        Type type = shadowCopy();
         type.copyFrom(this, false);
         type.isReference = false;
         return type;
@@ -977,22 +1171,29 @@ public class Type extends AstNode {
             return this;
         }
         
-        //shadow copy
-        Type type = new Type(this.id);
+        Type type = shadowCopy();
         type.copyFrom(this, false);
         type.isImmutable = false;
         return type;
     }
     
+    protected Type shadowCopy() {
+        return new Type(this.id);
+    }
+    
     public Type toRawPointer() {
         if (!(this.detail instanceof PointerInfo)) {
             return null;
         }
         
-        //shadow copy
-        Type type = new Type(this.id);
+        Type type = shadowCopy();
         type.copyFrom(this, true);
         ((PointerInfo)type.detail).pointerAttr = PointerAttr.raw;
         return type;
     }
+    
+    @Override
+    public AstKind astKind() {
+        return AstKind.Type;
+    }
 }
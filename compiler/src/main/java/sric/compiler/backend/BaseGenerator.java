@@ -4,11 +4,14 @@
 //
 package sric.compiler.backend;
 
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import sric.compiler.CompilePass;
 import sric.compiler.CompilerLog;
+import sric.compiler.Util;
 
 /**
  *
@@ -19,10 +22,15 @@ public class BaseGenerator extends CompilePass {
     private boolean needIndent = false;
     private int indentation = 0;
     
+    //output file, written on close if the content is changed
+    private String file = null;
+    private ByteArrayOutputStream buffer = null;
     
     public BaseGenerator(CompilerLog log, String file) throws IOException {
         super(log);
-        writer = new PrintStream(new FileOutputStream(file), true, "UTF-8");
+        this.file = file;
+        buffer = new ByteArrayOutputStream();
+        writer = new PrintStream(buffer, false, StandardCharsets.UTF_8);
     }
     
     public BaseGenerator(CompilerLog log, PrintStream writer) {
@@ -30,8 +38,11 @@ public class BaseGenerator extends CompilePass {
         this.writer = writer;
     }
     
-    public void close() {
+    public void close() throws IOException {
         writer.close();
+        if (file != null) {
+            Util.writeIfChanged(Path.of(file), buffer.toByteArray());
+        }
     }
     
     protected void indent()
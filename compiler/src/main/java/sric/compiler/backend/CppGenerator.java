@@ -625,7 +625,7 @@ public class CppGenerator extends BaseGenerator {
             }
         }
         if (implMode()) {
-            if (v.code == null || inlined) {
+            if (!v.hasCode() || inlined) {
                 return;
             }
         }
@@ -715,7 +715,7 @@ public class CppGenerator extends BaseGenerator {
         
         printFuncPrototype(v.prototype, false, v.isStatic(), implMode() || inlined, v.isAsync());
         
-        if (v.code == null) {
+        if (!v.hasCode()) {
             if ((v.flags & FConst.Abstract) != 0) {
                 print(" = 0");
             }
@@ -735,13 +735,13 @@ public class CppGenerator extends BaseGenerator {
                     }
                     newLine();
                     isSafe = true;
-                    v.code._printBrace = false;
+                    v.getCode()._printBrace = false;
                 }
                 else {
                     print(" ");
                 }
                 
-                this.visit(v.code);
+                this.visit(v.getCode());
                 
                 if (isSafe) {
                     this.unindent();
@@ -967,7 +967,7 @@ public class CppGenerator extends BaseGenerator {
             if (state == 2) {
                 return false;
             }
-            err("Cyclic dependency", v.loc);
+            err("Cyclic dependency", v.loc());
             return false;
         }
         this.emitState.put(v, 1);
@@ -1020,122 +1020,134 @@ public class CppGenerator extends BaseGenerator {
 
     @Override
     public void visitStmt(Stmt v) {
-        if (v instanceof Block bs) {
-            if (bs._printBrace) {
-                print("{").newLine();
-                indent();
-            }
-            bs.walkChildren(this);
-            if (bs._printBrace) {
-                unindent();
-                print("}").newLine();
-            }
-        }
-        else if (v instanceof IfStmt ifs) {
-            print("if (");
-            this.visit(ifs.condition);
-            print(") ");
-            this.visit(ifs.block);
-            if (ifs.elseBlock != null) {
-                print("else ");
-                this.visit(ifs.elseBlock);
+        switch (v.astKind()) {
+            case Block -> {
+                Block bs = (Block)v;
+                if (bs._printBrace) {
+                    print("{").newLine();
+                    indent();
+                }
+                bs.walkChildren(this);
+                if (bs._printBrace) {
+                    unindent();
+                    print("}").newLine();
+                }
             }
-        }
-        else if (v instanceof LocalDefStmt e) {
-            this.visit(e.fieldDef);
-        }
-        else if (v instanceof WhileStmt whiles) {
-            print("while (");
-            this.visit(whiles.condition);
-            print(") ");
-            this.visit(whiles.block);
-        }
-        else if (v instanceof ForStmt fors) {
-            print("for (");
-            if (fors.init != null) {
-                if (fors.init instanceof LocalDefStmt varDef) {
-                    printLocalFieldDefAsExpr(varDef.fieldDef);
+            case IfStmt -> {
+                IfStmt ifs = (IfStmt)v;
+                print("if (");
+                this.visit(ifs.condition);
+                print(") ");
+                this.visit(ifs.block);
+                if (ifs.elseBlock != null) {
+                    print("else ");
+                    this.visit(ifs.elseBlock);
+                }
+            }
+            case LocalDefStmt -> {
+                LocalDefStmt e = (LocalDefStmt)v;
+                this.visit(e.fieldDef);
+            }
+            case WhileStmt -> {
+                WhileStmt whiles = (WhileStmt)v;
+                print("while (");
+                this.visit(whiles.condition);
+                print(") ");
+                this.visit(whiles.block);
+            }
+            case ForStmt -> {
+                ForStmt fors = (ForStmt)v;
+                print("for (");
+                if (fors.init != null) {
+                    if (fors.init instanceof LocalDefStmt varDef) {
+                        printLocalFieldDefAsExpr(varDef.fieldDef);
+                    }
+                    else if (fors.init instanceof ExprStmt s) {
+                        this.visit(s.expr);
+                    }
+                    else {
+                        err("Unsupport for init stmt", fors.init.loc());
+                    }
                 }
-                else if (fors.init instanceof ExprStmt s) {
-                    this.visit(s.expr);
+                print("; ");
+                
+                if (fors.condition != null) {
+                    this.visit(fors.condition);
                 }
-                else {
-                    err("Unsupport for init stmt", fors.init.loc);
+                print("; ");
+                
+                if (fors.update != null) {
+                    this.visit(fors.update);
                 }
+                print(") ");
+                this.visit(fors.block);
             }
-            print("; ");
-            
-            if (fors.condition != null) {
-                this.visit(fors.condition);
-            }
-            print("; ");
-            
-            if (fors.update != null) {
-                this.visit(fors.update);
-            }
-            print(") ");
-            this.visit(fors.block);
-        }
-        else if (v instanceof SwitchStmt switchs) {
-            print("switch (");
-            this.visit(switchs.condition);
-            print(") {").newLine();
-            
-            this.indent();
-            
-            for (CaseBlock cb : switchs.cases) {
-                this.unindent();
-                print("case ");
-                this.visit(cb.caseExpr);
-                print(":").newLine();
+            case SwitchStmt -> {
+                SwitchStmt switchs = (SwitchStmt)v;
+                print("switch (");
+                this.visit(switchs.condition);
+                print(") {").newLine();
+                
                 this.indent();
                 
-                this.visit(cb.block);
+                for (CaseBlock cb : switchs.cases) {
+                    this.unindent();
+                    print("case ");
+                    this.visit(cb.caseExpr);
+                    print(":").newLine();
+                    this.indent();
+                    
+                    this.visit(cb.block);
+                    
+                    if (!cb.fallthrough) {
+                        print("break;").newLine();
+                    }
+                }
                 
-                if (!cb.fallthrough) {
-                    print("break;").newLine();
+                if (switchs.defaultBlock != null) {
+                    this.unindent();
+                    print("default:").newLine();
+                    this.indent();
+                    this.visit(switchs.defaultBlock);
                 }
-            }
-            
-            if (switchs.defaultBlock != null) {
+     
                 this.unindent();
-                print("default:").newLine();
-                this.indent();
-                this.visit(switchs.defaultBlock);
+                print("}").newLine();
             }
- 
-            this.unindent();
-            print("}").newLine();
-        }
-        else if (v instanceof ExprStmt exprs) {
-            this.visit(exprs.expr);
-            print(";").newLine();
-        }
-        else if (v instanceof JumpStmt jumps) {
-            print(jumps.opToken.symbol).print(";").newLine();
-        }
-        else if (v instanceof UnsafeBlock bs) {
-            print("/*unsafe*/ ");
-            this.visit(bs.block);
-        }
-        else if (v instanceof ReturnStmt rets) {
-            if (rets.expr != null) {
-                if (rets._isCoroutineRet) {
-                    print("co_return ");
+            case ExprStmt -> {
+                ExprStmt exprs = (ExprStmt)v;
+                this.visit(exprs.expr);
+                print(";").newLine();
+            }
+            case JumpStmt -> {
+                JumpStmt jumps = (JumpStmt)v;
+                print(jumps.opToken.symbol).print(";").newLine();
+            }
+            case UnsafeBlock -> {
+                UnsafeBlock bs = (UnsafeBlock)v;
+                print("/*unsafe*/ ");
+                this.visit(bs.block);
+            }
+            case ReturnStmt -> {
+                ReturnStmt rets = (ReturnStmt)v;
+                if (rets.expr != null) {
+                    if (rets._isCoroutineRet) {
+                        print("co_return ");
+                    }
+                    else {
+                        print("return ");
+                    }
+                    this.visit(rets.expr);
+                    print(";").newLine();
                 }
                 else {
-                    print("return ");
+                    print("return;");
                 }
-                this.visit(rets.expr);
-                print(";").newLine();
             }
-            else {
-                print("return;");
+            default -> {
+                err("Unkown stmt:"+v, v.loc());
             }
         }
-        else {
-            err("Unkown stmt:"+v, v.loc);
-        }
     }
 
     @Override
@@ -1197,189 +1209,204 @@ public class CppGenerator extends BaseGenerator {
             parentheses++;
         }
         
-        if (v instanceof IdExpr e) {
-            this.printIdExpr(e);
-        }
-        else if (v instanceof AccessExpr e) {
-            if (e._addressOf && e.target.resolvedType != null) {
-                if (e.target.resolvedType.detail instanceof Type.PointerInfo pinfo) {
-                    print("sric::RefPtr<");
-                    this.printType(e.resolvedType);
-                    print(">(");
-                    this.visit(e.target);
-                    print(",");
+        switch (v.astKind()) {
+            case IdExpr -> {
+                IdExpr e = (IdExpr)v;
+                this.printIdExpr(e);
+            }
+            case AccessExpr -> {
+                AccessExpr e = (AccessExpr)v;
+                if (e._addressOf && e.target.resolvedType != null) {
+                    if (e.target.resolvedType.detail instanceof Type.PointerInfo pinfo) {
+                        print("sric::RefPtr<");
+                        this.printType(e.resolvedType);
+                        print(">(");
+                        this.visit(e.target);
+                        print(",");
 
-                    print("&");
-                    this.visit(e.target);
-                    print("->");
-                    print(e.name);
+                        print("&");
+                        this.visit(e.target);
+                        print("->");
+                        print(e.name);
 
-                    print(")");
+                        print(")");
+                    }
+                    else {
+                        print("sric::RefPtr<");
+                        this.printType(e.resolvedType);
+                        print(">(&");
+                        this.visit(e.target);
+                        print(",");
+
+                        print("&");
+                        this.visit(e.target);
+                        print("->");
+                        print(e.name);
+
+                        print(")");
+                    }
                 }
                 else {
-                    print("sric::RefPtr<");
-                    this.printType(e.resolvedType);
-                    print(">(&");
-                    this.visit(e.target);
-                    print(",");
+                    boolean isNullable = false;
+                    if (e.target.resolvedType != null && e.target.resolvedType.detail instanceof Type.PointerInfo pinfo) {
+                        if (pinfo.isNullable && pinfo.pointerAttr == Type.PointerAttr.raw) {
+                            print("sric::notNull(");
+                            isNullable = true;
+                        }
+                    }
 
-                    print("&");
                     this.visit(e.target);
-                    print("->");
-                    print(e.name);
+                    if (isNullable) {
+                        print(")");
+                    }
 
-                    print(")");
-                }
-            }
-            else {
-                boolean isNullable = false;
-                if (e.target.resolvedType != null && e.target.resolvedType.detail instanceof Type.PointerInfo pinfo) {
-                    if (pinfo.isNullable && pinfo.pointerAttr == Type.PointerAttr.raw) {
-                        print("sric::notNull(");
-                        isNullable = true;
+                    if (e.target instanceof IdExpr ide && ide.name.equals(TokenKind.superKeyword.symbol)) {
+                        print("::");
                     }
+                    else if (e.target.resolvedType != null && e.target.resolvedType.isPointerType()) {
+                        print("->");
+                    }
+    //                else if (e.target.resolvedType != null && e.target.resolvedType.isRefable) {
+    //                    print("->");
+    //                }
+                    else {
+                        print(".");
+                    }
+                    print(e.name);
                 }
-
+            }
+            case LiteralExpr -> {
+                LiteralExpr e = (LiteralExpr)v;
+                printLiteral(e);
+            }
+            case BinaryExpr -> {
+                BinaryExpr e = (BinaryExpr)v;
+                printBinaryExpr(e);
+            }
+            case CallExpr -> {
+                CallExpr e = (CallExpr)v;
                 this.visit(e.target);
-                if (isNullable) {
-                    print(")");
-                }
-
-                if (e.target instanceof IdExpr ide && ide.name.equals(TokenKind.superKeyword.symbol)) {
-                    print("::");
-                }
-                else if (e.target.resolvedType != null && e.target.resolvedType.isPointerType()) {
-                    print("->");
-                }
-//                else if (e.target.resolvedType != null && e.target.resolvedType.isRefable) {
-//                    print("->");
-//                }
-                else {
-                    print(".");
+                print("(");
+                if (e.args != null) {
+                    int i = 0;
+                    for (CallArg t : e.args) {
+                        if (i > 0) print(", ");
+                        this.visit(t.argExpr);
+                        ++i;
+                    }
                 }
-                print(e.name);
+                print(")");
             }
-        }
-        else if (v instanceof LiteralExpr e) {
-            printLiteral(e);
-        }
-        else if (v instanceof BinaryExpr e) {
-            printBinaryExpr(e);
-        }
-        else if (v instanceof CallExpr e) {
-            this.visit(e.target);
-            print("(");
-            if (e.args != null) {
+            case UnaryExpr -> {
+                UnaryExpr e = (UnaryExpr)v;
+                if (null == e.opToken) {
+                    print(e.opToken.symbol);
+                    this.visit(e.operand);
+                }
+                else switch (e.opToken) {
+                    case amp:
+                        if (e._addressOfSafeStruct && e.resolvedType.genericArgs != null) {
+                            print("sric::addressOf<");
+                            this.printType(e.resolvedType.genericArgs.get(0));
+                            print(">(");
+                            this.visit(e.operand);
+                            print(")");
+                        }
+                        else if (e._addressOfField) {
+                            this.visit(e.operand);
+                        }
+                        else {
+                            print("&");
+                            this.visit(e.operand);
+                        }   break;
+                    case moveKeyword:
+                        print("std::move(");
+                        this.visit(e.operand);
+                        print(")");
+                        break;
+                    case awaitKeyword:
+                        print("co_await ");
+                        this.visit(e.operand);
+                        //print("");
+                        break;
+                    case newKeyword:
+                        print("sric::new_<");
+                        this.visit(e.operand);
+                        print(">()");
+                        break;
+                    default:
+                        print(e.opToken.symbol);
+                        this.visit(e.operand);
+                        break;
+                }
+            }
+            case TypeExpr -> {
+                TypeExpr e = (TypeExpr)v;
+                this.printType(e.type);
+            }
+            case IndexExpr -> {
+                IndexExpr e = (IndexExpr)v;
+    //            if (e.resolvedOperator != null) {
+    //                this.visit(e.target);
+    //                print(".get(");
+    //                this.visit(e.index);
+    //                print(")");
+    //            }
+    //            else {
+    //                boolean p = false;
+    //                if (e.target.resolvedType != null && (e.target.resolvedType.isRefable)) {
+    //                    print("(*");
+    //                    p = true;
+    //                }
+                    this.visit(e.target);
+    //                if (p) {
+    //                    print(")");
+    //                }
+                    print("[");
+                    this.visit(e.index);
+                    print("]");
+    //            }
+            }
+            case GenericInstance -> {
+                GenericInstance e = (GenericInstance)v;
+                this.visit(e.target);
+                print("<");
                 int i = 0;
-                for (CallArg t : e.args) {
+                for (Type t : e.genericArgs) {
                     if (i > 0) print(", ");
-                    this.visit(t.argExpr);
+                    this.printType(t);
                     ++i;
                 }
+                print(" >");
             }
-            print(")");
-        }
-        else if (v instanceof UnaryExpr e) {
-            if (null == e.opToken) {
-                print(e.opToken.symbol);
-                this.visit(e.operand);
+            case IfExpr -> {
+                IfExpr e = (IfExpr)v;
+                this.visit(e.condition);
+                print("?");
+                this.visit(e.trueExpr);
+                print(":");
+                this.visit(e.falseExpr);
             }
-            else switch (e.opToken) {
-                case amp:
-                    if (e._addressOfSafeStruct && e.resolvedType.genericArgs != null) {
-                        print("sric::addressOf<");
-                        this.printType(e.resolvedType.genericArgs.get(0));
-                        print(">(");
-                        this.visit(e.operand);
-                        print(")");
-                    }
-                    else if (e._addressOfField) {
-                        this.visit(e.operand);
-                    }
-                    else {
-                        print("&");
-                        this.visit(e.operand);
-                    }   break;
-                case moveKeyword:
-                    print("std::move(");
-                    this.visit(e.operand);
-                    print(")");
-                    break;
-                case awaitKeyword:
-                    print("co_await ");
-                    this.visit(e.operand);
-                    //print("");
-                    break;
-                case newKeyword:
-                    print("sric::new_<");
-                    this.visit(e.operand);
-                    print(">()");
-                    break;
-                default:
-                    print(e.opToken.symbol);
-                    this.visit(e.operand);
-                    break;
+            case WithBlockExpr -> {
+                Expr.WithBlockExpr e = (Expr.WithBlockExpr)v;
+                printWithBlockExpr(e);
             }
-        }
-        else if (v instanceof TypeExpr e) {
-            this.printType(e.type);
-        }
-        else if (v instanceof IndexExpr e) {
-//            if (e.resolvedOperator != null) {
-//                this.visit(e.target);
-//                print(".get(");
-//                this.visit(e.index);
-//                print(")");
-//            }
-//            else {
-//                boolean p = false;
-//                if (e.target.resolvedType != null && (e.target.resolvedType.isRefable)) {
-//                    print("(*");
-//                    p = true;
-//                }
-                this.visit(e.target);
-//                if (p) {
-//                    print(")");
-//                }
-                print("[");
-                this.visit(e.index);
-                print("]");
-//            }
-        }
-        else if (v instanceof GenericInstance e) {
-            this.visit(e.target);
-            print("<");
-            int i = 0;
-            for (Type t : e.genericArgs) {
-                if (i > 0) print(", ");
-                this.printType(t);
-                ++i;
+            case ArrayBlockExpr -> {
+                Expr.ArrayBlockExpr e = (Expr.ArrayBlockExpr)v;
+                printArrayBlockExpr(e);
+            }
+            case ClosureExpr -> {
+                ClosureExpr e = (ClosureExpr)v;
+                printClosureExpr(e);
             }
-            print(" >");
-        }
-        else if (v instanceof IfExpr e) {
-            this.visit(e.condition);
-            print("?");
-            this.visit(e.trueExpr);
-            print(":");
-            this.visit(e.falseExpr);
-        }
-        else if (v instanceof Expr.WithBlockExpr e) {
-            printWithBlockExpr(e);
-        }
-        else if (v instanceof Expr.ArrayBlockExpr e) {
-            printArrayBlockExpr(e);
-        }
-        else if (v instanceof ClosureExpr e) {
-            printClosureExpr(e);
-        }
 //        else if (v instanceof NonNullableExpr e) {
 //            print("sric::notNull(");
 //            this.visit(e.operand);
 //            print(")");
 //        }
-        else {
-            err("Unkown expr:"+v, v.loc);
+            default -> {
+                err("Unkown expr:"+v, v.loc());
+            }
         }
         
         while (parentheses > 0) {
@@ -0,0 +1,383 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import sric.compiler.CompilerLog;
+import sric.compiler.Util;
+import sric.compiler.ast.AstNode;
+import sric.compiler.ast.AstNode.*;
+import sric.compiler.ast.Expr.IdExpr;
+import sric.compiler.ast.Loc;
+import sric.compiler.ast.Token.TokenKind;
+import sric.compiler.ast.Type;
+import sric.compiler.parser.DeepParser;
+import sric.compiler.parser.ScInterfaceReader;
+import sric.compiler.parser.TokenBuffer;
+import sric.compiler.parser.Tokenizer;
+
+/**
+ * Write the binary module interface (.sci) of a .sch stub.
+ * The stub text is parsed again so the interface holds exactly the AST
+ * that parsing the .sch gives. Each top level definition is a binary record
+ * found by the symbol index, expressions and function bodies are kept as
+ * slices of the stub text.
+ *
+ * @author yangjiandong
+ */
+public class ScInterfaceGenerator {
+    private final String src;
+    //hashes of the build in the .meta, see Compiler.interfaceStamp
+    private final String stamp;
+
+    private final HashMap<String, Integer> stringIndex = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+    //imports and the symbol index
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+    //definitions, each one can be decoded alone
+    private final ByteArrayOutputStream records = new ByteArrayOutputStream();
+    //current output
+    private ByteArrayOutputStream out = body;
+
+    public ScInterfaceGenerator(String src, String stamp) {
+        this.src = src;
+        this.stamp = stamp;
+    }
+
+    /**
+     * return false if the stub can not be encoded
+     */
+    public boolean run(String file) throws IOException {
+        CompilerLog parseLog = new CompilerLog();
+        FileUnit unit = new FileUnit(file);
+        DeepParser parser = new DeepParser(parseLog, src, unit);
+        parser.parse();
+        if (parseLog.hasError()) {
+            return false;
+        }
+
+        writeUnit(unit);
+
+        ByteArrayOutputStream data = new ByteArrayOutputStream(body.size() + records.size() + src.length());
+        writeInt(data, ScInterfaceReader.magic);
+        writeVarInt(data, ScInterfaceReader.formatVersion);
+        writeUtf(data, sric.compiler.Compiler.version);
+        writeUtf(data, stamp);
+        writeVarInt(data, strings.size());
+        for (String s : strings) {
+            writeUtf(data, s);
+        }
+        //line table, the locations only keep the offset
+        ArrayList<Integer> lines = new ArrayList<>();
+        for (int i = 0; i < src.length(); ++i) {
+            if (src.charAt(i) == '\n') {
+                lines.add(i + 1);
+            }
+        }
+        writeVarInt(data, lines.size());
+        int lineStart = 0;
+        for (int line : lines) {
+            writeVarInt(data, line - lineStart);
+            lineStart = line;
+        }
+        body.writeTo(data);
+        records.writeTo(data);
+
+        Util.writeIfChanged(Path.of(file), data.toByteArray());
+        return true;
+    }
+    
+    /**
+     * Hash of the module interface, the tokens of the stub except the doc comments.
+     * It is not changed by the function bodies, the layout or the docs of the module.
+     */
+    public static String interfaceHash(String src) {
+        MessageDigest digest = Util.newDigest();
+        Tokenizer tokenizer = new Tokenizer(new CompilerLog(), "", src);
+        TokenBuffer tokens = tokenizer.tokenizeBuffer();
+        for (int i = 0; i < tokens.size(); ++i) {
+            TokenKind kind = tokens.kind(i);
+            if (kind == TokenKind.docComment) {
+                continue;
+            }
+            digest.update((kind.name() + "\0" + tokens.val(i) + "\0").getBytes(StandardCharsets.UTF_8));
+        }
+        return Util.toHex(digest.digest());
+    }
+
+    private void writeUnit(FileUnit unit) {
+        writeVarInt(out, unit.imports.size());
+        for (Import i : unit.imports) {
+            writeIdExpr(i.id);
+            writeBool(i.star);
+            writeLoc(i);
+        }
+
+        writeVarInt(out, unit.typeAlias.size() + unit.typeDefs.size() + unit.fieldDefs.size() + unit.funcDefs.size());
+        for (TypeAlias a : unit.typeAlias) {
+            writeEntry(ScInterfaceReader.defAlias, a);
+        }
+        for (TypeDef t : unit.typeDefs) {
+            writeEntry(ScInterfaceReader.defType, t);
+        }
+        for (FieldDef f : unit.fieldDefs) {
+            writeEntry(ScInterfaceReader.defField, f);
+        }
+        for (FuncDef f : unit.funcDefs) {
+            writeEntry(ScInterfaceReader.defFunc, f);
+        }
+    }
+
+    /**
+     * write the index entry of a top level definition and its record
+     */
+    private void writeEntry(int kind, TopLevelDef def) {
+        writeVarInt(body, kind);
+        writeStr(def.name);
+        writeLoc(def.loc());
+        writeVarInt(body, records.size());
+
+        out = records;
+        if (def instanceof TypeAlias a) {
+            writeStr(a.name);
+            writeVarInt(out, a.flags);
+            writeComments(a.comment);
+            writeType(a.type);
+            writeLoc(a);
+        }
+        else if (def instanceof TypeDef t) {
+            writeTypeDef(t);
+        }
+        else if (def instanceof FieldDef f) {
+            writeField(f);
+        }
+        else if (def instanceof FuncDef f) {
+            writeFunc(f);
+        }
+        out = body;
+    }
+
+    private void writeTypeDef(TypeDef t) {
+        writeStr(t.name);
+        writeVarInt(out, t.flags);
+        writeVarInt(out, t.kind.ordinal());
+        writeComments(t.comment);
+        writeGenericParams(t.generiParamDefs);
+        writeTypes(t.inheritances);
+        writeType(t.enumBase);
+        writeVarInt(out, t.fieldDefs.size());
+        for (FieldDef f : t.fieldDefs) {
+            writeField(f);
+        }
+        writeVarInt(out, t.funcDefs.size());
+        for (FuncDef f : t.funcDefs) {
+            writeFunc(f);
+        }
+        writeLoc(t);
+    }
+
+    private void writeField(FieldDef f) {
+        writeStr(f.name);
+        writeVarInt(out, f.flags);
+        writeComments(f.comment);
+        writeType(f.fieldType);
+        writeSnippet(f.initExpr);
+        writeBool(f.unkonwInit);
+        writeBool(f.isParamDef);
+        writeLoc(f);
+    }
+
+    private void writeFunc(FuncDef f) {
+        writeStr(f.name);
+        writeVarInt(out, f.flags);
+        writeComments(f.comment);
+        writeGenericParams(f.generiParamDefs);
+        writePrototype(f.prototype);
+        writeSnippet(f.getCode());
+        writeLoc(f);
+    }
+
+    private void writePrototype(FuncPrototype p) {
+        writeType(p.returnType);
+        if (p.paramDefs == null) {
+            writeVarInt(out, 0);
+        }
+        else {
+            writeVarInt(out, p.paramDefs.size() + 1);
+            for (FieldDef f : p.paramDefs) {
+                writeField(f);
+            }
+        }
+        writeVarInt(out, p.postFlags);
+    }
+
+    private void writeGenericParams(ArrayList<GenericParamDef> params) {
+        if (params == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, params.size() + 1);
+        for (GenericParamDef p : params) {
+            writeStr(p.name);
+            writeType(p.bound);
+            writeLoc(p);
+        }
+    }
+
+    private void writeTypes(ArrayList<Type> types) {
+        if (types == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, types.size() + 1);
+        for (Type t : types) {
+            writeType(t);
+        }
+    }
+
+    private void writeType(Type type) {
+        if (type == null) {
+            writeVarInt(out, ScInterfaceReader.typeNull);
+            return;
+        }
+
+        if (type.detail instanceof Type.NumInfo info) {
+            writeVarInt(out, ScInterfaceReader.typeNum);
+            writeStr(type.id.name);
+            writeVarInt(out, info.size);
+            writeBool(info.isUnsigned);
+            writeTypes(type.genericArgs);
+            writeLoc(type.id.loc());
+        }
+        else if (type.detail instanceof Type.PointerInfo info) {
+            writeVarInt(out, ScInterfaceReader.typePointer);
+            writeVarInt(out, info.pointerAttr.ordinal());
+            writeBool(info.isNullable);
+            writeType(type.genericArgs == null ? null : type.genericArgs.get(0));
+            writeLoc(type.id.loc());
+        }
+        else if (type.detail instanceof Type.ArrayInfo info) {
+            writeVarInt(out, ScInterfaceReader.typeArray);
+            writeSnippet(info.sizeExpr);
+            writeType(type.genericArgs.get(0));
+            writeLoc(type.id.loc());
+        }
+        else if (type.detail instanceof Type.FuncInfo info) {
+            writeVarInt(out, ScInterfaceReader.typeFunc);
+            writePrototype(info.prototype);
+            writeLoc(type.id.loc());
+        }
+        else if (type.detail == null && type.id.resolvedDef != null) {
+            writeVarInt(out, ScInterfaceReader.typeBuildin);
+            writeStr(type.id.name);
+            writeLoc(type.id.loc());
+        }
+        else if (type.detail == null) {
+            writeVarInt(out, ScInterfaceReader.typeSimple);
+            writeIdExpr(type.id);
+            writeTypes(type.genericArgs);
+        }
+        else {
+            throw new IllegalArgumentException("Unknown type:"+type);
+        }
+
+        writeBool(type.isImmutable);
+        writeBool(type.isReference);
+        writeLoc(type);
+    }
+
+    private void writeIdExpr(IdExpr id) {
+        writeStr(id.name);
+        writeLoc(id);
+        if (id.namespace == null) {
+            writeBool(false);
+        }
+        else {
+            writeBool(true);
+            writeIdExpr(id.namespace);
+        }
+    }
+
+    private void writeComments(Comments comments) {
+        if (comments == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, comments.comments.size() + 1);
+        for (Comment c : comments.comments) {
+            writeStr(c.content);
+            writeBool(c.type == TokenKind.docComment);
+            writeLoc(c);
+        }
+        writeLoc(comments);
+    }
+
+    private void writeSnippet(AstNode node) {
+        if (node == null) {
+            writeStr(null);
+            return;
+        }
+        writeStr(src.substring(Loc.offset(node.pos), Loc.offset(node.pos) + node.len));
+        writeLoc(node.loc());
+    }
+
+    private void writeLoc(AstNode node) {
+        writeLoc(node.loc());
+        writeVarInt(out, node.len);
+    }
+
+    private void writeLoc(Loc loc) {
+        if (loc == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, loc.offset + 1);
+    }
+
+    private void writeBool(boolean b) {
+        out.write(b ? 1 : 0);
+    }
+
+    private void writeStr(String s) {
+        if (s == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        Integer index = stringIndex.get(s);
+        if (index == null) {
+            strings.add(s);
+            index = strings.size();
+            stringIndex.put(s, index);
+        }
+        writeVarInt(out, index);
+    }
+
+    private static void writeUtf(ByteArrayOutputStream out, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.writeBytes(bytes);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int v) {
+        out.write(v >>> 24);
+        out.write(v >>> 16);
+        out.write(v >>> 8);
+        out.write(v);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+}
@@ -347,8 +347,8 @@ public class ScLibGenerator extends BaseGenerator {
         printFuncPrototype(v.prototype, false, v.isStatic());
 
         
-        if (inlined && v.code != null) {
-            this.visit(v.code);
+        if (inlined && v.hasCode()) {
+            this.visit(v.getCode());
         }
         else {
             print(";").newLine();
@@ -476,112 +476,124 @@ public class ScLibGenerator extends BaseGenerator {
 
     @Override
     public void visitStmt(Stmt v) {
-        if (v instanceof AstNode.Block bs) {
-            print("{").newLine();
-            indent();
-            bs.walkChildren(this);
-            unindent();
-            print("}").newLine();
-        }
-        else if (v instanceof Stmt.IfStmt ifs) {
-            print("if (");
-            this.visit(ifs.condition);
-            print(") ");
-            this.visit(ifs.block);
-            if (ifs.elseBlock != null) {
-                print("else ");
-                this.visit(ifs.elseBlock);
-            }
-        }
-        else if (v instanceof Stmt.LocalDefStmt e) {
-            this.visit(e.fieldDef);
-        }
-        else if (v instanceof Stmt.WhileStmt whiles) {
-            print("while (");
-            this.visit(whiles.condition);
-            print(") ");
-            this.visit(whiles.block);
-        }
-        else if (v instanceof Stmt.ForStmt fors) {
-            print("for (");
-            if (fors.init != null) {
-                if (fors.init instanceof Stmt.LocalDefStmt varDef) {
-                    printLocalFieldDefAsExpr(varDef.fieldDef);
+        switch (v.astKind()) {
+            case Block -> {
+                AstNode.Block bs = (AstNode.Block)v;
+                print("{").newLine();
+                indent();
+                bs.walkChildren(this);
+                unindent();
+                print("}").newLine();
+            }
+            case IfStmt -> {
+                Stmt.IfStmt ifs = (Stmt.IfStmt)v;
+                print("if (");
+                this.visit(ifs.condition);
+                print(") ");
+                this.visit(ifs.block);
+                if (ifs.elseBlock != null) {
+                    print("else ");
+                    this.visit(ifs.elseBlock);
                 }
-                else if (fors.init instanceof Stmt.ExprStmt s) {
-                    this.visit(s.expr);
+            }
+            case LocalDefStmt -> {
+                Stmt.LocalDefStmt e = (Stmt.LocalDefStmt)v;
+                this.visit(e.fieldDef);
+            }
+            case WhileStmt -> {
+                Stmt.WhileStmt whiles = (Stmt.WhileStmt)v;
+                print("while (");
+                this.visit(whiles.condition);
+                print(") ");
+                this.visit(whiles.block);
+            }
+            case ForStmt -> {
+                Stmt.ForStmt fors = (Stmt.ForStmt)v;
+                print("for (");
+                if (fors.init != null) {
+                    if (fors.init instanceof Stmt.LocalDefStmt varDef) {
+                        printLocalFieldDefAsExpr(varDef.fieldDef);
+                    }
+                    else if (fors.init instanceof Stmt.ExprStmt s) {
+                        this.visit(s.expr);
+                    }
+                    else {
+                        err("Unsupport for init stmt", fors.init.loc());
+                    }
                 }
-                else {
-                    err("Unsupport for init stmt", fors.init.loc);
+                print("; ");
+                
+                if (fors.condition != null) {
+                    this.visit(fors.condition);
                 }
-            }
-            print("; ");
-            
-            if (fors.condition != null) {
-                this.visit(fors.condition);
-            }
-            print("; ");
-            
-            if (fors.update != null) {
-                this.visit(fors.update);
-            }
-            print(") ");
-            this.visit(fors.block);
-        }
-        else if (v instanceof Stmt.SwitchStmt switchs) {
-            print("switch (");
-            this.visit(switchs.condition);
-            print(") {").newLine();
-            
-            this.indent();
-            
-            for (Stmt.CaseBlock cb : switchs.cases) {
-                this.unindent();
-                print("case ");
-                this.visit(cb.caseExpr);
-                print(":").newLine();
+                print("; ");
+                
+                if (fors.update != null) {
+                    this.visit(fors.update);
+                }
+                print(") ");
+                this.visit(fors.block);
+            }
+            case SwitchStmt -> {
+                Stmt.SwitchStmt switchs = (Stmt.SwitchStmt)v;
+                print("switch (");
+                this.visit(switchs.condition);
+                print(") {").newLine();
+                
                 this.indent();
                 
-                this.visit(cb.block);
+                for (Stmt.CaseBlock cb : switchs.cases) {
+                    this.unindent();
+                    print("case ");
+                    this.visit(cb.caseExpr);
+                    print(":").newLine();
+                    this.indent();
+                    
+                    this.visit(cb.block);
+                    
+                    if (cb.fallthrough) {
+                        print("fallthrough;").newLine();
+                    }
+                }
                 
-                if (cb.fallthrough) {
-                    print("fallthrough;").newLine();
+                if (switchs.defaultBlock != null) {
+                    this.unindent();
+                    print("default:").newLine();
+                    this.indent();
+                    this.visit(switchs.defaultBlock);
                 }
-            }
-            
-            if (switchs.defaultBlock != null) {
+     
                 this.unindent();
-                print("default:").newLine();
-                this.indent();
-                this.visit(switchs.defaultBlock);
+                print("}").newLine();
             }
- 
-            this.unindent();
-            print("}").newLine();
-        }
-        else if (v instanceof Stmt.ExprStmt exprs) {
-            this.visit(exprs.expr);
-            print(";").newLine();
-        }
-        else if (v instanceof Stmt.JumpStmt jumps) {
-            print(jumps.opToken.symbol).print(";").newLine();
-        }
-        else if (v instanceof Stmt.UnsafeBlock bs) {
-            print("unsafe ");
-            this.visit(bs.block);
-        }
-        else if (v instanceof Stmt.ReturnStmt rets) {
-            if (rets.expr != null) {
-                print("return ");
-                this.visit(rets.expr);
+            case ExprStmt -> {
+                Stmt.ExprStmt exprs = (Stmt.ExprStmt)v;
+                this.visit(exprs.expr);
                 print(";").newLine();
             }
-            else {
-                print("return;");
+            case JumpStmt -> {
+                Stmt.JumpStmt jumps = (Stmt.JumpStmt)v;
+                print(jumps.opToken.symbol).print(";").newLine();
+            }
+            case UnsafeBlock -> {
+                Stmt.UnsafeBlock bs = (Stmt.UnsafeBlock)v;
+                print("unsafe ");
+                this.visit(bs.block);
+            }
+            case ReturnStmt -> {
+                Stmt.ReturnStmt rets = (Stmt.ReturnStmt)v;
+                if (rets.expr != null) {
+                    print("return ");
+                    this.visit(rets.expr);
+                    print(";").newLine();
+                }
+                else {
+                    print("return;");
+                }
+            }
+            default -> {
+                err("Unkown stmt:"+v, v.loc());
             }
-        }
-        else {
-            err("Unkown stmt:"+v, v.loc);
         }
     }
 
@@ -597,86 +609,101 @@ public class ScLibGenerator extends BaseGenerator {
             print("(");
         }
         
-        if (v instanceof Expr.IdExpr e) {
-            this.printIdExpr(e);
-        }
-        else if (v instanceof Expr.AccessExpr e) {
-            this.visit(e.target);
-            print(".");
-            print(e.name);
-        }
-        else if (v instanceof Expr.LiteralExpr e) {
-            printLiteral(e);
-        }
-        else if (v instanceof Expr.BinaryExpr e) {
-            this.visit(e.lhs);
-            print(" ");
-            print(e.opToken.symbol);
-            print(" ");
-            this.visit(e.rhs);
-        }
-        else if (v instanceof Expr.CallExpr e) {
-            this.visit(e.target);
-            print("(");
-            if (e.args != null) {
+        switch (v.astKind()) {
+            case IdExpr -> {
+                Expr.IdExpr e = (Expr.IdExpr)v;
+                this.printIdExpr(e);
+            }
+            case AccessExpr -> {
+                Expr.AccessExpr e = (Expr.AccessExpr)v;
+                this.visit(e.target);
+                print(".");
+                print(e.name);
+            }
+            case LiteralExpr -> {
+                Expr.LiteralExpr e = (Expr.LiteralExpr)v;
+                printLiteral(e);
+            }
+            case BinaryExpr -> {
+                Expr.BinaryExpr e = (Expr.BinaryExpr)v;
+                this.visit(e.lhs);
+                print(" ");
+                print(e.opToken.symbol);
+                print(" ");
+                this.visit(e.rhs);
+            }
+            case CallExpr -> {
+                Expr.CallExpr e = (Expr.CallExpr)v;
+                this.visit(e.target);
+                print("(");
+                if (e.args != null) {
+                    int i = 0;
+                    for (Expr.CallArg t : e.args) {
+                        if (i > 0) print(", ");
+                        this.visit(t.argExpr);
+                        ++i;
+                    }
+                }
+                print(")");
+            }
+            case UnaryExpr -> {
+                Expr.UnaryExpr e = (Expr.UnaryExpr)v;
+                print(e.opToken.symbol);
+                if (e.opToken.keyword) {
+                    print(" ");
+                }
+                this.visit(e.operand);
+            }
+            case TypeExpr -> {
+                Expr.TypeExpr e = (Expr.TypeExpr)v;
+                this.printType(e.type);
+            }
+            case IndexExpr -> {
+                Expr.IndexExpr e = (Expr.IndexExpr)v;
+                this.visit(e.target);
+                print("[");
+                this.visit(e.index);
+                print("]");
+            }
+            case GenericInstance -> {
+                Expr.GenericInstance e = (Expr.GenericInstance)v;
+                this.visit(e.target);
+                print("$<");
                 int i = 0;
-                for (Expr.CallArg t : e.args) {
+                for (Type t : e.genericArgs) {
                     if (i > 0) print(", ");
-                    this.visit(t.argExpr);
+                    this.printType(t);
                     ++i;
                 }
+                print(" >");
             }
-            print(")");
-        }
-        else if (v instanceof Expr.UnaryExpr e) {
-            print(e.opToken.symbol);
-            if (e.opToken.keyword) {
-                print(" ");
+            case IfExpr -> {
+                Expr.IfExpr e = (Expr.IfExpr)v;
+                this.visit(e.condition);
+                print("?");
+                this.visit(e.trueExpr);
+                print(":");
+                this.visit(e.falseExpr);
             }
-            this.visit(e.operand);
-        }
-        else if (v instanceof Expr.TypeExpr e) {
-            this.printType(e.type);
-        }
-        else if (v instanceof Expr.IndexExpr e) {
-            this.visit(e.target);
-            print("[");
-            this.visit(e.index);
-            print("]");
-        }
-        else if (v instanceof Expr.GenericInstance e) {
-            this.visit(e.target);
-            print("$<");
-            int i = 0;
-            for (Type t : e.genericArgs) {
-                if (i > 0) print(", ");
-                this.printType(t);
-                ++i;
+            case WithBlockExpr -> {
+                Expr.WithBlockExpr e = (Expr.WithBlockExpr)v;
+                printItBlockExpr(e);
+            }
+            case ArrayBlockExpr -> {
+                Expr.ArrayBlockExpr e = (Expr.ArrayBlockExpr)v;
+                printArrayBlockExpr(e);
+            }
+            case ClosureExpr -> {
+                ClosureExpr e = (ClosureExpr)v;
+                printClosureExpr(e);
             }
-            print(" >");
-        }
-        else if (v instanceof Expr.IfExpr e) {
-            this.visit(e.condition);
-            print("?");
-            this.visit(e.trueExpr);
-            print(":");
-            this.visit(e.falseExpr);
-        }
-        else if (v instanceof Expr.WithBlockExpr e) {
-            printItBlockExpr(e);
-        }
-        else if (v instanceof Expr.ArrayBlockExpr e) {
-            printArrayBlockExpr(e);
-        }
-        else if (v instanceof ClosureExpr e) {
-            printClosureExpr(e);
-        }
 //        else if (v instanceof Expr.NonNullableExpr e) {
 //            this.visit(e.operand);
 //            print("!");
 //        }
-        else {
-            err("Unkown expr:"+v, v.loc);
+            default -> {
+                err("Unkown expr:"+v, v.loc());
+            }
         }
         
         if (parentheses) {
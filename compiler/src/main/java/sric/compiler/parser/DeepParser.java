@@ -22,10 +22,72 @@ import static sric.compiler.ast.Token.TokenKind.*;
  * @author yangjiandong
  */
 public class DeepParser extends Parser {
+    
+    /**
+     * Only record the tokens of function bodies, they are parsed on first getCode().
+     */
+    public boolean lazyBody = false;
 
-    public DeepParser(CompilerLog log, String code, FileUnit unit) {
+    public DeepParser(CompilerLog log, CharSequence code, FileUnit unit) {
         super(log, code, unit);
     }
+    
+    DeepParser(CompilerLog log, CharSequence code, FileUnit unit, Loc start) {
+        super(log, code, unit, start);
+    }
+    
+    private DeepParser(CompilerLog log, TokenBuffer tokens, FileUnit unit, int pos) {
+        super(log, tokens, unit, pos);
+    }
+    
+    /**
+     * parse a function body from the source slice that starts at the given location,
+     * null if the slice is not one block
+     */
+    public static Block parseBody(CompilerLog log, CharSequence code, FileUnit unit, Loc start) {
+        DeepParser parser = new DeepParser(log, code, unit, start);
+        if (parser.curt != TokenKind.lbrace) {
+            return null;
+        }
+        Block block = parser.block();
+        if (parser.curt != TokenKind.eof) {
+            return null;
+        }
+        return block;
+    }
+    
+    /**
+     * function body of the token range in the unit file
+     */
+    private static class LazyBody extends FuncDef.LazyCode {
+        private final CompilerLog log;
+        private final TokenBuffer tokens;
+        private final FileUnit unit;
+        private final int pos;
+        
+        LazyBody(CompilerLog log, TokenBuffer tokens, FileUnit unit, int pos) {
+            this.log = log;
+            this.tokens = tokens;
+            this.unit = unit;
+            this.pos = pos;
+        }
+
+        @Override
+        protected Block parse() {
+            return new DeepParser(log, tokens, unit, pos).block();
+        }
+    }
+    
+    @Override
+    void funcBody(FuncDef method) {
+        if (!lazyBody) {
+            super.funcBody(method);
+            return;
+        }
+        method.setLazyCode(new LazyBody(log, tokens, unit, pos));
+        //skip to the matching brace
+        super.block();
+    }
 
 //////////////////////////////////////////////////////////////////////////
 // Block
@@ -37,7 +99,7 @@ public class DeepParser extends Parser {
     @Override
     Block block() {
         Block block = new Block();
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.lbrace);
         while (curt != TokenKind.rbrace && curt != TokenKind.eof) {
             block.stmts.add(stmt());
@@ -60,7 +122,7 @@ public class DeepParser extends Parser {
         
         Block block = new Block();
         block.stmts.add(st);
-        endLoc(block, st.loc);
+        endLoc(block, st.loc());
         return block;
     }
 
@@ -147,7 +209,7 @@ public class DeepParser extends Parser {
     }
     
     private Expr makeItAdd(Expr targetExpr, Expr e) {
-        Loc loc = targetExpr.loc;
+        Loc loc = targetExpr.loc();
         CallExpr ce = new CallExpr();
         {
             AccessExpr target = new AccessExpr();
@@ -160,7 +222,7 @@ public class DeepParser extends Parser {
         }
         {
             CallArg arg = new CallArg(e);
-            endLoc(arg, e.loc);
+            endLoc(arg, e.loc());
             
             ce.args = new ArrayList<CallArg>();
             ce.args.add(arg);
@@ -171,9 +233,9 @@ public class DeepParser extends Parser {
     
     private Expr itAdd(Expr e)
     {
-      Loc loc = e.loc;
+      Loc loc = e.loc();
       Expr it = new IdExpr(TokenKind.dot.symbol);
-      it.loc = loc;
+      it.setLoc(loc);
 
       e = makeItAdd(it, e);
       
@@ -233,7 +295,7 @@ public class DeepParser extends Parser {
     }
     
     private UnsafeBlock unsafeStmt() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.unsafeKeyword);
 
         UnsafeBlock stmt = new UnsafeBlock();
@@ -248,14 +310,14 @@ public class DeepParser extends Parser {
      **   <if> = "if" "(" <expr> ")" <block> [ "else" <block> ]
      */
     private IfStmt ifStmt() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.ifKeyword);
         consume(TokenKind.lparen);
         Expr cond = expr();
         consume(TokenKind.rparen);
         Block trueBlock = stmtAsBlock();
         IfStmt stmt = new IfStmt();
-        stmt.loc = loc;
+        stmt.setLoc(loc);
         stmt.condition = cond;
         stmt.block = trueBlock;
         if (curt == TokenKind.elseKeyword) {
@@ -273,7 +335,7 @@ public class DeepParser extends Parser {
      */
     private ReturnStmt returnStmt() {
         ReturnStmt stmt = new ReturnStmt();
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.returnKeyword);
 
         if (curt != TokenKind.semicolon) {
@@ -289,10 +351,10 @@ public class DeepParser extends Parser {
      **   <throw> = "throw" <expr> <eos>
      */
     private ThrowStmt throwStmt() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.throwKeyword);
         ThrowStmt stmt = new ThrowStmt();
-        stmt.loc = loc;
+        stmt.setLoc(loc);
         stmt.expr = expr();
         endOfStmt();
         endLoc(stmt, loc);
@@ -304,13 +366,13 @@ public class DeepParser extends Parser {
      **   <while> = "while" "(" <expr> ")" <block>
      */
     private WhileStmt whileStmt() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.whileKeyword);
         consume(TokenKind.lparen);
         Expr cond = expr();
         consume(TokenKind.rparen);
         WhileStmt stmt = new WhileStmt();
-        stmt.loc = loc;
+        stmt.setLoc(loc);
         stmt.condition = cond;
         stmt.block = stmtAsBlock();
         endLoc(stmt, loc);
@@ -324,7 +386,7 @@ public class DeepParser extends Parser {
      */
     private ForStmt forStmt() {
         ForStmt stmt = new ForStmt();
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.forKeyword);
         consume(TokenKind.lparen);
 
@@ -356,8 +418,8 @@ public class DeepParser extends Parser {
      */
     private JumpStmt jumpStmt() {
         JumpStmt stmt = new JumpStmt();
-        Loc loc = cur.loc;
-        stmt.opToken = consume().kind;
+        Loc loc = curLoc();
+        stmt.opToken = consume();
         endOfStmt();
         endLoc(stmt, loc);
         return stmt;
@@ -372,7 +434,7 @@ public class DeepParser extends Parser {
      */
     private TryStmt tryStmt() {
         TryStmt stmt = new TryStmt();
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.tryKeyword);
         stmt.block = stmtAsBlock();
 //    if (curt != TokenKind.catchKeyword && curt != TokenKind.finallyKeyword);
@@ -390,7 +452,7 @@ public class DeepParser extends Parser {
 
     private Catch tryCatch() {
         Catch c = new Catch();
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.catchKeyword);
 
         if (curt == TokenKind.lparen) {
@@ -417,11 +479,11 @@ public class DeepParser extends Parser {
      **   <default> = "default" ":" <stmts>
      */
     private SwitchStmt switchStmt() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         consume(TokenKind.switchKeyword);
         consume(TokenKind.lparen);
         SwitchStmt stmt = new SwitchStmt();
-        stmt.loc = loc;
+        stmt.setLoc(loc);
         stmt.condition = expr();
         consume(TokenKind.rparen);
         consume(TokenKind.lbrace);
@@ -429,7 +491,7 @@ public class DeepParser extends Parser {
             if (curt == TokenKind.caseKeyword) {
                 consume();
                 CaseBlock c = new CaseBlock();
-                Loc loc2 = cur.loc;
+                Loc loc2 = curLoc();
                 c.caseExpr = expr();
                 consume(TokenKind.colon);
                 c.block = switchBlock();
@@ -460,7 +522,7 @@ public class DeepParser extends Parser {
 
     private Block switchBlock() {
         Block block = new Block();
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         while (curt != TokenKind.caseKeyword && curt != TokenKind.defaultKeyword &&
                 curt != TokenKind.rbrace /*end of switch*/ &&
                 curt != TokenKind.fallthroughKeyword && curt != TokenKind.eof) {
@@ -492,8 +554,8 @@ public class DeepParser extends Parser {
         Loc loc = curLoc();
         // this is tree if built to the right (others to the left)
         Expr expr = ifExpr();
-        if (cur.isAssign()) {
-            TokenKind tok = consume().kind;
+        if (Token.isAssign(curt)) {
+            TokenKind tok = consume();
             expr.inLeftSide = true;
             BinaryExpr e = new BinaryExpr(expr, tok, assignExpr());
             endLoc(e, loc);
@@ -519,7 +581,7 @@ public class DeepParser extends Parser {
             consume(TokenKind.colon);
             Expr falseExpr = condOrExpr();
             IfExpr ifExpr = new IfExpr();
-            ifExpr.loc = loc;
+            ifExpr.setLoc(loc);
             ifExpr.condition = condition;
             ifExpr.trueExpr = trueExpr;
             ifExpr.falseExpr = falseExpr;
@@ -530,7 +592,7 @@ public class DeepParser extends Parser {
 //            Expr lhs = expr;
 //            consume();
 //            Expr rhs = condOrExpr();
-//            BinaryExpr bexpr = new BinaryExpr(cur.loc, lhs, TokenKind.elvis, rhs);
+//            BinaryExpr bexpr = new BinaryExpr(cur.loc(), lhs, TokenKind.elvis, rhs);
 //            expr = bexpr;
 //        }
         return expr;
@@ -583,7 +645,7 @@ public class DeepParser extends Parser {
         Expr expr = relationalExpr();
         if (curt == TokenKind.eq || curt == TokenKind.notEq) {
             Expr lhs = expr;
-            TokenKind tok = consume().kind;
+            TokenKind tok = consume();
             Expr rhs = relationalExpr();
 
             BinaryExpr bexpr = new BinaryExpr(lhs, tok, rhs);
@@ -605,7 +667,7 @@ public class DeepParser extends Parser {
         
         if (curt == TokenKind.isKeyword
                 || curt == TokenKind.asKeyword) {
-            expr = new BinaryExpr(expr, consume().kind, typeExpr());
+            expr = new BinaryExpr(expr, consume(), typeExpr());
             endLoc(expr, loc);
         }
         else if (curt == TokenKind.lt || curt == TokenKind.ltEq
@@ -615,7 +677,7 @@ public class DeepParser extends Parser {
             
             //not >> or <<
             if (peekt != curt) {
-                expr = new BinaryExpr(expr, consume().kind, bitOrExpr());
+                expr = new BinaryExpr(expr, consume(), bitOrExpr());
                 endLoc(expr, loc);
             }
         }
@@ -671,13 +733,13 @@ public class DeepParser extends Parser {
     private Expr bitShiftExpr() {
         Loc loc = curLoc();
         Expr expr = addExpr();
-        if (curt == TokenKind.lt && !peek.whitespace && peekt == TokenKind.lt) {
+        if (curt == TokenKind.lt && !peekWhitespace() && peekt == TokenKind.lt) {
             consume();
             consume();
             expr = new BinaryExpr(expr, TokenKind.leftShift, addExpr());
             endLoc(expr, loc);
         }
-        if (curt == TokenKind.gt && !peek.whitespace && peekt == TokenKind.gt) {
+        if (curt == TokenKind.gt && !peekWhitespace() && peekt == TokenKind.gt) {
             consume();
             consume();
             expr = new BinaryExpr(expr, TokenKind.rightShift, addExpr());
@@ -694,7 +756,7 @@ public class DeepParser extends Parser {
         Loc loc = curLoc();
         Expr expr = multExpr();
         while (curt == TokenKind.plus || curt == TokenKind.minus) {
-            expr = new BinaryExpr(expr, consume().kind, multExpr());
+            expr = new BinaryExpr(expr, consume(), multExpr());
             endLoc(expr, loc);
         }
         return expr;
@@ -708,7 +770,7 @@ public class DeepParser extends Parser {
         Loc loc = curLoc();
         Expr expr = unaryExpr();
         while (curt == TokenKind.star || curt == TokenKind.slash || curt == TokenKind.percent) {
-            expr = new BinaryExpr(expr, consume().kind, unaryExpr());
+            expr = new BinaryExpr(expr, consume(), unaryExpr());
             endLoc(expr, loc);
         }
         return expr;
@@ -721,7 +783,7 @@ public class DeepParser extends Parser {
      **   <prefixExpr> = ("!" | "+" | "-" | "~" | "++" | "--" | "~" | "*" | "&" ) <termExpr>
      */
     private Expr unaryExpr() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         switch (curt) {
             case bang:
             case minus:
@@ -770,7 +832,7 @@ public class DeepParser extends Parser {
         }
 //        if (curt == TokenKind.bang) {
 //            consume();
-//            Loc loc = target.loc;
+//            Loc loc = target.loc();
 //            target = new NonNullableExpr(target);
 //            endLoc(target, loc);
 //        }
@@ -782,7 +844,7 @@ public class DeepParser extends Parser {
             target = chained;
 //            if (curt == TokenKind.bang) {
 //                consume();
-//                Loc loc = target.loc;
+//                Loc loc = target.loc();
 //                target = new NonNullableExpr(target);
 //                endLoc(target, loc);
 //            }
@@ -811,26 +873,26 @@ public class DeepParser extends Parser {
         }
         
         // target$<...>
-        if (curt == TokenKind.dollar && !peek.whitespace && peekt == TokenKind.lt) {
+        if (curt == TokenKind.dollar && !peekWhitespace() && peekt == TokenKind.lt) {
             GenericInstance gi = new GenericInstance();
             gi.target = target;
             gi.genericArgs = genericArgs();
-            endLoc(gi, target.loc);
+            endLoc(gi, target.loc());
             return gi;
         }
 
         // target[...]
-        if (cur.kind == TokenKind.lbracket && !cur.newline) {
+        if (curt == TokenKind.lbracket && !curNewline()) {
             return indexExpr(target);
         }
 
         // target(...)
-        if (cur.kind == TokenKind.lparen && !cur.newline) {
+        if (curt == TokenKind.lparen && !curNewline()) {
             return callExpr(target);
         }
         
         // target{...}
-        if (cur.kind == TokenKind.lbrace) {
+        if (curt == TokenKind.lbrace) {
             return initBlockExpr(target);
         }
 
@@ -843,8 +905,8 @@ public class DeepParser extends Parser {
      **   <accessExpr> = ("." | "->" | "~>") <id>
      */
     private Expr accessExpr(Expr target) {
-        Loc loc = target.loc;
-        TokenKind token = consume().kind;
+        Loc loc = target.loc();
+        TokenKind token = consume();
         String name = consumeId();
 
         // at this point we are parsing a single identifier, but
@@ -867,12 +929,12 @@ public class DeepParser extends Parser {
      **   <callOp> =  "(" <args> ")"
      */
     private CallExpr callExpr(Expr target) {
-        Loc loc = target.loc;
+        Loc loc = target.loc();
         
         consume(TokenKind.lparen);
         
         CallExpr call = new CallExpr();
-        call.loc = loc;
+        call.setLoc(loc);
         call.target = target;
         call.args = callArgs(TokenKind.rparen);
         
@@ -925,7 +987,7 @@ public class DeepParser extends Parser {
      **   <indexExpr> = "[" <expr> "]"
      */
     private Expr indexExpr(Expr target) {
-        Loc loc = target.loc;
+        Loc loc = target.loc();
         consume(TokenKind.lbracket);
 
         // otherwise this must be a standard single key index
@@ -933,7 +995,7 @@ public class DeepParser extends Parser {
         consume(TokenKind.rbracket);
         
         IndexExpr e = new IndexExpr();
-        e.loc = loc;
+        e.setLoc(loc);
         e.target = target;
         e.index = expr;
         endLoc(e, loc);
@@ -973,7 +1035,7 @@ public class DeepParser extends Parser {
     }
     
     private Expr sizeofExpr() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         //TokenKind tokt = curt;
         consume(TokenKind.sizeofKeyword);
         consume(TokenKind.lparen);
@@ -993,7 +1055,7 @@ public class DeepParser extends Parser {
         consume(TokenKind.offsetofKeyword);
         
         CallExpr call = new CallExpr();
-        call.loc = loc;
+        call.setLoc(loc);
         call.target = new IdExpr(TokenKind.offsetofKeyword.symbol);
         call.args = new ArrayList<CallArg>();
         consume(TokenKind.lparen);
@@ -1011,7 +1073,7 @@ public class DeepParser extends Parser {
      **   <literal> = "null" | "this" | "super" | <bool> | <int> | <float> | <str> | <array>
      */
     private Expr primaryExpr() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         Expr expr = null;
         switch (curt) {
             case lparen:
@@ -1021,13 +1083,13 @@ public class DeepParser extends Parser {
                 expr = idExpr();
                 break;
             case intLiteral:
-                expr = new LiteralExpr(consume().val);
+                expr = new LiteralExpr(consumeVal());
                 break;
             case floatLiteral:
-                expr = new LiteralExpr(consume().val);
+                expr = new LiteralExpr(consumeVal());
                 break;
             case strLiteral:
-                expr = new LiteralExpr(consume().val);
+                expr = new LiteralExpr(consumeVal());
                 break;
             case trueKeyword:
                 consume();
@@ -1045,7 +1107,7 @@ public class DeepParser extends Parser {
             case thisKeyword:
             //case itKeyword:
             {
-                TokenKind tok = consume().kind;
+                TokenKind tok = consume();
                 expr = new IdExpr(tok.symbol);
                 break;
             }
@@ -1101,10 +1163,10 @@ public class DeepParser extends Parser {
             return expr;
         }
 
-        if (cur.kind.keyword) {
-            err("Expected expression, not keyword '" + cur + "'");
+        if (curt.keyword) {
+            err("Expected expression, not keyword '" + curText() + "'");
         } else {
-            err("Expected expression, not '" + cur + "'");
+            err("Expected expression, not '" + curText() + "'");
         }
         
         return null;
@@ -1127,7 +1189,7 @@ public class DeepParser extends Parser {
 
         //consume(TokenKind.rbrace);
 
-        endLoc(expr, target.loc);
+        endLoc(expr, target.loc());
         return expr;
     }
     
@@ -1149,7 +1211,7 @@ public class DeepParser extends Parser {
 
         consume(TokenKind.rbrace);
 
-        endLoc(expr, type.loc);
+        endLoc(expr, type.loc());
         return expr;
     }
 
@@ -0,0 +1,77 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.parser;
+
+import java.lang.ref.WeakReference;
+import java.util.WeakHashMap;
+
+/**
+ * Canonical identifier strings of a compiler and the modules it imports, the same name in many
+ * files is one String, so a scope lookup of it is usually matched by identity.
+ * A name of the source is looked up by its chars in a lock free cache without making a substring,
+ * a cache slot may be replaced by another name on collision.
+ * The names are weakly held, a name that is not used by any AST, scope or cache slot is dropped,
+ * so a long running LSP compiler doesn't keep every name it has read.
+ *
+ * @author yangjiandong
+ */
+public class NameTable {
+    private static final int size = 1 << 14;
+    private final String[] slots = new String[size];
+    private final WeakHashMap<String, WeakReference<String>> names = new WeakHashMap<>();
+
+    /**
+     * the canonical name of buf[start, end)
+     */
+    public String intern(CharSequence buf, int start, int end) {
+        int len = end - start;
+        int h = 0;
+        for (int i = start; i < end; ++i) {
+            h = 31 * h + buf.charAt(i);
+        }
+        int index = (h ^ (h >>> 14)) & (size - 1);
+        String name = slots[index];
+        if (name != null && name.length() == len && name.hashCode() == h && regionMatches(buf, start, name)) {
+            return name;
+        }
+        name = intern(buf.subSequence(start, end).toString());
+        slots[index] = name;
+        return name;
+    }
+    
+    /**
+     * true if the name is at the start of buf
+     */
+    public static boolean regionMatches(CharSequence buf, int start, String name) {
+        int len = name.length();
+        if (start + len > buf.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; ++i) {
+            if (buf.charAt(start + i) != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * the canonical name equals to the name
+     */
+    public String intern(String name) {
+        if (name == null) {
+            return null;
+        }
+        synchronized (names) {
+            WeakReference<String> ref = names.get(name);
+            String old = ref == null ? null : ref.get();
+            if (old != null) {
+                return old;
+            }
+            names.put(name, new WeakReference<>(name));
+            return name;
+        }
+    }
+}
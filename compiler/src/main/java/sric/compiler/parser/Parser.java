@@ -14,6 +14,7 @@ import sric.compiler.ast.AstNode.*;
 import sric.compiler.ast.Token.TokenKind;
 import sric.compiler.CompilerLog.CompilerErr;
 import java.util.ArrayList;
+import java.util.BitSet;
 import sric.compiler.ast.*;
 import sric.compiler.ast.Expr.*;
 import static sric.compiler.ast.Token.TokenKind.*;
@@ -26,30 +27,71 @@ import static sric.compiler.ast.Token.TokenKind.*;
 public class Parser {
 
     FileUnit unit;    // compilation unit to generate
-    ArrayList<Token> tokens;       // tokens all read in
+    TokenBuffer tokens;       // tokens all read in
     protected int numTokens;           // number of tokens
     protected int pos;                 // offset into tokens for cur
-    protected Token cur;           // current token
+    protected int cur;             // index of current token
     protected TokenKind curt;             // current token type
-    protected Token peek;          // next token
+    protected int peek;            // index of next token
     protected TokenKind peekt;            // next token type
+    private BitSet bodyTokens = new BitSet();  // tokens of the function bodies
 //    protected boolean inFieldInit;        // are we currently in a field initializer
 //    protected Type curType;        // current TypeDef scope
 
     CompilerLog log;
     
-    public Parser(CompilerLog log, String code, FileUnit unit) {
+    public Parser(CompilerLog log, CharSequence code, FileUnit unit) {
         this.log = log;
         this.unit = unit;
-        Tokenizer toker = new Tokenizer(log, unit.file, code);
-        tokens = toker.tokenize();
+        Tokenizer toker = new Tokenizer(log, unit.source, code, unit.names);
+        tokens = toker.tokenizeBuffer();
         
         this.numTokens = tokens.size();
         reset(0);
     }
     
+    /**
+     * parse a piece of the unit file that starts at the given location
+     */
+    Parser(CompilerLog log, CharSequence code, FileUnit unit, Loc start) {
+        this.log = log;
+        this.unit = unit;
+        Tokenizer toker = new Tokenizer(log, unit.source, code, unit.names, start.line, start.col, start.offset);
+        tokens = toker.tokenizeBuffer();
+        
+        this.numTokens = tokens.size();
+        reset(0);
+    }
+    
+    /**
+     * parse the tokens of a unit file from the given token index
+     */
+    Parser(CompilerLog log, TokenBuffer tokens, FileUnit unit, int pos) {
+        this.log = log;
+        this.unit = unit;
+        this.tokens = tokens;
+        
+        this.numTokens = tokens.size();
+        reset(pos);
+    }
+    
     Loc curLoc() {
-        return cur.loc;
+        return tokens.loc(cur);
+    }
+    
+    //** is the current token on a new line
+    protected boolean curNewline() {
+        return tokens.newline(cur);
+    }
+    
+    //** is there whitespace before the next token
+    protected boolean peekWhitespace() {
+        return tokens.whitespace(peek);
+    }
+    
+    //** text of the current token for error messages
+    protected String curText() {
+        return tokens.toString(cur);
     }
 
     public void parse() {
@@ -70,6 +112,25 @@ public class Parser {
                 }
             }
         }
+        unit.interfaceHash = interfaceHash();
+    }
+    
+    /**
+     * hash of the tokens out of the function bodies,
+     * it's not changed by an edit in a body or in the comments
+     */
+    private long interfaceHash() {
+        long hash = 1;
+        for (int i = bodyTokens.nextClearBit(0); i < numTokens; i = bodyTokens.nextClearBit(i+1)) {
+            TokenKind kind = tokens.kind(i);
+            if (kind == TokenKind.docComment || kind == TokenKind.slComment || kind == TokenKind.mlComment) {
+                continue;
+            }
+            Object val = tokens.val(i);
+            hash = hash * 31 + kind.ordinal();
+            hash = hash * 31 + (val == null ? 0 : val.hashCode());
+        }
+        return hash;
     }
 
     private boolean recoverToDef() {
@@ -248,7 +309,7 @@ public class Parser {
 //////////////////////////////////////////////////////////////////////////
     
     private ArrayList<GenericParamDef> tryGenericParamDef() {
-        if (curt == TokenKind.dollar && !peek.whitespace && peekt == TokenKind.lt) {
+        if (curt == TokenKind.dollar && !peekWhitespace() && peekt == TokenKind.lt) {
             consume();
             consume();
             ArrayList<GenericParamDef> gparams = new ArrayList<GenericParamDef>();
@@ -434,7 +495,7 @@ public class Parser {
 //////////////////////////////////////////////////////////////////////////
     
     private int flags() {
-//    Loc loc = cur.loc;
+//    Loc loc = cur.loc();
         int flags = 0;
         boolean protection = false;
         for (boolean done = false; !done;) {
@@ -622,6 +683,10 @@ public class Parser {
         return null;
     }
 
+    void funcBody(FuncDef method) {
+        method.setCode(block());
+    }
+
     private boolean skipBracket() {
         return skipBracket(true);
     }
@@ -803,7 +868,7 @@ public class Parser {
      */
     private FuncDef methodDef(Loc loc, Comments doc, int flags, Type ret, String name) {
         FuncDef method = new FuncDef();
-        method.loc = loc;
+        method.setLoc(loc);
         method.comment = doc;
         method.flags = flags;
         method.prototype.returnType = ret;
@@ -818,7 +883,9 @@ public class Parser {
         // if no body expected
         //if (parent.isNative) flags = flags.or(FConst.Native)
         if (curt == TokenKind.lbrace) {
-            method.code = block();  // keep parsing
+            int begin = cur;
+            funcBody(method);  // keep parsing
+            bodyTokens.set(begin, cur);
         } else {
             endOfStmt();
         }
@@ -849,7 +916,7 @@ public class Parser {
             prototype.returnType = typeRef();
         }
         else {
-            prototype.returnType = Type.voidType(cur.loc);
+            prototype.returnType = Type.voidType(curLoc());
         }
     }
 
@@ -862,7 +929,7 @@ public class Parser {
         consume(TokenKind.colon);
         
         if (curt == TokenKind.dotDotDot) {
-            param.fieldType = Type.varArgType(cur.loc);
+            param.fieldType = Type.varArgType(curLoc());
             consume();
         }
         else {
@@ -991,7 +1058,7 @@ public class Parser {
      **   <simpleType> :=  <id> ["::" <id>]*
      */
     private Type simpleType() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         IdExpr id = idExpr();
 
         Type type = null;
@@ -1001,48 +1068,34 @@ public class Parser {
             Type ntype = null;
             switch (id.name) {
                 case "Int8":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 8;
+                    ntype = Type.intType(loc, 8, false);
                     break;
                 case "Int16":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 16;
+                    ntype = Type.intType(loc, 16, false);
                     break;
                 case "Int32":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 32;
+                    ntype = Type.intType(loc, 32, false);
                     break;
                 case "Int64":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 64;
+                    ntype = Type.intType(loc, 64, false);
                     break;
                 case "UInt8":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 8;
-                    ((Type.NumInfo)ntype.detail).isUnsigned = true;
+                    ntype = Type.intType(loc, 8, true);
                     break;
                 case "UInt16":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 16;
-                    ((Type.NumInfo)ntype.detail).isUnsigned = true;
+                    ntype = Type.intType(loc, 16, true);
                     break;
                 case "UInt32":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 32;
-                    ((Type.NumInfo)ntype.detail).isUnsigned = true;
+                    ntype = Type.intType(loc, 32, true);
                     break;
                 case "UInt64":
-                    ntype = Type.intType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 64;
-                    ((Type.NumInfo)ntype.detail).isUnsigned = true;
+                    ntype = Type.intType(loc, 64, true);
                     break;
                 case "Float32":
-                    ntype = Type.floatType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 32;
+                    ntype = Type.floatType(loc, 32);
                     break;
                 case "Float64":
-                    ntype = Type.floatType(loc);
-                    ((Type.NumInfo)ntype.detail).size = 64;
+                    ntype = Type.floatType(loc, 64);
                     break;
                 case "Int":
                     ntype = Type.intType(loc);
@@ -1061,7 +1114,7 @@ public class Parser {
         }
 
         //generic param
-        if (curt == TokenKind.dollar && !peek.whitespace && peekt == TokenKind.lt) {
+        if (curt == TokenKind.dollar && !peekWhitespace() && peekt == TokenKind.lt) {
             type.genericArgs = genericArgs();
         }
 
@@ -1071,7 +1124,7 @@ public class Parser {
     }
     
     protected ArrayList<Type> genericArgs() {
-        if (peek.whitespace) {
+        if (peekWhitespace()) {
             err("Expected $<");
         }
         consume(TokenKind.dollar);
@@ -1094,7 +1147,7 @@ public class Parser {
      **   <funcType> := "fun" "(" <args> ")" [<type>]
      */
     private Type funcType() {
-        Loc loc = cur.loc;
+        Loc loc = curLoc();
         
         consume(TokenKind.funKeyword);
         
@@ -1115,16 +1168,16 @@ public class Parser {
      *
      */
     private Comments doc() {
-        Loc loc0 = cur.loc;
+        Loc loc0 = curLoc();
         Comments comments = null;
         while (curt == TokenKind.docComment || curt == TokenKind.cmdComment) {
-            Loc loc = cur.loc;
+            Loc loc = curLoc();
             TokenKind kind = curt;
-            String lines = (String) consume().val;
+            String lines = consumeVal();
             Comment doc = new Comment(lines, kind);
             if (comments == null) {
                 comments = new Comments();
-                comments.loc = loc;
+                comments.setLoc(loc);
             }
             comments.comments.add(doc);
             endLoc(doc, loc);
@@ -1140,7 +1193,7 @@ public class Parser {
 //////////////////////////////////////////////////////////////////////////
     
     CompilerErr err(String msg) {
-        return log.err(msg, cur.loc);
+        return log.err(msg, curLoc());
     }
 
 //////////////////////////////////////////////////////////////////////////
@@ -1152,11 +1205,11 @@ public class Parser {
      */
     protected String consumeId() {
         if (curt != TokenKind.identifier) {
-            err("Expected identifier, not '"+cur+"'");
+            err("Expected identifier, not '"+curText()+"'");
             //consume();
             return "";
         }
-        return (String) consume().val;
+        return consumeVal();
     }
 
     /**
@@ -1166,7 +1219,7 @@ public class Parser {
      */
     private void verify(TokenKind kind) {
         if (!curt.equals(kind)) {
-            err("Expected '"+kind.symbol+"', not '"+cur+"'");
+            err("Expected '"+kind.symbol+"', not '"+curText()+"'");
         }
     }
 
@@ -1175,43 +1228,45 @@ public class Parser {
      * non-null then verify first
   *
      */
-    protected Token consume() {
+    protected TokenKind consume() {
         return consume(null);
     }
 
-    protected Token consume(TokenKind kind) {
+    protected TokenKind consume(TokenKind kind) {
         // verify if not null
         if (kind != null) {
             verify(kind);
         }
 
         // save the current we are about to consume for return
-        Token result = cur;
+        TokenKind result = curt;
 
         // get the next token from the buffer, if pos is past numTokens,
         // then always use the last token which will be eof
-        Token next;
+        int next;
         pos++;
         if (pos + 1 < numTokens) {
-            next = tokens.get(pos + 1);  // next peek is cur+1
+            next = pos + 1;  // next peek is cur+1
         } else {
-            next = tokens.get(numTokens - 1);
+            next = numTokens - 1;
         }
 
         this.cur = peek;
         this.peek = next;
-        this.curt = cur.kind;
-        this.peekt = peek.kind;
+        this.curt = peekt;
+        this.peekt = tokens.kind(next);
 
         return result;
     }
-
-    //** next next token
-    protected Token peekpeek() {
-        if (pos + 2 < numTokens) {
-            return tokens.get(pos + 2);
-        }
-        return tokens.get(numTokens - 1);
+    
+    /**
+     ** Consume the current token and return its value.
+     */
+    protected <T> T consumeVal() {
+        @SuppressWarnings("unchecked")
+        T val = (T) tokens.val(cur);
+        consume();
+        return val;
     }
 
     /**
@@ -1219,10 +1274,10 @@ public class Parser {
      *
      */
     protected void endLoc(AstNode node, Loc loc) {
-        node.loc = loc;
+        node.setLoc(loc);
         
-        Token preToken = (pos > 0 && pos<numTokens) ? tokens.get(pos - 1) : cur;
-        int end = preToken.loc.offset + preToken.len;
+        int preToken = (pos > 0 && pos<numTokens) ? pos - 1 : cur;
+        int end = tokens.offset(preToken) + tokens.len(preToken);
         int begin = loc.offset;
         int len = end - begin;
         
@@ -1242,7 +1297,7 @@ public class Parser {
             return;
         }
         
-        String errMsg = "Expected end of statement with ';' not '" + cur + "'";
+        String errMsg = "Expected end of statement with ';' not '" + curText() + "'";
         err(errMsg);
     }
 
@@ -1252,13 +1307,13 @@ public class Parser {
      */
     protected void reset(int pos) {
         this.pos = pos;
-        this.cur = tokens.get(pos);
+        this.cur = pos;
         if (pos + 1 < numTokens) {
-            this.peek = tokens.get(pos + 1);
+            this.peek = pos + 1;
         } else {
-            this.peek = tokens.get(pos);
+            this.peek = pos;
         }
-        this.curt = cur.kind;
-        this.peekt = peek.kind;
+        this.curt = tokens.kind(cur);
+        this.peekt = tokens.kind(peek);
     }
 }
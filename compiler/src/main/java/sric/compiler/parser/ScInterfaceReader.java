@@ -0,0 +1,531 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import sric.compiler.CompilerLog;
+import sric.compiler.ast.AstNode;
+import sric.compiler.ast.AstNode.*;
+import sric.compiler.ast.Buildin;
+import sric.compiler.ast.Expr;
+import sric.compiler.ast.Expr.IdExpr;
+import sric.compiler.ast.Loc;
+import sric.compiler.ast.SourceFile;
+import sric.compiler.ast.Token.TokenKind;
+import sric.compiler.ast.Type;
+
+/**
+ * Read the binary module interface (.sci) written by ScInterfaceGenerator.
+ * It gives the same AST as parsing the .sch stub of the module.
+ * The top level definitions are listed in an index and can be decoded one by one.
+ *
+ * @author yangjiandong
+ */
+public class ScInterfaceReader {
+    public static final int magic = 0x53524349; //SRCI
+    public static final int formatVersion = 3;
+
+    public static final int defAlias = 0;
+    public static final int defType = 1;
+    public static final int defField = 2;
+    public static final int defFunc = 3;
+
+    public static final int typeNull = 0;
+    public static final int typeSimple = 1;
+    public static final int typeNum = 2;
+    public static final int typePointer = 3;
+    public static final int typeArray = 4;
+    public static final int typeFunc = 5;
+    public static final int typeBuildin = 6;
+
+    /**
+     * index entry of a top level definition
+     */
+    public static class Entry {
+        public int kind;
+        public String name;
+        public Loc loc;
+        private int position;
+    }
+
+    private final FileUnit unit;
+    private final SourceFile source;
+    private final CompilerLog log;
+    private final NameTable nameTable;
+    //the mapped interface file, deleted when a body in it is broken
+    private Path file = null;
+    private ByteBuffer buf;
+    private String[] strings;
+    //interned strings[i], made on first readName
+    private String[] names;
+    private int[] lineStarts;
+    private int recordsStart;
+    public ArrayList<Entry> entries;
+    //the hashes of the .meta the interface must be written with, not checked if null
+    public String stamp = null;
+
+    public ScInterfaceReader(FileUnit unit, CompilerLog log) {
+        this.unit = unit;
+        this.source = unit.source;
+        this.log = log;
+        this.nameTable = unit.names != null ? unit.names : new NameTable();
+    }
+
+    /**
+     * decode the whole interface file into the unit
+     */
+    public void read(Path file) throws IOException {
+        open(file);
+        for (Entry entry : entries) {
+            unit.addDef(readDef(entry));
+        }
+    }
+
+    /**
+     * Map the interface file and read the imports and the symbol index.
+     * throws IOException if the file is broken or written by another compiler version or build
+     */
+    public void open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            open(mapped);
+        }
+        this.file = file;
+    }
+
+    public void open(ByteBuffer buf) throws IOException {
+        this.buf = buf;
+        try {
+            if (buf.getInt() != magic) {
+                throw new IOException("Not a module interface");
+            }
+            if (readVarInt() != formatVersion) {
+                throw new IOException("Unsupported interface format");
+            }
+            if (!sric.compiler.Compiler.version.equals(readUtf())) {
+                throw new IOException("Interface written by other compiler version");
+            }
+            String fileStamp = readUtf();
+            if (stamp != null && !stamp.equals(fileStamp)) {
+                throw new IOException("Interface written by other build");
+            }
+
+            strings = new String[readVarInt()];
+            names = new String[strings.length];
+            for (int i = 0; i < strings.length; ++i) {
+                strings[i] = readUtf();
+            }
+            lineStarts = new int[readVarInt() + 1];
+            for (int i = 1; i < lineStarts.length; ++i) {
+                lineStarts[i] = lineStarts[i - 1] + readVarInt();
+            }
+            //the lines of the node locations
+            source.setLineStarts(lineStarts);
+
+            int n = readVarInt();
+            for (int i = 0; i < n; ++i) {
+                Import u = new Import();
+                u.id = readIdExpr();
+                u.star = readBool();
+                readLoc(u);
+                unit.imports.add(u);
+            }
+
+            n = readVarInt();
+            entries = new ArrayList<Entry>(n);
+            for (int i = 0; i < n; ++i) {
+                Entry entry = new Entry();
+                entry.kind = readVarInt();
+                entry.name = readName();
+                entry.loc = readLoc();
+                entry.position = readVarInt();
+                entries.add(entry);
+            }
+            recordsStart = buf.position();
+        }
+        catch (RuntimeException e) {
+            throw new IOException("Broken module interface", e);
+        }
+    }
+
+    /**
+     * decode the definition of the index entry, the definition is not added to the unit
+     */
+    public TopLevelDef readDef(Entry entry) throws IOException {
+        try {
+            buf.position(recordsStart + entry.position);
+            switch (entry.kind) {
+                case defAlias: {
+                    TypeAlias u = new TypeAlias();
+                    u.name = readName();
+                    u.flags = readVarInt();
+                    u.comment = readComments();
+                    u.type = readType();
+                    readLoc(u);
+                    return u;
+                }
+                case defType:
+                    return readTypeDef();
+                case defField:
+                    return readField();
+                case defFunc:
+                    return readFunc();
+                default:
+                    throw new IOException("Unknown definition kind:"+entry.kind);
+            }
+        }
+        catch (RuntimeException e) {
+            throw new IOException("Broken module interface", e);
+        }
+    }
+
+    private TypeDef readTypeDef() throws IOException {
+        String name = readName();
+        int flags = readVarInt();
+        TypeDef.Kind kind = TypeDef.Kind.values()[readVarInt()];
+        TypeDef typeDef = new TypeDef(readComments(), flags, name);
+        typeDef.kind = kind;
+        typeDef.generiParamDefs = readGenericParams();
+        typeDef.inheritances = readTypes();
+        typeDef.enumBase = readType();
+        int n = readVarInt();
+        for (int i = 0; i < n; ++i) {
+            typeDef.addSlot(readField());
+        }
+        n = readVarInt();
+        for (int i = 0; i < n; ++i) {
+            typeDef.addSlot(readFunc());
+        }
+        readLoc(typeDef);
+        return typeDef;
+    }
+
+    private FieldDef readField() throws IOException {
+        String name = readName();
+        int flags = readVarInt();
+        FieldDef field = new FieldDef(readComments(), name);
+        field.flags = flags;
+        field.fieldType = readType();
+        field.initExpr = readSnippet();
+        field.unkonwInit = readBool();
+        field.isParamDef = readBool();
+        readLoc(field);
+        return field;
+    }
+
+    private FuncDef readFunc() throws IOException {
+        FuncDef func = new FuncDef();
+        func.name = readName();
+        func.flags = readVarInt();
+        func.comment = readComments();
+        func.generiParamDefs = readGenericParams();
+        readPrototype(func.prototype);
+        readBody(func);
+        readLoc(func);
+        return func;
+    }
+
+    private void readPrototype(FuncPrototype prototype) throws IOException {
+        prototype.returnType = readType();
+        int n = readVarInt();
+        if (n > 0) {
+            prototype.paramDefs = new ArrayList<FieldDef>(n - 1);
+            for (int i = 1; i < n; ++i) {
+                prototype.paramDefs.add(readField());
+            }
+        }
+        prototype.postFlags = readVarInt();
+    }
+
+    private ArrayList<GenericParamDef> readGenericParams() throws IOException {
+        int n = readVarInt();
+        if (n == 0) {
+            return null;
+        }
+        ArrayList<GenericParamDef> params = new ArrayList<GenericParamDef>(n - 1);
+        for (int i = 1; i < n; ++i) {
+            GenericParamDef param = new GenericParamDef();
+            param.name = readName();
+            param.bound = readType();
+            readLoc(param);
+            params.add(param);
+        }
+        return params;
+    }
+
+    private ArrayList<Type> readTypes() throws IOException {
+        int n = readVarInt();
+        if (n == 0) {
+            return null;
+        }
+        ArrayList<Type> types = new ArrayList<Type>(n - 1);
+        for (int i = 1; i < n; ++i) {
+            types.add(readType());
+        }
+        return types;
+    }
+
+    private Type readType() throws IOException {
+        int tag = readVarInt();
+        Type type;
+        switch (tag) {
+            case typeNull:
+                return null;
+            case typeNum: {
+                String name = readStr();
+                int size = readVarInt();
+                boolean isUnsigned = readBool();
+                ArrayList<Type> genericArgs = readTypes();
+                Loc loc = readLoc();
+                type = name.equals("Float") ? Type.floatType(loc, size) : Type.intType(loc, size, isUnsigned);
+                type.genericArgs = genericArgs;
+                break;
+            }
+            case typePointer: {
+                Type.PointerAttr attr = Type.PointerAttr.values()[readVarInt()];
+                boolean isNullable = readBool();
+                Type elemType = readType();
+                type = Type.pointerType(readLoc(), elemType, attr, isNullable);
+                break;
+            }
+            case typeArray: {
+                Expr size = readSnippet();
+                Type elemType = readType();
+                type = Type.arrayType(readLoc(), elemType, size);
+                break;
+            }
+            case typeFunc: {
+                FuncPrototype prototype = new FuncPrototype();
+                readPrototype(prototype);
+                type = Type.funcType(readLoc(), prototype);
+                break;
+            }
+            case typeBuildin: {
+                String name = readStr();
+                Loc loc = readLoc();
+                if (name.equals(Buildin.varargTypeName)) {
+                    type = Type.varArgType(loc);
+                }
+                else if (name.equals(Buildin.defaultGenericParamTypeName)) {
+                    type = Type.defaultGenericParamType(loc);
+                }
+                else if (name.equals("Void")) {
+                    type = Type.voidType(loc);
+                }
+                else {
+                    throw new IOException("Unknown buildin type:"+name);
+                }
+                break;
+            }
+            case typeSimple: {
+                type = new Type(readIdExpr());
+                type.genericArgs = readTypes();
+                break;
+            }
+            default:
+                throw new IOException("Unknown type tag:"+tag);
+        }
+
+        type.isImmutable = readBool();
+        type.isReference = readBool();
+        readLoc(type);
+        return type;
+    }
+
+    private IdExpr readIdExpr() {
+        IdExpr id = new IdExpr(readName());
+        readLoc(id);
+        if (readBool()) {
+            id.namespace = readIdExpr();
+        }
+        return id;
+    }
+
+    private Comments readComments() {
+        int n = readVarInt();
+        if (n == 0) {
+            return null;
+        }
+        Comments comments = new Comments();
+        for (int i = 1; i < n; ++i) {
+            String content = readStr();
+            Comment comment = new Comment(content, readBool() ? TokenKind.docComment : TokenKind.cmdComment);
+            readLoc(comment);
+            comments.comments.add(comment);
+        }
+        readLoc(comments);
+        return comments;
+    }
+
+    /**
+     * parse the source slice of an expression
+     */
+    private Expr readSnippet() throws IOException {
+        String code = readStr();
+        if (code == null) {
+            return null;
+        }
+        Loc loc = readLoc();
+        CompilerLog parseLog = new CompilerLog();
+        DeepParser parser = new DeepParser(parseLog, code, unit, loc);
+        Expr node = parser.expr();
+        if (parser.curt != TokenKind.eof || parseLog.hasError()) {
+            throw new IOException("Invalid code in module interface:"+loc);
+        }
+        return node;
+    }
+
+    /**
+     * The function body is parsed on first getCode().
+     * A broken body is parsed from the .sch at the same location, and the interface is deleted
+     * so the next import parses the .sch.
+     */
+    private void readBody(FuncDef func) throws IOException {
+        String code = readStr();
+        if (code == null) {
+            return;
+        }
+        Loc loc = readLoc();
+        func.setLazyCode(new FuncDef.LazyCode() {
+            @Override
+            protected Block parse() {
+                if (loc == null) {
+                    return brokenBody(loc);
+                }
+                CompilerLog parseLog = new CompilerLog();
+                DeepParser parser = new DeepParser(parseLog, code, unit, loc);
+                Block block = parser.block();
+                if (parser.curt != TokenKind.eof || parseLog.hasError()) {
+                    block = parseStubBody(loc);
+                }
+                return block;
+            }
+        });
+    }
+
+    private Block parseStubBody(Loc loc) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            }
+            catch (IOException e) {
+                //the stub is parsed when the interface is missing
+            }
+        }
+
+        String stub;
+        try {
+            stub = Files.readString(Path.of(unit.file));
+        }
+        catch (IOException e) {
+            return brokenBody(loc);
+        }
+        if (loc.offset >= stub.length() || stub.charAt(loc.offset) != '{') {
+            return brokenBody(loc);
+        }
+        CompilerLog parseLog = new CompilerLog();
+        DeepParser parser = new DeepParser(parseLog, stub.subSequence(loc.offset, stub.length()), unit, loc);
+        Block block = parser.block();
+        if (parseLog.hasError()) {
+            synchronized (log) {
+                log.errors.addAll(parseLog.errors);
+            }
+            return brokenBody(loc);
+        }
+        return block;
+    }
+
+    //an empty body, the error is reported
+    private Block brokenBody(Loc loc) {
+        //bodies may be loaded by the body tasks
+        synchronized (log) {
+            log.err("Invalid code in module interface", loc);
+        }
+        Block block = new Block();
+        block.setLoc(loc);
+        return block;
+    }
+
+    private void readLoc(AstNode node) {
+        int offset = readVarInt() - 1;
+        node.pos = offset < 0 ? 0 : Loc.pack(source.id, offset);
+        node.len = readVarInt();
+    }
+
+    private Loc readLoc() {
+        int offset = readVarInt() - 1;
+        if (offset < 0) {
+            return null;
+        }
+        int line = Arrays.binarySearch(lineStarts, offset);
+        if (line < 0) {
+            line = -line - 2;
+        }
+        return new Loc(source, line + 1, offset - lineStarts[line] + 1, offset);
+    }
+
+    private boolean readBool() {
+        return buf.get() != 0;
+    }
+
+    private String readStr() {
+        int i = readVarInt();
+        if (i == 0) {
+            return null;
+        }
+        return strings[i - 1];
+    }
+
+    /**
+     * interned string for the names of definitions
+     */
+    private String readName() {
+        int i = readVarInt();
+        if (i == 0) {
+            return null;
+        }
+        String name = names[i - 1];
+        if (name == null) {
+            name = nameTable.intern(strings[i - 1]);
+            names[i - 1] = name;
+        }
+        return name;
+    }
+
+    private String readUtf() {
+        int len = readVarInt();
+        String s;
+        if (buf.hasArray()) {
+            s = new String(buf.array(), buf.arrayOffset() + buf.position(), len, StandardCharsets.UTF_8);
+            buf.position(buf.position() + len);
+        }
+        else {
+            byte[] bytes = new byte[len];
+            buf.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return s;
+    }
+
+    private int readVarInt() {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buf.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.parser;
+
+import java.util.Arrays;
+import sric.compiler.ast.Loc;
+import sric.compiler.ast.SourceFile;
+import sric.compiler.ast.Token;
+import sric.compiler.ast.Token.TokenKind;
+
+/**
+ * Tokens of a file in parallel arrays, one slot per token.
+ * The Loc and Token objects are only made when they are asked for.
+ *
+ * @author yangjiandong
+ */
+public class TokenBuffer {
+    private static final TokenKind[] kindValues = TokenKind.values();
+
+    private static final byte flagNewline = 1;
+    private static final byte flagWhitespace = 2;
+
+    final SourceFile source;
+    private int size = 0;
+    private short[] kinds;
+    private byte[] flags;
+    private int[] offsets;
+    private int[] lens;
+    private int[] lines;
+    private int[] cols;
+    //index in vals, -1 if no value
+    private int[] valIndex;
+    private Object[] vals;
+    private int valCount = 0;
+
+    public TokenBuffer(SourceFile source, int capacity) {
+        this.source = source;
+        capacity = Math.max(capacity, 16);
+        kinds = new short[capacity];
+        flags = new byte[capacity];
+        offsets = new int[capacity];
+        lens = new int[capacity];
+        lines = new int[capacity];
+        cols = new int[capacity];
+        valIndex = new int[capacity];
+        vals = new Object[capacity / 4 + 1];
+    }
+
+    void add(TokenKind kind, Object val, int line, int col, int offset, int len, boolean newline, boolean whitespace) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lens = Arrays.copyOf(lens, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+            cols = Arrays.copyOf(cols, capacity);
+            valIndex = Arrays.copyOf(valIndex, capacity);
+        }
+        kinds[size] = (short)kind.ordinal();
+        flags[size] = (byte)((newline ? flagNewline : 0) | (whitespace ? flagWhitespace : 0));
+        offsets[size] = offset;
+        lens[size] = len;
+        lines[size] = line;
+        cols[size] = col;
+        if (val == null) {
+            valIndex[size] = -1;
+        }
+        else {
+            if (valCount == vals.length) {
+                vals = Arrays.copyOf(vals, valCount * 2);
+            }
+            vals[valCount] = val;
+            valIndex[size] = valCount++;
+        }
+        ++size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TokenKind kind(int i) {
+        return kindValues[kinds[i]];
+    }
+
+    public Object val(int i) {
+        int index = valIndex[i];
+        return index < 0 ? null : vals[index];
+    }
+
+    /**
+     * offset in the file
+     */
+    public int offset(int i) {
+        return offsets[i];
+    }
+
+    public int len(int i) {
+        return lens[i];
+    }
+
+    public boolean newline(int i) {
+        return (flags[i] & flagNewline) != 0;
+    }
+
+    public boolean whitespace(int i) {
+        return (flags[i] & flagWhitespace) != 0;
+    }
+
+    public Loc loc(int i) {
+        return new Loc(source, lines[i], cols[i], offsets[i]);
+    }
+
+    public Token token(int i) {
+        Token token = new Token(kind(i), val(i), loc(i), lens[i]);
+        token.newline = newline(i);
+        token.whitespace = whitespace(i);
+        return token;
+    }
+
+    /**
+     * same as Token.toString
+     */
+    public String toString(int i) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(kind(i).toString());
+        Object val = val(i);
+        if (val != null) {
+            sb.append(":");
+            sb.append(val);
+        }
+        if (whitespace(i)) {
+            sb.append("[space]");
+        }
+        return sb.toString();
+    }
+}
@@ -11,9 +11,11 @@ package sric.compiler.parser;
 import sric.compiler.CompilerLog;
 import sric.compiler.ast.Token;
 import sric.compiler.ast.Loc;
+import sric.compiler.ast.SourceFile;
 import sric.compiler.CompilerLog.CompilerErr;
 import sric.compiler.ast.Token.TokenKind;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  *
@@ -21,10 +23,11 @@ import java.util.ArrayList;
  */
 public class Tokenizer {
 
-    private String buf;           // buffer
+    private CharSequence buf;     // buffer
     private int pos;           // index into buf for cur
     private boolean parseComment;
-    private String filename;      // source file name
+    private SourceFile source;    // source file of the locations
+    private final NameTable names; // interned identifiers
     private int line = 1;     // pos line number
     private int col = 1;      // pos column number
     private int curLine;       // line number of current token
@@ -32,18 +35,105 @@ public class Tokenizer {
     private int peek;          // next char
     private int lastLine;      // line number of last token returned from next()
     private int posOfLine;     // index into buf for start of current line
-    private ArrayList<Token> tokens; // token accumulator
+    private TokenBuffer tokens;   // token accumulator
+    private Object tokVal;        // value of the token found
     private boolean inStrLiteral; // return if inside a string literal token
     private boolean whitespace;   // was there whitespace before current token
+    private int baseOffset = 0;   // offset of buf in the whole file
+    private boolean wholeFile = true;  // buf is the whole file
     private CompilerLog log;
 
-    public Tokenizer(CompilerLog log, String filename, String buf) {
+    //ASCII char classes, other chars are classified by Character
+    private static final byte charIdStart = 1;
+    private static final byte charIdPart = 2;
+    private static final byte charDigit = 4;
+    private static final byte charSpace = 8;
+    private static final byte[] charClass = new byte[128];
+
+    //keyword kinds by a perfect hash of the length and the first, second and last chars,
+    //the seed is searched from a known good one when the keywords are changed
+    private static final int keywordBits = 9;
+    private static final int keywordMaxLen;
+    private static final int keywordSeed;
+    private static final TokenKind[] keywordTable = new TokenKind[1 << keywordBits];
+
+    static {
+        for (int c = 0; c < 128; ++c) {
+            if (Character.isAlphabetic(c) || c == '_') {
+                charClass[c] |= charIdStart | charIdPart;
+            }
+            if (Character.isDigit(c)) {
+                charClass[c] |= charIdPart | charDigit;
+            }
+            if (isWhitespace(c)) {
+                charClass[c] |= charSpace;
+            }
+        }
+
+        int maxLen = 0;
+        for (String keyword : Token.keywords.keySet()) {
+            maxLen = Math.max(maxLen, keyword.length());
+        }
+        keywordMaxLen = maxLen;
+
+        int seed = 121289;
+        while (!fillKeywordTable(seed)) {
+            seed += 2;
+        }
+        keywordSeed = seed;
+    }
+
+    private static boolean fillKeywordTable(int seed) {
+        Arrays.fill(keywordTable, null);
+        for (var entry : Token.keywords.entrySet()) {
+            String keyword = entry.getKey();
+            int h = keywordHash(keyword, 0, keyword.length(), seed);
+            if (keywordTable[h] != null) {
+                return false;
+            }
+            keywordTable[h] = entry.getValue();
+        }
+        return true;
+    }
+
+    private static int keywordHash(CharSequence s, int start, int len, int seed) {
+        int h = len;
+        h = 31 * h + s.charAt(start);
+        h = 31 * h + s.charAt(start + (len > 1 ? 1 : 0));
+        h = 31 * h + s.charAt(start + len - 1);
+        return (h * seed) >>> (32 - keywordBits);
+    }
+
+    /**
+     * Tokenize a slice of a file, the buf starts at the given position of the file
+     */
+    public Tokenizer(CompilerLog log, SourceFile source, CharSequence buf, NameTable names, int line, int col, int offset) {
+        this(log, source, buf, names);
+        this.line = line;
+        this.col = col;
+        this.baseOffset = offset;
+        this.wholeFile = false;
+    }
+
+    public Tokenizer(CompilerLog log, String filename, CharSequence buf) {
+        this(log, SourceFile.create(filename), buf);
+    }
+
+    public Tokenizer(CompilerLog log, SourceFile source, CharSequence buf) {
+        this(log, source, buf, null);
+    }
+
+    /**
+     * Tokenize the whole text of the source, the identifiers are interned by the names or a table of its own
+     */
+    public Tokenizer(CompilerLog log, SourceFile source, CharSequence buf, NameTable names) {
         this.log = log;
         this.buf = buf;
-        this.filename = filename;
+        this.source = source;
+        this.names = names != null ? names : new NameTable();
         this.parseComment = false;
 
-        this.tokens = new ArrayList<Token>();
+        this.tokens = new TokenBuffer(source, buf.length() / 4);
         this.inStrLiteral = false;
         this.posOfLine = 0;
         this.whitespace = false;
@@ -82,21 +172,31 @@ public class Tokenizer {
   *
      */
     public ArrayList<Token> tokenize() {
-        while (true) {
-            Token tok = next();
-            tokens.add(tok);
-            if (tok.kind.equals(TokenKind.eof)) {
-                break;
-            }
+        TokenBuffer buffer = tokenizeBuffer();
+        ArrayList<Token> list = new ArrayList<Token>(buffer.size());
+        for (int i = 0; i < buffer.size(); ++i) {
+            list.add(buffer.token(i));
+        }
+        return list;
+    }
+
+    /**
+     * Tokenize the entire input into a compact token buffer
+     */
+    public TokenBuffer tokenizeBuffer() {
+        while (next() != TokenKind.eof) {
+        }
+        if (wholeFile) {
+            tokens.source.setText(buf);
         }
         return tokens;
     }
 
     /**
-     ** Return the next token in the buffer.
+     ** Add the next token to the buffer and return its kind.
   *
      */
-    public Token next() {
+    private TokenKind next() {
         while (true) {
             // save current line
             curLine = this.line;
@@ -104,7 +204,8 @@ public class Tokenizer {
             int offset = this.pos;
 
             // find next token
-            Token tok;
+            TokenKind tok;
+            tokVal = null;
             try {
                 tok = find();
                 if (tok == null) {
@@ -118,10 +219,7 @@ public class Tokenizer {
             }
 
             // fill in token's location
-            tok.loc = new Loc(filename, curLine, col, offset);
-            tok.len = this.pos - offset;
-            tok.newline = lastLine < line;
-            tok.whitespace = whitespace;
+            tokens.add(tok, tokVal, curLine, col, baseOffset + offset, this.pos - offset, lastLine < line, whitespace);
 
             // save last line, clear whitespace flag
             lastLine = line;
@@ -131,6 +229,15 @@ public class Tokenizer {
         }
 //    return null; // TODO - shouldn't need this
     }
+
+    private TokenKind token(TokenKind kind) {
+        return kind;
+    }
+
+    private TokenKind token(TokenKind kind, Object val) {
+        tokVal = val;
+        return kind;
+    }
     
     public static boolean isWhitespace(int ch) {
         switch (ch) {
@@ -147,10 +254,12 @@ public class Tokenizer {
      ** Find the next token or return null.
   *
      */
-    private Token find() {
+    private TokenKind find() {
         // skip whitespace
-        if (isWhitespace(cur)) {
-            consume();
+        if (cur < 128 && (charClass[cur] & charSpace) != 0) {
+            do {
+                consume();
+            } while (cur < 128 && (charClass[cur] & charSpace) != 0);
             whitespace = true;
             return null;
         }
@@ -161,10 +270,10 @@ public class Tokenizer {
         }
 
         // number or .number (note that + and - are handled as unary operator)
-        if (Character.isDigit(cur)) {
+        if (isDigit(cur)) {
             return number();
         }
-        if (cur == '.' && Character.isDigit(peek)) {
+        if (cur == '.' && isDigit(peek)) {
             return number();
         }
 
@@ -199,34 +308,57 @@ public class Tokenizer {
      * or identifiers
   *
      */
-    private Token word() {
+    private TokenKind word() {
         // store starting position of word
         int start = pos;
 
-        // find end of word to compute length
-        while (Character.isAlphabetic(cur) || Character.isDigit(cur) || cur == '_' || cur > 256) {
-            consume();
+        // find end of word to compute length, a word has no line break
+        int end = pos + 1;
+        int len = buf.length();
+        while (end < len && isIdentifierPart(buf.charAt(end))) {
+            ++end;
         }
-
-        // create Str (gc note this string might now reference buf)
-        String word = buf.substring(start, pos);
+        col += end - pos;
+        pos = end;
+        cur = pos < len ? buf.charAt(pos) : 0;
+        peek = pos + 1 < len ? buf.charAt(pos + 1) : 0;
 
         //replace alias
 //    if (alias != null) {
 //      if (alias.containsKey(word)) word = alias[word];
 //    }
         // check keywords
-        TokenKind keyword = Token.keywords.get(word);
-        if (keyword != null) {
-            return new Token(keyword);
+        int wordLen = end - start;
+        if (wordLen <= keywordMaxLen) {
+            TokenKind keyword = keywordTable[keywordHash(buf, start, wordLen, keywordSeed)];
+            if (keyword != null && keyword.symbol.length() == wordLen && NameTable.regionMatches(buf, start, keyword.symbol)) {
+                return token(keyword);
+            }
         }
 
         // otherwise this is a normal identifier
-        return new Token(TokenKind.identifier, word);
+        return token(TokenKind.identifier, names.intern(buf, start, end));
     }
 
     private static boolean isIdentifierStart(int c) {
-        return Character.isAlphabetic(c) || c == '_' || c > 256;
+        if (c < 128) {
+            return (charClass[c] & charIdStart) != 0;
+        }
+        return Character.isAlphabetic(c) || c > 256;
+    }
+
+    private static boolean isIdentifierPart(int c) {
+        if (c < 128) {
+            return (charClass[c] & charIdPart) != 0;
+        }
+        return Character.isAlphabetic(c) || Character.isDigit(c) || c > 256;
+    }
+
+    private static boolean isDigit(int c) {
+        if (c < 128) {
+            return (charClass[c] & charDigit) != 0;
+        }
+        return Character.isDigit(c);
     }
 
 //////////////////////////////////////////////////////////////////////////
@@ -236,7 +368,7 @@ public class Tokenizer {
      ** Parse a number literal token: int, float, decimal, or duration.
   *
      */
-    private Token number() {
+    private TokenKind number() {
         // check for hex value
         if (cur == '0' && peek == 'x') {
             return hex();
@@ -248,15 +380,15 @@ public class Tokenizer {
         boolean exp = false;
 
         // whole part
-        while (Character.isDigit(cur) || cur == '_') {
+        while (isDigit(cur) || cur == '_') {
             consume();
         }
 
         // fraction part
-        if (cur == '.' && Character.isDigit(peek)) {
+        if (cur == '.' && isDigit(peek)) {
             dot = true;
             consume();
-            while (Character.isDigit(cur) || cur == '_') {
+            while (isDigit(cur) || cur == '_') {
                 consume();
             }
         }
@@ -268,17 +400,17 @@ public class Tokenizer {
             if (cur == '-' || cur == '+') {
                 consume();
             }
-            if (!Character.isDigit(cur)) {
+            if (!isDigit(cur)) {
                 err("Expected exponent digits");
                 consume();
             }
-            while (Character.isDigit(cur) || cur == '_') {
+            while (isDigit(cur) || cur == '_') {
                 consume();
             }
         }
 
         // string value of literal
-        String str = buf.substring(start, pos).replace("_", "");
+        String str = buf.subSequence(start, pos).toString().replace("_", "");
 
         // check for suffixes
         boolean floatSuffix = false;
@@ -290,15 +422,15 @@ public class Tokenizer {
             // float literal
             if (floatSuffix || dot || exp) {
                 double num = Double.parseDouble(str);
-                return new Token(TokenKind.floatLiteral, num);
+                return token(TokenKind.floatLiteral, num);
             }
 
             // int literal
             long num = Long.parseLong(str);
-            return new Token(TokenKind.intLiteral, num);
+            return token(TokenKind.intLiteral, num);
         } catch (Exception e) {
             err("Invalid numeric literal '"+str+"'");
-            return new Token(TokenKind.intLiteral, 0);
+            return token(TokenKind.intLiteral, 0);
         }
     }
 
@@ -351,7 +483,7 @@ public class Tokenizer {
      ** Process hex int/long literal starting with 0x
   *
      */
-    Token hex() {
+    TokenKind hex() {
         consume(); // 0
         consume(); // x
 
@@ -379,7 +511,7 @@ public class Tokenizer {
             consume();
         }
 
-        return new Token(TokenKind.intLiteral, Long.valueOf(val));
+        return token(TokenKind.intLiteral, Long.valueOf(val));
     }
 
 //////////////////////////////////////////////////////////////////////////
@@ -390,7 +522,7 @@ public class Tokenizer {
      * must already be consumed.
   *
      */
-    private Token quoted(boolean triple) {
+    private TokenKind quoted(boolean triple) {
         inStrLiteral = true;
         try {
             // opening quote
@@ -403,6 +535,24 @@ public class Tokenizer {
                 consume();
             }
 
+            // plain single line string
+            if (!triple) {
+                int end = pos;
+                int len = buf.length();
+                while (end < len) {
+                    int c = buf.charAt(end);
+                    if (c == '"' || c == '\\' || c == '\n' || c == 0) {
+                        break;
+                    }
+                    ++end;
+                }
+                if (end < len && buf.charAt(end) == '"') {
+                    String str = buf.subSequence(pos, end).toString();
+                    consumeTo(end + 1);
+                    return token(TokenKind.strLiteral, str);
+                }
+            }
+
             // init starting position
             int openLine = posOfLine;
             int openPos = pos;
@@ -439,7 +589,7 @@ public class Tokenizer {
                 }
             }
 
-            return new Token(TokenKind.strLiteral, s.toString());
+            return token(TokenKind.strLiteral, s.toString());
         } finally {
             inStrLiteral = false;
         }
@@ -509,7 +659,7 @@ public class Tokenizer {
      ** Parse a char literal token.
   *
      */
-    private Token ch() {
+    private TokenKind ch() {
         // consume opening quote
         consume();
 
@@ -528,7 +678,7 @@ public class Tokenizer {
         }
         consume();
 
-        return new Token(TokenKind.intLiteral, Long.valueOf(c));
+        return token(TokenKind.intLiteral, Long.valueOf(c));
     }
 
     /**
@@ -598,7 +748,7 @@ public class Tokenizer {
      ** Skip a single line // comment
   *
      */
-    private Token readCommentSL() {
+    private TokenKind readCommentSL() {
         int start = pos;
         int end = start;
         int line = this.line;
@@ -609,30 +759,29 @@ public class Tokenizer {
             isDoc = true;
             consume();
         }
-        StringBuilder s = new StringBuilder();
-        while (true) {
-            if (cur == '\r') {
-                consume();
-                continue;
-            }
-            if (cur == '\n') {
-                end = pos - 1;
-                consume();
-                break;
-            }
-            if (cur == 0) {
-                end = pos;
+        int len = buf.length();
+        end = pos;
+        while (end < len) {
+            int c = buf.charAt(end);
+            if (c == '\n' || c == 0) {
                 break;
             }
-            s.append((char) cur);
+            ++end;
+        }
+        String content = null;
+        if (isDoc || parseComment) {
+            content = buf.subSequence(pos, end).toString().replace("\r", "");
+        }
+        consumeTo(end);
+        if (cur == '\n') {
             consume();
         }
 
         if (isDoc) {
-            return new Token(TokenKind.cmdComment, s.toString());
+            return token(TokenKind.cmdComment, content);
         }
         if (parseComment) {
-            return new Token(TokenKind.slComment, s.toString());
+            return token(TokenKind.slComment, content);
         }
         return null;
     }
@@ -642,7 +791,7 @@ public class Tokenizer {
      * can be nested.
   *
      */
-    private Token readCommentML() {
+    private TokenKind readCommentML() {
         int start = pos;
         int end = start;
         int line = this.line;
@@ -652,6 +801,32 @@ public class Tokenizer {
         if (isDoc) {
             consume();
         }
+
+        // not nested comment
+        int len = buf.length();
+        for (end = pos; end < len; ++end) {
+            int c = buf.charAt(end);
+            int next = end + 1 < len ? buf.charAt(end + 1) : 0;
+            if (c == 0 || (c == '*' && next == '/') || (c == '/' && next == '*')) {
+                break;
+            }
+        }
+        if (end >= len || buf.charAt(end) != '/') {
+            String content = (isDoc || parseComment) ? buf.subSequence(pos, end).toString() : null;
+            consumeTo(end);
+            if (cur == '*') {
+                consume();
+                consume();
+            }
+            if (isDoc) {
+                return token(TokenKind.docComment, content);
+            }
+            if (parseComment) {
+                return token(TokenKind.mlComment, content);
+            }
+            return null;
+        }
+
         int depth = 1;
         StringBuilder s = new StringBuilder();
         while (true) {
@@ -677,10 +852,10 @@ public class Tokenizer {
             consume();
         }
         if (isDoc) {
-            return new Token(TokenKind.docComment, s.toString());
+            return token(TokenKind.docComment, s.toString());
         }
         if (parseComment) {
-            return new Token(TokenKind.mlComment, s.toString());
+            return token(TokenKind.mlComment, s.toString());
         }
         return null;
     }
@@ -692,7 +867,7 @@ public class Tokenizer {
      ** Parse a symbol token (typically into an operator).
   *
      */
-    private Token symbol() {
+    private TokenKind symbol() {
         int c = cur;
         consume();
         switch (c) {
@@ -704,169 +879,169 @@ public class Tokenizer {
                     consume();
                     if (cur == '=') {
                         consume();
-                        return new Token(TokenKind.notSame);
+                        return token(TokenKind.notSame);
                     }
-                    return new Token(TokenKind.notEq);
+                    return token(TokenKind.notEq);
                 }
-                return new Token(TokenKind.bang);
+                return token(TokenKind.bang);
             case '#':
-                return new Token(TokenKind.pound);
+                return token(TokenKind.pound);
             case '%':
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.assignPercent);
+                    return token(TokenKind.assignPercent);
                 }
-                return new Token(TokenKind.percent);
+                return token(TokenKind.percent);
             case '&':
                 if (cur == '&') {
                     consume();
-                    return new Token(TokenKind.doubleAmp);
+                    return token(TokenKind.doubleAmp);
                 }
-                return new Token(TokenKind.amp);
+                return token(TokenKind.amp);
             case '(':
-                return new Token(TokenKind.lparen);
+                return token(TokenKind.lparen);
             case ')':
-                return new Token(TokenKind.rparen);
+                return token(TokenKind.rparen);
             case '*':
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.assignStar);
+                    return token(TokenKind.assignStar);
                 }
-                return new Token(TokenKind.star);
+                return token(TokenKind.star);
             case '+':
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.assignPlus);
+                    return token(TokenKind.assignPlus);
                 }
                 if (cur == '+') {
                     consume();
-                    return new Token(TokenKind.increment);
+                    return token(TokenKind.increment);
                 }
-                return new Token(TokenKind.plus);
+                return token(TokenKind.plus);
             case ',':
-                return new Token(TokenKind.comma);
+                return token(TokenKind.comma);
             case '-':
                 if (cur == '>') {
                     consume();
-                    return new Token(TokenKind.arrow);
+                    return token(TokenKind.arrow);
                 }
                 if (cur == '-') {
                     consume();
-                    return new Token(TokenKind.decrement);
+                    return token(TokenKind.decrement);
                 }
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.assignMinus);
+                    return token(TokenKind.assignMinus);
                 }
-                return new Token(TokenKind.minus);
+                return token(TokenKind.minus);
             case '.':
                 if (cur == '.') {
                     consume();
                     if (cur == '.') {
                         consume();
-                        return new Token(TokenKind.dotDotDot);
+                        return token(TokenKind.dotDotDot);
                     }
                     if (cur == '<') {
                         consume();
-                        return new Token(TokenKind.dotDotLt);
+                        return token(TokenKind.dotDotLt);
                     }
-                    return new Token(TokenKind.dotDot);
+                    return token(TokenKind.dotDot);
                 }
-                return new Token(TokenKind.dot);
+                return token(TokenKind.dot);
             case '/':
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.assignSlash);
+                    return token(TokenKind.assignSlash);
                 }
-                return new Token(TokenKind.slash);
+                return token(TokenKind.slash);
             case ':':
                 if (cur == ':') {
                     consume();
-                    return new Token(TokenKind.doubleColon);
+                    return token(TokenKind.doubleColon);
                 }
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.defAssign);
+                    return token(TokenKind.defAssign);
                 }
-                return new Token(TokenKind.colon);
+                return token(TokenKind.colon);
             case ';':
-                return new Token(TokenKind.semicolon);
+                return token(TokenKind.semicolon);
             case '<':
                 if (cur == '=') {
                     consume();
                     if (cur == '>') {
                         consume();
-                        return new Token(TokenKind.cmp);
+                        return token(TokenKind.cmp);
                     }
-                    return new Token(TokenKind.ltEq);
+                    return token(TokenKind.ltEq);
                 }
-                return new Token(TokenKind.lt);
+                return token(TokenKind.lt);
             case '=':
                 if (cur == '=') {
                     consume();
                     if (cur == '=') {
                         consume();
-                        return new Token(TokenKind.same);
+                        return token(TokenKind.same);
                     }
-                    return new Token(TokenKind.eq);
+                    return token(TokenKind.eq);
                 }
-                return new Token(TokenKind.assign);
+                return token(TokenKind.assign);
             case '>':
                 if (cur == '=') {
                     consume();
-                    return new Token(TokenKind.gtEq);
+                    return token(TokenKind.gtEq);
                 }
-                return new Token(TokenKind.gt);
+                return token(TokenKind.gt);
             case '?':
                 if (cur == ':') {
                     consume();
-                    return new Token(TokenKind.elvis);
+                    return token(TokenKind.elvis);
                 }
                 if (cur == '.') {
                     consume();
-                    return new Token(TokenKind.safeDot);
+                    return token(TokenKind.safeDot);
                 }
                 if (cur == '-' && peek == '>') {
                     consume();
                     consume();
-                    return new Token(TokenKind.safeArrow);
+                    return token(TokenKind.safeArrow);
                 }
                 if (cur == '~' && peek == '>') {
                     consume();
                     consume();
-                    return new Token(TokenKind.safeTildeArrow);
+                    return token(TokenKind.safeTildeArrow);
                 }
-                return new Token(TokenKind.question);
+                return token(TokenKind.question);
             case '@':
-                return new Token(TokenKind.at);
+                return token(TokenKind.at);
             case '[':
-                return new Token(TokenKind.lbracket);
+                return token(TokenKind.lbracket);
             case ']':
-                return new Token(TokenKind.rbracket);
+                return token(TokenKind.rbracket);
             case '^':
-                return new Token(TokenKind.caret);
+                return token(TokenKind.caret);
             case '{':
-                return new Token(TokenKind.lbrace);
+                return token(TokenKind.lbrace);
             case '|':
                 if (cur == '|') {
                     consume();
-                    return new Token(TokenKind.doublePipe);
+                    return token(TokenKind.doublePipe);
                 }
-                return new Token(TokenKind.pipe);
+                return token(TokenKind.pipe);
             case '}':
-                return new Token(TokenKind.rbrace);
+                return token(TokenKind.rbrace);
             case '~':
                 if (cur == '>') {
                     consume();
-                    return new Token(TokenKind.tildeArrow);
+                    return token(TokenKind.tildeArrow);
                 }
-                return new Token(TokenKind.tilde);
+                return token(TokenKind.tilde);
             case '$':
-                return new Token(TokenKind.dollar);
+                return token(TokenKind.dollar);
         }
 
         if (c == 0) {
-            return new Token(TokenKind.eof);
+            return token(TokenKind.eof);
         }
 
         err("Unexpected symbol: " + String.valueOf((char) c));
@@ -881,7 +1056,7 @@ public class Tokenizer {
   *
      */
     CompilerErr err(String msg) {
-        Loc loc = new Loc(filename, line, col, pos);
+        Loc loc = new Loc(source, line, col, baseOffset + pos);
         return log.err(msg, loc);
     }
 
@@ -896,6 +1071,25 @@ public class Tokenizer {
         return pos + 2 < buf.length() ? buf.charAt(pos + 2) : 0;
     }
 
+    /**
+     * Consume the chars before end, same as calling consume() for each one
+     */
+    private void consumeTo(int end) {
+        int len = buf.length();
+        for (int i = pos; i < end; ++i) {
+            if (buf.charAt(i) == '\n') {
+                line++;
+                col = 1;
+                posOfLine = i + 1;
+            } else {
+                col++;
+            }
+        }
+        pos = end;
+        cur = pos < len ? buf.charAt(pos) : 0;
+        peek = pos + 1 < len ? buf.charAt(pos + 1) : 0;
+    }
+
     /**
      ** Consume the cur char and advance to next char in buffer: * - updates
      * cur and peek fields * - updates the line and col count * - end of file,
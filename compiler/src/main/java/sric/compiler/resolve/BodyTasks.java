@@ -0,0 +1,95 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.resolve;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import sric.compiler.CompilerLog;
+import sric.compiler.CompilerLog.CompilerErr;
+
+/**
+ * Function bodies deferred by a pass to run on a thread pool.
+ * The bodies are only started by join, and join waits for all of them. So a body never runs
+ * at the same time as the walk of the pass, which resolves the top level and type level
+ * definitions and changes the shared type state (generic instances, lazy scopes, check caches).
+ * Each body reports to its own log, which is merged back into the pass log
+ * at the position where the sequential walk would have reported it.
+ *
+ * @author yangjiandong
+ */
+public class BodyTasks {
+
+    private static class Task {
+        int errorIndex;
+        CompilerLog log;
+        Runnable body;
+        ForkJoinTask<?> future;
+    }
+
+    private final CompilerLog log;
+    private final ForkJoinPool pool;
+    private final ArrayList<Task> tasks = new ArrayList<>();
+    //tasks before it are started
+    private int started = 0;
+    private int joined = 0;
+
+    public BodyTasks(CompilerLog log, ForkJoinPool pool) {
+        this.log = log;
+        this.pool = pool;
+    }
+
+    /**
+     * add a body, it is started by the next join
+     */
+    public void add(CompilerLog taskLog, Runnable body) {
+        Task task = new Task();
+        task.errorIndex = log.errors.size();
+        task.log = taskLog;
+        task.body = body;
+        tasks.add(task);
+    }
+
+    /**
+     * start the added bodies and wait until all of them are done
+     */
+    public void join() {
+        for (; started < tasks.size(); ++started) {
+            Task task = tasks.get(started);
+            task.future = pool.submit(task.body);
+            task.body = null;
+        }
+        for (; joined < tasks.size(); ++joined) {
+            tasks.get(joined).future.join();
+        }
+    }
+
+    /**
+     * wait for all bodies and merge their errors into the log
+     */
+    public void finish() {
+        join();
+
+        ArrayList<CompilerErr> merged = new ArrayList<>(log.errors.size());
+        int i = 0;
+        for (Task task : tasks) {
+            while (i < task.errorIndex) {
+                merged.add(log.errors.get(i));
+                ++i;
+            }
+            merged.addAll(task.log.errors);
+        }
+        while (i < log.errors.size()) {
+            merged.add(log.errors.get(i));
+            ++i;
+        }
+
+        log.errors.clear();
+        log.errors.addAll(merged);
+        tasks.clear();
+        started = 0;
+        joined = 0;
+    }
+}
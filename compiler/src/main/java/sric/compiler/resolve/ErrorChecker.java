@@ -6,6 +6,8 @@ package sric.compiler.resolve;
 
 
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import sric.compiler.CompilePass;
 import sric.compiler.CompilerLog;
 import sric.compiler.ast.AstNode.*;
@@ -28,14 +30,55 @@ public class ErrorChecker extends CompilePass {
     private WithBlockExpr curItBlock = null;
     //private boolean hasReturn = false;
     
+    //function bodies checked on a thread pool, null in sequential mode
+    private BodyTasks bodyTasks = null;
+    
+    private TypeCheckCache cache;
+    
+    //the error of the body that is reported at the function
+    public static final String missReturnValue = "Expect return value";
+    
     public ErrorChecker(CompilerLog log, SModule module) {
+        this(log, module, null, new TypeCheckCache());
+    }
+    
+    public ErrorChecker(CompilerLog log, SModule module, ForkJoinPool pool) {
+        this(log, module, pool, new TypeCheckCache());
+    }
+    
+    public ErrorChecker(CompilerLog log, SModule module, ForkJoinPool pool, TypeCheckCache cache) {
         super(log);
         this.module = module;
         this.log = log;
+        this.cache = cache;
+        if (pool != null) {
+            bodyTasks = new BodyTasks(log, pool);
+        }
+    }
+    
+    private ErrorChecker fork(CompilerLog taskLog) {
+        ErrorChecker c = new ErrorChecker(taskLog, module, null, cache);
+        c.curStruct = this.curStruct;
+        c.inUnsafe = this.inUnsafe;
+        c.curUnit = this.curUnit;
+        c.curItBlock = this.curItBlock;
+        return c;
     }
     
     public void run() {
-        module.walkChildren(this);
+        run(module.fileUnits);
+    }
+    
+    /**
+     * check the given units, the others are checked before
+     */
+    public void run(List<FileUnit> units) {
+        for (FileUnit unit : units) {
+            this.visit(unit);
+        }
+        if (bodyTasks != null) {
+            bodyTasks.finish();
+        }
     }
     
     boolean isInUnsafe() {
@@ -49,7 +92,31 @@ public class ErrorChecker extends CompilePass {
         curUnit = null;
     }
     
+    /**
+     * check a definition of a unit that is already visited
+     */
+    public void checkDef(AstNode.FileUnit unit, AstNode.TopLevelDef def) {
+        curUnit = unit;
+        this.visit(def);
+        curUnit = null;
+    }
+    
+    /**
+     * check a function of a unit that is already visited, the body is changed
+     */
+    public void checkFunc(AstNode.FileUnit unit, AstNode.FuncDef func) {
+        curUnit = unit;
+        curStruct = func.parent instanceof TypeDef t ? t : null;
+        this.visit(func);
+        curStruct = null;
+        curUnit = null;
+    }
+    
     public static boolean isCopyable(Type type) {
+        return isCopyable(type, null);
+    }
+    
+    private static boolean isCopyable(Type type, TypeCheckCache cache) {
         if (type == null) {
             return true;
         }
@@ -73,24 +140,54 @@ public class ErrorChecker extends CompilePass {
                 return false;
             }
             if (resolvedDef instanceof TypeDef sd && sd.isStruct()) {
-                for (FieldDef f : sd.fieldDefs) {
-                    if (f.isStatic()) {
-                        continue;
-                    }
-                    if (f.fieldType == type) {
-                        return true;
-                    }
-                    if (!isCopyable(f.fieldType)) {
-                        return false;
-                    }
-                }
+                return isStructCopyable(sd, type, cache);
             }
             return true;
         }
         return true;
     }
     
-    private boolean isMoveable(Type type) {
+    /**
+     * the type is the type node of a field, the scan of the fields stops at it
+     */
+    private static boolean isFieldType(TypeDef sd, Type type) {
+        for (FieldDef f : sd.fieldDefs) {
+            if (f.fieldType == type) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static boolean isStructCopyable(TypeDef sd, Type type, TypeCheckCache cache) {
+        //the fields of a generic instance are added on instantiate
+        boolean cacheable = cache != null && sd.isInstantiated() && !isFieldType(sd, type);
+        if (cacheable) {
+            Boolean res = cache.copyable.get(sd);
+            if (res != null) {
+                return res;
+            }
+        }
+        boolean res = true;
+        for (FieldDef f : sd.fieldDefs) {
+            if (f.isStatic()) {
+                continue;
+            }
+            if (f.fieldType == type) {
+                break;
+            }
+            if (!isCopyable(f.fieldType, cache)) {
+                res = false;
+                break;
+            }
+        }
+        if (cacheable) {
+            cache.copyable.put(sd, res);
+        }
+        return res;
+    }
+    
+    private static boolean isMoveable(Type type, TypeCheckCache cache) {
         if (type.id.resolvedDef == null) {
             return false;
         }
@@ -110,23 +207,40 @@ public class ErrorChecker extends CompilePass {
         
         if (resolvedDef instanceof TopLevelDef td) {
             if (resolvedDef instanceof TypeDef sd && sd.isStruct()) {
-                for (FieldDef f : sd.fieldDefs) {
-                    if (f.isStatic()) {
-                        continue;
-                    }
-                    if (f.fieldType == type) {
-                        return true;
-                    }
-                    if (!isMoveable(f.fieldType)) {
-                        return false;
-                    }
-                }
+                return isStructMoveable(sd, type, cache);
             }
             return true;
         }
         return true;
     }
     
+    private static boolean isStructMoveable(TypeDef sd, Type type, TypeCheckCache cache) {
+        boolean cacheable = cache != null && sd.isInstantiated() && !isFieldType(sd, type);
+        if (cacheable) {
+            Boolean res = cache.moveable.get(sd);
+            if (res != null) {
+                return res;
+            }
+        }
+        boolean res = true;
+        for (FieldDef f : sd.fieldDefs) {
+            if (f.isStatic()) {
+                continue;
+            }
+            if (f.fieldType == type) {
+                break;
+            }
+            if (!isMoveable(f.fieldType, cache)) {
+                res = false;
+                break;
+            }
+        }
+        if (cacheable) {
+            cache.moveable.put(sd, res);
+        }
+        return res;
+    }
+    
     private void verifyTypeFit(Expr target, Type to, Loc loc) {
         verifyTypeFit(target, to, loc, false, false, false);
     }
@@ -187,7 +301,7 @@ public class ErrorChecker extends CompilePass {
             target.checkNonnullable = true;
         }
         
-        if (!from.fit(to)) {
+        if (!cache.fit(from, to)) {
             err("Type mismatch: " + from.getQName(false) + " => " + to.getQName(false) , loc);
             from.fit(to);
             return;
@@ -245,7 +359,7 @@ public class ErrorChecker extends CompilePass {
             targetNeedMove = true;
         }
         
-        if (targetNeedMove && !to.isReference && !isCopyable(target.resolvedType) ) {
+        if (targetNeedMove && !to.isReference && !isCopyable(target.resolvedType, cache) ) {
             //local var auto move
             if (isReturn && resolvedDef instanceof AstNode.FieldDef f) {
                 if (f.isLocalVar) {
@@ -294,41 +408,41 @@ public class ErrorChecker extends CompilePass {
         }
 
         if ((v.flags & FConst.Virtual) != 0 || (v.flags & FConst.Abstract) != 0) {
-            err("Invalide flags", v.loc);
+            err("Invalide flags", v.loc());
         }
         
         if (v.fieldType != null && v.fieldType.isReference) {
 //            if (pinfo.pointerAttr == Type.PointerAttr.inst) {
 //                if (!isInUnsafe()) {
-//                    err("Can't be inst pointer", v.loc);
+//                    err("Can't be inst pointer", v.loc());
 //                }
 //            }
             if (!isInUnsafe()) {
-                err("Can't define reference in safe mode", v.loc);
+                err("Can't define reference in safe mode", v.loc());
             }
         }
         
         //check constexpr
         if ((v.flags & FConst.ConstExpr) != 0) {
             if (v.fieldType != null && !v.fieldType.isImmutable) {
-                err("constexpr must be const", v.loc);
+                err("constexpr must be const", v.loc());
             }
             if (v.initExpr == null) {
                 if (!this.module.isStubFile && !v.isExtern())
-                    err("Must init constExpr", v.loc);
+                    err("Must init constExpr", v.loc());
             }
             else if (v.initExpr instanceof Expr.LiteralExpr) {
                 if (!v.isStatic()) {
-                    err("The constExpr must be static", v.loc);
+                    err("The constExpr must be static", v.loc());
                 }
             }
             else {
-                err("Invalid constExpr flags", v.loc);
+                err("Invalid constExpr flags", v.loc());
             }
         }
         
         if (v.fieldType == null) {
-            err("Unkonw field type", v.loc);
+            err("Unkonw field type", v.loc());
         }
         else {
             if (v.initExpr != null) {
@@ -338,7 +452,7 @@ public class ErrorChecker extends CompilePass {
                     ok = true;
                 }
                 if (!ok) {
-                    verifyTypeFit(v.initExpr, v.fieldType, v.loc);
+                    verifyTypeFit(v.initExpr, v.fieldType, v.loc());
                 }
             }
 
@@ -349,7 +463,7 @@ public class ErrorChecker extends CompilePass {
                 }
                 else if (v.fieldType != null && !v.fieldType.hasDefaultValue()) {
                     if (!v.unkonwInit && !v.isExtern())
-                        err("Variable is not initialized", v.loc);
+                        err("Variable is not initialized", v.loc());
                 }
             }
 
@@ -358,18 +472,18 @@ public class ErrorChecker extends CompilePass {
                 boolean isStatic = v.isStatic();
                 if (isStatic && !v.fieldType.isDeepImmutable()) {
                     if ((v.flags & FConst.Unsafe) == 0) {
-                        err("Static var must be deep immutable", v.loc);
+                        err("Static var must be deep immutable", v.loc());
                     }
                 }
             }
             
             if (v.fieldType.isMetaType()) {
-                err("Unsupport MetaType", v.loc);
+                err("Unsupport MetaType", v.loc());
             }
             
             if (v.fieldType.detail instanceof Type.FuncInfo finfo) {
                 if (!finfo.isStatic()) {
-                    err("Unsupport Member function pointer", v.loc);
+                    err("Unsupport Member function pointer", v.loc());
                 }
             }
         }
@@ -381,7 +495,7 @@ public class ErrorChecker extends CompilePass {
         if (v.parent instanceof TypeDef sd) {
             if (v.name.equals(TokenKind.deleteKeyword.symbol) && sd.isPolymorphic()) {
                 if ((v.flags & FConst.Virtual) == 0) {
-                    err("Excpect virtual dector", v.loc);
+                    err("Excpect virtual dector", v.loc());
                 }
             }
             if (sd.isStruct()) {
@@ -390,7 +504,7 @@ public class ErrorChecker extends CompilePass {
                         //ok
                     }
                     else {
-                        err("Struct must be virtual or abstract", v.loc);
+                        err("Struct must be virtual or abstract", v.loc());
                     }
                 }
                 else if ((v.flags & FConst.Abstract) != 0) {
@@ -398,40 +512,40 @@ public class ErrorChecker extends CompilePass {
                         //ok
                     }
                     else {
-                        err("Struct must be abstract", v.loc);
+                        err("Struct must be abstract", v.loc());
                     }
-                    if (v.code != null) {
-                        err("abstract method must no code", v.loc);
+                    if (v.hasCode()) {
+                        err("abstract method must no code", v.loc());
                     }
                 }
             }
             else if (sd.isTrait()) {
                 if ((v.flags & FConst.Abstract) != 0) {
-                    if (v.code != null) {
-                        err("abstract method must no code", v.loc);
+                    if (v.hasCode()) {
+                        err("abstract method must no code", v.loc());
                     }
                 }
                 else if ((v.flags & FConst.Static) == 0) {
-                    err("Must be abstract", v.loc);
+                    err("Must be abstract", v.loc());
                 }
             }
         }
         else {
             if ((v.flags & FConst.Abstract) != 0 ||
                     (v.flags & FConst.Virtual) != 0) {
-                err("Invalid abstract or virtual flags", v.loc);
+                err("Invalid abstract or virtual flags", v.loc());
             }
         }
         
-        if (v.code == null && (!module.isStubFile)) {
+        if (!v.hasCode() && (!module.isStubFile)) {
             if ((v.flags & (FConst.Abstract|FConst.Virtual|FConst.Extern| FConst.ExternC)) == 0) {
                 if (curStruct != null) {
                     if ((curStruct.flags & (FConst.Abstract|FConst.Virtual|FConst.Extern| FConst.ExternC)) == 0) {
-                        err("Miss fun code", v.loc);
+                        err("Miss fun code", v.loc());
                     }
                 }
                 else {
-                    err("Miss fun code", v.loc);
+                    err("Miss fun code", v.loc());
                 }
             }
         }
@@ -449,20 +563,20 @@ public class ErrorChecker extends CompilePass {
                     AstNode idDef = idResolvedDef(p.initExpr);
                     if (idDef instanceof FuncDef f) {
                         if (!f.isStatic()) {
-                            err("Unsupport param default value", p.initExpr.loc);
+                            err("Unsupport param default value", p.initExpr.loc());
                         }
                     }
                     else if (idDef instanceof FieldDef f) {
                         if (!f.isStatic() && !f.isEnumField()) {
-                            err("Unsupport param default value", p.initExpr.loc);
+                            err("Unsupport param default value", p.initExpr.loc());
                         }
                     }
                     
-                    this.verifyTypeFit(p.initExpr, p.fieldType, p.loc);
+                    this.verifyTypeFit(p.initExpr, p.fieldType, p.loc());
                 }
                 else {
                     if (hasDefaultValue) {
-                        err("Default param must at last", p.loc);
+                        err("Default param must at last", p.loc());
                     }
                 }
                 
@@ -471,7 +585,7 @@ public class ErrorChecker extends CompilePass {
                 }
                 else {
                     if (hasVararg) {
-                        err("Vararg must at last", p.loc);
+                        err("Vararg must at last", p.loc());
                     }
                 }
             }
@@ -479,62 +593,79 @@ public class ErrorChecker extends CompilePass {
         
         if ((v.flags & FConst.Reflect) != 0 ) {
             if (v.generiParamDefs != null) {
-                err("Unsupport reflection for generic type", v.loc);
+                err("Unsupport reflection for generic type", v.loc());
             }
         }
         
         if ((v.flags & FConst.Static) != 0 && ((v.flags & FConst.Abstract) != 0 || (v.flags & FConst.Virtual) != 0)) {
-            err("Invalid flags", v.loc);
+            err("Invalid flags", v.loc());
         }
         
         if ((v.flags & FConst.Static) != 0 && v.parent instanceof FileUnit) {
-            err("Invalid static flags", v.loc);
+            err("Invalid static flags", v.loc());
         }
         
         if ((v.flags & FConst.Readonly) != 0) {
-            err("Invalid flags", v.loc);
+            err("Invalid flags", v.loc());
         }
         
         if ((v.flags & FConst.ConstExpr) != 0) {
-            err("Unsupport constExpr for func", v.loc);
+            err("Unsupport constExpr for func", v.loc());
         }
         
         if ((v.flags & FConst.Operator) != 0) {
             verifyOperatorDef(v);
         }
         
-        if (v.code != null) {
-            if ((v.flags & FConst.Unsafe) != 0) {
-                ++inUnsafe;
+        if (v.hasCode()) {
+            if (!v.isCodeLoaded()) {
+                //checked when the code is parsed on demand
+                ErrorChecker task = fork(new CompilerLog());
+                v.whenCodeLoaded(ErrorChecker.class, () -> task.visitFuncBody(v));
             }
-
-            this.visit(v.code);
-            
-            if (v.prototype.returnType != null && !v.prototype.returnType.isVoid()) {
-                if (!v.code.isLastReturnValue()) {
-                    err("Expect return value", v.loc);
-                }
+            else if (bodyTasks != null) {
+                CompilerLog taskLog = new CompilerLog();
+                ErrorChecker task = fork(taskLog);
+                bodyTasks.add(taskLog, () -> task.visitFuncBody(v));
             }
-            
-            if ((v.flags & FConst.Unsafe) != 0) {
-                --inUnsafe;
+            else {
+                visitFuncBody(v);
             }
         }
         
         if ((v.flags & FConst.Ctor) != 0) {
             if ((v.flags & FConst.Static) != 0) {
-                err("Invalid static", v.loc);
+                err("Invalid static", v.loc());
             }
             if (v.prototype.paramDefs != null && v.prototype.paramDefs.size() > 0) {
-                err("Ctor unsupport paramters", v.loc);
+                err("Ctor unsupport paramters", v.loc());
             }
 
             if (v.prototype.returnType != null && !v.prototype.returnType.isVoid()) {
-                err("Can't return from Ctor", v.loc);
+                err("Can't return from Ctor", v.loc());
             }
         }
     }
 
+    private void visitFuncBody(AstNode.FuncDef v) {
+        if ((v.flags & FConst.Unsafe) != 0) {
+            ++inUnsafe;
+        }
+
+        Block code = v.getCode();
+        this.visit(code);
+
+        if (v.prototype.returnType != null && !v.prototype.returnType.isVoid()) {
+            if (!code.isLastReturnValue()) {
+                err(missReturnValue, v.loc());
+            }
+        }
+
+        if ((v.flags & FConst.Unsafe) != 0) {
+            --inUnsafe;
+        }
+    }
+
     @Override
     public void visitTypeDef(AstNode.TypeDef v) {
 
@@ -552,7 +683,7 @@ public class ErrorChecker extends CompilePass {
                                 //ok
                             }
                             else {
-                                err("Base struct must be abstract or virutal", inh.loc);
+                                err("Base struct must be abstract or virutal", inh.loc());
                             }
                             firstInherit = superSd;
                         }
@@ -560,21 +691,21 @@ public class ErrorChecker extends CompilePass {
                             //ok
                         }
                         else {
-                            err("Invalid inheritance", inh.loc);
+                            err("Invalid inheritance", inh.loc());
                         }
                     }
                     else {
-                        err("Invalid inheritance", inh.loc);
+                        err("Invalid inheritance", inh.loc());
                     }
                 }
                 if (i > 0) {
                     if (inh.id.resolvedDef != null) {
                         if (inh.id.resolvedDef instanceof TypeDef superSd) {
                             if (!superSd.isTrait()) {
-                                err("Unsupport multi struct inheritance", inh.loc);
+                                err("Unsupport multi struct inheritance", inh.loc());
                             }
                             if (firstInherit != null && firstInherit.isInheriteFrom(superSd)) {
-                                err("MultiInherit "+superSd.name+" in "+firstInherit.name, inh.loc);
+                                err("MultiInherit "+superSd.name+" in "+firstInherit.name, inh.loc());
                             }
                         }
                     }
@@ -585,13 +716,13 @@ public class ErrorChecker extends CompilePass {
 
         if ((v.flags & FConst.Reflect) != 0 ) {
             if (v.generiParamDefs != null) {
-                err("Unsupport reflection for generic type", v.loc);
+                err("Unsupport reflection for generic type", v.loc());
             }
         }
         
         if (v.isEnum() && v.enumBase != null) {
             if (!v.enumBase.isInt()) {
-                err("Enum base must be Int", v.enumBase.loc);
+                err("Enum base must be Int", v.enumBase.loc());
             }
         }
         
@@ -603,205 +734,217 @@ public class ErrorChecker extends CompilePass {
 
     @Override
     public void visitStmt(Stmt v) {
-        if (v instanceof AstNode.Block bs) {
-            bs.walkChildren(this);
-        }
-        else if (v instanceof Stmt.IfStmt ifs) {
-            this.visit(ifs.condition);
-            this.visit(ifs.block);
-            if (ifs.elseBlock != null) {
-                this.visit(ifs.elseBlock);
-            }
-            verifyBool(ifs.condition);
-        }
-        else if (v instanceof Stmt.LocalDefStmt e) {
-            this.visit(e.fieldDef);
-        }
-        else if (v instanceof Stmt.WhileStmt whiles) {
-            this.visit(whiles.condition);
-            this.visit(whiles.block);
-            verifyBool(whiles.condition);
-        }
-        else if (v instanceof Stmt.ForStmt fors) {
-            if (fors.init != null) {
-                if (fors.init instanceof Stmt.LocalDefStmt varDef) {
-                    this.visit(varDef.fieldDef);
+        switch (v.astKind()) {
+            case Block -> {
+                AstNode.Block bs = (AstNode.Block)v;
+                bs.walkChildren(this);
+            }
+            case IfStmt -> {
+                Stmt.IfStmt ifs = (Stmt.IfStmt)v;
+                this.visit(ifs.condition);
+                this.visit(ifs.block);
+                if (ifs.elseBlock != null) {
+                    this.visit(ifs.elseBlock);
                 }
-                else if (fors.init instanceof Stmt.ExprStmt s) {
-                    this.visit(s.expr);
+                verifyBool(ifs.condition);
+            }
+            case LocalDefStmt -> {
+                Stmt.LocalDefStmt e = (Stmt.LocalDefStmt)v;
+                this.visit(e.fieldDef);
+            }
+            case WhileStmt -> {
+                Stmt.WhileStmt whiles = (Stmt.WhileStmt)v;
+                this.visit(whiles.condition);
+                this.visit(whiles.block);
+                verifyBool(whiles.condition);
+            }
+            case ForStmt -> {
+                Stmt.ForStmt fors = (Stmt.ForStmt)v;
+                if (fors.init != null) {
+                    if (fors.init instanceof Stmt.LocalDefStmt varDef) {
+                        this.visit(varDef.fieldDef);
+                    }
+                    else if (fors.init instanceof Stmt.ExprStmt s) {
+                        this.visit(s.expr);
+                    }
+                    else {
+                        //err("Unsupport for init stmt", fors.init.loc());
+                    }
                 }
-                else {
-                    //err("Unsupport for init stmt", fors.init.loc);
+                
+                if (fors.condition != null) {
+                    this.visit(fors.condition);
+                    verifyBool(fors.condition);
                 }
+                
+                if (fors.update != null) {
+                    this.visit(fors.update);
+                }
+                this.visit(fors.block);
             }
-            
-            if (fors.condition != null) {
-                this.visit(fors.condition);
-                verifyBool(fors.condition);
-            }
-            
-            if (fors.update != null) {
-                this.visit(fors.update);
-            }
-            this.visit(fors.block);
-        }
-        else if (v instanceof Stmt.SwitchStmt switchs) {
-            this.visit(switchs.condition);
-            
-            if (switchs.condition.resolvedType != null) {
-                if (switchs.condition.resolvedType.isInt()) {
+            case SwitchStmt -> {
+                Stmt.SwitchStmt switchs = (Stmt.SwitchStmt)v;
+                this.visit(switchs.condition);
+                
+                if (switchs.condition.resolvedType != null) {
+                    if (switchs.condition.resolvedType.isInt()) {
+                    }
+                    else if (switchs.condition.resolvedType.isEnumType()) {
+                    }
+                    else {
+                        err("Must be Int or Enum type", switchs.condition.loc());
+                    }
                 }
-                else if (switchs.condition.resolvedType.isEnumType()) {
+                
+                for (Stmt.CaseBlock cb : switchs.cases) {
+                    this.visit(cb.caseExpr);
+                    this.visit(cb.block);
                 }
-                else {
-                    err("Must be Int or Enum type", switchs.condition.loc);
+                
+                if (switchs.defaultBlock != null) {
+                    this.visit(switchs.defaultBlock);
                 }
             }
-            
-            for (Stmt.CaseBlock cb : switchs.cases) {
-                this.visit(cb.caseExpr);
-                this.visit(cb.block);
-            }
-            
-            if (switchs.defaultBlock != null) {
-                this.visit(switchs.defaultBlock);
-            }
-        }
-        else if (v instanceof Stmt.ExprStmt exprs) {
-            this.visit(exprs.expr);
-            if (exprs.expr instanceof IdExpr) {
-                err("Can not be statment", exprs.expr.loc);
-            }
-            else if (exprs.expr instanceof AccessExpr) {
-                if (exprs.expr.resolvedType != null && exprs.expr.resolvedType.isFuncType()) {
-                    err("Can not be statment", exprs.expr.loc);
+            case ExprStmt -> {
+                Stmt.ExprStmt exprs = (Stmt.ExprStmt)v;
+                this.visit(exprs.expr);
+                if (exprs.expr instanceof IdExpr) {
+                    err("Can not be statment", exprs.expr.loc());
+                }
+                else if (exprs.expr instanceof AccessExpr) {
+                    if (exprs.expr.resolvedType != null && exprs.expr.resolvedType.isFuncType()) {
+                        err("Can not be statment", exprs.expr.loc());
+                    }
                 }
             }
-        }
-        else if (v instanceof Stmt.JumpStmt jumps) {
+            case JumpStmt -> {
+                Stmt.JumpStmt jumps = (Stmt.JumpStmt)v;
 
-        }
-        else if (v instanceof Stmt.UnsafeBlock bs) {
-            ++inUnsafe;
-            this.visit(bs.block);
-            --inUnsafe;
-        }
-        else if (v instanceof Stmt.ReturnStmt rets) {
-            if (curItBlock != null) {
-                err("Return from with block", v.loc);
             }
-            if (rets.expr != null) {
-                this.visit(rets.expr);
-                
-                //hasReturn = true;
+            case UnsafeBlock -> {
+                Stmt.UnsafeBlock bs = (Stmt.UnsafeBlock)v;
+                ++inUnsafe;
+                this.visit(bs.block);
+                --inUnsafe;
+            }
+            case ReturnStmt -> {
+                Stmt.ReturnStmt rets = (Stmt.ReturnStmt)v;
+                if (curItBlock != null) {
+                    err("Return from with block", v.loc());
+                }
+                if (rets.expr != null) {
+                    this.visit(rets.expr);
+                    
+                    //hasReturn = true;
 
-                if (rets._funcReturnType.isVoid()) {
-                    err("Invalid return", rets.loc);
+                    if (rets._funcReturnType.isVoid()) {
+                        err("Invalid return", rets.loc());
+                    }
+                    else {
+                        this.verifyTypeFit(rets.expr, rets._funcReturnType, rets.expr.loc(), false, true, false);
+                    }
+                    
+    //                if (rets._funcReturnType != null && rets._funcReturnType.detail instanceof PointerInfo pinfo) {
+    //                    if (pinfo.pointerAttr == Type.PointerAttr.inst) {
+    //                        if (!isInUnsafe()) {
+    //                            if (rets.expr.resolvedType != null && !rets.expr.resolvedType.isNullType()) {
+    //                                err("Expect unsafe block", rets.loc());
+    //                            }
+    //                        }
+    //                    }
+    //                }
+                    
+                    if (rets._funcReturnType != null && rets._funcReturnType.isReference) {
+                        if (!isInUnsafe()) {
+                            if (rets.expr.resolvedType != null && !rets.expr.resolvedType.isNullType()) {
+                                err("Expect unsafe block", rets.loc());
+                            }
+                        }
+                    }
                 }
                 else {
-                    this.verifyTypeFit(rets.expr, rets._funcReturnType, rets.expr.loc, false, true, false);
-                }
-                
-//                if (rets._funcReturnType != null && rets._funcReturnType.detail instanceof PointerInfo pinfo) {
-//                    if (pinfo.pointerAttr == Type.PointerAttr.inst) {
-//                        if (!isInUnsafe()) {
-//                            if (rets.expr.resolvedType != null && !rets.expr.resolvedType.isNullType()) {
-//                                err("Expect unsafe block", rets.loc);
-//                            }
-//                        }
-//                    }
-//                }
-                
-                if (rets._funcReturnType != null && rets._funcReturnType.isReference) {
-                    if (!isInUnsafe()) {
-                        if (rets.expr.resolvedType != null && !rets.expr.resolvedType.isNullType()) {
-                            err("Expect unsafe block", rets.loc);
-                        }
+                    if (!rets._funcReturnType.isVoid()) {
+                        err("Invalid return", rets.loc());
                     }
                 }
             }
-            else {
-                if (!rets._funcReturnType.isVoid()) {
-                    err("Invalid return", rets.loc);
-                }
+            default -> {
+                err("Unkown stmt:"+v, v.loc());
             }
         }
-        else {
-            err("Unkown stmt:"+v, v.loc);
-        }
     }
     
     private void verifyBool(Expr condition) {
         if (condition.resolvedType != null && !condition.resolvedType.isBool()) {
-            err("Must be Bool", condition.loc);
+            err("Must be Bool", condition.loc());
         }
     }
     
     private void verifyInt(Expr e) {
         if (e.resolvedType != null && !e.resolvedType.isInt()) {
-            err("Must be Int type", e.loc);
+            err("Must be Int type", e.loc());
         }
     }
     
     private void verifyMetType(Expr e) {
         if (e.resolvedType != null && !e.resolvedType.isMetaType()) {
-            err("Type required", e.loc);
+            err("Type required", e.loc());
         }
     }
     
     private void verifyOperatorDef(AstNode.FuncDef f) {
         
         if (f.isStatic()) {
-            err("Can't be static", f.loc);
+            err("Can't be static", f.loc());
         }
         
         if (f.name.equals("plus") || f.name.equals("minus") || 
                 f.name.equals("mult") || f.name.equals("div")) {
             if (f.prototype.paramDefs.size() != 1) {
-                err("Must 1 params", f.loc);
+                err("Must 1 params", f.loc());
             }
             if (f.prototype.returnType.isVoid()) {
-                err("Must has return", f.loc);
+                err("Must has return", f.loc());
             }
         }
         else if (f.name.equals("compare")) {
             if (f.prototype.paramDefs.size() != 1) {
-                err("Must 1 params", f.loc);
+                err("Must 1 params", f.loc());
             }
             if (!f.prototype.returnType.isInt()) {
-                err("Must return Int", f.loc);
+                err("Must return Int", f.loc());
             }
         }
         else if (f.name.equals(Buildin.getOperator)) {
             if (f.prototype.paramDefs.size() != 1) {
-                err("Must 1 params", f.loc);
+                err("Must 1 params", f.loc());
             }
             if (f.prototype.returnType.isVoid()) {
-                err("Must has return", f.loc);
+                err("Must has return", f.loc());
             }
         }
         else if (f.name.equals(Buildin.setOperator)) {
             if (f.prototype.paramDefs.size() != 2) {
-                err("Must 1 params", f.loc);
+                err("Must 1 params", f.loc());
             }
         }
         else if (f.name.equals("add")) {
             if (f.prototype.paramDefs.size() != 1) {
-                err("Must 1 params", f.loc);
+                err("Must 1 params", f.loc());
             }
             if (f.prototype.returnType.isVoid()) {
-                err("Must return Self", f.loc);
+                err("Must return Self", f.loc());
             }
         }
         else {
-            err("Unkonw operator", f.loc);
+            err("Unkonw operator", f.loc());
         }
     }
     
 //    private void verifyAccess(Expr target, AstNode resolvedSlotDef, Loc loc) {
 ////        if (target.resolvedType.detail instanceof Type.PointerInfo pinfo) {
 ////            if (pinfo.isNullable) {
-////                err("Maybe null", target.loc);
+////                err("Maybe null", target.loc());
 ////            }
 ////        }
 //        if (target.resolvedType == null) {
@@ -838,7 +981,7 @@ public class ErrorChecker extends CompilePass {
         
         if (target.resolvedType != null && target.resolvedType.detail instanceof Type.PointerInfo pt) {
             if (pt.pointerAttr == Type.PointerAttr.raw) {
-                err("Expect unsafe block", target.loc);
+                err("Expect unsafe block", target.loc());
             }
         }
         
@@ -846,12 +989,12 @@ public class ErrorChecker extends CompilePass {
         if (resolvedDef != null) {
             if (resolvedDef instanceof AstNode.FuncDef f) {
                 if ((f.flags & FConst.Unsafe) != 0) {
-                    err("Expect unsafe block", target.loc);
+                    err("Expect unsafe block", target.loc());
                 }
             }
             if (resolvedDef instanceof AstNode.FieldDef f) {
                 if ((f.flags & FConst.Unsafe) != 0) {
-                    err("Expect unsafe block", target.loc);
+                    err("Expect unsafe block", target.loc());
                 }
             }
         }
@@ -859,179 +1002,194 @@ public class ErrorChecker extends CompilePass {
 
     @Override
     public void visitExpr(Expr v) {
-        if (v instanceof Expr.IdExpr e) {
-            if (e.resolvedDef != null) {                
-                if (e.resolvedDef instanceof AstNode.FieldDef f) {
-                    checkProtection(f, f.parent, v.loc, e.inLeftSide);
-                }
-                else if (e.resolvedDef instanceof AstNode.FuncDef f) {
-                    checkProtection(f, f.parent, v.loc, e.inLeftSide);
+        switch (v.astKind()) {
+            case IdExpr -> {
+                Expr.IdExpr e = (Expr.IdExpr)v;
+                if (e.resolvedDef != null) {                
+                    if (e.resolvedDef instanceof AstNode.FieldDef f) {
+                        checkProtection(f, f.parent, v.loc(), e.inLeftSide);
+                    }
+                    else if (e.resolvedDef instanceof AstNode.FuncDef f) {
+                        checkProtection(f, f.parent, v.loc(), e.inLeftSide);
+                    }
                 }
             }
-        }
-        else if (v instanceof Expr.AccessExpr e) {
-            this.visit(e.target);
-            verifyUnsafe(e.target);
-            //verifyAccess(e.target, e.resolvedDef, e.loc);
-            if (e.resolvedDef != null) {                
-                if (e.resolvedDef instanceof AstNode.FieldDef f) {
-                    checkProtection(f, f.parent, v.loc, e.inLeftSide);
-                }
-                else if (e.resolvedDef instanceof AstNode.FuncDef f) {
-                    checkProtection(f, f.parent, v.loc, e.inLeftSide);
-                    if (f.isStatic()) {
-                        err("Access static by '::'", e.loc);
+            case AccessExpr -> {
+                Expr.AccessExpr e = (Expr.AccessExpr)v;
+                this.visit(e.target);
+                verifyUnsafe(e.target);
+                //verifyAccess(e.target, e.resolvedDef, e.loc());
+                if (e.resolvedDef != null) {                
+                    if (e.resolvedDef instanceof AstNode.FieldDef f) {
+                        checkProtection(f, f.parent, v.loc(), e.inLeftSide);
+                    }
+                    else if (e.resolvedDef instanceof AstNode.FuncDef f) {
+                        checkProtection(f, f.parent, v.loc(), e.inLeftSide);
+                        if (f.isStatic()) {
+                            err("Access static by '::'", e.loc());
+                        }
                     }
                 }
             }
-        }
-        else if (v instanceof Expr.LiteralExpr e) {
-        }
-        else if (v instanceof Expr.BinaryExpr e) {
-            resolveBinaryExpr(e);
-        }
-        else if (v instanceof Expr.CallExpr e) {
-            resolveCallExpr(e);
-        }
-        else if (v instanceof Expr.UnaryExpr e) {
-            this.visit(e.operand);
-            if (e.operand.isResolved()) {
-                Token.TokenKind curt = e.opToken;
-                switch (curt) {
-                    //~
-                    case tilde:
-                        verifyInt(e.operand);
-                        break;
-                    //!
-                    case bang:
-                        verifyBool(e.operand);
-                        break;
-                    //+, -
-                    case plus:
-                    case minus:
-                        break;
-                    //*
-                    case star:
-                        if (e.resolvedType != null) {
-                            verifyUnsafe(e.operand);
-                        }
-                        break;
-                    //++, --
-                    case increment:
-                    case decrement:
-                        if (e.operand.resolvedType != null) {
-                            if (e.operand.resolvedType.isInt()) {
+            case LiteralExpr -> {
+                Expr.LiteralExpr e = (Expr.LiteralExpr)v;
+            }
+            case BinaryExpr -> {
+                Expr.BinaryExpr e = (Expr.BinaryExpr)v;
+                resolveBinaryExpr(e);
+            }
+            case CallExpr -> {
+                Expr.CallExpr e = (Expr.CallExpr)v;
+                resolveCallExpr(e);
+            }
+            case UnaryExpr -> {
+                Expr.UnaryExpr e = (Expr.UnaryExpr)v;
+                this.visit(e.operand);
+                if (e.operand.isResolved()) {
+                    Token.TokenKind curt = e.opToken;
+                    switch (curt) {
+                        //~
+                        case tilde:
+                            verifyInt(e.operand);
+                            break;
+                        //!
+                        case bang:
+                            verifyBool(e.operand);
+                            break;
+                        //+, -
+                        case plus:
+                        case minus:
+                            break;
+                        //*
+                        case star:
+                            if (e.resolvedType != null) {
+                                verifyUnsafe(e.operand);
                             }
-                            else if (e.operand.resolvedType.isRawPointerType()) {
-                                if (!isInUnsafe()) {
-                                    err("Expect unsafe", e.loc);
+                            break;
+                        //++, --
+                        case increment:
+                        case decrement:
+                            if (e.operand.resolvedType != null) {
+                                if (e.operand.resolvedType.isInt()) {
+                                }
+                                else if (e.operand.resolvedType.isRawPointerType()) {
+                                    if (!isInUnsafe()) {
+                                        err("Expect unsafe", e.loc());
+                                    }
+                                }
+                                else {
+                                    err("Must be Int type", e.loc());
                                 }
                             }
-                            else {
-                                err("Must be Int type", e.loc);
+                            if (e.operand.resolvedType.isImmutable) {
+                                err("Const error", e.loc());
                             }
-                        }
-                        if (e.operand.resolvedType.isImmutable) {
-                            err("Const error", e.loc);
-                        }
-                        break;
-                    //&
-                    case amp:
-                        break;
-                    case awaitKeyword:
-                        break;
-                    case moveKeyword:
-                        AstNode defNode = idResolvedDef(e.operand);
-                        if (defNode != null) {
-                            if (defNode instanceof AstNode.FieldDef f) {
-                                if (!f.isLocalOrParam()) {
-                                    if (!isMoveable(f.fieldType)) {
-                                        err("Can't move", e.loc);
+                            break;
+                        //&
+                        case amp:
+                            break;
+                        case awaitKeyword:
+                            break;
+                        case moveKeyword:
+                            AstNode defNode = idResolvedDef(e.operand);
+                            if (defNode != null) {
+                                if (defNode instanceof AstNode.FieldDef f) {
+                                    if (!f.isLocalOrParam()) {
+                                        if (!isMoveable(f.fieldType, cache)) {
+                                            err("Can't move", e.loc());
+                                        }
                                     }
                                 }
+                                else {
+                                    err("Invalid move", e.loc());
+                                }
                             }
                             else {
-                                err("Invalid move", e.loc);
+                                err("Invalid move", e.loc());
                             }
-                        }
-                        else {
-                            err("Invalid move", e.loc);
-                        }
-                        if (e.operand.resolvedType.isImmutable) {
-                            err("Const error", e.loc);
-                        }
-                        break;
-                    case newKeyword: {
-                        if (e.operand.resolvedType.detail instanceof Type.MetaTypeInfo typeInfo) {
-                            if (typeInfo.type.id.resolvedDef instanceof TypeDef td) {
-                                if (td.isAbstract()) {
-                                    err("Can't new abstract struct: " + td.name, e.loc);
+                            if (e.operand.resolvedType.isImmutable) {
+                                err("Const error", e.loc());
+                            }
+                            break;
+                        case newKeyword: {
+                            if (e.operand.resolvedType.detail instanceof Type.MetaTypeInfo typeInfo) {
+                                if (typeInfo.type.id.resolvedDef instanceof TypeDef td) {
+                                    if (td.isAbstract()) {
+                                        err("Can't new abstract struct: " + td.name, e.loc());
+                                    }
                                 }
                             }
+                            break;
                         }
-                        break;
+                        default:
+                            break;
                     }
-                    default:
-                        break;
                 }
             }
-        }
-        else if (v instanceof Expr.TypeExpr e) {
-        }
-        else if (v instanceof Expr.IndexExpr e) {
-            this.visit(e.target);
-            verifyUnsafe(e.target);
-            this.visit(e.index);
-            //verifyInt(e.index);
-            if (e.resolvedOperator != null && e.resolvedOperator.prototype.paramDefs != null) {
-                Type paramType = e.resolvedOperator.prototype.paramDefs.get(0).fieldType;
-                verifyTypeFit(e.index, paramType, e.index.loc);
+            case TypeExpr -> {
+                Expr.TypeExpr e = (Expr.TypeExpr)v;
+            }
+            case IndexExpr -> {
+                Expr.IndexExpr e = (Expr.IndexExpr)v;
+                this.visit(e.target);
+                verifyUnsafe(e.target);
+                this.visit(e.index);
+                //verifyInt(e.index);
+                if (e.resolvedOperator != null && e.resolvedOperator.prototype.paramDefs != null) {
+                    Type paramType = e.resolvedOperator.prototype.paramDefs.get(0).fieldType;
+                    verifyTypeFit(e.index, paramType, e.index.loc());
+                }
             }
-        }
-        else if (v instanceof Expr.GenericInstance e) {
-            this.visit(e.target);
-        }
-        else if (v instanceof Expr.IfExpr e) {
-            this.visit(e.condition);
-            this.visit(e.trueExpr);
-            this.visit(e.falseExpr);
-            verifyBool(e.condition);
-            if (e.trueExpr.isResolved() && e.falseExpr.isResolved()) {
-                if (!e.trueExpr.resolvedType.semanticEquals(e.falseExpr.resolvedType)) {
-                    err("Type must equals", e.falseExpr.loc);
+            case GenericInstance -> {
+                Expr.GenericInstance e = (Expr.GenericInstance)v;
+                this.visit(e.target);
+            }
+            case IfExpr -> {
+                Expr.IfExpr e = (Expr.IfExpr)v;
+                this.visit(e.condition);
+                this.visit(e.trueExpr);
+                this.visit(e.falseExpr);
+                verifyBool(e.condition);
+                if (e.trueExpr.isResolved() && e.falseExpr.isResolved()) {
+                    if (!e.trueExpr.resolvedType.semanticEquals(e.falseExpr.resolvedType)) {
+                        err("Type must equals", e.falseExpr.loc());
+                    }
                 }
             }
-        }
-        else if (v instanceof Expr.WithBlockExpr e) {
-            resolveWithBlockExpr(e);
-        }
-        else if (v instanceof Expr.ArrayBlockExpr e) {
-            resolveArrayBlockExpr(e);
-        }
-        else if (v instanceof Expr.ClosureExpr e) {
-            this.visit(e.code);
-            if (e.captures != null) {
-                for (IdExpr ide : e.captures) {
-                    FieldDef f = (FieldDef)ide.resolvedDef;
-                    if (f != null && f.fieldType != null && !this.isCopyable(f.fieldType)) {
-                        err("Capture a noncopyable field:" + f.name, ide.loc);
+            case WithBlockExpr -> {
+                Expr.WithBlockExpr e = (Expr.WithBlockExpr)v;
+                resolveWithBlockExpr(e);
+            }
+            case ArrayBlockExpr -> {
+                Expr.ArrayBlockExpr e = (Expr.ArrayBlockExpr)v;
+                resolveArrayBlockExpr(e);
+            }
+            case ClosureExpr -> {
+                Expr.ClosureExpr e = (Expr.ClosureExpr)v;
+                this.visit(e.code);
+                if (e.captures != null) {
+                    for (IdExpr ide : e.captures) {
+                        FieldDef f = (FieldDef)ide.resolvedDef;
+                        if (f != null && f.fieldType != null && !isCopyable(f.fieldType, cache)) {
+                            err("Capture a noncopyable field:" + f.name, ide.loc());
+                        }
                     }
                 }
             }
-        }
 //        else if (v instanceof Expr.NonNullableExpr e) {
 //            this.visit(e.operand);
 //            if (e.operand.resolvedType.detail instanceof Type.PointerInfo pinfo) {
 //                if (!pinfo.isNullable) {
-//                    err("Must nullable expr", v.loc);
+//                    err("Must nullable expr", v.loc());
 //                }
 //            }
 //            else {
-//                err("Must nullable expr", v.loc);
+//                err("Must nullable expr", v.loc());
 //            }
 //        }
-        else {
-            err("Unkown expr:"+v, v.loc);
+            default -> {
+                err("Unkown expr:"+v, v.loc());
+            }
         }
     }
 
@@ -1044,7 +1202,7 @@ public class ErrorChecker extends CompilePass {
 //                ok = true;
 //            }
 //            if (!ok) {
-//                err("Value type init block must in standalone assgin statement", e.loc);
+//                err("Value type init block must in standalone assgin statement", e.loc());
 //            }
 //        }
         
@@ -1069,7 +1227,7 @@ public class ErrorChecker extends CompilePass {
         AstNode.TypeDef sd = e._structDef;
         if (sd != null) {            
             if (e._isType && sd.isAbstract()) {
-                err("It's abstract", e.target.loc);
+                err("It's abstract", e.target.loc());
             }
             
             if (e.block != null) {
@@ -1115,7 +1273,7 @@ public class ErrorChecker extends CompilePass {
                         }
 
                         if (!found) {
-                            err("Field not init:"+f.name, e.loc);
+                            err("Field not init:"+f.name, e.loc());
                         }
                     }
                 }
@@ -1130,11 +1288,11 @@ public class ErrorChecker extends CompilePass {
         }
         
         for (Expr t : e.args) {
-            this.verifyTypeFit(t, e.type.genericArgs.get(0), t.loc);
+            this.verifyTypeFit(t, e.type.genericArgs.get(0), t.loc());
         }
                 
         if (e._storeVar == null) {
-            err("Invalid ArrayBlock", e.loc);
+            err("Invalid ArrayBlock", e.loc());
         }
     }
     
@@ -1158,13 +1316,13 @@ public class ErrorChecker extends CompilePass {
         }
         
         if (!(e.target.resolvedType.detail instanceof Type.FuncInfo f)) {
-            err("Call a non-function type:"+e.target, e.loc);
+            err("Call a non-function type:"+e.target, e.loc());
             return;
         }
         
         if (f.funcDef != null) {
             if (f.funcDef.generiParamDefs != null && !(e.target instanceof GenericInstance)) {
-                err("Miss generic args", e.target.loc);
+                err("Miss generic args", e.target.loc());
             }
         }
         
@@ -1177,7 +1335,7 @@ public class ErrorChecker extends CompilePass {
         
         if (e.args != null) {
             if (f.prototype.paramDefs == null) {
-                err("Args error", e.loc);
+                err("Args error", e.loc());
             }
             else {
                 int i = 0;
@@ -1187,35 +1345,35 @@ public class ErrorChecker extends CompilePass {
                     }
                     if (t.name != null) {
                         if (!t.name.equals(f.prototype.paramDefs.get(i).name)) {
-                            err("Arg name error", t.loc);
+                            err("Arg name error", t.loc());
                         }
                     }
-                    verifyTypeFit(t.argExpr, f.prototype.paramDefs.get(i).fieldType, t.loc, true, false, false);
+                    verifyTypeFit(t.argExpr, f.prototype.paramDefs.get(i).fieldType, t.loc(), true, false, false);
                     ++i;
                 }
                 if (i < e.args.size()) {
                     Type lastParamType = f.prototype.paramDefs.get(f.prototype.paramDefs.size()-1).fieldType;
                     if (!lastParamType.isVarArgType()) {
-                        err("Too many args", e.loc);
+                        err("Too many args", e.loc());
                     }
                     else {
                         for (; i<e.args.size(); ++i) {
                             Expr.CallArg t = e.args.get(i);
-                            verifyTypeFit(t.argExpr, lastParamType, t.loc, true, false, false);
+                            verifyTypeFit(t.argExpr, lastParamType, t.loc(), true, false, false);
                         }
                     }
                 }
 
                 if (i < f.prototype.paramDefs.size()) {
                     if (!f.prototype.paramDefs.get(i).hasParamDefaultValue() && !f.prototype.paramDefs.get(i).fieldType.isVarArgType()) {
-                        err("Too few args", e.loc);
+                        err("Too few args", e.loc());
                     }
                 }
             }
         }
         else if (f.prototype.paramDefs != null) {
             if (!f.prototype.paramDefs.get(0).hasParamDefaultValue()) {
-                err("Arg number error", e.loc);
+                err("Arg number error", e.loc());
             }
         }
     }
@@ -1277,7 +1435,7 @@ public class ErrorChecker extends CompilePass {
                     Type targetType = ((TypeExpr)e.rhs).type;
                     if (targetType.detail instanceof Type.PointerInfo pinfo) {
                         if (pinfo.isNullable) {
-                            err("Must non-nullable", e.rhs.loc);
+                            err("Must non-nullable", e.rhs.loc());
                         }
                     }
                 }
@@ -1299,15 +1457,15 @@ public class ErrorChecker extends CompilePass {
                             //ok
                         }
                         else {
-                            err("Invalide as", e.loc);
+                            err("Invalide as", e.loc());
                         }
                         
                         if (asType.detail instanceof Type.PointerInfo pinfo && pinfo.pointerAttr == Type.PointerAttr.own) {
-                            err("Can't cast to own pointer", e.rhs.loc);
+                            err("Can't cast to own pointer", e.rhs.loc());
                         }
                         
                         if (e.lhs.resolvedType.isPointerType()) {
-                            if (e.lhs.resolvedType.fit(asType)) {
+                            if (cache.fit(e.lhs.resolvedType, asType)) {
                                 //OK;
                             }
                             else if (e.lhs.resolvedType.genericArgs != null && asType.isPointerType() && asType.genericArgs != null) {
@@ -1315,14 +1473,14 @@ public class ErrorChecker extends CompilePass {
                                 //Type to = asType.genericArgs.get(0);
 
                                 if (from.isVoid()) {
-                                    err("Use unsafeCast", e.loc);
+                                    err("Use unsafeCast", e.loc());
                                 }
                                 else if (from.id.resolvedDef instanceof TypeDef tf && !tf.isPolymorphic()) {
-                                    err("Use unsafeCast", e.loc);
+                                    err("Use unsafeCast", e.loc());
                                 }
                             }
                             else {
-                                err("Use unsafeCast", e.loc);
+                                err("Use unsafeCast", e.loc());
                             }
                         }
                     }
@@ -1339,27 +1497,27 @@ public class ErrorChecker extends CompilePass {
                     if ((e.lhs.resolvedType.isFloat() && e.rhs.resolvedType.isInt()) ||
                             (e.lhs.resolvedType.isInt() && e.rhs.resolvedType.isFloat())) {
                         if (curt == Token.TokenKind.eq || curt == Token.TokenKind.notEq || curt == Token.TokenKind.same || curt == Token.TokenKind.notSame) {
-                            err("Cant compare different type", e.loc);
+                            err("Cant compare different type", e.loc());
                         }
                     }
                     else if (e.lhs.resolvedType.isPointerType() && e.rhs.resolvedType.isPointerType()) {
                         if (e.lhs.resolvedType.isNullType() || e.rhs.resolvedType.isNullType()) {
                             if (!isInUnsafe()) {
                                 if (!e.lhs.resolvedType.isNullablePointerType() && e.rhs.resolvedType.isNullType()) {
-                                    err("Compare non-nullable pointer to null", e.loc);
+                                    err("Compare non-nullable pointer to null", e.loc());
                                 }
                                 else if (!e.rhs.resolvedType.isNullablePointerType() && e.lhs.resolvedType.isNullType()) {
-                                    err("Compare non-nullable pointer to null", e.loc);
+                                    err("Compare non-nullable pointer to null", e.loc());
                                 }
                             }
                         }
                         else if (e.lhs.resolvedType.detail instanceof Type.PointerInfo p1 && e.rhs.resolvedType.detail instanceof Type.PointerInfo p2) {
                             if (p1.pointerAttr != p2.pointerAttr) {
                                 if (p1.pointerAttr.ordinal() > p2.pointerAttr.ordinal()) {
-                                    verifyTypeFit(e.rhs, e.lhs.resolvedType, e.rhs.loc, true, false, true);
+                                    verifyTypeFit(e.rhs, e.lhs.resolvedType, e.rhs.loc(), true, false, true);
                                 }
                                 else {
-                                    verifyTypeFit(e.lhs, e.rhs.resolvedType, e.lhs.loc, true, false, true);
+                                    verifyTypeFit(e.lhs, e.rhs.resolvedType, e.lhs.loc(), true, false, true);
                                 }
                             }
                         }
@@ -1369,10 +1527,10 @@ public class ErrorChecker extends CompilePass {
                     }
                     else if (e.resolvedOperator != null && e.resolvedOperator.prototype.paramDefs != null) {
                         Type paramType = e.resolvedOperator.prototype.paramDefs.get(0).fieldType;
-                        verifyTypeFit(e.rhs, paramType, e.rhs.loc, true, false, true);
+                        verifyTypeFit(e.rhs, paramType, e.rhs.loc(), true, false, true);
                     }
                     else if (!e.lhs.resolvedType.semanticEquals(e.rhs.resolvedType)) {
-                        err("Cant compare different type", e.loc);
+                        err("Cant compare different type", e.loc());
                     }
                     break;
                 case doubleAmp:
@@ -1395,12 +1553,12 @@ public class ErrorChecker extends CompilePass {
                 case slash:
                     if (e.resolvedOperator != null && e.resolvedOperator.prototype.paramDefs != null) {
                         Type paramType = e.resolvedOperator.prototype.paramDefs.get(0).fieldType;
-                        verifyTypeFit(e.rhs, paramType, e.rhs.loc, true, false, false);
+                        verifyTypeFit(e.rhs, paramType, e.rhs.loc(), true, false, false);
                     }
                     verifyUnsafe(e.lhs);
                     if (e.resolvedType != null && e.resolvedType.isRawPointerType()) {
                         if (!isInUnsafe()) {
-                            err("Expect unsafe", e.loc);
+                            err("Expect unsafe", e.loc());
                         }
                     }
                     break;
@@ -1425,7 +1583,7 @@ public class ErrorChecker extends CompilePass {
                         if (indexExpr.resolvedOperator != null && indexExpr.resolvedOperator.prototype.paramDefs != null
                                 && indexExpr.resolvedOperator.prototype.paramDefs.size() > 1) {
                             Type paramType = indexExpr.resolvedOperator.prototype.paramDefs.get(1).fieldType;
-                            verifyTypeFit(e.rhs, paramType, e.rhs.loc);
+                            verifyTypeFit(e.rhs, paramType, e.rhs.loc());
                         }
                         assignable = true;
                         return;
@@ -1438,15 +1596,15 @@ public class ErrorChecker extends CompilePass {
                     
                     if (assignable) {
                         if (e.resolvedType != null && e.resolvedType.isImmutable) {
-                            err("Const error", e.loc);
+                            err("Const error", e.loc());
                         }
                         
                         if (curt == Token.TokenKind.assign) {
-                            verifyTypeFit(e.rhs, e.lhs.resolvedType, e.loc);
+                            verifyTypeFit(e.rhs, e.lhs.resolvedType, e.loc());
                             if (e.lhs instanceof IdExpr lr && e.rhs instanceof IdExpr ri) {
                                 if (lr.namespace == ri.namespace) {
                                     if (lr.name.equals(ri.name)) {
-                                        err("Self assign", e.loc);
+                                        err("Self assign", e.loc());
                                     }
                                 }
                             }
@@ -1456,7 +1614,7 @@ public class ErrorChecker extends CompilePass {
 //                                    && e.lhs.resolvedType.detail instanceof Type.PointerInfo lpinfo) {
 //                                if (lpinfo.pointerAttr != Type.PointerAttr.raw && pinfo.pointerAttr == Type.PointerAttr.inst) {
 //                                    if (!isInUnsafe()) {
-//                                        err("Can't store instant pointer", e.loc);
+//                                        err("Can't store instant pointer", e.loc());
 //                                        //e._refSafeCheck = true;
 //                                    }
 //                                }
@@ -1465,28 +1623,28 @@ public class ErrorChecker extends CompilePass {
                         else {
                             if (e.lhs.resolvedType.isNum()) {
 //                                if (!e.lhs.resolvedType.equals(e.rhs.resolvedType)) {
-//                                    err("Type mismatch", e.loc);
+//                                    err("Type mismatch", e.loc());
 //                                }
-                                this.verifyTypeFit(e.rhs, e.lhs.resolvedType, e.rhs.loc);
+                                this.verifyTypeFit(e.rhs, e.lhs.resolvedType, e.rhs.loc());
                             }
                             else if (e.lhs.resolvedType.isRawPointerType()) {
 //                                if (!e.lhs.resolvedType.equals(e.rhs.resolvedType)) {
-//                                    err("Type mismatch", e.loc);
+//                                    err("Type mismatch", e.loc());
 //                                }
                                 this.verifyInt(e.rhs);
                             }
                             else {
-                                err("Unsupport operator", e.loc);
+                                err("Unsupport operator", e.loc());
                             }
                         }
                     }
                     else {
-                        err("Not assignable", e.lhs.loc);
+                        err("Not assignable", e.lhs.loc());
                     }
                     
                     if (curt != Token.TokenKind.assign && e.resolvedType != null && e.resolvedType.isRawPointerType()) {
                         if (!isInUnsafe()) {
-                            err("Expect unsafe", e.loc);
+                            err("Expect unsafe", e.loc());
                         }
                     }
                     break;
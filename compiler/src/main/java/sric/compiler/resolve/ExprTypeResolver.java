@@ -9,6 +9,11 @@ import sric.compiler.ast.Scope;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 import sric.compiler.CompilePass;
 import sric.compiler.CompilerLog;
 import sric.compiler.ast.AstNode;
@@ -35,13 +40,92 @@ public class ExprTypeResolver extends TypeResolver {
     protected WithBlockExpr curItBlock = null;
     protected FuncDef curFunc = null;
     
+    //function bodies resolved on a thread pool, null in sequential mode
+    private BodyTasks bodyTasks = null;
+    private Set<CompilerLog.CompilerErr> resolveFails = null;
+    
+    //module scope in the scopes, it's rebuilt when a unit is updated
+    private Scope moduleScope = null;
+    
     public ExprTypeResolver(CompilerLog log, SModule module) {
         super(log, module);
         this.log = log;
     }
     
+    public ExprTypeResolver(CompilerLog log, SModule module, ForkJoinPool pool) {
+        this(log, module);
+        if (pool != null) {
+            bodyTasks = new BodyTasks(log, pool);
+            resolveFails = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+        }
+    }
+    
+    private ExprTypeResolver fork(CompilerLog taskLog) {
+        ExprTypeResolver r = new ExprTypeResolver(taskLog, module);
+        r.scopes.addAll(this.scopes);
+        r.preScope = this.preScope;
+        r.funcs = new ArrayDeque<AstNode>(this.funcs);
+        r.loops = new ArrayDeque<AstNode>(this.loops);
+        r.curStruct = this.curStruct;
+        r.curItBlock = this.curItBlock;
+        r.curFunc = this.curFunc;
+        r.curUnit = this.curUnit;
+        r.moduleScope = this.moduleScope;
+        r.resolveFails = this.resolveFails;
+        return r;
+    }
+    
     public void run() {
-        module.walkChildren(this);
+        run(module.fileUnits);
+    }
+    
+    /**
+     * resolve the given units, the others are resolved before
+     */
+    public void run(List<FileUnit> units) {
+        initTypeScopes(units);
+        for (FileUnit unit : units) {
+            this.visit(unit);
+        }
+        
+        if (bodyTasks != null) {
+            bodyTasks.finish();
+            
+            //the sequential walk only reports 'Resolved fail' as the first error
+            for (CompilerLog.CompilerErr e : resolveFails) {
+                if (log.errors.indexOf(e) != 0) {
+                    log.errors.remove(e);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Build the scopes of all types before walking the bodies,
+     * so duplicate names are reported in the same order whichever body uses the type first.
+     */
+    private void initTypeScopes(List<FileUnit> units) {
+        for (FileUnit unit : units) {
+            for (TypeDef t : unit.typeDefs) {
+                t.getInstanceScope(log);
+                t.getStaticScope(log);
+                t.getInstanceInheriteScope();
+                t.getStaticInheriteScope();
+            }
+        }
+    }
+    
+    /**
+     * a body parsed on demand is resolved in the module scope of that time,
+     * the units may be updated after the body task is created
+     */
+    private void refreshModuleScope() {
+        Scope cur = module.getScope(log);
+        int i = scopes.indexOf(moduleScope);
+        if (i != -1) {
+            scopes.set(i, cur);
+        }
+        moduleScope = cur;
     }
     
     private Scope lastScope() {
@@ -58,17 +142,17 @@ public class ExprTypeResolver extends TypeResolver {
 //                AstNode func = this.funcs.peek();
 //                if (func instanceof FuncDef f) {
                     if (curItBlock == null) {
-                        err("Invalid '.' call", idExpr.loc);
+                        err("Invalid '.' call", idExpr.loc());
                         return;
                     }
-                    //Type self = new Type(curItBlock.loc, curItBlock._structDef.name);
+                    //Type self = new Type(curItBlock.loc(), curItBlock._structDef.name);
                     //self.id.resolvedDef = curItBlock._structDef;
 
                     idExpr.resolvedType = curItBlock.resolvedType;
                     return;
 //                }
 //                else {
-//                    err("Use '.' out of struct", idExpr.loc);
+//                    err("Use '.' out of struct", idExpr.loc());
 //                }
 //                return;
             }
@@ -77,33 +161,33 @@ public class ExprTypeResolver extends TypeResolver {
                 
                 if (curFunc != null) {
                     if (curFunc.isStatic()) {
-                        err("No this in static", idExpr.loc);
+                        err("No this in static", idExpr.loc());
                     }
                     if (curStruct == null) {
-                        err("Use super out of struct", idExpr.loc);
+                        err("Use super out of struct", idExpr.loc());
                         return;
                     }
                     if (idExpr.name.equals(TokenKind.superKeyword.symbol)) {
                         if (this.getCurClosure() != null) {
-                            err("Can't capture super", idExpr.loc);
+                            err("Can't capture super", idExpr.loc());
                         }
                         if (curStruct.inheritances == null) {
-                            err("Invalid super", idExpr.loc);
+                            err("Invalid super", idExpr.loc());
                             return;
                         }
                         else {
-                            idExpr.resolvedType = Type.pointerType(idExpr.loc, curStruct.inheritances.get(0), Type.PointerAttr.raw, false);
+                            idExpr.resolvedType = Type.pointerType(idExpr.loc(), curStruct.inheritances.get(0), Type.PointerAttr.raw, false);
                             idExpr.resolvedType.isImmutable = true;
                         }
                     }
                     else if (idExpr.name.equals(TokenKind.thisKeyword.symbol)) {
-                        Type self = new Type(curStruct.loc, curStruct.name);
+                        Type self = new Type(curStruct.loc(), curStruct.name);
                         self.id.resolvedDef = curStruct;
                         if (curStruct.isSafe()) {
-                            idExpr.resolvedType = Type.pointerType(idExpr.loc, self, Type.PointerAttr.ref, false);
+                            idExpr.resolvedType = Type.pointerType(idExpr.loc(), self, Type.PointerAttr.ref, false);
                         }
                         else {
-                            idExpr.resolvedType = Type.pointerType(idExpr.loc, self, Type.PointerAttr.raw, false);
+                            idExpr.resolvedType = Type.pointerType(idExpr.loc(), self, Type.PointerAttr.raw, false);
                         }
                         idExpr.resolvedType.isImmutable = true;
                         if (!idExpr._isAccessExprTarget) {
@@ -112,7 +196,7 @@ public class ExprTypeResolver extends TypeResolver {
                     }
                 }
                 else {
-                    err("Use this/super out of struct", idExpr.loc);
+                    err("Use this/super out of struct", idExpr.loc());
                 }
                 
                 return;
@@ -133,7 +217,7 @@ public class ExprTypeResolver extends TypeResolver {
                 if (idExpr.resolvedDef instanceof FieldDef f) {
                     if (!f.isStatic() && !f.isLocalOrParam()) {
                         if (inStaticScope) {
-                            err("Can't access from static scope", idExpr.loc);
+                            err("Can't access from static scope", idExpr.loc());
                         }
                         idExpr.implicitThis = true;
                     }
@@ -141,7 +225,7 @@ public class ExprTypeResolver extends TypeResolver {
                 else if (idExpr.resolvedDef instanceof FuncDef f) {
                     if (!f.isStatic()) {
                         if (inStaticScope) {
-                            err("Can't access from static scope", idExpr.loc);
+                            err("Can't access from static scope", idExpr.loc());
                         }
                         idExpr.implicitThis = true;
                     }
@@ -163,7 +247,7 @@ public class ExprTypeResolver extends TypeResolver {
                 }
                 else if (idExpr.resolvedDef instanceof FuncDef f) {
                     if (!f.isStatic()) {
-                        err("Can only access instance method by 'this'", idExpr.loc);
+                        err("Can only access instance method by 'this'", idExpr.loc());
                     }
                 }
             }
@@ -172,19 +256,80 @@ public class ExprTypeResolver extends TypeResolver {
 
     @Override
     public void visitUnit(FileUnit v) {
+        curUnit = v;
         scopes.add(v.importScope);
-        Scope moduleScope = module.getScope(log);
+        moduleScope = module.getScope(log);
     
         scopes.add(moduleScope);
         this.scopes.add(Buildin.getBuildinScope());
         
         v.walkChildren(this);
         
+        curUnit = null;
+        popScope();
+        popScope();
+        popScope();
+    }
+
+    /**
+     * resolve a definition of a unit that is already visited
+     */
+    public void resolveDef(FileUnit unit, TopLevelDef def) {
+        if (def instanceof TypeDef t) {
+            t.getInstanceScope(log);
+            t.getStaticScope(log);
+            t.getInstanceInheriteScope();
+            t.getStaticInheriteScope();
+        }
+        
+        curUnit = unit;
+        scopes.add(unit.importScope);
+        moduleScope = module.getScope(log);
+        scopes.add(moduleScope);
+        this.scopes.add(Buildin.getBuildinScope());
+        
+        this.visit(def);
+        
+        curUnit = null;
         popScope();
         popScope();
         popScope();
     }
 
+    /**
+     * resolve a function of a unit that is already visited, the body is changed
+     */
+    public void resolveFunc(FileUnit unit, FuncDef func) {
+        curUnit = unit;
+        scopes.add(unit.importScope);
+        moduleScope = module.getScope(log);
+        scopes.add(moduleScope);
+        this.scopes.add(Buildin.getBuildinScope());
+        int scopeCount = 3;
+        
+        if (func.parent instanceof TypeDef t) {
+            if (t.isStruct()) {
+                curStruct = t;
+                if (t.inheritances != null) {
+                    this.scopes.add(t.getInstanceInheriteScope());
+                    this.scopes.add(t.getStaticInheriteScope());
+                    scopeCount += 2;
+                }
+            }
+            this.scopes.add(t.getInstanceScope(log));
+            this.scopes.add(t.getStaticScope(log));
+            scopeCount += 2;
+        }
+        
+        this.visit(func);
+        
+        for (int i=0; i<scopeCount; ++i) {
+            popScope();
+        }
+        curStruct = null;
+        curUnit = null;
+    }
+
     @Override
     public void visitField(FieldDef v) {
         
@@ -197,6 +342,11 @@ public class ExprTypeResolver extends TypeResolver {
             }
         }
         
+        if (v.fieldType == null && !v.isLocalVar && bodyTasks != null) {
+            //bodies before this field must not see the inferred type
+            bodyTasks.join();
+        }
+        
         if (v.fieldType != null) {
             resolveType(v.fieldType, false);
         }
@@ -206,7 +356,7 @@ public class ExprTypeResolver extends TypeResolver {
 
         if (v.fieldType == null) {
             if (v.initExpr == null) {
-                err("Miss var type", v.loc);
+                err("Miss var type", v.loc());
             }
             else {
                 //Type inference
@@ -267,7 +417,7 @@ public class ExprTypeResolver extends TypeResolver {
                 }
             }
             else {
-                err("Invalid Ctor", v.loc);
+                err("Invalid Ctor", v.loc());
             }
         }
         
@@ -281,8 +431,24 @@ public class ExprTypeResolver extends TypeResolver {
         preScope = new Scope();
 
         visitFuncPrototype(v.prototype, preScope);
-        if (v.code != null) {
-            this.visit(v.code);
+        if (v.hasCode()) {
+            if (!v.isCodeLoaded()) {
+                //resolved when the code is parsed on demand
+                ExprTypeResolver task = fork(new CompilerLog());
+                v.whenCodeLoaded(ExprTypeResolver.class, () -> {
+                    task.refreshModuleScope();
+                    task.visit(v.getCode());
+                });
+            }
+            else if (bodyTasks != null) {
+                Block code = v.getCode();
+                CompilerLog taskLog = new CompilerLog();
+                ExprTypeResolver task = fork(taskLog);
+                bodyTasks.add(taskLog, () -> task.visit(code));
+            }
+            else {
+                this.visit(v.getCode());
+            }
         }
         preScope = null;
         
@@ -334,7 +500,7 @@ public class ExprTypeResolver extends TypeResolver {
                 
                 for (FieldDef f : v.fieldDefs) {
                     if (inhScopes.contains(f.name)) {
-                        err("Field name is already exsits"+f.name, f.loc);
+                        err("Field name is already exsits"+f.name, f.loc());
                     }
                 }
                 
@@ -347,21 +513,21 @@ public class ExprTypeResolver extends TypeResolver {
                     }
                     if (inhScopes.contains(f.name)) {
                         if ((f.flags | FConst.Override) != 0) {
-                            AstNode old = inhScopes.get(f.name, v.loc, null);
+                            AstNode old = inhScopes.get(f.name);
                             if (old instanceof FuncDef oldF) {
                                 if ((oldF.flags & FConst.Abstract) == 0 && (oldF.flags & FConst.Virtual) == 0 && (oldF.flags & FConst.Override) == 0) {
-                                    err("Can't override non-virtual method", f.loc);
+                                    err("Can't override non-virtual method", f.loc());
                                 }
                                 if (!oldF.prototype.match(f.prototype)) {
-                                    err("Invalide override. funtion prototype not match", f.loc);
+                                    err("Invalide override. funtion prototype not match", f.loc());
                                 }
                             }
                             else {
-                                err("Invalide override", f.loc);
+                                err("Invalide override", f.loc());
                             }
                         }
                         else {
-                            err("Expected override keyword"+f.name, f.loc);
+                            err("Expected override keyword"+f.name, f.loc());
                         }
                     }
                 }
@@ -379,7 +545,7 @@ public class ExprTypeResolver extends TypeResolver {
                         }
                     }
                     if (!ok) {
-                        err("Enum value must int literal", v.loc);
+                        err("Enum value must int literal", v.loc());
                     }
                 }
                 f._enumValue = enumValue;
@@ -404,118 +570,130 @@ public class ExprTypeResolver extends TypeResolver {
 
     @Override
     public void visitStmt(Stmt v) {
-        if (v instanceof Block bs) {
-            if (preScope != null) {
-                this.scopes.add(preScope);
-                preScope = null;
-            }
-            else {
-                pushScope();
-            }
-            bs.walkChildren(this);
-            popScope();
-        }
-        else if (v instanceof Stmt.IfStmt ifs) {
-            this.visit(ifs.condition);
-            this.visit(ifs.block);
-            if (ifs.elseBlock != null) {
-                this.visit(ifs.elseBlock);
+        switch (v.astKind()) {
+            case Block -> {
+                Block bs = (Block)v;
+                if (preScope != null) {
+                    this.scopes.add(preScope);
+                    preScope = null;
+                }
+                else {
+                    pushScope();
+                }
+                bs.walkChildren(this);
+                popScope();
+            }
+            case IfStmt -> {
+                Stmt.IfStmt ifs = (Stmt.IfStmt)v;
+                this.visit(ifs.condition);
+                this.visit(ifs.block);
+                if (ifs.elseBlock != null) {
+                    this.visit(ifs.elseBlock);
+                }
             }
-        }
-        else if (v instanceof Stmt.LocalDefStmt e) {
-            this.visit(e.fieldDef);
-        }
-        else if (v instanceof Stmt.WhileStmt whiles) {
-            this.loops.push(v);
-            this.visit(whiles.condition);
-            this.visit(whiles.block);
-            this.loops.pop();
-        }
-        else if (v instanceof Stmt.ForStmt fors) {
-            this.loops.push(v);
-            if (fors.init != null) {
-                pushScope();
+            case LocalDefStmt -> {
+                Stmt.LocalDefStmt e = (Stmt.LocalDefStmt)v;
+                this.visit(e.fieldDef);
+            }
+            case WhileStmt -> {
+                Stmt.WhileStmt whiles = (Stmt.WhileStmt)v;
+                this.loops.push(v);
+                this.visit(whiles.condition);
+                this.visit(whiles.block);
+                this.loops.pop();
+            }
+            case ForStmt -> {
+                Stmt.ForStmt fors = (Stmt.ForStmt)v;
+                this.loops.push(v);
+                if (fors.init != null) {
+                    pushScope();
+                    
+                    if (fors.init instanceof Stmt.LocalDefStmt varDef) {
+                        this.visit(varDef.fieldDef);
+                    }
+                    else if (fors.init instanceof Stmt.ExprStmt s) {
+                        this.visit(s.expr);
+                    }
+                    else {
+                        err("Unsupport for init stmt", fors.init.loc());
+                    }
+                }
                 
-                if (fors.init instanceof Stmt.LocalDefStmt varDef) {
-                    this.visit(varDef.fieldDef);
+                if (fors.condition != null) {
+                    this.visit(fors.condition);
                 }
-                else if (fors.init instanceof Stmt.ExprStmt s) {
-                    this.visit(s.expr);
+                
+                if (fors.update != null) {
+                    this.visit(fors.update);
                 }
-                else {
-                    err("Unsupport for init stmt", fors.init.loc);
+                this.visit(fors.block);
+                
+                if (fors.init != null) {
+                    this.popScope();
                 }
+                this.loops.pop();
             }
-            
-            if (fors.condition != null) {
-                this.visit(fors.condition);
-            }
-            
-            if (fors.update != null) {
-                this.visit(fors.update);
-            }
-            this.visit(fors.block);
-            
-            if (fors.init != null) {
-                this.popScope();
-            }
-            this.loops.pop();
-        }
-        else if (v instanceof Stmt.SwitchStmt switchs) {
-            //avoid jump out from switchs
-            ArrayDeque<AstNode> savedLoop = this.loops;
-            this.loops = new ArrayDeque<AstNode>();
-            
-            this.visit(switchs.condition);
-            
-            for (Stmt.CaseBlock cb : switchs.cases) {
-                this.visit(cb.caseExpr);
-                this.visit(cb.block);
+            case SwitchStmt -> {
+                Stmt.SwitchStmt switchs = (Stmt.SwitchStmt)v;
+                //avoid jump out from switchs
+                ArrayDeque<AstNode> savedLoop = this.loops;
+                this.loops = new ArrayDeque<AstNode>();
+                
+                this.visit(switchs.condition);
+                
+                for (Stmt.CaseBlock cb : switchs.cases) {
+                    this.visit(cb.caseExpr);
+                    this.visit(cb.block);
+                }
+                
+                if (switchs.defaultBlock != null) {
+                    this.visit(switchs.defaultBlock);
+                }
+                this.loops = savedLoop;
             }
-            
-            if (switchs.defaultBlock != null) {
-                this.visit(switchs.defaultBlock);
+            case ExprStmt -> {
+                Stmt.ExprStmt exprs = (Stmt.ExprStmt)v;
+                this.visit(exprs.expr);
             }
-            this.loops = savedLoop;
-        }
-        else if (v instanceof Stmt.ExprStmt exprs) {
-            this.visit(exprs.expr);
-        }
-        else if (v instanceof Stmt.JumpStmt jumps) {
-            if (this.loops.size() == 0) {
-                err("break, continue outside of loop", v.loc);
+            case JumpStmt -> {
+                Stmt.JumpStmt jumps = (Stmt.JumpStmt)v;
+                if (this.loops.size() == 0) {
+                    err("break, continue outside of loop", v.loc());
+                }
             }
-        }
-        else if (v instanceof Stmt.UnsafeBlock bs) {
-            this.visit(bs.block);
-        }
-        else if (v instanceof Stmt.ReturnStmt rets) {
-            if (rets.expr != null) {
-                this.visit(rets.expr);
+            case UnsafeBlock -> {
+                Stmt.UnsafeBlock bs = (Stmt.UnsafeBlock)v;
+                this.visit(bs.block);
             }
-            
-            AstNode func = this.funcs.peek();
-            if (func != null) {
-                FuncPrototype prototype;
-                if (func instanceof FuncDef f) {
-                    prototype = f.prototype;
-                    if (f.isAsync()) {
-                        rets._isCoroutineRet = true;
+            case ReturnStmt -> {
+                Stmt.ReturnStmt rets = (Stmt.ReturnStmt)v;
+                if (rets.expr != null) {
+                    this.visit(rets.expr);
+                }
+                
+                AstNode func = this.funcs.peek();
+                if (func != null) {
+                    FuncPrototype prototype;
+                    if (func instanceof FuncDef f) {
+                        prototype = f.prototype;
+                        if (f.isAsync()) {
+                            rets._isCoroutineRet = true;
+                        }
+                    }
+                    else {
+                        ClosureExpr f = (ClosureExpr)func;
+                        prototype = f.prototype;
                     }
+                    rets._funcReturnType = prototype.returnType;
                 }
                 else {
-                    ClosureExpr f = (ClosureExpr)func;
-                    prototype = f.prototype;
+                    err("Invalid return", v.loc());
                 }
-                rets._funcReturnType = prototype.returnType;
             }
-            else {
-                err("Invalid return", v.loc);
+            default -> {
+                err("Unkown stmt:"+v, v.loc());
             }
         }
-        else {
-            err("Unkown stmt:"+v, v.loc);
-        }
     }
     
     private Type getSlotType(AstNode resolvedDef, boolean targetImmutable, Loc loc) {
@@ -537,17 +715,17 @@ public class ExprTypeResolver extends TypeResolver {
             return Type.funcType(f);
         }
         else if (resolvedDef instanceof TypeAlias f) {
-            return Type.metaType(f.loc, f.type);
+            return Type.metaType(f.loc(), f.type);
         }
         else if (resolvedDef instanceof GenericParamDef f) {
-            Type type = new Type(f.loc, f.name);
+            Type type = new Type(f.loc(), f.name);
             type.id.resolvedDef = f;
-            return Type.metaType(f.loc, type);
+            return Type.metaType(f.loc(), type);
         }
         else if (resolvedDef instanceof TypeDef f) {
-            Type type = new Type(f.loc, f.name);
+            Type type = new Type(f.loc(), f.name);
             type.id.resolvedDef = f;
-            return Type.metaType(f.loc, type);
+            return Type.metaType(f.loc(), type);
         }
 //        else if (resolvedDef instanceof ParamDef p) {
 //            return p.paramType;
@@ -555,7 +733,7 @@ public class ExprTypeResolver extends TypeResolver {
         return null;
     }
     
-    private AstNode resoveOnTarget(Expr target, String name, Loc loc, boolean autoDeref) {
+    private AstNode resoveOnTarget(Expr target, String name, long pos, boolean autoDeref) {
         if (!target.isResolved()) {
             return null;
         }
@@ -596,17 +774,17 @@ public class ExprTypeResolver extends TypeResolver {
             else {
                 scope = t.getInstanceScope(log);
             }
-            AstNode def = scope.get(name, loc, log);
+            AstNode def = scope.get(name, pos, log);
             if (def == null) {
                 //if (t instanceof StructDef sd) {
                     if (t.inheritances != null && !isStatic) {
                         Scope inhScopes = t.getInstanceInheriteScope();
-                        def = inhScopes.get(name, loc, log);
+                        def = inhScopes.get(name, pos, log);
                     }
                 //}
             }
             if (def == null) {
-                err("Unkown name:"+name, loc);
+                err("Unkown name:"+name, Loc.unpack(pos));
             }
             return def;
         }
@@ -616,260 +794,258 @@ public class ExprTypeResolver extends TypeResolver {
 
     @Override
     public void visitExpr(Expr v) {
-        if (v instanceof Expr.IdExpr e) {
-            resolveId(e);
-            if (e.resolvedDef != null && e.resolvedType == null) {
-                boolean targetImmutable = false;
-                if (e.implicitThis) {
-                    AstNode func = this.funcs.peek();
-                    if (func instanceof FuncDef ef) {
-                        if (ef.prototype.isThisImmutable()) {
-                            targetImmutable = true;
+        switch (v.astKind()) {
+            case IdExpr -> {
+                Expr.IdExpr e = (Expr.IdExpr)v;
+                resolveId(e);
+                if (e.resolvedDef != null && e.resolvedType == null) {
+                    boolean targetImmutable = false;
+                    if (e.implicitThis) {
+                        AstNode func = this.funcs.peek();
+                        if (func instanceof FuncDef ef) {
+                            if (ef.prototype.isThisImmutable()) {
+                                targetImmutable = true;
+                            }
                         }
                     }
+                    e.resolvedType = getSlotType(e.resolvedDef, targetImmutable, e.loc());
                 }
-                e.resolvedType = getSlotType(e.resolvedDef, targetImmutable, e.loc);
             }
-        }
-        else if (v instanceof Expr.AccessExpr e) {
-            if (e.target instanceof IdExpr ide) {
-                ide._isAccessExprTarget = true;
-            }
-            this.visit(e.target);
-            
-            e.resolvedDef = resoveOnTarget(e.target, e.name, e.loc, true);
-            if (e.resolvedDef != null) {
-                boolean targetImmutable = e.target.resolvedType.isImmutable;
-                if (e.target.resolvedType.isPointerType() && e.target.resolvedType.genericArgs != null) {
-                    targetImmutable = e.target.resolvedType.genericArgs.get(0).isImmutable;
+            case AccessExpr -> {
+                Expr.AccessExpr e = (Expr.AccessExpr)v;
+                if (e.target instanceof IdExpr ide) {
+                    ide._isAccessExprTarget = true;
                 }
-                e.resolvedType = getSlotType(e.resolvedDef, targetImmutable, e.loc);
-            }
-            else {
-                if (e.target.resolvedType != null && e.target.resolvedType.isMetaType()) {
-                    err("Can't call method on Type", e.loc);
+                this.visit(e.target);
+                
+                e.resolvedDef = resoveOnTarget(e.target, e.name, e.pos, true);
+                addDepend(e.resolvedDef);
+                if (e.resolvedDef != null) {
+                    boolean targetImmutable = e.target.resolvedType.isImmutable;
+                    if (e.target.resolvedType.isPointerType() && e.target.resolvedType.genericArgs != null) {
+                        targetImmutable = e.target.resolvedType.genericArgs.get(0).isImmutable;
+                    }
+                    e.resolvedType = getSlotType(e.resolvedDef, targetImmutable, e.loc());
                 }
                 else {
-                    err("Unknow access:"+e.name, e.loc);
+                    if (e.target.resolvedType != null && e.target.resolvedType.isMetaType()) {
+                        err("Can't call method on Type", e.loc());
+                    }
+                    else {
+                        err("Unknow access:"+e.name, e.loc());
+                    }
                 }
             }
-        }
-        else if (v instanceof Expr.LiteralExpr e) {
-            if (e.value == null) {
-                v.resolvedType = Type.nullType(e.loc);
-            }
-            else if (e.value instanceof Long) {
-                v.resolvedType = Type.intType(e.loc);
-            }
-            else if (e.value instanceof Double) {
-                v.resolvedType = Type.floatType(e.loc);
-            }
-            else if (e.value instanceof Boolean) {
-                v.resolvedType = Type.boolType(e.loc);
-            }
-            else if (e.value instanceof String) {
-                v.resolvedType = Type.strType(e.loc);
-            }
-            if (e.resolvedType != null) {
-                e.resolvedType.isImmutable = true;
-            }
-        }
-        else if (v instanceof Expr.BinaryExpr e) {
-            resolveBinaryExpr(e);
-        }
-        else if (v instanceof Expr.CallExpr e) {
-            resolveCallExpr(e);
-        }
-        else if (v instanceof Expr.UnaryExpr e) {
-            this.visit(e.operand);
-            if (e.operand.isResolved()) {
-                TokenKind curt = e.opToken;
-                switch (curt) {
-                    //~
-                    case tilde:
-                        e.resolvedType = e.operand.resolvedType;
-                        break;
-                    //!
-                    case bang:
-                        e.resolvedType = e.operand.resolvedType;
-                        break;
-                    //+, -
-                    case plus:
-                    case minus:
-                        e.resolvedType = e.operand.resolvedType;
-                        break;
-                    //*
-                    case star:
-                        if (!e.operand.resolvedType.isPointerType()) {
-                            err("Invalid * for non pointer", e.loc);
-                        }
-                        else {
-                            e.resolvedType = e.operand.resolvedType.genericArgs.get(0);
-                        }
-                        break;
-                    //++, --
-                    case increment:
-                    case decrement:
-                        e.resolvedType = e.operand.resolvedType;
-                        break;
-                    //&
-                    case amp: {
-                        if (e.operand instanceof Expr.LiteralExpr lexpr) {
-                            err("Invalid & for literal", e.loc);
-                        }
-                        Type elmentType = e.operand.resolvedType;
-                        
-                        //arrray address to raw* T;
-                        if (e.operand.resolvedType.isArray()) {
-                            elmentType = e.operand.resolvedType.genericArgs.get(0);
-                        }
-                        //safe struct
-                        else if (e.operand.resolvedType.id.resolvedDef instanceof TypeDef td && td.isSafe()) {
-                            e.resolvedType = Type.pointerType(e.loc, elmentType, Type.PointerAttr.ref, false);
-                            e._addressOfSafeStruct = true;
-                        }
-                        //address of local field
-                        else if (e.operand instanceof IdExpr idExpr && idExpr.resolvedDef instanceof FieldDef f && f.isLocalVar) {
-                            e.resolvedType = Type.pointerType(e.loc, elmentType, Type.PointerAttr.ref, false);
-                            f.isRefable = true;
-                            idExpr._autoDerefRefableVar = false;
-                        }
-                        else if (e.operand instanceof AccessExpr aexpr) {
-                            //own pointer
-                            if (aexpr.target.resolvedType.isOwnOrRefPointerType()) {
-                                e._addressOfField = true;
-                                aexpr._addressOf = true;
-                                e.resolvedType = Type.pointerType(e.loc, elmentType, Type.PointerAttr.ref, false);
+            case LiteralExpr -> {
+                Expr.LiteralExpr e = (Expr.LiteralExpr)v;
+                v.resolvedType = Type.literalType(e.loc(), e.value);
+            }
+            case BinaryExpr -> {
+                Expr.BinaryExpr e = (Expr.BinaryExpr)v;
+                resolveBinaryExpr(e);
+            }
+            case CallExpr -> {
+                Expr.CallExpr e = (Expr.CallExpr)v;
+                resolveCallExpr(e);
+            }
+            case UnaryExpr -> {
+                Expr.UnaryExpr e = (Expr.UnaryExpr)v;
+                this.visit(e.operand);
+                if (e.operand.isResolved()) {
+                    TokenKind curt = e.opToken;
+                    switch (curt) {
+                        //~
+                        case tilde:
+                            e.resolvedType = e.operand.resolvedType;
+                            break;
+                        //!
+                        case bang:
+                            e.resolvedType = e.operand.resolvedType;
+                            break;
+                        //+, -
+                        case plus:
+                        case minus:
+                            e.resolvedType = e.operand.resolvedType;
+                            break;
+                        //*
+                        case star:
+                            if (!e.operand.resolvedType.isPointerType()) {
+                                err("Invalid * for non pointer", e.loc());
                             }
                             else {
-                                //local field access: a.b;
-                                if (aexpr.target instanceof IdExpr idExpr && idExpr.resolvedDef instanceof FieldDef f && f.isLocalVar) {
+                                e.resolvedType = e.operand.resolvedType.genericArgs.get(0);
+                            }
+                            break;
+                        //++, --
+                        case increment:
+                        case decrement:
+                            e.resolvedType = e.operand.resolvedType;
+                            break;
+                        //&
+                        case amp: {
+                            if (e.operand instanceof Expr.LiteralExpr lexpr) {
+                                err("Invalid & for literal", e.loc());
+                            }
+                            Type elmentType = e.operand.resolvedType;
+                            
+                            //arrray address to raw* T;
+                            if (e.operand.resolvedType.isArray()) {
+                                elmentType = e.operand.resolvedType.genericArgs.get(0);
+                            }
+                            //safe struct
+                            else if (e.operand.resolvedType.id.resolvedDef instanceof TypeDef td && td.isSafe()) {
+                                e.resolvedType = Type.pointerType(e.loc(), elmentType, Type.PointerAttr.ref, false);
+                                e._addressOfSafeStruct = true;
+                            }
+                            //address of local field
+                            else if (e.operand instanceof IdExpr idExpr && idExpr.resolvedDef instanceof FieldDef f && f.isLocalVar) {
+                                e.resolvedType = Type.pointerType(e.loc(), elmentType, Type.PointerAttr.ref, false);
+                                f.isRefable = true;
+                                idExpr._autoDerefRefableVar = false;
+                            }
+                            else if (e.operand instanceof AccessExpr aexpr) {
+                                //own pointer
+                                if (aexpr.target.resolvedType.isOwnOrRefPointerType()) {
                                     e._addressOfField = true;
                                     aexpr._addressOf = true;
-                                    e.resolvedType = Type.pointerType(e.loc, elmentType, Type.PointerAttr.ref, false);
-                                    f.isRefable = true;
-                                    idExpr._autoDerefRefableVar = false;
+                                    e.resolvedType = Type.pointerType(e.loc(), elmentType, Type.PointerAttr.ref, false);
+                                }
+                                else {
+                                    //local field access: a.b;
+                                    if (aexpr.target instanceof IdExpr idExpr && idExpr.resolvedDef instanceof FieldDef f && f.isLocalVar) {
+                                        e._addressOfField = true;
+                                        aexpr._addressOf = true;
+                                        e.resolvedType = Type.pointerType(e.loc(), elmentType, Type.PointerAttr.ref, false);
+                                        f.isRefable = true;
+                                        idExpr._autoDerefRefableVar = false;
+                                    }
                                 }
                             }
+                            
+                            if (e.resolvedType == null) {
+                                e.resolvedType = Type.pointerType(e.loc(), elmentType, Type.PointerAttr.raw, false);
+                            }
                         }
-                        
-                        if (e.resolvedType == null) {
-                            e.resolvedType = Type.pointerType(e.loc, elmentType, Type.PointerAttr.raw, false);
-                        }
-                    }
-                        break;
-                    case awaitKeyword:
-                        if (e.operand.resolvedType.isPromiseType() && e.operand.resolvedType.genericArgs != null) {
-                            e.resolvedType = e.operand.resolvedType.genericArgs.get(0);
-                        }
-                        else {
-                            err("Not awaitable", e.loc);
-                            e.resolvedType = e.operand.resolvedType;
-                        }
-                        
-                        boolean isAsync = false;
-                        AstNode func = this.funcs.peek();
-                        if (func != null) {
-                            if (func instanceof FuncDef f) {
-                                if (f.isAsync()) {
-                                    isAsync = true;
+                            break;
+                        case awaitKeyword:
+                            if (e.operand.resolvedType.isPromiseType() && e.operand.resolvedType.genericArgs != null) {
+                                e.resolvedType = e.operand.resolvedType.genericArgs.get(0);
+                            }
+                            else {
+                                err("Not awaitable", e.loc());
+                                e.resolvedType = e.operand.resolvedType;
+                            }
+                            
+                            boolean isAsync = false;
+                            AstNode func = this.funcs.peek();
+                            if (func != null) {
+                                if (func instanceof FuncDef f) {
+                                    if (f.isAsync()) {
+                                        isAsync = true;
+                                    }
                                 }
                             }
+                            if (!isAsync) {
+                                err("Expect async func", e.loc());
+                            }
+                            break;
+                        case moveKeyword:
+                            e.resolvedType = e.operand.resolvedType;
+                            break;
+                        case newKeyword: {
+                            if (e.operand.resolvedType.detail instanceof Type.MetaTypeInfo typeInfo) {
+                                e.resolvedType = Type.pointerType(e.loc(), typeInfo.type, Type.PointerAttr.own, false);
+                            }
+                            break;
                         }
-                        if (!isAsync) {
-                            err("Expect async func", e.loc);
-                        }
-                        break;
-                    case moveKeyword:
-                        e.resolvedType = e.operand.resolvedType;
-                        break;
-                    case newKeyword: {
-                        if (e.operand.resolvedType.detail instanceof Type.MetaTypeInfo typeInfo) {
-                            e.resolvedType = Type.pointerType(e.loc, typeInfo.type, Type.PointerAttr.own, false);
-                        }
-                        break;
+                        default:
+                            break;
                     }
-                    default:
-                        break;
                 }
             }
-        }
-        else if (v instanceof Expr.TypeExpr e) {
-            this.resolveType(e.type, true);
-            e.resolvedType = Type.metaType(e.loc, e.type);
-        }
-        else if (v instanceof Expr.IndexExpr e) {
-            this.visit(e.target);
-            this.visit(e.index);
-            
-            if (e.target.isResolved()) {
-                if (e.target.resolvedType.isArray() && e.target.resolvedType.genericArgs != null) {
-                    e.resolvedType = e.target.resolvedType.genericArgs.get(0);
-                }
-                else if (e.target.resolvedType.isRawPointerType()) {
-                    if (e.target.resolvedType.genericArgs != null) {
+            case TypeExpr -> {
+                Expr.TypeExpr e = (Expr.TypeExpr)v;
+                this.resolveType(e.type, true);
+                e.resolvedType = Type.metaType(e.loc(), e.type);
+            }
+            case IndexExpr -> {
+                Expr.IndexExpr e = (Expr.IndexExpr)v;
+                this.visit(e.target);
+                this.visit(e.index);
+                
+                if (e.target.isResolved()) {
+                    if (e.target.resolvedType.isArray() && e.target.resolvedType.genericArgs != null) {
                         e.resolvedType = e.target.resolvedType.genericArgs.get(0);
                     }
-                    else {
-                        err("Unknow operator []", e.loc);
-                    }
-                }
-                else {
-                    String operatorName = e.inLeftSide ? Buildin.setOperator : Buildin.getOperator;
-                    AstNode rdef = resoveOnTarget(e.target, operatorName, e.loc, false);
-                    if (rdef == null) {
-                        err("Unknow operator []", e.loc);
-                    }
-                    else if (rdef instanceof FuncDef f) {
-                        if ((f.flags & FConst.Operator) == 0) {
-                            err("Expected operator", e.loc);
+                    else if (e.target.resolvedType.isRawPointerType()) {
+                        if (e.target.resolvedType.genericArgs != null) {
+                            e.resolvedType = e.target.resolvedType.genericArgs.get(0);
+                        }
+                        else {
+                            err("Unknow operator []", e.loc());
                         }
-                        e.resolvedOperator = f;
-                        e.resolvedType = f.prototype.returnType;
                     }
                     else {
-                        err("Invalid operator []", e.loc);
+                        String operatorName = e.inLeftSide ? Buildin.setOperator : Buildin.getOperator;
+                        AstNode rdef = resoveOnTarget(e.target, operatorName, e.pos, false);
+                        if (rdef == null) {
+                            err("Unknow operator []", e.loc());
+                        }
+                        else if (rdef instanceof FuncDef f) {
+                            if ((f.flags & FConst.Operator) == 0) {
+                                err("Expected operator", e.loc());
+                            }
+                            e.resolvedOperator = f;
+                            e.resolvedType = f.prototype.returnType;
+                        }
+                        else {
+                            err("Invalid operator []", e.loc());
+                        }
                     }
                 }
             }
-        }
-        else if (v instanceof Expr.GenericInstance e) {
+            case GenericInstance -> {
+                Expr.GenericInstance e = (Expr.GenericInstance)v;
 
-            resolveGenericInstance(e);
-        }
-        else if (v instanceof Expr.IfExpr e) {
-            this.visit(e.condition);
-            this.visit(e.trueExpr);
-            this.visit(e.falseExpr);
-            e.resolvedType = e.trueExpr.resolvedType;
-        }
-        else if (v instanceof Expr.WithBlockExpr e) {
-            resolveWithBlockExpr(e);
-        }
-        else if (v instanceof Expr.ArrayBlockExpr e) {
-            resolveArrayBlockExpr(e);
-        }
-        else if (v instanceof ClosureExpr e) {
-            this.funcs.push(v);
+                resolveGenericInstance(e);
+            }
+            case IfExpr -> {
+                Expr.IfExpr e = (Expr.IfExpr)v;
+                this.visit(e.condition);
+                this.visit(e.trueExpr);
+                this.visit(e.falseExpr);
+                e.resolvedType = e.trueExpr.resolvedType;
+            }
+            case WithBlockExpr -> {
+                Expr.WithBlockExpr e = (Expr.WithBlockExpr)v;
+                resolveWithBlockExpr(e);
+            }
+            case ArrayBlockExpr -> {
+                Expr.ArrayBlockExpr e = (Expr.ArrayBlockExpr)v;
+                resolveArrayBlockExpr(e);
+            }
+            case ClosureExpr -> {
+                ClosureExpr e = (ClosureExpr)v;
+                this.funcs.push(v);
 
-//            for (Expr t : e.captures) {
-//                this.visit(t);
-//            }
-            
-            preScope = new Scope();
-            
-            visitFuncPrototype(e.prototype, preScope);
-            this.visit(e.code);
-            
-            preScope = null;
-            this.funcs.pop();
-            
-            if (e.captures == null) {
-                e.prototype.postFlags |= FConst.Const;
+    //            for (Expr t : e.captures) {
+    //                this.visit(t);
+    //            }
+                
+                preScope = new Scope();
+                
+                visitFuncPrototype(e.prototype, preScope);
+                this.visit(e.code);
+                
+                preScope = null;
+                this.funcs.pop();
+                
+                if (e.captures == null) {
+                    e.prototype.postFlags |= FConst.Const;
+                }
+                
+                e.resolvedType = Type.funcType(e);
             }
-            
-            e.resolvedType = Type.funcType(e);
-        }
 //        else if (v instanceof NonNullableExpr e) {
 //            this.visit(e.operand);
 //            boolean ok = false;
@@ -882,16 +1058,24 @@ public class ExprTypeResolver extends TypeResolver {
 //                }
 //            }
 //            if (!ok) {
-//                err("Invalid non-nullable", e.operand.loc);
+//                err("Invalid non-nullable", e.operand.loc());
 //            }
 //        }
-        else {
-            err("Unkown expr type:"+v, v.loc);
-            return;
+            default -> {
+                err("Unkown expr type:"+v, v.loc());
+                return;
+            }
         }
         
-        if (v.resolvedType == null && !hasError()) {
-            err("Resolved fail", v.loc);
+        if (v.resolvedType != null) {
+            //the type may come from other files by the functions
+            addDepend(v.resolvedType.id.resolvedDef);
+        }
+        else if (!hasError()) {
+            CompilerLog.CompilerErr e = err("Resolved fail", v.loc());
+            if (resolveFails != null) {
+                resolveFails.add(e);
+            }
         }
     }
     
@@ -985,7 +1169,7 @@ public class ExprTypeResolver extends TypeResolver {
         }
         
         if (e.resolvedType == null) {
-            err("Unknow target of with block ", e.loc);
+            err("Unknow target of with block ", e.loc());
         }
     }
     
@@ -997,13 +1181,13 @@ public class ExprTypeResolver extends TypeResolver {
         
         if (e.type.detail instanceof Type.ArrayInfo at) {
             at.sizeExpr = new LiteralExpr(Long.valueOf(e.args.size()));
-            at.sizeExpr.loc = e.loc;
+            at.sizeExpr.setLoc(e.loc());
             //at.size = e.args.size();
 
             e.resolvedType = e.type;
         }
         else {
-            err("Invalid array", e.loc);
+            err("Invalid array", e.loc());
             return;
         }
         
@@ -1029,7 +1213,7 @@ public class ExprTypeResolver extends TypeResolver {
             idExpr = (IdExpr)e.target;
         }
         else {
-            err("Unexpected generic args", e.loc);
+            err("Unexpected generic args", e.loc());
             return;
         }
         
@@ -1042,11 +1226,11 @@ public class ExprTypeResolver extends TypeResolver {
                         for (int i=0; i<e.genericArgs.size(); ++i) {
                             typeGenericArgs.put(sd.generiParamDefs.get(i), e.genericArgs.get(i));
                         }
-                        e.resolvedDef = sd.makeInstance(typeGenericArgs).templateInstantiate();
-                        Type type = new Type(e.loc, sd.name);
+                        e.resolvedDef = module.getTypeInstance(sd, typeGenericArgs).templateInstantiate();
+                        Type type = new Type(e.loc(), sd.name);
                         type.genericArgs = e.genericArgs;
                         type.id.resolvedDef = e.resolvedDef;
-                        e.resolvedType = Type.metaType(e.loc, type);;
+                        e.resolvedType = Type.metaType(e.loc(), type);;
                         genericOk = true;
                     }
                 }
@@ -1058,24 +1242,24 @@ public class ExprTypeResolver extends TypeResolver {
                         for (int i=0; i<e.genericArgs.size(); ++i) {
                             typeGenericArgs.put(sd.generiParamDefs.get(i), e.genericArgs.get(i));
                         }
-                        e.resolvedDef = sd.templateInstantiate(typeGenericArgs);
-                        e.resolvedType = getSlotType(e.resolvedDef, false, e.loc);
+                        e.resolvedDef = module.getFuncInstance(sd, typeGenericArgs);
+                        e.resolvedType = getSlotType(e.resolvedDef, false, e.loc());
                         genericOk = true;
                     }
                 }
             }
             if (!genericOk) {
-                err("Generic args size not match", e.loc);
+                err("Generic args size not match", e.loc());
             }
         }
         else if (idExpr.resolvedDef instanceof TypeDef sd) {
             if (sd.generiParamDefs != null) {
-                err("Miss generic args", idExpr.loc);
+                err("Miss generic args", idExpr.loc());
             }
         }
         else if (idExpr.resolvedDef instanceof FuncDef sd) {
             if (sd.generiParamDefs != null) {
-                err("Miss generic args", idExpr.loc);
+                err("Miss generic args", idExpr.loc());
             }
         }
     }
@@ -1108,10 +1292,10 @@ public class ExprTypeResolver extends TypeResolver {
                             typeGenericArgs.put(f.funcDef.generiParamDefs.get(0), exprType);
                         }
 
-                        FuncDef nf = f.funcDef.templateInstantiate(typeGenericArgs);
+                        FuncDef nf = module.getFuncInstance(f.funcDef, typeGenericArgs);
                         if (e.target instanceof IdExpr ie) {
                             ie.resolvedDef = nf;
-                            ie.resolvedType = getSlotType(nf, false, e.loc);
+                            ie.resolvedType = getSlotType(nf, false, e.loc());
                         }
                         e.resolvedType = nf.prototype.returnType;
                     }
@@ -1123,7 +1307,7 @@ public class ExprTypeResolver extends TypeResolver {
                 
                 if (e.resolvedType != null && f.funcDef != null) {
                     if (f.funcDef.isAsync()) {
-                        e.resolvedType = Type.promiseType(e.resolvedType.loc, e.resolvedType);
+                        e.resolvedType = Type.promiseType(e.resolvedType.loc(), e.resolvedType);
                         if (!e.resolvedType.id.isResolved()) {
                             this.resolveType(e.resolvedType, false);
                         }
@@ -1131,7 +1315,7 @@ public class ExprTypeResolver extends TypeResolver {
                 }
             }
             else {
-                err("Invalid call target", e.loc);
+                err("Invalid call target", e.loc());
             }
         }
     }
@@ -1145,7 +1329,7 @@ public class ExprTypeResolver extends TypeResolver {
             TokenKind curt = e.opToken;
             switch (curt) {
                 case isKeyword:
-                    e.resolvedType = Type.boolType(e.loc);
+                    e.resolvedType = Type.sharedBoolType();
                     break;
                 case asKeyword:
                     if (e.rhs instanceof TypeExpr te) {
@@ -1153,19 +1337,19 @@ public class ExprTypeResolver extends TypeResolver {
                         Type to = te.type;
                         if (from.detail instanceof Type.PointerInfo p1 && to.detail instanceof Type.PointerInfo p2) {
                             if (p1.pointerAttr != Type.PointerAttr.raw && p2.pointerAttr == Type.PointerAttr.raw) {
-                                e.lhs.implicitTypeConvertTo = Type.pointerType(e.lhs.loc, from.genericArgs.get(0), p2.pointerAttr, p2.isNullable);
+                                e.lhs.implicitTypeConvertTo = Type.pointerType(e.lhs.loc(), from.genericArgs.get(0), p2.pointerAttr, p2.isNullable);
                                 e.lhs.isPointerConvert = true;
                             }
 //                            else if ((p1.pointerAttr == Type.PointerAttr.own || p1.pointerAttr == Type.PointerAttr.ref) && p2.pointerAttr == Type.PointerAttr.inst) {
-//                                e.lhs.implicitTypeConvertTo = Type.pointerType(e.lhs.loc, from.genericArgs.get(0), p2.pointerAttr, p2.isNullable);
+//                                e.lhs.implicitTypeConvertTo = Type.pointerType(e.lhs.loc(), from.genericArgs.get(0), p2.pointerAttr, p2.isNullable);
 //                                e.lhs.isPointerConvert = true;
 //                            }
                             else if (p1.pointerAttr == Type.PointerAttr.own && p2.pointerAttr == Type.PointerAttr.ref) {
-                                e.lhs.implicitTypeConvertTo = Type.pointerType(e.lhs.loc, from.genericArgs.get(0), p2.pointerAttr, p2.isNullable);
+                                e.lhs.implicitTypeConvertTo = Type.pointerType(e.lhs.loc(), from.genericArgs.get(0), p2.pointerAttr, p2.isNullable);
                                 e.lhs.isPointerConvert = true;
                             }
                             else if (p1.pointerAttr != p2.pointerAttr) {
-                                err("Unknow convert", e.loc);
+                                err("Unknow convert", e.loc());
                             }
                         }
                         e.resolvedType = to;
@@ -1181,7 +1365,7 @@ public class ExprTypeResolver extends TypeResolver {
                 case gtEq:
                     if (curt == eq || curt == notEq) {
                         if (e.lhs.resolvedType.isFuncType() && e.rhs.resolvedType.isNullType()) {
-                            e.resolvedType = Type.boolType(e.loc);
+                            e.resolvedType = Type.sharedBoolType();
                             break;
                         }
                     }
@@ -1200,11 +1384,11 @@ public class ExprTypeResolver extends TypeResolver {
                     else {
                         resolveMathOperator(TokenKind.cmp, e);
                     }
-                    e.resolvedType = Type.boolType(e.loc);
+                    e.resolvedType = Type.sharedBoolType();
                     break;
                 case doubleAmp:
                 case doublePipe:
-                    e.resolvedType = Type.boolType(e.loc);
+                    e.resolvedType = Type.sharedBoolType();
                     break;
                 case leftShift:
                 case rightShift:
@@ -1212,7 +1396,7 @@ public class ExprTypeResolver extends TypeResolver {
                 case caret:
                 case amp:
                 case percent:
-                    e.resolvedType = Type.intType(e.loc);
+                    e.resolvedType = Type.sharedIntType();
                     break;
                 case plus:
                 case minus:
@@ -1250,7 +1434,7 @@ public class ExprTypeResolver extends TypeResolver {
                     }
                     else {
                         if (curt != TokenKind.assign) {
-                            err("Unsupport operator:"+curt, e.loc);
+                            err("Unsupport operator:"+curt, e.loc());
                         }
                     }
                     e.resolvedType = e.lhs.resolvedType;
@@ -1265,7 +1449,7 @@ public class ExprTypeResolver extends TypeResolver {
     private void resolveMathOperator(TokenKind curt, Expr.BinaryExpr e) {
         String operatorName = Buildin.operatorToName(curt);
         if (operatorName == null) {
-            err("Unknow operator:"+curt, e.loc);
+            err("Unknow operator:"+curt, e.loc());
         }
         
         Type lt = e.lhs.resolvedType;
@@ -1301,19 +1485,19 @@ public class ExprTypeResolver extends TypeResolver {
             return;
         }
         
-        AstNode rdef = resoveOnTarget(e.lhs, operatorName, e.loc, false);
+        AstNode rdef = resoveOnTarget(e.lhs, operatorName, e.pos, false);
         if (rdef == null) {
-            err("Unknow operator:"+curt, e.loc);
+            err("Unknow operator:"+curt, e.loc());
         }
         else if (rdef instanceof FuncDef f) {
             if ((f.flags & FConst.Operator) == 0) {
-                err("Expected operator", e.loc);
+                err("Expected operator", e.loc());
             }
             e.resolvedType = f.prototype.returnType;
             e.resolvedOperator = f;
         }
         else {
-            err("Invalid operator:"+curt, e.loc);
+            err("Invalid operator:"+curt, e.loc());
         }
     }
 
@@ -6,6 +6,7 @@ package sric.compiler.resolve;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import sric.compiler.CompilePass;
 import sric.compiler.CompilerLog;
 import sric.compiler.Compiler;
@@ -28,18 +29,27 @@ public class TopLevelTypeResolver extends TypeResolver {
     }
     
     public void run() {
-        module.walkChildren(this);
+        run(module.fileUnits);
+    }
+    
+    /**
+     * resolve the given units, the others are resolved before
+     */
+    public void run(List<AstNode.FileUnit> units) {
+        for (AstNode.FileUnit unit : units) {
+            this.visit(unit);
+        }
     }
 
     private void resolveImportId(IdExpr idExpr) {
         if (idExpr.namespace == null) {
             for (Depend d : module.depends) {
                 if (idExpr.name.equals(d.name)) {
-                    idExpr.resolvedDef = compiler.importModule(d.name, d.version, idExpr.loc);
+                    idExpr.resolvedDef = compiler.importModule(d.name, d.version, idExpr.loc());
                     return;
                 }
             }
-            err("Unknow depends "+idExpr.name, idExpr.loc);
+            err("Unknow depends "+idExpr.name, idExpr.loc());
             return;
         }
         resolveImportId(idExpr.namespace);
@@ -48,23 +58,23 @@ public class TopLevelTypeResolver extends TypeResolver {
         }
 
         if (idExpr.namespace.resolvedDef instanceof SModule m) {
-            AstNode node = m.getScope(log).get(idExpr.name, idExpr.loc, log);
+            AstNode node = m.getScope(log).get(idExpr.name, idExpr.pos, log);
             if (node == null) {
-                err("Unknow symbol "+idExpr.name, idExpr.loc);
+                err("Unknow symbol "+idExpr.name, idExpr.loc());
             }
             idExpr.resolvedDef = node;
             return;
         }
         else if (idExpr.namespace.resolvedDef instanceof TypeDef m) {
-            AstNode node = m.getStaticScope(log).get(idExpr.name, idExpr.loc, log);
+            AstNode node = m.getStaticScope(log).get(idExpr.name, idExpr.pos, log);
             if (node == null) {
-                err("Unknow symbol "+idExpr.name, idExpr.loc);
+                err("Unknow symbol "+idExpr.name, idExpr.loc());
             }
             idExpr.resolvedDef = node;
             return;
         }
         else {
-            err("Unsupport :: for "+idExpr.namespace.name, idExpr.loc);
+            err("Unsupport :: for "+idExpr.namespace.name, idExpr.loc());
         }
     }
 
@@ -88,7 +98,7 @@ public class TopLevelTypeResolver extends TypeResolver {
                     importScope.addAll(mcope);
                 }
                 else {
-                    err("Unsupport ::* for "+i.id.name, i.loc);
+                    err("Unsupport ::* for "+i.id.name, i.loc());
                 }
             }
         }
@@ -97,6 +107,7 @@ public class TopLevelTypeResolver extends TypeResolver {
 
     @Override
     public void visitUnit(AstNode.FileUnit v) {
+        curUnit = v;
         v.importScope = new Scope();
 
         for (AstNode.Import i : v.imports) {
@@ -112,16 +123,32 @@ public class TopLevelTypeResolver extends TypeResolver {
         v.walkChildren(this);
         
         this.scopes.clear();
+        curUnit = null;
+    }
+
+    /**
+     * resolve a definition of a unit that is already visited
+     */
+    public void resolveDef(AstNode.FileUnit unit, TopLevelDef def) {
+        curUnit = unit;
+        this.scopes.add(unit.importScope);
+        this.scopes.add(module.getScope(log));
+        this.scopes.add(Buildin.getBuildinScope());
+        
+        this.visit(def);
+        
+        this.scopes.clear();
+        curUnit = null;
     }
 
     @Override
     public void visitField(AstNode.FieldDef v) {
         if (v.parent instanceof TypeDef d && d.isEnum()) {
-            Type self = new Type(d.loc, d.name);
+            Type self = new Type(d.loc(), d.name);
             self.id.resolvedDef = d;
             v.fieldType = self;
         }
-        resolveTopLevelType(v.fieldType, v.loc);
+        resolveTopLevelType(v.fieldType, v.loc());
     }
 
     @Override
@@ -129,7 +156,7 @@ public class TopLevelTypeResolver extends TypeResolver {
         Scope gpScope = null;
         if (v.generiParamDefs != null) {
             for (GenericParamDef gp : v.generiParamDefs) {
-                resolveTopLevelType(gp.bound, gp.loc);
+                resolveTopLevelType(gp.bound, gp.loc());
             }
             gpScope = pushScope();
             for (GenericParamDef gp : v.generiParamDefs) {
@@ -138,10 +165,10 @@ public class TopLevelTypeResolver extends TypeResolver {
             this.scopes.add(gpScope);
         }
         
-        resolveTopLevelType(v.prototype.returnType, v.loc);
+        resolveTopLevelType(v.prototype.returnType, v.loc());
         if (v.prototype.paramDefs != null) {
             for (AstNode.FieldDef p : v.prototype.paramDefs) {
-                resolveTopLevelType(p.fieldType, p.loc);
+                resolveTopLevelType(p.fieldType, p.loc());
             }
         }
         
@@ -162,16 +189,16 @@ public class TopLevelTypeResolver extends TypeResolver {
             this.scopes.add(gpScope);
 
             for (GenericParamDef gp : v.generiParamDefs) {
-                resolveTopLevelType(gp.bound, gp.loc);
+                resolveTopLevelType(gp.bound, gp.loc());
             }
         }
         if (v.inheritances != null) {
             for (Type inh : v.inheritances) {
-                this.resolveTopLevelType(inh, inh.loc);
+                this.resolveTopLevelType(inh, inh.loc());
             }
         }
         if (v.enumBase != null) {
-            this.resolveTopLevelType(v.enumBase, v.enumBase.loc);
+            this.resolveTopLevelType(v.enumBase, v.enumBase.loc());
         }
         //}
         v.walkChildren(this);
@@ -183,7 +210,7 @@ public class TopLevelTypeResolver extends TypeResolver {
     
     @Override
     public void visitTypeAlias(TypeAlias v) {
-        this.resolveTopLevelType(v.type, v.loc);
+        this.resolveTopLevelType(v.type, v.loc());
     }
 
     @Override
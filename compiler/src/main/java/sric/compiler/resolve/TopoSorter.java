@@ -31,7 +31,7 @@ public class TopoSorter {
             if (state == 2) {
                 return;
             }
-            log.err("Cyclic dependency", v.loc);
+            log.err("Cyclic dependency", v.loc());
             return;
         }
         this.emitState.put(v, 1);
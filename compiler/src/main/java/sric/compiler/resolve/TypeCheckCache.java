@@ -0,0 +1,125 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+package sric.compiler.resolve;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import sric.compiler.ast.AstNode.TypeDef;
+import sric.compiler.ast.Type;
+
+/**
+ * Results of the type checks of a compilation, shared by the ErrorChecker and its body tasks.
+ * Copyable and moveable are kept per struct, fit is kept per pair of structural type keys,
+ * so the types of different expressions share the result.
+ * The nodes are not changed after the type resolving, so it's cleared before every type check.
+ *
+ * @author yangjiandong
+ */
+public class TypeCheckCache {
+
+    public static class Table<K> {
+        private final String name;
+        private final ConcurrentHashMap<K, Boolean> map = new ConcurrentHashMap<>();
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        Table(String name) {
+            this.name = name;
+        }
+
+        Boolean get(K key) {
+            Boolean res = map.get(key);
+            if (res == null) {
+                misses.increment();
+            }
+            else {
+                hits.increment();
+            }
+            return res;
+        }
+
+        void put(K key, boolean value) {
+            map.put(key, value);
+        }
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public double hitRate() {
+            long h = getHits();
+            long total = h + getMisses();
+            return total == 0 ? 0 : h / (double)total;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d hits, %d misses, %.1f%%", name, getHits(), getMisses(), hitRate() * 100);
+        }
+    }
+
+    //the keys of Type.genericArgKey
+    static class FitKey {
+        final Object from;
+        final Object to;
+        private final int hash;
+
+        FitKey(Object from, Object to) {
+            this.from = from;
+            this.to = to;
+            this.hash = from.hashCode() * 31 + to.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof FitKey k && k.hash == hash && k.from.equals(from) && k.to.equals(to);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    public final Table<TypeDef> copyable = new Table<>("copyable");
+    public final Table<TypeDef> moveable = new Table<>("moveable");
+    public final Table<FitKey> fit = new Table<>("fit");
+
+    /**
+     * forget the results of the last type check, the hit counters are kept
+     */
+    public void clear() {
+        copyable.map.clear();
+        moveable.map.clear();
+        fit.map.clear();
+    }
+
+    /**
+     * same as from.fit(to), the types without a structural key are not cached
+     */
+    public boolean fit(Type from, Type to) {
+        Object fromKey = from.genericArgKey();
+        Object toKey = fromKey == null ? null : to.genericArgKey();
+        if (toKey == null) {
+            return from.fit(to);
+        }
+        FitKey key = new FitKey(fromKey, toKey);
+        Boolean res = fit.get(key);
+        if (res == null) {
+            res = from.fit(to);
+            fit.put(key, res);
+        }
+        return res;
+    }
+
+    @Override
+    public String toString() {
+        return copyable + "\n" + moveable + "\n" + fit;
+    }
+}
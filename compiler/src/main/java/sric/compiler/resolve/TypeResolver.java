@@ -23,6 +23,8 @@ public abstract class TypeResolver  extends CompilePass {
     
     protected ArrayList<Scope> scopes = new ArrayList<>();
     protected SModule module;
+    //unit to record the depends
+    protected FileUnit curUnit = null;
     
     
     public TypeResolver(CompilerLog log, SModule module) {
@@ -41,21 +43,41 @@ public abstract class TypeResolver  extends CompilePass {
         return scopes.remove(scopes.size()-1);
     }
     
-    private AstNode findSymbol(String name, Loc loc) {
+    /**
+     * record the file of a module definition used by the current unit
+     */
+    protected void addDepend(AstNode def) {
+        if (curUnit == null) {
+            return;
+        }
+        AstNode p = def;
+        while (p instanceof TopLevelDef d) {
+            if (d.parent instanceof FileUnit unit) {
+                if (unit != curUnit && unit.module == module) {
+                    curUnit.depends.add(unit.file);
+                }
+                return;
+            }
+            p = d.parent;
+        }
+    }
+    
+    private AstNode findSymbol(String name, long pos) {
         for (int i = scopes.size()-1; i >=0; --i) {
             Scope scope = scopes.get(i);
-            AstNode node = scope.get(name, loc, log);
+            AstNode node = scope.get(name, pos, log);
             if (node != null) {
+                addDepend(node);
                 return node;
             }
         }
-        err("Unknow symbol "+name, loc);
+        err("Unknow symbol "+name, Loc.unpack(pos));
         return null;
     }
     
     protected void resolveId(Expr.IdExpr idExpr) {
         if (idExpr.namespace == null) {
-            idExpr.resolvedDef = findSymbol(idExpr.name, idExpr.loc);
+            idExpr.resolvedDef = findSymbol(idExpr.name, idExpr.pos);
             return;
         }
         resolveId(idExpr.namespace);
@@ -63,23 +85,25 @@ public abstract class TypeResolver  extends CompilePass {
             return;
         }
         if (idExpr.namespace.resolvedDef instanceof SModule m) {
-            AstNode node = m.getScope(log).get(idExpr.name, idExpr.loc, log);
+            AstNode node = m.getScope(log).get(idExpr.name, idExpr.pos, log);
             if (node == null) {
-                err("Unknow symbol "+idExpr.name, idExpr.loc);
+                err("Unknow symbol "+idExpr.name, idExpr.loc());
             }
+            addDepend(node);
             idExpr.resolvedDef = node;
             return;
         }
         else if (idExpr.namespace.resolvedDef instanceof TypeDef m) {
-            AstNode node = m.getStaticScope(log).get(idExpr.name, idExpr.loc, log);
+            AstNode node = m.getStaticScope(log).get(idExpr.name, idExpr.pos, log);
             if (node == null) {
-                err("Unknow symbol "+idExpr.name, idExpr.loc);
+                err("Unknow symbol "+idExpr.name, idExpr.loc());
             }
+            addDepend(node);
             idExpr.resolvedDef = node;
             return;
         }
         else {
-            err("Unsupport :: for "+idExpr.namespace.name, idExpr.loc);
+            err("Unsupport :: for "+idExpr.namespace.name, idExpr.loc());
         }
     }
     
@@ -96,13 +120,13 @@ public abstract class TypeResolver  extends CompilePass {
         if (type.id.resolvedDef != null) {
             if (type.id.resolvedDef instanceof GenericParamDef gpd) {
                 if (asExpr) {
-                    type.id.resolvedType = Type.metaType(type.loc, type);
+                    type.id.resolvedType = Type.metaType(type.loc(), type);
                 }
                 //type.resolvedAlias = gpd.bound;
             }
             else if (type.id.resolvedDef instanceof TypeAlias ta) {
                 if (ta.type.id.resolvedDef == null) {
-                    resolveTopLevelType(ta.type, ta.loc);
+                    resolveTopLevelType(ta.type, ta.loc());
                 }
                 type.copyFrom(ta.type, true, true);
                 type.id.namespace = ta.type.id.namespace;
@@ -112,12 +136,12 @@ public abstract class TypeResolver  extends CompilePass {
             else if (type.id.resolvedDef instanceof TypeDef) {
                 //ok
                 if (asExpr) {
-                    type.id.resolvedType = Type.metaType(type.loc, type);
+                    type.id.resolvedType = Type.metaType(type.loc(), type);
                 }
             }
             else {
                 type.id.resolvedDef = null;
-                err("It's not a type: "+type.id.name, type.loc);
+                err("It's not a type: "+type.id.name, type.loc());
             }
         }
         else {
@@ -140,7 +164,7 @@ public abstract class TypeResolver  extends CompilePass {
                         //ok
                     }
                     else {
-                        err("Array size must be int", ainfo.sizeExpr.loc);
+                        err("Array size must be int", ainfo.sizeExpr.loc());
                     }
                     isConstexpr = true;
                 }
@@ -153,7 +177,7 @@ public abstract class TypeResolver  extends CompilePass {
                 }
 
                 if (!isConstexpr) {
-                    err("Array size must be constexpr", ainfo.sizeExpr.loc);
+                    err("Array size must be constexpr", ainfo.sizeExpr.loc());
                 }
             }
         }
@@ -171,18 +195,18 @@ public abstract class TypeResolver  extends CompilePass {
                         for (int i=0; i<type.genericArgs.size(); ++i) {
                             typeGenericArgs.put(sd.generiParamDefs.get(i), type.genericArgs.get(i));
                         }
-                        type.id.resolvedDef = sd.makeInstance(typeGenericArgs);
+                        type.id.resolvedDef = module.getTypeInstance(sd, typeGenericArgs);
                         genericOk = true;
                     }
                 }
             }
             if (!genericOk) {
-                err("Generic args mismatch", type.loc);
+                err("Generic args mismatch", type.loc());
             }
         }
         else if (type.id.resolvedDef instanceof TypeDef sd) {
             if (sd.generiParamDefs != null) {
-                err("Miss generic args", type.loc);
+                err("Miss generic args", type.loc());
             }
         }
 
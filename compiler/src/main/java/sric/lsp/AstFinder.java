@@ -3,48 +3,115 @@
  */
 package sric.lsp;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import sric.compiler.CompilePass;
-import sric.compiler.CompilerLog;
 import sric.compiler.ast.AstNode;
 import sric.compiler.ast.AstNode.FileUnit;
 import sric.compiler.ast.Expr;
-import sric.compiler.ast.FConst;
+import sric.compiler.ast.Loc;
 import sric.compiler.ast.Stmt;
 import sric.compiler.ast.Type;
-import sric.lsp.JsonRpc.*;
 
 /**
- * Finds the Ast node
+ * Finds the Ast node at an offset of the unit.
+ * The ranges of the nodes are indexed once after an analysis. A range is cut to the range of its parent,
+ * so the ranges are nested like the nodes. They are sorted by start, and the ranges of the same start
+ * are in the visiting order, the outer node is first. The node at an offset is the last range that starts
+ * at or before it, or the nearest range that contains both that range and the offset.
  */
 public class AstFinder extends CompilePass {
 
-    private int pos;
-    private AstNode found;
-    private LspLogger lspLog;
+    private static class Entry {
+        final int start;
+        final int end;
+        //the node reported for the range
+        final AstNode node;
+        final Entry parent;
+        //the nearest range contains it
+        Entry outer;
 
-    public AstFinder(CompilerLog log, LspLogger lspLog) {
-        super(log);
-        this.lspLog = lspLog;
+        Entry(int start, int end, AstNode node, Entry parent) {
+            this.start = start;
+            this.end = end;
+            this.node = node;
+            this.parent = parent;
+        }
     }
-    
-    public AstNode findSourceNode(FileUnit file, int pos) {
-        this.pos = pos;
-        found = null;
+
+    private final ArrayList<Entry> list = new ArrayList<>();
+    private Entry parent = null;
+    private final Entry[] entries;
+
+    public AstFinder(FileUnit file) {
+        super(null);
         visitUnit(file);
-        return found;
+        entries = list.toArray(new Entry[0]);
+        //stable, the nodes of the same start are in the visiting order
+        Arrays.sort(entries, Comparator.comparingInt((Entry e) -> e.start));
+        list.clear();
+        
+        ArrayList<Entry> stack = new ArrayList<>();
+        for (Entry e : entries) {
+            while (!stack.isEmpty() && stack.get(stack.size() - 1).end < e.end) {
+                stack.remove(stack.size() - 1);
+            }
+            e.outer = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+            stack.add(e);
+        }
     }
     
-    boolean isContains(AstNode v) {
-        if (v.loc == null) {
-            return false;
+    public AstNode findSourceNode(int pos) {
+        int low = 0;
+        int high = entries.length - 1;
+        int last = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (entries[mid].start <= pos) {
+                last = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
         }
-        if (v.len == 0) {
-            return pos == v.loc.offset;
+        if (last == -1) {
+            return null;
         }
-        if (pos >= v.loc.offset && pos < v.loc.offset + v.len) {
-            return true;
+        for (Entry e = entries[last]; e != null; e = e.outer) {
+            if (pos < e.end) {
+                return e.node;
+            }
         }
-        return false;
+        return null;
+    }
+    
+    /**
+     * index the range of the node, null if it's out of the parent
+     */
+    private Entry enter(AstNode v, AstNode node) {
+        if (v.pos == 0) {
+            return null;
+        }
+        int start = Loc.offset(v.pos);
+        //an empty node is found at its offset
+        int end = start + Math.max(v.len, 1);
+        if (parent != null) {
+            start = Math.max(start, parent.start);
+            end = Math.min(end, parent.end);
+        }
+        if (start >= end) {
+            return null;
+        }
+        Entry e = new Entry(start, end, node, parent);
+        list.add(e);
+        parent = e;
+        return e;
+    }
+    
+    private void exit(Entry e) {
+        parent = e.parent;
     }
 
     @Override
@@ -54,43 +121,43 @@ public class AstFinder extends CompilePass {
 
     @Override
     public void visitField(AstNode.FieldDef v) {
-        //lspLog.log("visitField: '" + v.name+ "' pos:" + v.loc + ", offset:" + v.loc.offset + ", len:"+v.len);
-        if (isContains(v)) {
-            found = v;
-            visitType(v.fieldType);
-            if (v.initExpr != null) {
-                visit(v.initExpr);
-            }
+        Entry e = enter(v, v);
+        if (e == null) {
+            return;
+        }
+        visitType(v.fieldType);
+        if (v.initExpr != null) {
+            visit(v.initExpr);
         }
+        exit(e);
     }
     
-    boolean visitType(Type type) {
+    void visitType(Type type) {
         if (type == null) 
-            return false;
+            return;
         
-        if (isContains(type)) {
-            found = type;
-            if (type.genericArgs != null) {
-                for (var p : type.genericArgs) {
-                    if (visitType(p)) {
-                        return true;
-                    }
-                }
+        Entry e = enter(type, type);
+        if (e == null) {
+            return;
+        }
+        if (type.genericArgs != null) {
+            for (var p : type.genericArgs) {
+                visitType(p);
             }
-            return true;
         }
-        return false;
+        exit(e);
     }
     
     void visitFuncPrototype(AstNode v, AstNode.FuncPrototype prototype) {
         if (prototype.paramDefs != null) {
             for (var p : prototype.paramDefs) {
-                if (isContains(p)) {
-                    found = v;
+                Entry e = enter(p, v);
+                if (e != null) {
                     visitType(p.fieldType);
                     if (p.initExpr != null) {
                         visit(p.initExpr);
                     }
+                    exit(e);
                 }
             }
         }
@@ -101,30 +168,32 @@ public class AstFinder extends CompilePass {
 
     @Override
     public void visitFunc(AstNode.FuncDef v) {
-        if (!isContains(v)) {
+        Entry e = enter(v, v);
+        if (e == null) {
             return;
         }
-        found = v;
         
         visitFuncPrototype(v, v.prototype);
         
-        if (v.code != null) {
-            this.visit(v.code);
+        if (v.hasCode()) {
+            this.visit(v.getCode());
         }
+        exit(e);
     }
 
     @Override
     public void visitTypeDef(AstNode.TypeDef v) {
-        if (!isContains(v)) {
+        Entry e = enter(v, v);
+        if (e == null) {
             return;
         }
-        found = v;
         
         //if (v instanceof AstNode.StructDef sd) {
             if (v.generiParamDefs != null) {
                 for (var p: v.generiParamDefs) {
-                    if (isContains(p)) {
-                        found = v;
+                    Entry pe = enter(p, v);
+                    if (pe != null) {
+                        exit(pe);
                     }
                 }
             }
@@ -137,157 +206,184 @@ public class AstFinder extends CompilePass {
         //}
         
         v.walkChildren(this);
+        exit(e);
     }
 
     @Override
     public void visitStmt(Stmt v) {
-//        lspLog.log("visitStmt: '" + v+ "' pos:" + v.loc + ", offset:" + v.loc.offset + ", len:"+v.len);
-        if (!isContains(v)) {
+        Entry entry = enter(v, v);
+        if (entry == null) {
             return;
         }
-        found = v;
         
-        if (v instanceof AstNode.Block bs) {
-            bs.walkChildren(this);
-        }
-        else if (v instanceof Stmt.IfStmt ifs) {
-            this.visit(ifs.condition);
-            this.visit(ifs.block);
-            if (ifs.elseBlock != null) {
-                this.visit(ifs.elseBlock);
+        switch (v.astKind()) {
+            case Block -> {
+                AstNode.Block bs = (AstNode.Block)v;
+                bs.walkChildren(this);
             }
-        }
-        else if (v instanceof Stmt.LocalDefStmt e) {
-            this.visit(e.fieldDef);
-        }
-        else if (v instanceof Stmt.WhileStmt whiles) {
-            this.visit(whiles.condition);
-            this.visit(whiles.block);
-        }
-        else if (v instanceof Stmt.ForStmt fors) {
-            if (fors.init != null) {
-                if (fors.init instanceof Stmt.LocalDefStmt varDef) {
-                    this.visit(varDef.fieldDef);
-                }
-                else if (fors.init instanceof Stmt.ExprStmt s) {
-                    this.visit(s.expr);
+            case IfStmt -> {
+                Stmt.IfStmt ifs = (Stmt.IfStmt)v;
+                this.visit(ifs.condition);
+                this.visit(ifs.block);
+                if (ifs.elseBlock != null) {
+                    this.visit(ifs.elseBlock);
                 }
             }
-            
-            if (fors.condition != null) {
-                this.visit(fors.condition);
+            case LocalDefStmt -> {
+                Stmt.LocalDefStmt e = (Stmt.LocalDefStmt)v;
+                this.visit(e.fieldDef);
             }
-            
-            if (fors.update != null) {
-                this.visit(fors.update);
+            case WhileStmt -> {
+                Stmt.WhileStmt whiles = (Stmt.WhileStmt)v;
+                this.visit(whiles.condition);
+                this.visit(whiles.block);
             }
-            this.visit(fors.block);
-        }
-        else if (v instanceof Stmt.SwitchStmt switchs) {
-            this.visit(switchs.condition);
-            
-            for (Stmt.CaseBlock cb : switchs.cases) {
-                this.visit(cb.caseExpr);
-                this.visit(cb.block);
+            case ForStmt -> {
+                Stmt.ForStmt fors = (Stmt.ForStmt)v;
+                if (fors.init != null) {
+                    if (fors.init instanceof Stmt.LocalDefStmt varDef) {
+                        this.visit(varDef.fieldDef);
+                    }
+                    else if (fors.init instanceof Stmt.ExprStmt s) {
+                        this.visit(s.expr);
+                    }
+                }
+                
+                if (fors.condition != null) {
+                    this.visit(fors.condition);
+                }
+                
+                if (fors.update != null) {
+                    this.visit(fors.update);
+                }
+                this.visit(fors.block);
             }
-            
-            if (switchs.defaultBlock != null) {
-                this.visit(switchs.defaultBlock);
+            case SwitchStmt -> {
+                Stmt.SwitchStmt switchs = (Stmt.SwitchStmt)v;
+                this.visit(switchs.condition);
+                
+                for (Stmt.CaseBlock cb : switchs.cases) {
+                    this.visit(cb.caseExpr);
+                    this.visit(cb.block);
+                }
+                
+                if (switchs.defaultBlock != null) {
+                    this.visit(switchs.defaultBlock);
+                }
             }
-        }
-        else if (v instanceof Stmt.ExprStmt exprs) {
-            this.visit(exprs.expr);
-        }
-        else if (v instanceof Stmt.JumpStmt jumps) {
-            
-        }
-        else if (v instanceof Stmt.UnsafeBlock bs) {
+            case ExprStmt -> {
+                Stmt.ExprStmt exprs = (Stmt.ExprStmt)v;
+                this.visit(exprs.expr);
+            }
+            case JumpStmt -> {
+                Stmt.JumpStmt jumps = (Stmt.JumpStmt)v;
+                
+            }
+            case UnsafeBlock -> {
+                Stmt.UnsafeBlock bs = (Stmt.UnsafeBlock)v;
 
-            this.visit(bs.block);
-        }
-        else if (v instanceof Stmt.ReturnStmt rets) {
-            if (rets.expr != null) {
-                this.visit(rets.expr);
+                this.visit(bs.block);
+            }
+            case ReturnStmt -> {
+                Stmt.ReturnStmt rets = (Stmt.ReturnStmt)v;
+                if (rets.expr != null) {
+                    this.visit(rets.expr);
+                }
+            }
+            default -> {
+                //err("Unkown stmt:"+v, v.loc());
             }
         }
-        else {
-            //err("Unkown stmt:"+v, v.loc);
-        }
+        exit(entry);
     }
 
     @Override
     public void visitExpr(Expr v) {
-//        lspLog.log("visitExpr: '" + v+ "' pos:" + v.loc + ", offset:" + v.loc.offset + ", len:"+v.len);
-        if (!isContains(v)) {
+        Entry entry = enter(v, v);
+        if (entry == null) {
             return;
         }
-        found = v;
 
-        if (v instanceof Expr.IdExpr e) {
-            if (e.namespace != null) {
-                this.visit(e.namespace);
+        switch (v.astKind()) {
+            case IdExpr -> {
+                Expr.IdExpr e = (Expr.IdExpr)v;
+                if (e.namespace != null) {
+                    this.visit(e.namespace);
+                }
             }
-        }
-        else if (v instanceof Expr.AccessExpr e) {
-            this.visit(e.target);
-        }
-        else if (v instanceof Expr.LiteralExpr e) {
-        }
-        else if (v instanceof Expr.BinaryExpr e) {
-            this.visit(e.lhs);
-            this.visit(e.rhs);
-        }
-        else if (v instanceof Expr.CallExpr e) {
-            this.visit(e.target);
-            if (e.args != null) {
-                int i = 0;
-                for (Expr.CallArg t : e.args) {
-                    this.visit(t.argExpr);
-                    ++i;
+            case AccessExpr -> {
+                Expr.AccessExpr e = (Expr.AccessExpr)v;
+                this.visit(e.target);
+            }
+            case LiteralExpr -> {
+                Expr.LiteralExpr e = (Expr.LiteralExpr)v;
+            }
+            case BinaryExpr -> {
+                Expr.BinaryExpr e = (Expr.BinaryExpr)v;
+                this.visit(e.lhs);
+                this.visit(e.rhs);
+            }
+            case CallExpr -> {
+                Expr.CallExpr e = (Expr.CallExpr)v;
+                this.visit(e.target);
+                if (e.args != null) {
+                    int i = 0;
+                    for (Expr.CallArg t : e.args) {
+                        this.visit(t.argExpr);
+                        ++i;
+                    }
                 }
             }
-        }
-        else if (v instanceof Expr.UnaryExpr e) {
-            this.visit(e.operand);
-        }
-        else if (v instanceof Expr.TypeExpr e) {
-            visitType(e.type);
-        }
-        else if (v instanceof Expr.IndexExpr e) {
-            this.visit(e.target);
-            this.visit(e.index);
-        }
-        else if (v instanceof Expr.GenericInstance e) {
-            this.visit(e.target);
-            for (Type t : e.genericArgs) {
-                this.visitType(t);
+            case UnaryExpr -> {
+                Expr.UnaryExpr e = (Expr.UnaryExpr)v;
+                this.visit(e.operand);
             }
-        }
-        else if (v instanceof Expr.IfExpr e) {
-            this.visit(e.condition);
-            this.visit(e.trueExpr);
-            this.visit(e.falseExpr);
-        }
-        else if (v instanceof Expr.WithBlockExpr e) {
-            this.visit(e.target);
-            this.visit(e.block);
-        }
-        else if (v instanceof Expr.ArrayBlockExpr e) {
-            visitType(e.type);
-            for (Expr t : e.args) {
-                this.visit(t);
+            case TypeExpr -> {
+                Expr.TypeExpr e = (Expr.TypeExpr)v;
+                visitType(e.type);
+            }
+            case IndexExpr -> {
+                Expr.IndexExpr e = (Expr.IndexExpr)v;
+                this.visit(e.target);
+                this.visit(e.index);
+            }
+            case GenericInstance -> {
+                Expr.GenericInstance e = (Expr.GenericInstance)v;
+                this.visit(e.target);
+                for (Type t : e.genericArgs) {
+                    this.visitType(t);
+                }
+            }
+            case IfExpr -> {
+                Expr.IfExpr e = (Expr.IfExpr)v;
+                this.visit(e.condition);
+                this.visit(e.trueExpr);
+                this.visit(e.falseExpr);
+            }
+            case WithBlockExpr -> {
+                Expr.WithBlockExpr e = (Expr.WithBlockExpr)v;
+                this.visit(e.target);
+                this.visit(e.block);
+            }
+            case ArrayBlockExpr -> {
+                Expr.ArrayBlockExpr e = (Expr.ArrayBlockExpr)v;
+                visitType(e.type);
+                for (Expr t : e.args) {
+                    this.visit(t);
+                }
+            }
+            case ClosureExpr -> {
+                Expr.ClosureExpr e = (Expr.ClosureExpr)v;
+                visitFuncPrototype(e, e.prototype);
+                this.visit(e.code);
             }
-        }
-        else if (v instanceof Expr.ClosureExpr e) {
-            visitFuncPrototype(e, e.prototype);
-            this.visit(e.code);
-        }
 //        else if (v instanceof Expr.NonNullableExpr e) {
 //            this.visit(e.operand);
 //        }
-        else {
-            //err("Unkown expr:"+v, v.loc);
+            default -> {
+                //err("Unkown expr:"+v, v.loc());
+            }
         }
-
+        exit(entry);
     }
 }
@@ -5,7 +5,6 @@
 package sric.lsp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import sric.compiler.ast.AstNode;
 import sric.compiler.ast.AstNode.FieldDef;
 import sric.compiler.ast.AstNode.FileUnit;
@@ -112,19 +111,20 @@ public class CompletionFinder {
     }
     
     private void addScope(Scope scope, String prefix, boolean filterPrivate) {
-        for (HashMap.Entry<String, ArrayList<AstNode>> entry : scope.symbolTable.entrySet()) {
-            String name = entry.getKey();
+        scope.forEach((name, node) -> {
             if (prefix == null || name.startsWith(prefix)) {
-                for (AstNode anode : entry.getValue()) {
-                    if (filterPrivate && anode instanceof TopLevelDef tdef) {
-                        if ((tdef.flags & FConst.Private) != 0) {
-                            continue;
-                        }
+                AstNode anode = Scope.load(node);
+                if (anode == null) {
+                    return;
+                }
+                if (filterPrivate && anode instanceof TopLevelDef tdef) {
+                    if ((tdef.flags & FConst.Private) != 0) {
+                        return;
                     }
-                    defs.add(anode);
                 }
+                defs.add(anode);
             }
-        }
+        });
     }
 
 }
@@ -9,6 +9,7 @@ import sric.compiler.ast.AstNode;
 import sric.compiler.ast.AstNode.FileUnit;
 import sric.compiler.ast.Expr;
 import sric.compiler.ast.Expr.*;
+import sric.compiler.ast.Loc;
 import sric.compiler.ast.Type;
 import sric.compiler.resolve.ErrorChecker;
 import sric.lsp.JsonRpc.*;
@@ -20,10 +21,20 @@ public class Document {
 
     public DocumentText textBuffer;
     public FileUnit ast;
+    //node index of the ast, built on the first query after an update
+    private AstFinder astIndex;
     public sric.compiler.Compiler compiler;
     private LspLogger log;
     public String file;
     
+    //the changes since the last update are all in the body of changedFunc
+    private boolean bodyEdit = false;
+    private AstNode.FuncDef changedFunc = null;
+    private int changedDelta = 0;
+    
+    //edits {begin, end, length} since the last analysis, to map the positions of a query back to the ast
+    private final ArrayList<int[]> edits = new ArrayList<>();
+    
     public Document(TextDocument document, LspLogger log, sric.compiler.Compiler compiler, String file) {
         this.log = log;
         this.compiler = compiler;
@@ -36,26 +47,117 @@ public class Document {
     public void setCompileResult(sric.compiler.Compiler compiler) {
         this.compiler = compiler;
         this.ast = compiler.module.findFileUnit(file);
+        astIndex = null;
+        bodyEdit = false;
+        edits.clear();
     }
 
     public void insert(JsonRpc.Range range, String text) {
+        int begin = textBuffer.getPosIndex(range.start);
+        int end = textBuffer.getPosIndex(range.end);
+        trackChange(begin, end, text.length());
+        edits.add(new int[] { begin, end, text.length() });
         textBuffer.insert(range, text);
     }
     
     public void setText(String text) {
+        bodyEdit = false;
+        edits.add(new int[] { 0, textBuffer.length(), text.length() });
         textBuffer.setText(text);
     }
     
+    /**
+     * check only the function when the changes are in one body
+     */
     public void updateFile() {
-        ast = compiler.updateFile(file, textBuffer.getText());
+        if (bodyEdit && changedFunc != null && compiler.updateFuncBody(ast, changedFunc, textBuffer, changedDelta)) {
+            log.log("updateFuncBody: " + changedFunc.name);
+        }
+        else {
+            ast = compiler.updateFile(file, textBuffer);
+        }
+        astIndex = null;
+        bodyEdit = ast != null;
+        changedFunc = null;
+        changedDelta = 0;
+        edits.clear();
+    }
+    
+    /**
+     * the offset in the text of the last analysis, an offset in an edited range is moved to its begin
+     */
+    private int analyzedIndex(int index) {
+        for (int i = edits.size() - 1; i >= 0; --i) {
+            int[] edit = edits.get(i);
+            if (index >= edit[0] + edit[2]) {
+                index -= edit[2] - (edit[1] - edit[0]);
+            }
+            else if (index > edit[0]) {
+                index = edit[0];
+            }
+        }
+        return index;
+    }
+    
+    private void trackChange(int begin, int end, int len) {
+        if (!bodyEdit) {
+            return;
+        }
+        AstNode.FuncDef func = changedFunc;
+        if (func == null) {
+            func = findFuncBody(begin, end);
+        }
+        else if (!isInBody(func, begin, end)) {
+            func = null;
+        }
+        
+        if (func == null) {
+            bodyEdit = false;
+            return;
+        }
+        changedFunc = func;
+        changedDelta += len - (end - begin);
+    }
+    
+    /**
+     * the function whose body contains the range, a closure is checked with the function
+     */
+    private AstNode.FuncDef findFuncBody(int begin, int end) {
+        for (AstNode.FuncDef f : ast.funcDefs) {
+            if (isInBody(f, begin, end)) {
+                return f;
+            }
+        }
+        for (AstNode.TypeDef t : ast.typeDefs) {
+            for (AstNode.FuncDef f : t.funcDefs) {
+                if (isInBody(f, begin, end)) {
+                    return f;
+                }
+            }
+        }
+        return null;
+    }
+    
+    //between the braces of the body in the current text
+    private boolean isInBody(AstNode.FuncDef f, int begin, int end) {
+        if (!f.isCodeLoaded() || f.getCode() == null) {
+            return false;
+        }
+        AstNode.Block code = f.getCode();
+        int offset = Loc.offset(code.pos);
+        int rbrace = offset + code.len - 1 + changedDelta;
+        return begin > offset && end <= rbrace;
     }
     
     private AstNode getAstNodeAt(Position pos) {
         if (ast == null) return null;
-        AstFinder sta = new AstFinder(null, log);
-        int index = textBuffer.getPosIndex(pos);
+        if (astIndex == null) {
+            astIndex = new AstFinder(ast);
+        }
+        //the ast is of the last analysis, the text may be changed after it
+        int index = analyzedIndex(textBuffer.getPosIndex(pos));
         index--;//before it
-        AstNode node = sta.findSourceNode(ast, index);
+        AstNode node = astIndex.findSourceNode(index);
         
         log.log("getAstNodeAt: '" + node+ "' at:" + index);
         return node;
@@ -115,7 +217,7 @@ public class Document {
         StringBuilder sb = new StringBuilder();
         index--;
         while(index > -1) {
-            char c = textBuffer.buffer.charAt(index);
+            char c = textBuffer.charAt(index);
 
             if ((Character.isAlphabetic(c) || Character.isDigit(c) || c == '_' || c > 256)) {
                 sb.append(c);
@@ -1,50 +1,206 @@
+
 package sric.lsp;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import sric.compiler.ast.SourceFile;
 
 /**
+ * Text of an open document, it's read by the tokenizer as a CharSequence without copying.
+ * The chars are kept in a gap buffer, the gap is moved to the edit, so typing at a place
+ * only moves the chars between the last edit and it.
+ * The line starts are kept in the same way: the lines before the gap are offsets and the lines
+ * after the gap are distances to the end of the text, which are not changed by an edit before them.
  *
  * @author yangjiandong
  */
-public class DocumentText {
-    private List<Integer> lineMap = new ArrayList<>();
-    public StringBuilder buffer;
-    
+public class DocumentText implements CharSequence {
+    private char[] chars = new char[0];
+    private int gapStart = 0;
+    private int gapEnd = 0;
+
+    //the first line always starts at 0 before the gap
+    private int[] lines = new int[] { 0 };
+    private int lineGapStart = 1;
+    private int lineGapEnd = 1;
+
+    @Override
+    public int length() {
+        return chars.length - (gapEnd - gapStart);
+    }
+
+    @Override
+    public char charAt(int index) {
+        return index < gapStart ? chars[index] : chars[index + gapEnd - gapStart];
+    }
+
+    /**
+     * a copy of the chars, the document may be changed after it
+     */
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return substring(start, end);
+    }
+
+    public String substring(int start, int end) {
+        if (end <= gapStart) {
+            return new String(chars, start, end - start);
+        }
+        int gap = gapEnd - gapStart;
+        if (start >= gapStart) {
+            return new String(chars, start + gap, end - start);
+        }
+        char[] res = new char[end - start];
+        System.arraycopy(chars, start, res, 0, gapStart - start);
+        System.arraycopy(chars, gapEnd, res, gapStart - start, end - gapStart);
+        return new String(res);
+    }
+
+    @Override
+    public String toString() {
+        return substring(0, length());
+    }
+
+    public int getLineCount() {
+        return lines.length - (lineGapEnd - lineGapStart);
+    }
+
     public int getLineStart(int lineNumber) {
-        return this.lineMap.get(lineNumber);
+        if (lineNumber < lineGapStart) {
+            return lines[lineNumber];
+        }
+        return length() - lines[lineNumber + lineGapEnd - lineGapStart];
     }
-    
+
+    /**
+     * zero base line of the offset
+     */
+    public int getLineIndex(int index) {
+        int low = 0;
+        int high = getLineCount() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (getLineStart(mid) <= index) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
     public int getPosIndex(JsonRpc.Position pos) {
         return getLineStart(pos.line) + pos.character;
     }
 
+    public JsonRpc.Position getPosition(int index) {
+        JsonRpc.Position pos = new JsonRpc.Position();
+        pos.line = getLineIndex(index);
+        pos.character = index - getLineStart(pos.line);
+        return pos;
+    }
+
     public void insert(JsonRpc.Range range, String text) {
         int fromIndex = getPosIndex(range.start);
         int toIndex = getPosIndex(range.end);
-        
-        this.buffer.replace(fromIndex, toIndex, text);   
-        refreshLineMap();
+        replace(fromIndex, toIndex, text);
     }
-    
-    public void setText(String text) {
-        this.buffer = new StringBuilder(text);
-        refreshLineMap();
-    }
-    
-    private void refreshLineMap() {
-        this.lineMap.clear();
-        this.lineMap.add(0); // first line starts with the first character
-         
-        for(int i = 0; i < this.buffer.length(); i++) {
-            char c = this.buffer.charAt(i);
-            if(c == '\n') {
-                this.lineMap.add(i + 1);
+
+    /**
+     * replace the chars in [from, to) by the text
+     */
+    public void replace(int from, int to, String text) {
+        //the lines start in (from, to] are removed
+        int fromLine = getLineIndex(from);
+        int toLine = getLineIndex(to);
+        moveLineGap(fromLine + 1);
+        lineGapEnd += toLine - fromLine;
+
+        moveGap(from);
+        gapEnd += to - from;
+        ensureGap(text.length());
+        text.getChars(0, text.length(), chars, gapStart);
+        gapStart += text.length();
+
+        for (int i = 0; i < text.length(); ++i) {
+            if (text.charAt(i) == '\n') {
+                if (lineGapStart == lineGapEnd) {
+                    growLineGap();
+                }
+                lines[lineGapStart++] = from + i + 1;
             }
-        }       
+        }
+    }
+
+    public void setText(String text) {
+        chars = Arrays.copyOf(text.toCharArray(), text.length() + 64);
+        gapStart = text.length();
+        gapEnd = chars.length;
+
+        //same line index as the locations of the compiler
+        int[] starts = SourceFile.lineStarts(text);
+        lines = Arrays.copyOf(starts, starts.length + 16);
+        lineGapStart = starts.length;
+        lineGapEnd = lines.length;
     }
-    
+
     public String getText() {
-        return buffer.toString();
+        return toString();
+    }
+
+    private void moveGap(int index) {
+        if (index < gapStart) {
+            int n = gapStart - index;
+            System.arraycopy(chars, index, chars, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        }
+        else if (index > gapStart) {
+            int n = index - gapStart;
+            System.arraycopy(chars, gapEnd, chars, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private void ensureGap(int size) {
+        int gap = gapEnd - gapStart;
+        if (gap >= size) {
+            return;
+        }
+        int tail = chars.length - gapEnd;
+        int newLen = Math.max(chars.length * 2, chars.length - gap + size + 64);
+        char[] newChars = new char[newLen];
+        System.arraycopy(chars, 0, newChars, 0, gapStart);
+        System.arraycopy(chars, gapEnd, newChars, newLen - tail, tail);
+        chars = newChars;
+        gapEnd = newLen - tail;
+    }
+
+    /**
+     * move the line gap before the line, the lines moved over the gap are converted
+     */
+    private void moveLineGap(int line) {
+        int len = length();
+        while (line < lineGapStart) {
+            --lineGapStart;
+            --lineGapEnd;
+            lines[lineGapEnd] = len - lines[lineGapStart];
+        }
+        while (line > lineGapStart) {
+            lines[lineGapStart] = len - lines[lineGapEnd];
+            ++lineGapStart;
+            ++lineGapEnd;
+        }
+    }
+
+    private void growLineGap() {
+        int tail = lines.length - lineGapEnd;
+        int newLen = lines.length * 2 + 16;
+        int[] newLines = new int[newLen];
+        System.arraycopy(lines, 0, newLines, 0, lineGapStart);
+        System.arraycopy(lines, lineGapEnd, newLines, newLen - tail, tail);
+        lines = newLines;
+        lineGapEnd = newLen - tail;
     }
 }
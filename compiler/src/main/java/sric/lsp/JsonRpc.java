@@ -170,14 +170,15 @@ public class JsonRpc {
     
     public static class RpcRequest {
         public String jsonrpc = "2.0"; 
-        public Integer id;
+        //number or string
+        public JsonElement id;
         public String method;
         public JsonElement params;
     }
     
     public static class RpcResponse {
         public String jsonrpc = "2.0"; 
-        public Integer id;
+        public JsonElement id;
         public Object result;
         public ResponseError error;
     }
@@ -214,6 +215,10 @@ public class JsonRpc {
         public TextDocumentIdentifier textDocument;
     }
     
+    public static class CancelParams {
+        public JsonElement id;
+    }
+    
     public static class DidChangeParams {
         public VersionedTextDocumentIdentifier textDocument;
         public TextDocumentContentChangeEvent[] contentChanges;
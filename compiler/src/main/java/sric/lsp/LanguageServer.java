@@ -4,6 +4,11 @@
 package sric.lsp;
 
 import java.io.*;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.*;
 
@@ -21,6 +26,15 @@ public class LanguageServer {
     private RequestHandler handler;
     private MessageSender sender;
     
+    //decoded by the reader thread, handled by the worker thread
+    private final BlockingQueue<RpcRequest> messages = new LinkedBlockingQueue<>();
+    //ids of the queued requests, mapped to true when the client cancels it before it's handled
+    private final Map<JsonElement, Boolean> pending = new ConcurrentHashMap<>();
+    private static final RpcRequest exitMessage = new RpcRequest();
+    static {
+        exitMessage.method = "exit";
+    }
+    
     public LanguageServer(String libPath, boolean debug) {        
         this.isInitialized = false;
         
@@ -28,8 +42,7 @@ public class LanguageServer {
                 //.serializeNulls()
                 .create();
         
-        LspLogger.cur().init(debug);
-        this.log = LspLogger.cur();
+        this.log = new LspLogger(debug);
         
         this.sender = new MessageSender(this.gson, this.log);
         this.handler = new RequestHandler(new Workspace(libPath, log), sender, this.log);
@@ -95,6 +108,10 @@ public class LanguageServer {
     }
     
     public void start() throws IOException {
+        Thread worker = new Thread(this::processMessages, "sric-lsp-worker");
+        worker.setDaemon(true);
+        worker.start();
+        
         int errorCount = 0;
         try(BufferedInputStream reader = new BufferedInputStream(System.in)) {
             boolean isRunning = true;
@@ -119,80 +136,167 @@ public class LanguageServer {
                     log.log("Parse message error: "+raw);
                     continue;
                 }
-
+                if (msg == null || msg.method == null) {
+                    //a response to the server is not expected
+                    log.log("Unknown message: "+raw);
+                    continue;
+                }
+                
                 switch(msg.method) {
-                    case "initialize": {
-                        InitializationParams init = gson.fromJson(msg.params, InitializationParams.class);
-                        this.handler.handleInitialize(msg, init);
-                        this.isInitialized = true;
-                        break;
-                    }
-                    case "shutdown": {                        
+                    case "$/cancelRequest": {
+                        CancelParams params;
+                        try {
+                            params = gson.fromJson(msg.params, CancelParams.class);
+                        }
+                        catch (Exception e) {
+                            log.log("Parse cancel error: "+raw);
+                            continue;
+                        }
+                        if (params != null && params.id != null) {
+                            //the requests already handled are not cancelled
+                            pending.replace(params.id, false, true);
+                        }
                         break;
                     }
                     case "exit": {
                         isRunning = false;
+                        messages.add(msg);
                         break;
                     }
                     default: {
-                        if(!this.isInitialized) {
-                            RpcResponse response = new RpcResponse();
-                            response.id = msg.id;
-                            response.error = new ResponseError();
-                            response.error.code = ErrorCodes.ServerNotInitialized.getValue();
-                            this.sender.sendMessage(response);
-                            break;
+                        if (msg.id != null) {
+                            pending.put(msg.id, false);
                         }
-                        
-                        switch(msg.method) {
-                            case "textDocument/didOpen": {     
-                                this.handler.handleTextDocumentDidOpen(msg, gson.fromJson(msg.params, DidOpenParams.class));
-                                break;
-                            }
-                            case "textDocument/didClose": {
-                                this.handler.handleTextDocumentDidClose(msg, gson.fromJson(msg.params, DidCloseParams.class));
-                                break;
-                            }
-                            case "textDocument/didChange": {
-                                this.handler.handleTextDocumentDidChange(msg, gson.fromJson(msg.params, DidChangeParams.class));
-                                break;
-                            }
-                            case "textDocument/didSave": {
-                                this.handler.handleTextDocumentDidSave(msg, gson.fromJson(msg.params, DidSaveTextDocumentParams.class));
-                                break;
-                            }
-                            case "textDocument/definition": {
-                                this.handler.handleTextDocumentDefinition(msg, gson.fromJson(msg.params, TextDocumentPositionParams.class));
-                                break;
-                            }
-                            case "textDocument/documentSymbol": {
-                                this.handler.handleTextDocumentDocumentSymbol(msg, gson.fromJson(msg.params, DocumentSymbolParams.class));
-                                break;
-                            }
-                            case "textDocument/completion": {
-                                this.handler.handleTextDocumentCompletion(msg, gson.fromJson(msg.params, CompletionParams.class));
-                                break;
-                            }
-                            case "textDocument/references": {
-                                this.handler.handleTextDocumentReferences(msg, gson.fromJson(msg.params, ReferenceParams.class));
-                                break;
-                            }
-                            case "workspace/symbol": {
-                                this.handler.handleWorkspaceSymbol(msg, gson.fromJson(msg.params, WorkspaceSymbolParams.class));
-                                break;
-                            }
-                        }
-                        
+                        messages.add(msg);
                         break;
                     }
                 }
-                    
             }
         }
+        finally {
+            messages.add(exitMessage);
+        }
         
+        try {
+            worker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
         log.log("Normal shutdown");  
     }
     
+    /**
+     * Handle the messages in order on the worker thread.
+     * The changed documents are analyzed one by one when no change comes in the delay, a message
+     * received meanwhile is handled before the next document, and a change puts the analysis off again.
+     * A query doesn't wait for the pending analysis, it's answered from the last analysis of the document.
+     * The analysis updates the ast and the module in place, so it's not run at the same time as a query:
+     * a query still waits for the one document being analyzed.
+     */
+    private void processMessages() {
+        while (true) {
+            RpcRequest msg;
+            try {
+                long delay = handler.analysisDelay();
+                if (delay < 0) {
+                    msg = messages.take();
+                }
+                else {
+                    msg = messages.poll(delay, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException ex) {
+                return;
+            }
+            
+            try {
+                if (msg == null) {
+                    handler.analyzeNext();
+                    continue;
+                }
+                if (msg.method.equals("exit")) {
+                    return;
+                }
+                if (msg.id != null && pending.remove(msg.id) == Boolean.TRUE) {
+                    RpcResponse response = new RpcResponse();
+                    response.id = msg.id;
+                    response.error = new ResponseError();
+                    response.error.code = ErrorCodes.RequestCancelled.getValue();
+                    this.sender.sendMessage(response);
+                    continue;
+                }
+                handleMessage(msg);
+            }
+            catch (Exception e) {
+                log.log("ERROR: " + e);
+            }
+        }
+    }
+    
+    private void handleMessage(RpcRequest msg) {
+        switch(msg.method) {
+            case "initialize": {
+                InitializationParams init = gson.fromJson(msg.params, InitializationParams.class);
+                this.handler.handleInitialize(msg, init);
+                this.isInitialized = true;
+                break;
+            }
+            case "shutdown": {                        
+                break;
+            }
+            default: {
+                if(!this.isInitialized) {
+                    RpcResponse response = new RpcResponse();
+                    response.id = msg.id;
+                    response.error = new ResponseError();
+                    response.error.code = ErrorCodes.ServerNotInitialized.getValue();
+                    this.sender.sendMessage(response);
+                    break;
+                }
+                
+                switch(msg.method) {
+                    case "textDocument/didOpen": {     
+                        this.handler.handleTextDocumentDidOpen(msg, gson.fromJson(msg.params, DidOpenParams.class));
+                        break;
+                    }
+                    case "textDocument/didClose": {
+                        this.handler.handleTextDocumentDidClose(msg, gson.fromJson(msg.params, DidCloseParams.class));
+                        break;
+                    }
+                    case "textDocument/didChange": {
+                        this.handler.handleTextDocumentDidChange(msg, gson.fromJson(msg.params, DidChangeParams.class));
+                        break;
+                    }
+                    case "textDocument/didSave": {
+                        this.handler.handleTextDocumentDidSave(msg, gson.fromJson(msg.params, DidSaveTextDocumentParams.class));
+                        break;
+                    }
+                    case "textDocument/definition": {
+                        this.handler.handleTextDocumentDefinition(msg, gson.fromJson(msg.params, TextDocumentPositionParams.class));
+                        break;
+                    }
+                    case "textDocument/documentSymbol": {
+                        this.handler.handleTextDocumentDocumentSymbol(msg, gson.fromJson(msg.params, DocumentSymbolParams.class));
+                        break;
+                    }
+                    case "textDocument/completion": {
+                        this.handler.handleTextDocumentCompletion(msg, gson.fromJson(msg.params, CompletionParams.class));
+                        break;
+                    }
+                    case "textDocument/references": {
+                        this.handler.handleTextDocumentReferences(msg, gson.fromJson(msg.params, ReferenceParams.class));
+                        break;
+                    }
+                    case "workspace/symbol": {
+                        this.handler.handleWorkspaceSymbol(msg, gson.fromJson(msg.params, WorkspaceSymbolParams.class));
+                        break;
+                    }
+                }
+                
+                break;
+            }
+        }
+    }
+    
     public void shutdown() {
         
     }
@@ -13,9 +13,7 @@ public class LspLogger {
     private RandomAccessFile log;
     private boolean enableLog;
     
-    private static LspLogger instance = new LspLogger();
-    
-    public void init(boolean enableLog) {
+    public LspLogger(boolean enableLog) {
         try {
             this.enableLog = enableLog;
             if(enableLog) {
@@ -29,11 +27,7 @@ public class LspLogger {
         }
     }
 
-    public static LspLogger cur() {
-        return instance;
-    }
-
-    public void log(String message) {
+    public synchronized void log(String message) {
         try {
             if(this.enableLog) {
                 this.log.writeBytes(message);
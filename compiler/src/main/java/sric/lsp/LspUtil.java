@@ -19,29 +19,38 @@ import sric.lsp.JsonRpc.*;
 public class LspUtil {
 
     public static Location locationFromNode(AstNode node) {
-        if(node == null || node.loc == null) {
+        if(node == null) {
+            return null;
+        }
+        //null if the node is made by the compiler or its file is released
+        Loc loc = node.loc();
+        if(loc == null) {
             return null;
         }
         
-        String uri = new File(node.loc.file).toURI().toString();
+        String uri = new File(loc.file).toURI().toString();
         
         Location location = new Location();
         location.uri = uri;
-        location.range = LspUtil.fromSrcPosLine(node.loc, node.len);
+        location.range = LspUtil.fromSrcPosLine(loc, node.len);
         return location;
     }
     
+    /**
+     * the range at the start of the file if the location is unknown
+     */
     public static Range fromSrcPosLine(Loc srcPos, int len) {
-        int lineNumber = Math.max(0, srcPos.line - 1);
+        int lineNumber = srcPos == null ? 0 : Math.max(0, srcPos.line - 1);
+        int character = srcPos == null ? 0 : Math.max(0, srcPos.col - 1);
                 
         Range range = new Range();
         range.start = new Position();
         range.start.line = lineNumber;
-        range.start.character = srcPos.col-1;
+        range.start.character = character;
         
         range.end = new Position();
         range.end.line = lineNumber;    
-        range.end.character = srcPos.col-1 + len;
+        range.end.character = character + len;
         return range;
     }
     
@@ -68,8 +77,9 @@ public class LspUtil {
         }
         info.kind = SymbolKind.fromSymbol(sym).getValue();
         
-        info.range = LspUtil.fromSrcPosLine(sym.loc, sym.len);
-        info.selectionRange = LspUtil.fromSrcPosLine(sym.loc, 0);
+        Loc loc = sym.loc();
+        info.range = LspUtil.fromSrcPosLine(loc, sym.len);
+        info.selectionRange = LspUtil.fromSrcPosLine(loc, 0);
         
         if(sym instanceof AstNode.TopLevelDef td) {
             info.deprecated = td.isDeprecated();
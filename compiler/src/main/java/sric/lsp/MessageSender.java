@@ -80,7 +80,7 @@ public class MessageSender {
         if(!errors.isEmpty()) {
             params.diagnostics = new ArrayList<>();
             for(CompilerErr error : errors) {
-                if (!file.endsWith(error.loc.file)) {
+                if (!error.isInFile(file)) {
                     continue;
                 }
                 Diagnostic d = new Diagnostic();                
@@ -80,8 +80,8 @@ public class ReferenceFinder extends CompilePass {
 
         visitFuncPrototype(v, v.prototype);
         
-        if (v.code != null) {
-            this.visit(v.code);
+        if (v.hasCode()) {
+            this.visit(v.getCode());
         }
     }
 
@@ -100,141 +100,168 @@ public class ReferenceFinder extends CompilePass {
     @Override
     public void visitStmt(Stmt v) {
 
-        if (v instanceof AstNode.Block bs) {
-            bs.walkChildren(this);
-        }
-        else if (v instanceof Stmt.IfStmt ifs) {
-            this.visit(ifs.condition);
-            this.visit(ifs.block);
-            if (ifs.elseBlock != null) {
-                this.visit(ifs.elseBlock);
+        switch (v.astKind()) {
+            case Block -> {
+                AstNode.Block bs = (AstNode.Block)v;
+                bs.walkChildren(this);
             }
-        }
-        else if (v instanceof Stmt.LocalDefStmt e) {
-            this.visit(e.fieldDef);
-        }
-        else if (v instanceof Stmt.WhileStmt whiles) {
-            this.visit(whiles.condition);
-            this.visit(whiles.block);
-        }
-        else if (v instanceof Stmt.ForStmt fors) {
-            if (fors.init != null) {
-                if (fors.init instanceof Stmt.LocalDefStmt varDef) {
-                    this.visit(varDef.fieldDef);
-                }
-                else if (fors.init instanceof Stmt.ExprStmt s) {
-                    this.visit(s.expr);
+            case IfStmt -> {
+                Stmt.IfStmt ifs = (Stmt.IfStmt)v;
+                this.visit(ifs.condition);
+                this.visit(ifs.block);
+                if (ifs.elseBlock != null) {
+                    this.visit(ifs.elseBlock);
                 }
             }
-            
-            if (fors.condition != null) {
-                this.visit(fors.condition);
+            case LocalDefStmt -> {
+                Stmt.LocalDefStmt e = (Stmt.LocalDefStmt)v;
+                this.visit(e.fieldDef);
             }
-            
-            if (fors.update != null) {
-                this.visit(fors.update);
+            case WhileStmt -> {
+                Stmt.WhileStmt whiles = (Stmt.WhileStmt)v;
+                this.visit(whiles.condition);
+                this.visit(whiles.block);
             }
-            this.visit(fors.block);
-        }
-        else if (v instanceof Stmt.SwitchStmt switchs) {
-            this.visit(switchs.condition);
-            
-            for (Stmt.CaseBlock cb : switchs.cases) {
-                this.visit(cb.caseExpr);
-                this.visit(cb.block);
+            case ForStmt -> {
+                Stmt.ForStmt fors = (Stmt.ForStmt)v;
+                if (fors.init != null) {
+                    if (fors.init instanceof Stmt.LocalDefStmt varDef) {
+                        this.visit(varDef.fieldDef);
+                    }
+                    else if (fors.init instanceof Stmt.ExprStmt s) {
+                        this.visit(s.expr);
+                    }
+                }
+                
+                if (fors.condition != null) {
+                    this.visit(fors.condition);
+                }
+                
+                if (fors.update != null) {
+                    this.visit(fors.update);
+                }
+                this.visit(fors.block);
             }
-            
-            if (switchs.defaultBlock != null) {
-                this.visit(switchs.defaultBlock);
+            case SwitchStmt -> {
+                Stmt.SwitchStmt switchs = (Stmt.SwitchStmt)v;
+                this.visit(switchs.condition);
+                
+                for (Stmt.CaseBlock cb : switchs.cases) {
+                    this.visit(cb.caseExpr);
+                    this.visit(cb.block);
+                }
+                
+                if (switchs.defaultBlock != null) {
+                    this.visit(switchs.defaultBlock);
+                }
             }
-        }
-        else if (v instanceof Stmt.ExprStmt exprs) {
-            this.visit(exprs.expr);
-        }
-        else if (v instanceof Stmt.JumpStmt jumps) {
-            
-        }
-        else if (v instanceof Stmt.UnsafeBlock bs) {
+            case ExprStmt -> {
+                Stmt.ExprStmt exprs = (Stmt.ExprStmt)v;
+                this.visit(exprs.expr);
+            }
+            case JumpStmt -> {
+                Stmt.JumpStmt jumps = (Stmt.JumpStmt)v;
+                
+            }
+            case UnsafeBlock -> {
+                Stmt.UnsafeBlock bs = (Stmt.UnsafeBlock)v;
 
-            this.visit(bs.block);
-        }
-        else if (v instanceof Stmt.ReturnStmt rets) {
-            if (rets.expr != null) {
-                this.visit(rets.expr);
+                this.visit(bs.block);
+            }
+            case ReturnStmt -> {
+                Stmt.ReturnStmt rets = (Stmt.ReturnStmt)v;
+                if (rets.expr != null) {
+                    this.visit(rets.expr);
+                }
+            }
+            default -> {
+                //err("Unkown stmt:"+v, v.loc());
             }
-        }
-        else {
-            //err("Unkown stmt:"+v, v.loc);
         }
     }
 
     @Override
     public void visitExpr(Expr v) {
-        if (v instanceof Expr.IdExpr e) {
-            if (e.namespace != null) {
-                this.visit(e.namespace);
+        switch (v.astKind()) {
+            case IdExpr -> {
+                Expr.IdExpr e = (Expr.IdExpr)v;
+                if (e.namespace != null) {
+                    this.visit(e.namespace);
+                }
+                this.visitId(e);
             }
-            this.visitId(e);
-        }
-        else if (v instanceof Expr.AccessExpr e) {
-            this.visit(e.target);
-        }
-        else if (v instanceof Expr.LiteralExpr e) {
-        }
-        else if (v instanceof Expr.BinaryExpr e) {
-            this.visit(e.lhs);
-            this.visit(e.rhs);
-        }
-        else if (v instanceof Expr.CallExpr e) {
-            this.visit(e.target);
-            if (e.args != null) {
-                int i = 0;
-                for (Expr.CallArg t : e.args) {
-                    this.visit(t.argExpr);
-                    ++i;
+            case AccessExpr -> {
+                Expr.AccessExpr e = (Expr.AccessExpr)v;
+                this.visit(e.target);
+            }
+            case LiteralExpr -> {
+                Expr.LiteralExpr e = (Expr.LiteralExpr)v;
+            }
+            case BinaryExpr -> {
+                Expr.BinaryExpr e = (Expr.BinaryExpr)v;
+                this.visit(e.lhs);
+                this.visit(e.rhs);
+            }
+            case CallExpr -> {
+                Expr.CallExpr e = (Expr.CallExpr)v;
+                this.visit(e.target);
+                if (e.args != null) {
+                    int i = 0;
+                    for (Expr.CallArg t : e.args) {
+                        this.visit(t.argExpr);
+                        ++i;
+                    }
                 }
             }
-        }
-        else if (v instanceof Expr.UnaryExpr e) {
-            this.visit(e.operand);
-        }
-        else if (v instanceof Expr.TypeExpr e) {
-            visitType(e.type);
-        }
-        else if (v instanceof Expr.IndexExpr e) {
-            this.visit(e.target);
-            this.visit(e.index);
-        }
-        else if (v instanceof Expr.GenericInstance e) {
-            this.visit(e.target);
-            for (Type t : e.genericArgs) {
-                this.visitType(t);
+            case UnaryExpr -> {
+                Expr.UnaryExpr e = (Expr.UnaryExpr)v;
+                this.visit(e.operand);
             }
-        }
-        else if (v instanceof Expr.IfExpr e) {
-            this.visit(e.condition);
-            this.visit(e.trueExpr);
-            this.visit(e.falseExpr);
-        }
-        else if (v instanceof Expr.WithBlockExpr e) {
-            this.visit(e.target);
-            this.visit(e.block);
-        }
-        else if (v instanceof Expr.ArrayBlockExpr e) {
-            visitType(e.type);
-            for (Expr t : e.args) {
-                this.visit(t);
+            case TypeExpr -> {
+                Expr.TypeExpr e = (Expr.TypeExpr)v;
+                visitType(e.type);
+            }
+            case IndexExpr -> {
+                Expr.IndexExpr e = (Expr.IndexExpr)v;
+                this.visit(e.target);
+                this.visit(e.index);
+            }
+            case GenericInstance -> {
+                Expr.GenericInstance e = (Expr.GenericInstance)v;
+                this.visit(e.target);
+                for (Type t : e.genericArgs) {
+                    this.visitType(t);
+                }
+            }
+            case IfExpr -> {
+                Expr.IfExpr e = (Expr.IfExpr)v;
+                this.visit(e.condition);
+                this.visit(e.trueExpr);
+                this.visit(e.falseExpr);
+            }
+            case WithBlockExpr -> {
+                Expr.WithBlockExpr e = (Expr.WithBlockExpr)v;
+                this.visit(e.target);
+                this.visit(e.block);
+            }
+            case ArrayBlockExpr -> {
+                Expr.ArrayBlockExpr e = (Expr.ArrayBlockExpr)v;
+                visitType(e.type);
+                for (Expr t : e.args) {
+                    this.visit(t);
+                }
+            }
+            case ClosureExpr -> {
+                Expr.ClosureExpr e = (Expr.ClosureExpr)v;
+                visitFuncPrototype(e, e.prototype);
+                this.visit(e.code);
             }
-        }
-        else if (v instanceof Expr.ClosureExpr e) {
-            visitFuncPrototype(e, e.prototype);
-            this.visit(e.code);
-        }
 //        else if (v instanceof Expr.NonNullableExpr e) {
 //            this.visit(e.operand);
 //        }
-        else {
-            //err("Unkown expr:"+v, v.loc);
+            default -> {
+                //err("Unkown expr:"+v, v.loc());
+            }
         }
 
     }
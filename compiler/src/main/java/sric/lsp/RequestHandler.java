@@ -20,6 +20,14 @@ public class RequestHandler {
     private MessageSender sender;
     private LspLogger log;
     
+    //documents changed and not analyzed, a burst of changes is analyzed once
+    private final LinkedHashSet<String> changedUris = new LinkedHashSet<>();
+    private long lastChangeTime = 0;
+    /**
+     * milliseconds to wait for the next change before the analysis
+     */
+    public long changeDelay = 150;
+    
     public RequestHandler(Workspace workspace, 
                           MessageSender sender,
                           LspLogger log) {
@@ -69,7 +77,33 @@ public class RequestHandler {
     
     public void handleTextDocumentDidChange(RpcRequest rpc, DidChangeParams params) {        
         this.workspace.changedDocument(params.textDocument.uri, params);
-        this.sender.sendDiagnostics(this.workspace, params.textDocument.uri);
+        changedUris.add(params.textDocument.uri);
+        lastChangeTime = System.currentTimeMillis();
+    }
+    
+    /**
+     * milliseconds before the changed documents are analyzed, -1 if nothing is changed
+     */
+    public long analysisDelay() {
+        if (changedUris.isEmpty()) {
+            return -1;
+        }
+        return Math.max(0, lastChangeTime + changeDelay - System.currentTimeMillis());
+    }
+    
+    /**
+     * analyze one changed document and send the diagnostics,
+     * the messages received meanwhile are handled before the next one
+     */
+    public void analyzeNext() {
+        Iterator<String> it = changedUris.iterator();
+        if (!it.hasNext()) {
+            return;
+        }
+        String uri = it.next();
+        it.remove();
+        this.workspace.updateDocument(uri);
+        this.sender.sendDiagnostics(this.workspace, uri);
     }
     
     public void handleTextDocumentDidSave(RpcRequest rpc, DidSaveTextDocumentParams params) {        
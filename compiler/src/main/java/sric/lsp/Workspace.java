@@ -48,13 +48,17 @@ public class Workspace {
         }
     }
     
-    private sric.compiler.Compiler build(String file, boolean force) throws IOException {
+    private static String moduleKey(String file) {
         File jfile = new File(file);
         File moduleFile = LspUtil.findModuleFile(jfile);
         if (moduleFile == null) {
             moduleFile = jfile;
         }
-        String key = moduleFile.getPath();
+        return moduleFile.getPath();
+    }
+    
+    private sric.compiler.Compiler build(String file, boolean force) throws IOException {
+        String key = moduleKey(file);
         
         if (!force) {
             sric.compiler.Compiler sm = moduleList.get(key);
@@ -72,6 +76,10 @@ public class Workspace {
         }
         compiler.genCode = false;
         compiler.print = false;
+        //only the open documents are parsed fully, other bodies are parsed when a finder visits them
+        compiler.lazyBody = true;
+        compiler.eagerFiles = new HashSet<>(documents.keySet());
+        compiler.eagerFiles.add(file);
         compiler.run();
         
         moduleList.put(key, compiler);
@@ -81,8 +89,14 @@ public class Workspace {
     public void addDocument(TextDocument document) {
         try {
             String latestDocumentUri = canonicalPath(document.uri);
+            boolean loaded = moduleList.containsKey(moduleKey(latestDocumentUri));
             sric.compiler.Compiler unit = build(latestDocumentUri, false);
-            this.documents.put(latestDocumentUri, new Document(document, this.log, unit, latestDocumentUri));
+            Document doc = new Document(document, this.log, unit, latestDocumentUri);
+            this.documents.put(latestDocumentUri, doc);
+            if (loaded) {
+                //the bodies of the file were not parsed when the module was built
+                doc.updateFile();
+            }
         } catch (Exception ex) {
             log.log("ERROR:"+ex.getMessage());
         }
@@ -93,8 +107,14 @@ public class Workspace {
         this.documents.remove(moduleName);
     }
 
+    /**
+     * apply the changes to the text, the document is analyzed by updateDocument
+     */
     public void changedDocument(String documentUri, DidChangeParams change) {
         Document document = this.documents.get(canonicalPath(documentUri));
+        if (document == null) {
+            return;
+        }
         
         for(TextDocumentContentChangeEvent event : change.contentChanges) {
             if(event.range != null) {
@@ -104,8 +124,11 @@ public class Workspace {
                 document.setText(event.text);
             }
         }
-        
-        if (document.compiler != null) {
+    }
+    
+    public void updateDocument(String documentUri) {
+        Document document = this.documents.get(canonicalPath(documentUri));
+        if (document != null && document.compiler != null) {
             document.updateFile();
         }
     }
@@ -138,9 +161,7 @@ public class Workspace {
         ArrayList<SymbolInformation> list = new ArrayList<SymbolInformation>();
         for (var sm : moduleList.entrySet()) {
             Scope scope = sm.getValue().module.getScope(null);
-            for (HashMap.Entry<String, ArrayList<AstNode>> entry : scope.symbolTable.entrySet()) {
-                String name = entry.getKey();
-                
+            scope.forEach((name, anode) -> {
                 boolean ok = false;
                 if(contains) {
                     if (name.contains(normalizedQuery)) {
@@ -152,10 +173,8 @@ public class Workspace {
                         ok = true;
                     }
                 }
-                for (AstNode anode : entry.getValue()) {
-                    list.add(LspUtil.toSymbolInfo(anode));
-                }
-            }
+                list.add(LspUtil.toSymbolInfo(Scope.load(anode)));
+            });
         }
 
         return list;
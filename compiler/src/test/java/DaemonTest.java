@@ -0,0 +1,45 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.io.File;
+import java.io.IOException;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import sric.compiler.CompileDaemon;
+
+/**
+ *
+ * @author yangjiandong
+ */
+public class DaemonTest {
+
+    @Test
+    public void test() throws Exception {
+        String home = "target/daemonTest";
+        new File(home+"/lib").mkdirs();
+        Thread server = new Thread(() -> {
+            try {
+                new CompileDaemon(home, false).start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        server.setDaemon(true);
+        server.start();
+
+        Integer rc = null;
+        for (int i = 0; i < 100 && rc == null; ++i) {
+            Thread.sleep(50);
+            rc = CompileDaemon.forward(home, new String[]{ "-force", "../library/std/module.scm" });
+        }
+        assertEquals(0, rc);
+        assertEquals(0, CompileDaemon.forward(home, new String[]{ "-force", "../library/jsonc/module.scm" }));
+        //the imported modules are kept for the next build
+        assertEquals(0, CompileDaemon.forward(home, new String[]{ "-force", "../library/jsonc/module.scm" }));
+        assertTrue(new File(home+"/output/jsonc.cpp").exists());
+
+        assertEquals(1, CompileDaemon.forward(home, new String[]{ "../library/notExist/module.scm" }));
+    }
+}
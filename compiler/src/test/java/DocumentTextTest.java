@@ -0,0 +1,65 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import sric.compiler.ast.SourceFile;
+import sric.lsp.DocumentText;
+import sric.lsp.JsonRpc;
+
+/**
+ *
+ * @author yangjiandong
+ */
+public class DocumentTextTest {
+
+    private static void check(StringBuilder expect, DocumentText text) {
+        assertEquals(expect.toString(), text.toString());
+        int[] starts = SourceFile.lineStarts(expect);
+        int[] lines = new int[text.getLineCount()];
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = text.getLineStart(i);
+        }
+        assertArrayEquals(starts, lines);
+        for (int i = 0; i <= expect.length(); i += 7) {
+            JsonRpc.Position pos = text.getPosition(i);
+            int line = Arrays.binarySearch(starts, i);
+            assertEquals(line < 0 ? -line - 2 : line, pos.line);
+            assertEquals(i, text.getPosIndex(pos));
+        }
+    }
+
+    @Test
+    public void testEdit() {
+        StringBuilder expect = new StringBuilder("fun main() {\n    print(\"hi\");\n}\n");
+        DocumentText text = new DocumentText();
+        text.setText(expect.toString());
+        check(expect, text);
+
+        String[] pieces = { "a", "\n", "var x = 1;\n", "\n\n", "", "{\n  }" };
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; ++i) {
+            int from = random.nextInt(expect.length() + 1);
+            int to = Math.min(expect.length(), from + random.nextInt(8));
+            String piece = pieces[random.nextInt(pieces.length)];
+            expect.replace(from, to, piece);
+            text.replace(from, to, piece);
+            if (i % 50 == 0) {
+                check(expect, text);
+                assertEquals(piece, text.subSequence(from, from + piece.length()).toString());
+            }
+        }
+        check(expect, text);
+
+        JsonRpc.Range range = new JsonRpc.Range();
+        range.start = text.getPosition(0);
+        range.end = text.getPosition(text.length());
+        text.insert(range, "x\ny");
+        assertEquals("x\ny", text.getText());
+        assertEquals(2, text.getLineCount());
+    }
+}
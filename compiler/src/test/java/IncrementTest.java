@@ -6,9 +6,12 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import sric.compiler.Util;
+import sric.compiler.ast.AstNode.FileUnit;
+import sric.compiler.ast.AstNode.FuncDef;
 import sric.compiler.ast.SModule;
 
 /**
@@ -16,9 +19,9 @@ import sric.compiler.ast.SModule;
  * @author yangjiandong
  */
 public class IncrementTest {
-    @Test
-    public void test() throws IOException {
-        String file = "res/increment";
+    private static final String file = "res/increment";
+    
+    private static sric.compiler.Compiler compile() throws IOException {
         String libPath = "../lib";
         
         SModule module = new SModule();
@@ -36,11 +39,85 @@ public class IncrementTest {
         compiler.genCode = false;
         boolean res = compiler.run();
         assertTrue(res);
+        return compiler;
+    }
+    
+    private static FuncDef findFunc(FileUnit unit, String name) {
+        for (FuncDef f : unit.funcDefs) {
+            if (f.name.equals(name)) {
+                return f;
+            }
+        }
+        return null;
+    }
+    
+    @Test
+    public void test() throws IOException {
+        sric.compiler.Compiler compiler = compile();
         
         String changedFile = new File(file + "/s2.sric").getAbsolutePath();
         String changedCode = Files.readString(Path.of(changedFile));
         compiler.updateFile(changedFile, changedCode);
         
         assertTrue(!compiler.log.hasError());
+        //s2 uses s1, s3 is independent
+        assertEquals(1, compiler.checkedUnits);
+        assertEquals(2, compiler.skippedUnits);
+        
+        String baseFile = new File(file + "/s1.sric").getAbsolutePath();
+        compiler.updateFile(baseFile, Files.readString(Path.of(baseFile)));
+        assertTrue(!compiler.log.hasError());
+        assertEquals(2, compiler.checkedUnits);
+        assertEquals(1, compiler.skippedUnits);
+        
+        String sumFile = new File(file + "/s3.sric").getAbsolutePath();
+        String sumCode = Files.readString(Path.of(sumFile));
+        compiler.updateFile(sumFile, sumCode.replace("return s;", "return s + n;"));
+        assertTrue(!compiler.log.hasError());
+        assertEquals(1, compiler.checkedUnits);
+        assertEquals(2, compiler.skippedUnits);
+        
+        //new top level name
+        compiler.updateFile(sumFile, sumCode + "fun sum2(): Int { return sum(2); }\n");
+        assertTrue(!compiler.log.hasError());
+        assertEquals(3, compiler.checkedUnits);
+        
+        compiler.updateFile(sumFile, sumCode.replace("return s;", "return x;"));
+        assertEquals(1, compiler.log.errors.size());
+        compiler.updateFile(sumFile, sumCode);
+        assertTrue(!compiler.log.hasError());
+    }
+    
+    @Test
+    public void testFuncBody() throws IOException {
+        sric.compiler.Compiler compiler = compile();
+        
+        String sumFile = new File(file + "/s3.sric").getCanonicalPath();
+        String code = Files.readString(Path.of(sumFile));
+        FileUnit unit = compiler.module.findFileUnit(sumFile);
+        FuncDef sum = findFunc(unit, "sum");
+        FuncDef twice = findFunc(unit, "twice");
+        
+        //error in the second function
+        String code2 = code.replace("sum(n) * 2", "sum(m) * 2");
+        assertTrue(compiler.updateFuncBody(unit, twice, code2, code2.length() - code.length()));
+        assertEquals(1, compiler.log.errors.size());
+        assertEquals(code2.indexOf("m)"), compiler.log.errors.get(0).loc.offset);
+        
+        //the nodes and errors after the body are moved
+        String code3 = code2.replace("return s;", "s = s + 1;\n    return s;");
+        assertTrue(compiler.updateFuncBody(unit, sum, code3, code3.length() - code2.length()));
+        assertEquals(code3.indexOf("fun twice"), twice.loc().offset);
+        assertEquals(1, compiler.log.errors.size());
+        assertEquals(code3.indexOf("m)"), compiler.log.errors.get(0).loc.offset);
+        assertEquals(11, compiler.log.errors.get(0).loc.line);
+        
+        String code4 = code3.replace("sum(m) * 2", "sum(n) * 2");
+        assertTrue(compiler.updateFuncBody(unit, twice, code4, code4.length() - code3.length()));
+        assertTrue(!compiler.log.hasError());
+        
+        //not one block
+        String code5 = code4.replace("return s;", "return s; }");
+        assertTrue(!compiler.updateFuncBody(unit, sum, code5, code5.length() - code4.length()));
     }
 }
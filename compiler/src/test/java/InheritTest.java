@@ -21,4 +21,15 @@ public class InheritTest {
         boolean res = compiler.run();
         assertTrue(res);
     }
+    
+    @Test
+    public void testMultiLevel() throws IOException {
+        String file = "res/code/testInherit2.sric";
+        String libPath = "../lib";
+        
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.makeDefault(file, libPath);
+        compiler.genCode = false;
+        boolean res = compiler.run();
+        assertTrue(res);
+    }
 }
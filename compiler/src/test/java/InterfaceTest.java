@@ -0,0 +1,152 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.TreeSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import sric.compiler.ast.AstNode;
+import sric.compiler.ast.Scope;
+import sric.compiler.ast.SModule;
+import sric.compiler.backend.CppGenerator;
+import sric.compiler.parser.ScInterfaceReader;
+
+/**
+ *
+ * @author yangjiandong
+ */
+public class InterfaceTest {
+
+    private static String importModule(String libPath) throws IOException {
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.makeDefault("res/code/testArray.sric", libPath);
+        SModule module = compiler.importModule("sric", "1.0", null);
+        assertNotNull(module);
+        Scope scope = module.getScope(null);
+        TreeSet<String> names = new TreeSet<>();
+        scope.forEach((name, node) -> names.add(name));
+        for (String name : names) {
+            assertNotNull(scope.get(name, null, null), name);
+        }
+        assertTrue(!compiler.log.hasError(), compiler.log.toString());
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        CppGenerator generator = new CppGenerator(compiler.log, new PrintStream(stream));
+        module.walkChildren(generator);
+        return stream.toString("UTF-8");
+    }
+
+    @Test
+    public void test() throws IOException {
+        String libPath = "target/interfaceTest/lib";
+        new File(libPath).mkdirs();
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.fromProps("../library/std/module.scm", libPath);
+        compiler.print = false;
+        assertTrue(compiler.run());
+
+        File sci = new File(libPath+"/sric.sci");
+        AstNode.FileUnit unit = new AstNode.FileUnit(new File(libPath+"/sric.sch").getCanonicalPath());
+        new ScInterfaceReader(unit, compiler.log).read(sci.toPath());
+        assertTrue(unit.typeDefs.size() > 0);
+
+        String fromInterface = importModule(libPath);
+
+        //only the symbols in use are loaded
+        sric.compiler.Compiler compiler2 = sric.compiler.Compiler.makeDefault("res/code/testArray.sric", libPath);
+        SModule module = compiler2.importModule("sric", "1.0", null);
+        AstNode.FileUnit loaded = module.fileUnits.get(0);
+        assertEquals(0, loaded.typeDefs.size() + loaded.funcDefs.size());
+        assertNotNull(module.getScope(null).get("DArray", null, null));
+        assertTrue(loaded.typeDefs.size() < unit.typeDefs.size());
+
+        File moved = new File(libPath+"/sric.sci.bak");
+        moved.delete();
+        assertTrue(sci.renameTo(moved));
+        String fromStub;
+        try {
+            fromStub = importModule(libPath);
+        }
+        finally {
+            moved.renameTo(sci);
+        }
+        assertEquals(fromStub, fromInterface);
+    }
+
+    private static boolean isInterfaceUsed(String libPath) {
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.makeDefault("res/code/testArray.sric", libPath);
+        SModule module = compiler.importModule("sric", "1.0", null);
+        assertNotNull(module);
+        AstNode.FileUnit loaded = module.fileUnits.get(0);
+        return loaded.typeDefs.size() + loaded.funcDefs.size() == 0;
+    }
+
+    @Test
+    public void testStamp() throws IOException {
+        String libPath = "target/interfaceTest3/lib";
+        new File(libPath).mkdirs();
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.fromProps("../library/std/module.scm", libPath);
+        compiler.print = false;
+        compiler.force = true;
+        assertTrue(compiler.run());
+        assertTrue(isInterfaceUsed(libPath));
+
+        //a touched stub is not changed
+        File stub = new File(libPath+"/sric.sch");
+        assertTrue(stub.setLastModified(System.currentTimeMillis() + 60000));
+        assertTrue(isInterfaceUsed(libPath));
+
+        //the interface of other build
+        File meta = new File(libPath+"/sric.meta");
+        String props = Files.readString(meta.toPath());
+        String changed = props.replaceFirst("sourceHash = \\w", "sourceHash = x");
+        assertNotEquals(props, changed);
+        Files.writeString(meta.toPath(), changed);
+        assertFalse(isInterfaceUsed(libPath));
+    }
+
+    @Test
+    public void testBrokenBody() throws IOException {
+        String libPath = "target/interfaceTest2/lib";
+        new File(libPath).mkdirs();
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.fromProps("../library/std/module.scm", libPath);
+        compiler.print = false;
+        //the interface is deleted by the last run
+        compiler.force = true;
+        assertTrue(compiler.run());
+
+        File sci = new File(libPath+"/sric.sci");
+        File moved = new File(libPath+"/sric.sci.bak");
+        moved.delete();
+        assertTrue(sci.renameTo(moved));
+        String fromStub;
+        try {
+            fromStub = importModule(libPath);
+        }
+        finally {
+            moved.renameTo(sci);
+        }
+
+        //same length, so the interface is still readable
+        byte[] data = Files.readAllBytes(sci.toPath());
+        String text = new String(data, StandardCharsets.ISO_8859_1);
+        String body = "return table.constGetPtr(h);";
+        int pos = text.indexOf(body);
+        assertTrue(pos > 0);
+        text = text.substring(0, pos) + body.replace('.', ')') + text.substring(pos + body.length());
+        Files.write(sci.toPath(), text.getBytes(StandardCharsets.ISO_8859_1));
+
+        //the broken body is parsed from the stub, and the interface is not used again
+        String fromBroken = importModule(libPath);
+        assertEquals(fromStub, fromBroken);
+        assertFalse(sci.exists());
+    }
+}
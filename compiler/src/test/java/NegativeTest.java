@@ -6,6 +6,7 @@
 import java.io.IOException;
 import java.io.File;
 import java.nio.file.Files;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
@@ -46,6 +47,23 @@ public class NegativeTest {
 
     }
     
+    @Test
+    public void testTypeCheckCache() throws IOException {
+        String libPath = "../lib";
+        File file = new File("res/negative/move.sric");
+
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.makeDefault(file.getPath(), libPath);
+        compiler.genCode = false;
+        compiler.run();
+        String str = compiler.log.toString();
+        assertTrue(compiler.typeCheckCache.fit.getMisses() > 0);
+
+        //the results of the last check are not reused for the new nodes
+        String src = Files.readString(file.toPath());
+        compiler.updateFile(file.getAbsolutePath(), src);
+        assertEquals(str, compiler.log.toString());
+    }
+    
     @Test
     public void testAll() throws IOException {
         String libPath = "../lib";
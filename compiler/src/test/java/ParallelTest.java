@@ -0,0 +1,89 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import org.junit.jupiter.api.Test;
+import sric.compiler.CompilerLog;
+import sric.compiler.backend.CppGenerator;
+import sric.compiler.resolve.BodyTasks;
+
+/**
+ *
+ * @author yangjiandong
+ */
+public class ParallelTest {
+
+    private static String compile(String path, boolean parallel) throws IOException {
+        String libPath = "../lib";
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.makeDefault(path, libPath);
+        compiler.genCode = false;
+        compiler.jobs = 4;
+        compiler.parallelCheck = parallel;
+        boolean res = compiler.run();
+        if (!res) {
+            return compiler.log.toString();
+        }
+
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        CppGenerator generator = new CppGenerator(compiler.log, new PrintStream(stream));
+        compiler.module.walkChildren(generator);
+        return stream.toString("UTF-8");
+    }
+
+    private static void verify(String path) throws IOException {
+        String expected = compile(path, false);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(expected, compile(path, true), path);
+        }
+    }
+
+    @Test
+    public void test() throws IOException {
+        verify("../library/std");
+    }
+
+    @Test
+    public void testBodyTasks() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            CompilerLog log = new CompilerLog();
+            BodyTasks tasks = new BodyTasks(log, pool);
+            AtomicInteger count = new AtomicInteger();
+            for (int i = 0; i < 10; ++i) {
+                tasks.add(new CompilerLog(), () -> count.incrementAndGet());
+            }
+            //the bodies don't run with the walk
+            assertEquals(0, count.get());
+            tasks.join();
+            assertEquals(10, count.get());
+            
+            tasks.add(new CompilerLog(), () -> count.incrementAndGet());
+            assertEquals(10, count.get());
+            tasks.finish();
+            assertEquals(11, count.get());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testAll() throws IOException {
+        for (String dir : new String[] { "res/code", "res/negative" }) {
+            File[] list = new File(dir).listFiles();
+            for (File file : list) {
+                if (!file.getName().endsWith(".sric")) {
+                    continue;
+                }
+                verify(file.getPath());
+            }
+        }
+    }
+}
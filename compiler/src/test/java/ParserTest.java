@@ -9,6 +9,7 @@ import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import sric.compiler.CompilerLog;
@@ -73,4 +74,33 @@ public class ParserTest {
             GoldenTest.verifyGolden(str, "parser", name+".sric");
         }
     }
+    
+    private static String printUnit(File file, boolean lazyBody) throws IOException {
+        String src = Files.readString(file.toPath());
+        CompilerLog log = new CompilerLog();
+        FileUnit unit = new FileUnit(file.getPath());
+        DeepParser parser = new DeepParser(log, src, unit);
+        parser.lazyBody = lazyBody;
+        parser.parse();
+        if (log.hasError()) {
+            return null;
+        }
+        
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        ScLibGenerator generator = new ScLibGenerator(log, new PrintStream(stream));
+        generator.isPrintAll = true;
+        unit.walkChildren(generator);
+        return stream.toString("UTF-8");
+    }
+    
+    @Test
+    public void testLazyBody() throws IOException {
+        File[] list = new File("res/code").listFiles();
+        for (File file : list) {
+            if (!file.getName().endsWith(".sric")) {
+                continue;
+            }
+            assertEquals(printUnit(file, false), printUnit(file, true), file.getName());
+        }
+    }
 }
@@ -0,0 +1,137 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import sric.compiler.CompilerLog;
+import sric.compiler.ast.AstNode;
+import sric.compiler.ast.AstNode.FileUnit;
+import sric.compiler.parser.DeepParser;
+import sric.lsp.LspUtil;
+
+/**
+ *
+ * @author yangjiandong
+ */
+public class ReentrantTest {
+
+    //library modules, each wave only depends on the previous ones
+    private static final String[][] waves = {
+        {"std", "cstd"},
+        {"jsonc", "test", "testCoroutine"},
+        {"serial"},
+        {"testSerial"},
+    };
+
+    private static boolean compile(String module, String home, boolean genCode) throws IOException {
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.fromProps("../library/"+module+"/module.scm", home+"/lib");
+        compiler.genCode = genCode;
+        compiler.print = false;
+        boolean res = compiler.run();
+        if (!res) {
+            System.err.println(module+":\n"+compiler.log);
+        }
+        return res;
+    }
+
+    private static void verifySame(File expected, File actual) throws IOException {
+        for (File file : expected.listFiles()) {
+            if (file.getName().endsWith(".meta")) {
+                continue;
+            }
+            File other = new File(actual, file.getName());
+            assertTrue(other.exists(), other.getPath());
+            if (file.getName().endsWith(".sci")) {
+                assertArrayEquals(Files.readAllBytes(file.toPath()), Files.readAllBytes(other.toPath()), file.getName());
+                continue;
+            }
+            assertEquals(Files.readString(file.toPath()), Files.readString(other.toPath()), file.getName());
+        }
+    }
+
+    @Test
+    public void test() throws Exception {
+        String seqHome = "target/reentrantTest/seq";
+        String parHome = "target/reentrantTest/par";
+        new File(seqHome+"/lib").mkdirs();
+        new File(parHome+"/lib").mkdirs();
+
+        ArrayList<String> built = new ArrayList<>();
+        for (String[] wave : waves) {
+            for (String module : wave) {
+                assertTrue(compile(module, seqHome, true), module);
+            }
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (String[] wave : waves) {
+                ArrayList<Future<Boolean>> results = new ArrayList<>();
+                for (String module : wave) {
+                    results.add(pool.submit(() -> compile(module, parHome, true)));
+                }
+                //more compilations sharing the JVM
+                for (String module : built) {
+                    results.add(pool.submit(() -> compile(module, seqHome, false)));
+                    results.add(pool.submit(() -> compile(module, seqHome, false)));
+                }
+                for (Future<Boolean> res : results) {
+                    assertTrue(res.get());
+                }
+                for (String module : wave) {
+                    built.add(module);
+                }
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        verifySame(new File(seqHome+"/lib"), new File(parHome+"/lib"));
+        verifySame(new File(seqHome+"/output"), new File(parHome+"/output"));
+    }
+
+    @Test
+    public void testSamePath() {
+        //two texts of the same path, such as an edited file in the LSP
+        FileUnit unit1 = new FileUnit("same.sric");
+        new DeepParser(new CompilerLog(), "fun foo() {}\n\nfun bar() {}\n", unit1).parse();
+        FileUnit unit2 = new FileUnit("same.sric");
+        new DeepParser(new CompilerLog(), "\n\n\n\nfun bar() {}\nfun foo() {}\n", unit2).parse();
+
+        assertEquals(1, unit1.funcDefs.get(0).loc().line);
+        assertEquals(3, unit1.funcDefs.get(1).loc().line);
+        assertEquals(5, unit2.funcDefs.get(0).loc().line);
+        assertEquals(6, unit2.funcDefs.get(1).loc().line);
+    }
+
+    @Test
+    public void testUnknownLoc() {
+        FileUnit unit = new FileUnit("known.sric");
+        new DeepParser(new CompilerLog(), "fun foo() {}\n", unit).parse();
+
+        //a node made by the compiler has no location
+        AstNode.Block block = new AstNode.Block();
+        assertNull(block.loc());
+        assertNull(LspUtil.locationFromNode(block));
+        assertEquals(0, LspUtil.fromSrcPosLine(block.loc(), 0).start.line);
+
+        CompilerLog log = new CompilerLog();
+        log.err("unknown", block.loc());
+        log.err("known", unit.funcDefs.get(0).loc());
+        log.removeByFile("known.sric");
+        assertEquals(1, log.errors.size());
+        assertEquals("unknown", log.errors.get(0).msg);
+    }
+}
@@ -0,0 +1,112 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import sric.compiler.CompilerLog;
+import sric.compiler.parser.Tokenizer;
+
+/**
+ * Tokenizer throughput in MB/s over the library sources and a generated corpus.
+ * Not a unit test, run it after mvn test-compile by:
+ *   java -cp target/classes:target/test-classes TokenizerBench [libraryDir]
+ *
+ * @author yangjiandong
+ */
+public class TokenizerBench {
+
+    private static void listSources(File file, ArrayList<String> sources) throws IOException {
+        if (file.isDirectory()) {
+            for (File f : file.listFiles()) {
+                listSources(f, sources);
+            }
+        }
+        else if (file.getName().endsWith(".sric")) {
+            sources.add(Files.readString(file.toPath()));
+        }
+    }
+
+    /**
+     * generated files of about fileSize chars
+     */
+    private static ArrayList<String> generate(int size, int fileSize) {
+        ArrayList<String> files = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(fileSize + 1024);
+        int total = 0;
+        int i = 0;
+        while (total < size) {
+            sb.append("/**\n * generated type ").append(i).append("\n */\n");
+            sb.append("struct Point").append(i).append(" {\n");
+            sb.append("    var x : Int32 = ").append(i).append(";\n");
+            sb.append("    var yValue : Float64 = ").append(i).append(".5;\n");
+            sb.append("    var name : String = \"point_").append(i).append("\";\n");
+            sb.append("    fun distance(other : &Point").append(i).append(") : Float64 {\n");
+            sb.append("        // squared distance\n");
+            sb.append("        var dx = x - other.x;\n");
+            sb.append("        if (dx < 0 && yValue >= 0x1F) { return -dx * 2.0; }\n");
+            sb.append("        return dx * dx + yValue;\n");
+            sb.append("    }\n");
+            sb.append("}\n");
+            ++i;
+            if (sb.length() >= fileSize) {
+                total += sb.length();
+                files.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        return files;
+    }
+
+    private static long bytes(ArrayList<String> sources) {
+        long n = 0;
+        for (String s : sources) {
+            n += s.length();
+        }
+        return n;
+    }
+
+    private static int tokenizeAll(ArrayList<String> sources) {
+        int count = 0;
+        for (String s : sources) {
+            CompilerLog log = new CompilerLog();
+            count += new Tokenizer(log, "bench", s).tokenizeBuffer().size();
+        }
+        return count;
+    }
+
+    private static void bench(String name, ArrayList<String> sources, int minBytes) {
+        long size = bytes(sources);
+        int rounds = (int)Math.max(1, minBytes / Math.max(1, size));
+        for (int i = 0; i < 3; ++i) {
+            for (int r = 0; r < rounds; ++r) {
+                tokenizeAll(sources);
+            }
+        }
+
+        double best = 0;
+        int tokens = 0;
+        for (int i = 0; i < 5; ++i) {
+            long begin = System.nanoTime();
+            for (int r = 0; r < rounds; ++r) {
+                tokens = tokenizeAll(sources);
+            }
+            long time = System.nanoTime() - begin;
+            double mbs = (size * rounds / (1024.0 * 1024.0)) / (time / 1e9);
+            best = Math.max(best, mbs);
+        }
+        System.out.printf("%-10s %8.2f MB  %9d tokens  %8.1f MB/s%n", name, size / (1024.0 * 1024.0), tokens, best);
+    }
+
+    public static void main(String[] args) throws IOException {
+        String libDir = args.length > 0 ? args[0] : "../library";
+        ArrayList<String> library = new ArrayList<>();
+        listSources(new File(libDir), library);
+        bench("library", library, 32 * 1024 * 1024);
+
+        ArrayList<String> corpus = generate(16 * 1024 * 1024, 16 * 1024);
+        bench("generated", corpus, 64 * 1024 * 1024);
+    }
+}
@@ -14,6 +14,9 @@ import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 import sric.compiler.CompilerLog;
 import sric.compiler.ast.Token;
+import sric.compiler.ast.AstNode.FileUnit;
+import sric.compiler.parser.DeepParser;
+import sric.compiler.parser.NameTable;
 import sric.compiler.parser.Tokenizer;
 
 /**
@@ -57,4 +60,43 @@ public class TokenizerTest {
         log.printError();
         assertTrue(log.errors.size() == 0);
     }
+    
+    @Test
+    public void testKeywords() {
+        for (var entry : Token.keywords.entrySet()) {
+            String word = entry.getKey();
+            String src = word + " " + word + "x _" + word + " " + word.substring(0, word.length()-1);
+            ArrayList<Token> toks = new Tokenizer(new CompilerLog(), "test", src).tokenize();
+            assertEquals(entry.getValue(), toks.get(0).kind, word);
+            assertEquals(Token.TokenKind.identifier, toks.get(1).kind, word);
+            assertEquals(word + "x", toks.get(1).val);
+            assertEquals(Token.TokenKind.identifier, toks.get(2).kind, word);
+            if (!Token.keywords.containsKey(word.substring(0, word.length()-1))) {
+                assertEquals(Token.TokenKind.identifier, toks.get(3).kind, word);
+            }
+        }
+        
+        //identifiers are shared strings
+        ArrayList<Token> toks = new Tokenizer(new CompilerLog(), "test", "name x name").tokenize();
+        assertSame(toks.get(0).val, toks.get(2).val);
+    }
+    
+    @Test
+    public void testNameTable() {
+        //the units of a compiler share the names
+        NameTable names = new NameTable();
+        FileUnit a = new FileUnit("a.sric");
+        a.names = names;
+        new DeepParser(new CompilerLog(), "fun foo() {}", a).parse();
+        FileUnit b = new FileUnit("b.sric");
+        b.names = names;
+        new DeepParser(new CompilerLog(), "fun bar() {} fun foo() {}", b).parse();
+        assertSame(a.funcDefs.get(0).name, b.funcDefs.get(1).name);
+        
+        //a table is not shared by other compilers
+        FileUnit c = new FileUnit("c.sric");
+        new DeepParser(new CompilerLog(), "fun foo() {}", c).parse();
+        assertNotSame(a.funcDefs.get(0).name, c.funcDefs.get(0).name);
+        assertEquals(a.funcDefs.get(0).name, c.funcDefs.get(0).name);
+    }
 }
@@ -8,11 +8,16 @@ import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.Test;
 import sric.compiler.CompilerLog;
 import sric.compiler.Util;
 import sric.compiler.ast.AstNode;
+import sric.compiler.ast.Type;
 import sric.compiler.backend.CppGenerator;
 import sric.compiler.parser.DeepParser;
 import sric.compiler.resolve.ExprTypeResolver;
@@ -43,6 +48,35 @@ public class TypeCheckTest {
         GoldenTest.verifyGolden(str, "typeCheck", name+".cpp");
     }
     
+    @Test
+    public void testTypeCheckCache() throws IOException {
+        String libPath = "../lib";
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.makeDefault("res/code/testCopyable.sric", libPath);
+        compiler.genCode = false;
+        assertTrue(compiler.run());
+        
+        //the nested structs are checked once
+        assertTrue(compiler.typeCheckCache.copyable.getHits() > 0);
+        assertTrue(compiler.typeCheckCache.moveable.getHits() > 0);
+        //the types of different expressions share the result
+        assertTrue(compiler.typeCheckCache.fit.getHits() > 0);
+    }
+    
+    @Test
+    public void testSharedType() {
+        Type type = Type.literalType(null, 1L);
+        assertSame(type, Type.literalType(null, 2L));
+        assertEquals("const Int32", type.getQName(false));
+        
+        //the declared copy has its own id
+        Type mutable = type.toMutable();
+        assertNotSame(type.id, mutable.id);
+        assertFalse(mutable.isImmutable);
+        assertTrue(type.isImmutable);
+        
+        assertNotSame(Type.literalType(null, "a"), Type.literalType(null, "a"));
+    }
+    
     @Test
     public void testAll() throws IOException {
         String libPath = "../lib";
@@ -0,0 +1,66 @@
+//
+// Copyright (c) 2024, chunquedong
+// Licensed under the Academic Free License version 3.0
+//
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import sric.compiler.Util;
+import sric.compiler.backend.ScInterfaceGenerator;
+
+/**
+ *
+ * @author yangjiandong
+ */
+public class UpToDateTest {
+
+    private static boolean compile(String module, String libPath, boolean force) throws IOException {
+        sric.compiler.Compiler compiler = sric.compiler.Compiler.fromProps("../library/"+module+"/module.scm", libPath);
+        compiler.print = false;
+        compiler.force = force;
+        return compiler.run();
+    }
+
+    @Test
+    public void test() throws IOException {
+        String home = "target/upToDateTest";
+        String libPath = home+"/lib";
+        new File(libPath).mkdirs();
+        assertTrue(compile("std", libPath, true));
+        assertTrue(compile("jsonc", libPath, true));
+
+        HashMap<String, String> meta = Util.readProps(libPath+"/jsonc.meta");
+        assertNotNull(meta.get("sourceHash"));
+        assertNotNull(meta.get("interfaceHash"));
+        assertEquals(Util.readProps(libPath+"/sric.meta").get("interfaceHash"), meta.get("depend.sric"));
+
+        //nothing changed, no output is written
+        File header = new File(home+"/output/jsonc.h");
+        assertTrue(header.setLastModified(1000));
+        assertTrue(compile("jsonc", libPath, false));
+        assertEquals(1000, header.lastModified());
+
+        //the interface of a depend changed
+        HashMap<String, String> stdMeta = Util.readProps(libPath+"/sric.meta");
+        stdMeta.put("interfaceHash", "0");
+        Util.writeProps(libPath+"/sric.meta", stdMeta);
+        assertTrue(compile("jsonc", libPath, false));
+        assertEquals("0", Util.readProps(libPath+"/jsonc.meta").get("depend.sric"));
+        //rebuilt, but the unchanged header is not written
+        assertEquals(1000, header.lastModified());
+    }
+
+    @Test
+    public void testInterfaceHash() {
+        String stub = "struct A {\n    var a : Int;\n    fun foo() : Int;\n}\n";
+        String hash = ScInterfaceGenerator.interfaceHash(stub);
+        assertEquals(hash, ScInterfaceGenerator.interfaceHash("/** doc */\nstruct A { var a : Int; fun foo(): Int; }"));
+        assertNotEquals(hash, ScInterfaceGenerator.interfaceHash("struct A {\n    var a : Int32;\n    fun foo() : Int;\n}\n"));
+        assertNotEquals(hash, ScInterfaceGenerator.interfaceHash("//@#include \"a.h\"\n" + stub));
+    }
+}